@@ -45,16 +45,28 @@ dependencies {
     testFixturesImplementation("org.graalvm.js:js:24.1.1")
     testFixturesImplementation("org.graalvm.js:js-scriptengine:24.1.1")
     testFixturesImplementation("org.python:jython-slim:2.7.4")
+    testFixturesImplementation("com.fasterxml.jackson.core:jackson-databind")
 
     // For GIGS tests
     testImplementation("org.iogp:gigs:1.0-GEOMATYS-ALPHA-1")
 
+    // For WebAssembly tests
+    testImplementation("com.dylibso.chicory:runtime:1.0.0")
+
     // For Swagger UI
     implementation("org.springdoc:springdoc-openapi-starter-webmvc-ui:2.3.0")
     implementation("com.github.therapi:therapi-runtime-javadoc:0.15.0")
     annotationProcessor("com.github.therapi:therapi-runtime-javadoc-scribe:0.13.0")
 }
 
+// Build information, part of the version of generated code (see ServiceVersion).
+// The time is excluded so that builds of the same version by different machines have the same version of generated code.
+springBoot {
+    buildInfo {
+        excludes = setOf("time")
+    }
+}
+
 tasks.withType<AsciidoctorTask> {
     baseDirFollowsSourceDir()
 }
@@ -74,10 +86,19 @@ tasks.withType<BootBuildImage> {
     docker { bindHostToBuilder = true }
 }
 
-// Unit tests exclude GIGS tests
+// Unit tests exclude GIGS tests and benchmarks
 tasks.named<Test>("test") {
     useJUnitPlatform {
-        excludeTags("gigs")
+        excludeTags("gigs", "benchmark")
+    }
+}
+
+// Benchmarks, which publish their measurements in the test report
+tasks.register<Test>("benchmark") {
+    description = "Runs benchmarks."
+    group = "verification"
+    useJUnitPlatform {
+        includeTags("benchmark")
     }
 }
 
@@ -119,6 +140,38 @@ if (includeGigsReport) {
 }
 // end::include-gigs-report[]
 
+// tag::include-operation-bundles[]
+// If requested, operations between geographic and projected IAU CRSs of the same body are generated at build time,
+// and served as static resources instead of being generated on each request.
+// Disabled by default as generation can take time.
+val includeOperationBundles = project.properties["spring-boot.include-operation-bundles"]?.toString()?.toBoolean() ?: false
+if (includeOperationBundles) {
+    val operationBundlesDir = project.layout.buildDirectory.dir("generated/operation-bundles")
+    val operationBundlesTask = tasks.register<JavaExec>("operationBundles") {
+        description = "Generates operations between CRSs of the same celestial body."
+        group = "build"
+        val iauFile = project.layout.projectDirectory.file("src/main/resources/static/IAU.txt")
+        inputs.file(iauFile)
+        inputs.files(sourceSets["main"].runtimeClasspath)
+        outputs.dir(operationBundlesDir)
+        classpath = sourceSets["main"].runtimeClasspath
+        mainClass = "com.geomatys.crsservice.OperationBundleTool"
+        args(iauFile.asFile.path, operationBundlesDir.get().asFile.path)
+    }
+
+    tasks.withType<BootRun> {
+        classpath(operationBundlesTask)
+    }
+
+    tasks.withType<BootJar> {
+        bootInf {
+            from(operationBundlesTask)
+            into("classes")
+        }
+    }
+}
+// end::include-operation-bundles[]
+
 fun Project.getTaggedImageName() : String {
     val imageVersion = version.let { if (it == "unspecified" || it.toString().endsWith(".x")) "latest" else it }
     val imageName = requireNotNull(properties["spring-boot.build-image.imageName"]).toString()
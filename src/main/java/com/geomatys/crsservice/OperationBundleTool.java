@@ -0,0 +1,138 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice;
+
+import com.geomatys.crsservice.configuration.IAUFactoryConfiguration;
+import com.geomatys.crsservice.configuration.IAUGeodeticAuthorityFactory;
+import com.geomatys.crsservice.service.CrsOperationService;
+import com.geomatys.crsservice.service.DefaultCrsOperationService;
+import com.geomatys.crsservice.service.OperationBundles;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.GZIPOutputStream;
+import org.apache.sis.referencing.CRS;
+import org.apache.sis.util.Utilities;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.crs.GeographicCRS;
+import org.opengis.referencing.crs.ProjectedCRS;
+import org.opengis.util.FactoryException;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Generates the operations between the geographic CRSs and the projected CRSs of each celestial body,
+ * in both directions, for all formats that can be bundled. Those operations only depend on the IAU definition file,
+ * so they are generated at build time by the {@code operationBundles} Gradle task and served as static resources.
+ *
+ * <p>Arguments are the IAU definition file and the output directory.
+ * Bundles are written in the {@value OperationBundles#DIRECTORY} sub-directory.</p>
+ */
+public final class OperationBundleTool {
+
+    private static final String[] FORMATS = {
+        DefaultCrsOperationService.FORMAT_JAVASCRIPT,
+        DefaultCrsOperationService.FORMAT_PYTHON
+    };
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: OperationBundleTool <IAU definition file> <output directory>");
+            System.exit(1);
+        }
+        IAUFactoryConfiguration.load(new IAUFactoryConfiguration.WKTSourceProperties(
+                new FileSystemResource(args[0]), StandardCharsets.UTF_8, true));
+        final Path output = Paths.get(args[1]);
+
+        // Geographic CRSs by datum name, for finding the base CRS of projected CRSs.
+        final Map<String, List<String>> geographics = new HashMap<>();
+        final List<String> projecteds = new ArrayList<>();
+        final var factory = new IAUGeodeticAuthorityFactory();
+        for (String code : factory.getAuthorityCodes(CoordinateReferenceSystem.class)) {
+            final String source = "IAU:" + code;
+            final CoordinateReferenceSystem crs;
+            try {
+                crs = CRS.forCode(source);
+            } catch (FactoryException e) {
+                System.err.println("Skip " + source + ": " + e.getMessage());
+                continue;
+            }
+            if (crs instanceof GeographicCRS geographic) {
+                geographics.computeIfAbsent(geographic.getDatum().getName().getCode(), k -> new ArrayList<>()).add(source);
+            } else if (crs instanceof ProjectedCRS) {
+                projecteds.add(source);
+            }
+        }
+
+        final var service = new DefaultCrsOperationService();
+        int count = 0;
+        for (String projected : projecteds) {
+            final GeographicCRS base = ((ProjectedCRS) CRS.forCode(projected)).getBaseCRS();
+            for (String geographic : geographics.getOrDefault(base.getDatum().getName().getCode(), List.of())) {
+                if (!Utilities.equalsIgnoreMetadata(base.getDatum(), ((GeographicCRS) CRS.forCode(geographic)).getDatum())) {
+                    continue;
+                }
+                for (String format : FORMATS) {
+                    count += write(service, geographic, projected, format, output);
+                    count += write(service, projected, geographic, format, output);
+                }
+            }
+        }
+
+        final var manifest = new Properties();
+        manifest.setProperty(OperationBundles.REGISTRY_VERSION, IAUGeodeticAuthorityFactory.getRegistryVersion());
+        final Path manifestFile = output.resolve(OperationBundles.MANIFEST);
+        Files.createDirectories(manifestFile.getParent());
+        try (OutputStream out = Files.newOutputStream(manifestFile)) {
+            manifest.store(out, "Operation bundles");
+        }
+        System.out.println(count + " operations bundled in " + output);
+    }
+
+    /**
+     * Generates the code of one operation and writes it compressed.
+     *
+     * @return 1 if the operation has been written, 0 if it is not supported.
+     */
+    private static int write(final DefaultCrsOperationService service, final String source, final String target,
+                             final String format, final Path output) throws Exception
+    {
+        final byte[] code;
+        try {
+            final var parameters = new CrsOperationService.OperationParameters(source, false, target, false, format, null, null);
+            code = service.getOperation(parameters).sourceCode().getContentAsByteArray();
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            System.err.println("Skip " + source + " to " + target + ": " + e.getMessage());
+            return 0;
+        }
+        final Path file = output.resolve(OperationBundles.resourcePath(source, target, format));
+        Files.createDirectories(file.getParent());
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(code);
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.configuration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Bounded number of text files in a directory, named by the hexadecimal SHA-256 hash of a key.
+ * When the capacity is exceeded, the files which have not been written for the longest time are deleted.
+ * The write order is kept in memory, and in the modification times of the files for restarts.
+ * This class is used by the registry of WKTs and by the cache of operations of clients.
+ */
+public final class BoundedFileStore {
+
+    /**
+     * Directory of the files.
+     */
+    private final Path directory;
+
+    /**
+     * Suffix of the names of the files, including the dot.
+     */
+    private final String suffix;
+
+    /**
+     * Maximal number of files in the directory.
+     */
+    private final int capacity;
+
+    /**
+     * Names of the files without suffix, from the least recently written to the most recently written.
+     */
+    private final LinkedHashSet<String> names = new LinkedHashSet<>();
+
+    /**
+     * Opens a store in the given directory, creating the directory if needed.
+     * Existing files with the given suffix are part of the store, and the oldest ones are deleted if there are too many.
+     *
+     * @param directory Directory of the files. A relative directory is resolved against the working directory.
+     * @param suffix Suffix of the names of the files, including the dot.
+     * @param capacity Maximal number of files.
+     * @throws IOException if the directory cannot be created or listed.
+     */
+    public BoundedFileStore(final Path directory, final String suffix, final int capacity) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.directory = directory.toAbsolutePath();
+        this.suffix    = suffix;
+        this.capacity  = capacity;
+        Files.createDirectories(this.directory);
+        try (Stream<Path> stream = Files.list(this.directory)) {
+            stream.filter(file -> file.getFileName().toString().endsWith(suffix))
+                  .sorted(Comparator.comparing(BoundedFileStore::lastModified)).forEachOrdered(file -> {
+                final String name = file.getFileName().toString();
+                names.add(name.substring(0, name.length() - suffix.length()));
+            });
+        }
+        evict();
+    }
+
+    /**
+     * Returns the directory of the files, as an absolute path.
+     */
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Returns the number of files.
+     */
+    public synchronized int size() {
+        return names.size();
+    }
+
+    /**
+     * Returns whether the file of the given name exists in this store.
+     *
+     * @param name Hexadecimal hash, as returned by {@link #hash(String)}.
+     */
+    public synchronized boolean contains(final String name) {
+        return names.contains(name);
+    }
+
+    /**
+     * Returns the content of the file of the given name, or null if none.
+     *
+     * @param name Hexadecimal hash, as returned by {@link #hash(String)}.
+     * @return Content of the file, or null if the file does not exist or the name is not a hash.
+     * @throws IOException if the file exists but cannot be read.
+     */
+    public String read(final String name) throws IOException {
+        if (!isHash(name)) {
+            return null;
+        }
+        try {
+            return Files.readString(directory.resolve(name + suffix), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the file of the given name atomically, replacing the previous content.
+     * The file becomes the most recent one, so it is deleted last.
+     *
+     * @param name Hexadecimal hash, as returned by {@link #hash(String)}.
+     * @param content Content of the file.
+     * @return Names of the files deleted because the capacity has been exceeded.
+     * @throws IOException if the file cannot be written.
+     */
+    public synchronized List<String> write(final String name, final String content) throws IOException {
+        if (!isHash(name)) {
+            throw new IllegalArgumentException("Not a hash: " + name);
+        }
+        final Path temporary = Files.createTempFile(directory, name, ".tmp");
+        Files.writeString(temporary, content, StandardCharsets.UTF_8);
+        Files.move(temporary, directory.resolve(name + suffix), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        names.remove(name);
+        names.add(name);
+        return evict();
+    }
+
+    /**
+     * Makes the existing file of the given name the most recent one without writing it again.
+     *
+     * @param name Name of a file {@linkplain #contains(String) contained} in this store.
+     * @return Names of the files deleted because the capacity has been exceeded.
+     * @throws IOException if the modification time cannot be set.
+     */
+    public synchronized List<String> touch(final String name) throws IOException {
+        if (!names.remove(name)) {
+            throw new IllegalArgumentException("No file named " + name);
+        }
+        Files.setLastModifiedTime(directory.resolve(name + suffix), FileTime.fromMillis(System.currentTimeMillis()));
+        names.add(name);
+        return evict();
+    }
+
+    /**
+     * Deletes the least recently written files until the number of files is the capacity.
+     *
+     * @return Names of the deleted files.
+     */
+    private List<String> evict() throws IOException {
+        final List<String> evicted = new ArrayList<>();
+        final Iterator<String> it = names.iterator();
+        while (names.size() > capacity) {
+            final String name = it.next();
+            it.remove();
+            Files.deleteIfExists(directory.resolve(name + suffix));
+            evicted.add(name);
+        }
+        return evicted;
+    }
+
+    private static FileTime lastModified(final Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Returns whether the given string is a lower case hexadecimal SHA-256 hash.
+     * This check prevents the resolution of arbitrary file names.
+     */
+    public static boolean isHash(final String name) {
+        return name.length() == 64 && name.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'));
+    }
+
+    /**
+     * Returns the hexadecimal SHA-256 hash of the given text encoded in UTF-8.
+     */
+    public static String hash(final String text) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,462 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.configuration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.apache.sis.referencing.CRS;
+import org.apache.sis.util.collection.Cache;
+import org.opengis.referencing.IdentifiedObject;
+import org.opengis.referencing.NoSuchAuthorityCodeException;
+import org.opengis.referencing.crs.CompoundCRS;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.crs.EngineeringCRS;
+import org.opengis.referencing.crs.GeocentricCRS;
+import org.opengis.referencing.crs.GeographicCRS;
+import org.opengis.referencing.crs.ProjectedCRS;
+import org.opengis.referencing.crs.TemporalCRS;
+import org.opengis.referencing.crs.VerticalCRS;
+import org.opengis.util.FactoryException;
+
+/**
+ * WKT definitions stored in compressed form, with objects parsed on demand and softly cached.
+ * The definitions of a celestial body repeat the same base CRS, datum, ellipsoid, prime meridian and units,
+ * and the definitions using the same projection method repeat the same parameter blocks. Each definition
+ * is therefore compressed with a preset dictionary made of those shared fragments:
+ *
+ * <ul>
+ *   <li>the first definition using each projection method, without its base CRS;</li>
+ *   <li>the first definition of the celestial body, which is usually its geographic CRS.</li>
+ * </ul>
+ *
+ * Definitions are grouped by celestial body using the IAU convention that the code divided by 100 identifies the body.
+ * The text of a definition is only decompressed when the object is created or its name is requested.
+ * The dictionaries of the bodies are softly cached, so that the first definition of a body is not decompressed
+ * again for each lookup.
+ *
+ * <p>Definitions are never modified after loading. A reload builds a new snapshot, including an empty cache
+ * of parsed objects, and publishes it with a single volatile write. Lookups therefore take no lock,
+ * except for the per-code lock of the cache while an object is parsed for the first time.</p>
+ */
+final class CompactWKTDictionary {
+
+    /**
+     * Maximal length of the fragments shared by all bodies, leaving room for the fragment of a body
+     * in the 32 kB window of the Deflate algorithm.
+     */
+    private static final int MAXIMAL_SHARED_LENGTH = 16 * 1024;
+
+    private static final Map<String, Class<? extends CoordinateReferenceSystem>> TYPES = Map.ofEntries(
+            Map.entry("GEOGCRS", GeographicCRS.class),
+            Map.entry("GEOGRAPHICCRS", GeographicCRS.class),
+            Map.entry("GEOGCS", GeographicCRS.class),
+            Map.entry("GEOCCS", GeocentricCRS.class),
+            Map.entry("PROJCRS", ProjectedCRS.class),
+            Map.entry("PROJECTEDCRS", ProjectedCRS.class),
+            Map.entry("PROJCS", ProjectedCRS.class),
+            Map.entry("VERTCRS", VerticalCRS.class),
+            Map.entry("VERTICALCRS", VerticalCRS.class),
+            Map.entry("TIMECRS", TemporalCRS.class),
+            Map.entry("ENGCRS", EngineeringCRS.class),
+            Map.entry("ENGINEERINGCRS", EngineeringCRS.class),
+            Map.entry("COMPOUNDCRS", CompoundCRS.class),
+            Map.entry("COMPD_CS", CompoundCRS.class));
+
+    /**
+     * A compressed definition.
+     *
+     * @param group Code of the celestial body, for finding the dictionary.
+     * @param length Length in bytes of the UTF-8 text.
+     * @param data Text compressed with the dictionary of the group.
+     * @param type Kind of CRS, for filtering codes by type.
+     */
+    private record Entry(int group, int length, byte[] data, Class<? extends CoordinateReferenceSystem> type) {}
+
+    /**
+     * All definitions loaded by a call to {@link #load(BufferedReader, Supplier)}.
+     *
+     * @param version Identifier of the set of definitions.
+     * @param shared Fragments shared by all bodies, in UTF-8.
+     * @param bases Code of the first definition of each body, which is a fragment of the dictionary of that body.
+     * @param entries Definitions by code, in loading order.
+     * @param dictionaries Dictionaries of the bodies, by code of the body. Values are softly referenced.
+     * @param parsed Objects parsed from the definitions, by code. Values are softly referenced.
+     */
+    private record Snapshot(String version, byte[] shared, Map<Integer, String> bases, Map<String, Entry> entries,
+                            Cache<Integer, byte[]> dictionaries, Cache<String, CoordinateReferenceSystem> parsed) {}
+
+    private volatile Snapshot snapshot = new Snapshot("0", new byte[0], Map.of(), Map.of(), new Cache<>(), new Cache<>());
+
+    CompactWKTDictionary() {}
+
+    /**
+     * Replaces all definitions by the definitions read from the given reader.
+     * Definitions are separated by blank lines or start on a new line, and may span many lines.
+     * Codes are taken from the last {@code ID} element of each definition.
+     *
+     * @param reader The definitions to read.
+     * @param version Supplier of the identifier of the definitions, invoked after the reader has been consumed.
+     * @throws IOException if the definitions cannot be read.
+     * @throws FactoryException if a definition has no identifier or unbalanced brackets.
+     */
+    void load(final BufferedReader reader, final Supplier<String> version) throws IOException, FactoryException {
+        final Map<String, String> texts = new LinkedHashMap<>();
+        final StringBuilder buffer = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (buffer.isEmpty() && (line.isBlank() || line.startsWith("#"))) {
+                continue;
+            }
+            buffer.append(line.strip());
+            if (depth(buffer) == 0) {
+                final String wkt = buffer.toString();
+                buffer.setLength(0);
+                texts.put(code(wkt), wkt);
+            } else {
+                buffer.append(' ');
+            }
+        }
+        if (!buffer.isEmpty()) {
+            throw new FactoryException("Unbalanced brackets in " + buffer);
+        }
+        /*
+         * The first definition of each projection method, without its base CRS, is shared by all bodies.
+         * The first definition of each body is shared by the other definitions of that body.
+         */
+        final Set<String> methods = new LinkedHashSet<>();
+        final StringBuilder shared = new StringBuilder();
+        final Map<Integer, String> bases = new HashMap<>();
+        for (Map.Entry<String, String> entry : texts.entrySet()) {
+            final String wkt = entry.getValue();
+            bases.putIfAbsent(group(entry.getKey()), entry.getKey());
+            final String method = child(wkt, "CONVERSION");
+            if (method != null && methods.add(method.substring(0, Math.min(method.length(), 80)))) {
+                final String fragment = withoutBase(wkt);
+                if (shared.length() + fragment.length() <= MAXIMAL_SHARED_LENGTH) {
+                    shared.append(fragment);
+                }
+            }
+        }
+        final byte[] sharedBytes = shared.toString().getBytes(StandardCharsets.UTF_8);
+        final Map<String, Entry> entries = new LinkedHashMap<>(texts.size() * 2);
+        final Map<Integer, byte[]> dictionaries = new HashMap<>();
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            for (Map.Entry<String, String> entry : texts.entrySet()) {
+                final String code = entry.getKey();
+                final int group = group(code);
+                final String base = bases.get(group);
+                final byte[] dictionary = code.equals(base) ? sharedBytes : dictionaries.computeIfAbsent(group,
+                        g -> dictionary(sharedBytes, texts.get(base).getBytes(StandardCharsets.UTF_8)));
+                final byte[] text = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                deflater.reset();
+                deflater.setDictionary(dictionary);
+                deflater.setInput(text);
+                deflater.finish();
+                byte[] data = new byte[text.length / 2 + 64];
+                int length = 0;
+                while (!deflater.finished()) {
+                    if (length == data.length) {
+                        data = Arrays.copyOf(data, data.length * 2);
+                    }
+                    length += deflater.deflate(data, length, data.length - length);
+                }
+                entries.put(code, new Entry(group, text.length, Arrays.copyOf(data, length), type(entry.getValue())));
+            }
+        } finally {
+            deflater.end();
+        }
+        snapshot = new Snapshot(version.get(), sharedBytes, Map.copyOf(bases), Collections.unmodifiableMap(entries), new Cache<>(), new Cache<>());
+    }
+
+    /**
+     * Returns the identifier of the definitions currently loaded, or {@code "0"} if none.
+     */
+    String version() {
+        return snapshot.version();
+    }
+
+    /**
+     * Returns the number of definitions.
+     */
+    int size() {
+        return snapshot.entries().size();
+    }
+
+    /**
+     * Returns the number of bytes of the arrays retained by the loaded definitions: the compressed definitions
+     * and the fragments shared by all bodies. The dictionaries of the bodies are not counted, because they are
+     * softly cached and rebuilt when needed.
+     */
+    long compressedSize() {
+        final Snapshot current = snapshot;
+        long size = current.shared().length;
+        for (Entry entry : current.entries().values()) {
+            size += entry.data().length;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the codes of the definitions of the given type, in loading order.
+     */
+    Set<String> getAuthorityCodes(final Class<? extends IdentifiedObject> type) {
+        final Set<String> codes = new LinkedHashSet<>();
+        snapshot.entries().forEach((code, entry) -> {
+            if (type.isAssignableFrom(entry.type())) {
+                codes.add(code);
+            }
+        });
+        return codes;
+    }
+
+    /**
+     * Returns the name of the object identified by the given code.
+     */
+    String getName(final String code) throws NoSuchAuthorityCodeException {
+        final String wkt = getWKT(code);
+        final int start = wkt.indexOf('"') + 1;
+        final int end = wkt.indexOf('"', start);
+        return (start > 0 && end > 0) ? wkt.substring(start, end).strip() : null;
+    }
+
+    /**
+     * Returns the WKT of the object identified by the given code.
+     */
+    String getWKT(final String code) throws NoSuchAuthorityCodeException {
+        return text(snapshot, code);
+    }
+
+    /**
+     * Returns the WKT of the object identified by the given code in the given snapshot.
+     */
+    private static String text(final Snapshot current, final String code) throws NoSuchAuthorityCodeException {
+        final Entry entry = current.entries().get(code);
+        if (entry == null) {
+            throw new NoSuchAuthorityCodeException("No IAU definition for code " + code, "IAU", code);
+        }
+        final String base = current.bases().get(entry.group());
+        final byte[] dictionary = code.equals(base) ? current.shared() : dictionary(current, entry.group(), base);
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setDictionary(dictionary);
+            inflater.setInput(entry.data());
+            final byte[] text = new byte[entry.length()];
+            int length = 0;
+            while (length < text.length) {
+                final int n = inflater.inflate(text, length, text.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.finished())) {
+                    throw new IllegalStateException("Truncated IAU definition " + code);
+                }
+                length += n;
+            }
+            return new String(text, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted IAU definition " + code, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Returns the object identified by the given code, parsing it if not in the cache.
+     */
+    CoordinateReferenceSystem create(final String code) throws FactoryException {
+        final Snapshot current = snapshot;
+        CoordinateReferenceSystem crs = current.parsed().peek(code);
+        if (crs == null) {
+            final Cache.Handler<CoordinateReferenceSystem> handler = current.parsed().lock(code);
+            try {
+                crs = handler.peek();
+                if (crs == null) {
+                    crs = CRS.fromWKT(text(current, code));
+                }
+            } finally {
+                handler.putAndUnlock(crs);
+            }
+        }
+        return crs;
+    }
+
+    /**
+     * Returns the dictionary of the given body, decompressing its first definition if not in the cache.
+     */
+    private static byte[] dictionary(final Snapshot current, final int group, final String base) throws NoSuchAuthorityCodeException {
+        byte[] dictionary = current.dictionaries().peek(group);
+        if (dictionary == null) {
+            final Cache.Handler<byte[]> handler = current.dictionaries().lock(group);
+            try {
+                dictionary = handler.peek();
+                if (dictionary == null) {
+                    dictionary = dictionary(current.shared(), text(current, base).getBytes(StandardCharsets.UTF_8));
+                }
+            } finally {
+                handler.putAndUnlock(dictionary);
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Returns the dictionary of a body: shared fragments followed by the first definition of the body.
+     * The most specific fragment is last because Deflate finds closer matches with shorter distances.
+     */
+    private static byte[] dictionary(final byte[] shared, final byte[] base) {
+        final byte[] dictionary = Arrays.copyOf(shared, shared.length + base.length);
+        System.arraycopy(base, 0, dictionary, shared.length, base.length);
+        return dictionary;
+    }
+
+    /**
+     * Returns the celestial body of the given code, which is the code divided by 100 in the IAU convention.
+     * Codes which are not integers are all in the same group.
+     */
+    private static int group(final String code) {
+        try {
+            return Integer.parseInt(code) / 100;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the kind of CRS defined by the given WKT.
+     */
+    private static Class<? extends CoordinateReferenceSystem> type(final String wkt) {
+        final String keyword = wkt.substring(0, Math.max(wkt.indexOf('['), 0)).strip().toUpperCase(Locale.ROOT);
+        if (keyword.equals("GEODCRS") || keyword.equals("GEODETICCRS")) {
+            final String cs = child(wkt, "CS");
+            return (cs != null && cs.toLowerCase(Locale.ROOT).startsWith("ellipsoidal")) ? GeographicCRS.class : GeocentricCRS.class;
+        }
+        return TYPES.getOrDefault(keyword, CoordinateReferenceSystem.class);
+    }
+
+    /**
+     * Returns the code given by the last {@code ID} element directly in the root element of the given WKT.
+     */
+    private static String code(final String wkt) throws FactoryException {
+        String code = null;
+        for (int[] element : children(wkt)) {
+            if (keyword(wkt, element).equals("ID")) {
+                final String[] values = wkt.substring(element[1] + 1, element[2]).split(",");
+                if (values.length >= 2) {
+                    code = values[1].strip().replace("\"", "");
+                }
+            }
+        }
+        if (code == null || code.isEmpty()) {
+            throw new FactoryException("No identifier in " + wkt.substring(0, Math.min(wkt.length(), 100)));
+        }
+        return code;
+    }
+
+    /**
+     * Returns the content of the first element with the given keyword directly in the root element, or null if none.
+     */
+    private static String child(final String wkt, final String keyword) {
+        for (int[] element : children(wkt)) {
+            if (keyword(wkt, element).equals(keyword)) {
+                return wkt.substring(element[1] + 1, element[2]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the given WKT without the base CRS of a derived CRS.
+     */
+    private static String withoutBase(final String wkt) {
+        for (int[] element : children(wkt)) {
+            if (keyword(wkt, element).startsWith("BASE")) {
+                return wkt.substring(0, element[0]) + wkt.substring(element[2] + 1);
+            }
+        }
+        return wkt;
+    }
+
+    private static String keyword(final String wkt, final int[] element) {
+        return wkt.substring(element[0], element[1]).strip().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the elements directly in the root element of the given WKT,
+     * as (start of keyword, opening bracket, closing bracket) indices.
+     */
+    private static List<int[]> children(final String wkt) {
+        final List<int[]> children = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        int open = 0;
+        boolean quoted = false;
+        for (int i = 0; i < wkt.length(); i++) {
+            final char c = wkt.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;       // A doubled quote inside a string toggles twice.
+            } else if (!quoted) {
+                switch (c) {
+                    case '[', '(' -> {
+                        if (++depth == 2) open = i;
+                    }
+                    case ']', ')' -> {
+                        if (depth-- == 2) children.add(new int[] {start, open, i});
+                    }
+                    case ',' -> {
+                        if (depth == 1) start = i + 1;
+                    }
+                    default -> {}
+                }
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Returns the depth of brackets at the end of the given text, ignoring brackets in quoted strings.
+     */
+    private static int depth(final CharSequence text) {
+        int depth = 0;
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted) {
+                if (c == '[' || c == '(') depth++;
+                else if (c == ']' || c == ')') depth--;
+            }
+        }
+        return depth;
+    }
+}
@@ -24,8 +24,10 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.Charset;
-import org.apache.sis.io.wkt.WKTDictionary;
-import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import org.opengis.util.FactoryException;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -37,7 +39,7 @@ import org.springframework.core.io.Resource;
 @EnableConfigurationProperties(IAUFactoryConfiguration.IAUFactoryProperties.class)
 public class IAUFactoryConfiguration implements InitializingBean {
 
-    private final System.Logger logger = System.getLogger("com.geomatys.crsservice.configuration");
+    private static final System.Logger logger = System.getLogger("com.geomatys.crsservice.configuration");
     private final IAUFactoryProperties properties;
 
     public IAUFactoryConfiguration(IAUFactoryProperties properties) {
@@ -46,23 +48,37 @@ public class IAUFactoryConfiguration implements InitializingBean {
 
     @Override
     public void afterPropertiesSet() throws IOException, FactoryException {
-        var factory = IAUGeodeticAuthorityFactory.INSTANCE;
-        final int nbCrsBeforeImport = factory.getAuthorityCodes(CoordinateReferenceSystem.class).size();
-
-        importWkts(factory, properties.wkt());
+        load(properties.wkt());
+    }
 
-        final int nbImportedCrss = factory.getAuthorityCodes(CoordinateReferenceSystem.class).size() - nbCrsBeforeImport;
+    /**
+     * Loads the given WKT definitions in the IAU authority factory, replacing the previous definitions.
+     * This method is public for tools running outside the Spring application context.
+     *
+     * @param wktSource File to load.
+     */
+    public static void load(final WKTSourceProperties wktSource) throws IOException, FactoryException {
+        var factory = IAUGeodeticAuthorityFactory.INSTANCE;
+        importWkts(factory, wktSource);
+        final int nbImportedCrss = factory.size();
         logger.log(System.Logger.Level.INFO, "{0} CRSs have been loaded for IAU authority", nbImportedCrss);
     }
 
-    private void importWkts(final WKTDictionary target, final WKTSourceProperties wktSource) throws FactoryException, IOException {
+    private static void importWkts(final CompactWKTDictionary target, final WKTSourceProperties wktSource) throws FactoryException, IOException {
         logger.log(System.Logger.Level.INFO, "Loading IAU CRS definitions from {0} using encoding {1}", wktSource.file(), wktSource.charset());
-        try (var rawStream = wktSource.file().getInputStream();
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (var rawStream = new DigestInputStream(wktSource.file().getInputStream(), digest);
              var textStream = new InputStreamReader(rawStream, wktSource.charset());
              var reader =  wktSource.replaceGeog() ? new ReplaceGeogBufferedReader(textStream) : new BufferedReader(textStream)
         ) {
-            target.load(reader);
+            target.load(reader, () -> HexFormat.of().formatHex(digest.digest(), 0, 6));
         }
+        logger.log(System.Logger.Level.INFO, "IAU registry version is {0}", target.version());
     }
 
     /**
@@ -77,7 +93,7 @@ public class IAUFactoryConfiguration implements InitializingBean {
      * HACK: replace all <code>BASEGEOGCRS</code> terms in WKTs with <code>BASEGEODCRS</code>.
      * This is required until APache SIS update.
      */
-    private final class ReplaceGeogBufferedReader extends BufferedReader {
+    private static final class ReplaceGeogBufferedReader extends BufferedReader {
 
         public ReplaceGeogBufferedReader(Reader in, int sz) {
             super(in, sz);
@@ -20,23 +20,14 @@
 package com.geomatys.crsservice.configuration;
 
 import java.util.Set;
-import org.apache.sis.io.wkt.WKTDictionary;
 import org.apache.sis.metadata.iso.citation.DefaultCitation;
 import org.apache.sis.referencing.factory.GeodeticAuthorityFactory;
+import org.apache.sis.util.SimpleInternationalString;
 import org.opengis.metadata.citation.Citation;
 import org.opengis.referencing.IdentifiedObject;
 import org.opengis.referencing.NoSuchAuthorityCodeException;
 import org.opengis.referencing.crs.CRSAuthorityFactory;
-import org.opengis.referencing.crs.CompoundCRS;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
-import org.opengis.referencing.crs.DerivedCRS;
-import org.opengis.referencing.crs.EngineeringCRS;
-import org.opengis.referencing.crs.GeocentricCRS;
-import org.opengis.referencing.crs.GeographicCRS;
-import org.opengis.referencing.crs.ImageCRS;
-import org.opengis.referencing.crs.ProjectedCRS;
-import org.opengis.referencing.crs.TemporalCRS;
-import org.opengis.referencing.crs.VerticalCRS;
 import org.opengis.util.FactoryException;
 import org.opengis.util.InternationalString;
 
@@ -47,63 +38,38 @@ import org.opengis.util.InternationalString;
  */
 public final class IAUGeodeticAuthorityFactory extends GeodeticAuthorityFactory implements CRSAuthorityFactory {
 
-    static final WKTDictionary INSTANCE = new WKTDictionary(new DefaultCitation("IAU"));
+    private static final Citation AUTHORITY = new DefaultCitation("IAU");
 
-    public IAUGeodeticAuthorityFactory() {}
-
-    @Override
-    public CoordinateReferenceSystem createCoordinateReferenceSystem(String s) throws NoSuchAuthorityCodeException, FactoryException {
-        return INSTANCE.createCoordinateReferenceSystem(s);
-    }
-
-    @Override
-    public CompoundCRS createCompoundCRS(String s) throws NoSuchAuthorityCodeException, FactoryException {
-        return INSTANCE.createCompoundCRS(s);
-    }
+    /**
+     * The IAU definitions, stored compressed and parsed on demand.
+     * Specialized methods such as {@code createProjectedCRS(String)} are inherited from
+     * {@link GeodeticAuthorityFactory}, which casts the result of {@link #createCoordinateReferenceSystem(String)}.
+     */
+    static final CompactWKTDictionary INSTANCE = new CompactWKTDictionary();
 
-    @Override
-    public DerivedCRS createDerivedCRS(String s) throws NoSuchAuthorityCodeException, FactoryException {
-        return INSTANCE.createDerivedCRS(s);
-    }
-
-    @Override
-    public EngineeringCRS createEngineeringCRS(String s) throws NoSuchAuthorityCodeException, FactoryException {
-        return INSTANCE.createEngineeringCRS(s);
-    }
-
-    @Override
-    public GeographicCRS createGeographicCRS(String s) throws NoSuchAuthorityCodeException, FactoryException {
-        return INSTANCE.createGeographicCRS(s);
-    }
-
-    @Override
-    public GeocentricCRS createGeocentricCRS(String s) throws NoSuchAuthorityCodeException, FactoryException {
-        return INSTANCE.createGeocentricCRS(s);
-    }
-
-    @Override
-    public ImageCRS createImageCRS(String s) throws NoSuchAuthorityCodeException, FactoryException {
-        return INSTANCE.createImageCRS(s);
-    }
-
-    @Override
-    public ProjectedCRS createProjectedCRS(String s) throws NoSuchAuthorityCodeException, FactoryException {
-        return INSTANCE.createProjectedCRS(s);
-    }
+    public IAUGeodeticAuthorityFactory() {}
 
-    @Override
-    public TemporalCRS createTemporalCRS(String s) throws NoSuchAuthorityCodeException, FactoryException {
-        return INSTANCE.createTemporalCRS(s);
+    /**
+     * Returns an identifier of the set of IAU definitions currently loaded.
+     * The value is derived from the content of the definition file, so it stays the same across restarts
+     * and across instances as long as the same definitions are loaded. The version is published together
+     * with the definitions, so components deriving data from the registry (indexes, caches) can detect
+     * that they are stale, and never see a version that does not match the definitions.
+     *
+     * @return Version of the IAU registry. Never null.
+     */
+    public static String getRegistryVersion() {
+        return INSTANCE.version();
     }
 
     @Override
-    public VerticalCRS createVerticalCRS(String s) throws NoSuchAuthorityCodeException, FactoryException {
-        return INSTANCE.createVerticalCRS(s);
+    public CoordinateReferenceSystem createCoordinateReferenceSystem(String s) throws NoSuchAuthorityCodeException, FactoryException {
+        return INSTANCE.create(trimNamespace(s));
     }
 
     @Override
     public Citation getAuthority() {
-        return INSTANCE.getAuthority();
+        return AUTHORITY;
     }
 
     @Override
@@ -113,16 +79,12 @@ public final class IAUGeodeticAuthorityFactory extends GeodeticAuthorityFactory
 
     @Override
     public InternationalString getDescriptionText(String s) throws NoSuchAuthorityCodeException, FactoryException {
-        return INSTANCE.getDescriptionText(s);
+        final String name = INSTANCE.getName(trimNamespace(s));
+        return (name != null) ? new SimpleInternationalString(name) : null;
     }
 
     @Override
     public IdentifiedObject createObject(String s) throws NoSuchAuthorityCodeException, FactoryException {
-        return INSTANCE.createObject(s);
-    }
-
-    @Override
-    public Citation getVendor() {
-        return INSTANCE.getVendor();
+        return createCoordinateReferenceSystem(s);
     }
 }
@@ -0,0 +1,42 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.configuration;
+
+import java.nio.file.Path;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Configuration
+@EnableConfigurationProperties(OperationStoreConfiguration.OperationStoreProperties.class)
+public class OperationStoreConfiguration {
+
+    /**
+     * Generated operations store externalized configuration.
+     *
+     * @param directory Directory of the memory-mapped files, shared by the instances of a node, or null for no store.
+     *        Kernels imported by JavaScript modules are also kept there, so that they survive restarts.
+     * @param capacity Maximal size of the file of a registry and code version. Files of previous versions are deleted.
+     */
+    @ConfigurationProperties(prefix = "geomatys.operations.store")
+    public record OperationStoreProperties(Path directory, @DefaultValue("1GB") DataSize capacity) {}
+}
@@ -0,0 +1,49 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.configuration;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(PeerCacheConfiguration.PeerCacheProperties.class)
+public class PeerCacheConfiguration {
+
+    /**
+     * Peer cache externalized configuration. The peer cache is disabled if neither urls nor dns is specified.
+     *
+     * @param self Base URL of this instance, as listed in urls or as discovered by DNS.
+     * @param urls Base URL of all instances, including this one.
+     * @param dns DNS name resolved to the addresses of all instances, for example a headless service.
+     * @param port Port of the instances discovered by DNS.
+     * @param timeout Maximal time to wait for an answer of another instance.
+     * @param refresh Time between two resolutions of the DNS name.
+     */
+    @ConfigurationProperties(prefix = "geomatys.peers")
+    public record PeerCacheProperties(URI self, List<URI> urls, String dns,
+                                      @DefaultValue("8080") int port,
+                                      @DefaultValue("200ms") Duration timeout,
+                                      @DefaultValue("30s") Duration refresh) {}
+}
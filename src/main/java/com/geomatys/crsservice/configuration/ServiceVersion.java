@@ -0,0 +1,90 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.configuration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Properties;
+import org.apache.sis.referencing.CRS;
+import org.apache.sis.util.Version;
+import org.opengis.metadata.citation.Citation;
+import org.opengis.util.FactoryException;
+
+/**
+ * Version of the code generating operations and definitions. The version is a hash of the version of this service
+ * (in {@code META-INF/build-info.properties}), of the Apache SIS version and of the EPSG dataset version.
+ * Generated code may change when any of them changes, so this version is part of the canonical queries,
+ * of the keys of stored operations and of the requests to other instances. The build time is excluded
+ * from the build information, so that separated builds of the same version have the same version.
+ *
+ * <p>The build information is generated by the Gradle build. When it is absent, for example when running the tests
+ * from an IDE, only the versions of Apache SIS and of the EPSG dataset are taken in account.</p>
+ */
+public final class ServiceVersion {
+
+    private static final String VERSION = compute();
+
+    private ServiceVersion() {
+    }
+
+    /**
+     * Returns the version of the code generating operations.
+     * The value stays the same across restarts and across instances running the same build.
+     *
+     * @return Twelve hexadecimal digits. Never null.
+     */
+    public static String get() {
+        return VERSION;
+    }
+
+    private static String compute() {
+        final var logger = System.getLogger("com.geomatys.crsservice.configuration");
+        final var text = new StringBuilder();
+        try (InputStream in = ServiceVersion.class.getResourceAsStream("/META-INF/build-info.properties")) {
+            if (in != null) {
+                final var build = new Properties();
+                build.load(in);
+                text.append(build.getProperty("build.version"));
+            }
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Cannot read the build information", e);
+        }
+        text.append(' ').append(Version.SIS);
+        try {
+            final Citation epsg = CRS.getAuthorityFactory("EPSG").getAuthority();
+            text.append(' ').append(epsg != null ? String.valueOf(epsg.getEdition()) : "");
+        } catch (FactoryException e) {
+            logger.log(System.Logger.Level.WARNING, "Cannot get the version of the EPSG dataset", e);
+        }
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        final String version = HexFormat.of().formatHex(digest.digest(text.toString().getBytes(StandardCharsets.UTF_8)), 0, 6);
+        logger.log(System.Logger.Level.INFO, "Service version {0} ({1})", version, text);
+        return version;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(WKTRegistryConfiguration.WKTRegistryProperties.class)
+public class WKTRegistryConfiguration implements InitializingBean {
+
+    private final WKTRegistryProperties properties;
+
+    public WKTRegistryConfiguration(WKTRegistryProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        WKTRegistryFactory.open(properties.directory(), properties.capacity());
+    }
+
+    /**
+     * Registered WKT externalized configuration.
+     *
+     * @param directory Directory where registered WKTs are written, or null for keeping them in memory only.
+     *                  A relative path is resolved against the working directory of the process, which may not
+     *                  be writable or persistent in a container: deployments should give an absolute path.
+     * @param capacity Maximal number of registered WKTs. Oldest registrations are discarded first.
+     */
+    @ConfigurationProperties(prefix = "geomatys.wkt.registry")
+    public record WKTRegistryProperties(Path directory, int capacity) {}
+}
@@ -0,0 +1,165 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+import org.apache.sis.metadata.iso.citation.DefaultCitation;
+import org.apache.sis.referencing.CRS;
+import org.apache.sis.referencing.factory.GeodeticAuthorityFactory;
+import org.apache.sis.util.collection.Cache;
+import org.opengis.metadata.citation.Citation;
+import org.opengis.referencing.IdentifiedObject;
+import org.opengis.referencing.NoSuchAuthorityCodeException;
+import org.opengis.referencing.crs.CRSAuthorityFactory;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.util.FactoryException;
+
+/**
+ * Coordinate reference systems registered as WKT and identified by the hash of their text.
+ * Clients {@linkplain #register register} a WKT once and use the returned handle, for example
+ * {@code "wkt:sha256-9f86…"}, wherever a code is accepted. Handles are short and the same for all clients
+ * registering the same text, so URLs containing them can be cached.
+ *
+ * <p>This factory is declared as a service, so handles are resolved by {@link CRS#forCode(String)}.
+ * Texts are kept in a bounded store, which is written in a directory if {@link WKTRegistryConfiguration}
+ * specifies one. Parsed CRSs are cached.</p>
+ */
+public final class WKTRegistryFactory extends GeodeticAuthorityFactory implements CRSAuthorityFactory {
+
+    /**
+     * Authority of handles.
+     */
+    public static final String AUTHORITY = "wkt";
+
+    /**
+     * Prefix of the codes in the {@value #AUTHORITY} namespace.
+     */
+    private static final String PREFIX = "sha256-";
+
+    private static final Citation CITATION = new DefaultCitation(AUTHORITY.toUpperCase(Locale.ROOT));
+
+    /**
+     * Maximal number of characters of a registered WKT.
+     */
+    private static final int MAXIMAL_LENGTH = 1 << 16;
+
+    /**
+     * The registered texts. Kept in memory only until {@link #open(Path, int)} is invoked.
+     */
+    private static volatile WKTStore store;
+    static {
+        try {
+            store = new WKTStore(null, 1000);
+        } catch (IOException e) {
+            throw new AssertionError(e);    // Should never happen since there is no directory.
+        }
+    }
+
+    /**
+     * CRSs parsed from registered texts, by hash. Values are softly referenced.
+     */
+    private static final Cache<String, CoordinateReferenceSystem> PARSED = new Cache<>();
+
+    public WKTRegistryFactory() {}
+
+    /**
+     * Replaces the registered texts by the texts stored in the given directory.
+     *
+     * @param directory Directory where to store the texts, or null for keeping them in memory only.
+     * @param capacity Maximal number of texts.
+     * @throws IOException if the directory cannot be created or listed.
+     */
+    static void open(final Path directory, final int capacity) throws IOException {
+        store = new WKTStore(directory, capacity);
+    }
+
+    /**
+     * Parses and registers the given WKT.
+     *
+     * @param wkt The WKT of a coordinate reference system.
+     * @return Handle of the CRS, usable as a code.
+     * @throws IllegalArgumentException if the text is too long or is not the WKT of a CRS.
+     * @throws IOException if the text cannot be stored.
+     */
+    public static String register(String wkt) throws IOException {
+        wkt = wkt.strip();
+        if (wkt.length() > MAXIMAL_LENGTH) {
+            throw new IllegalArgumentException("WKT longer than " + MAXIMAL_LENGTH + " characters");
+        }
+        final CoordinateReferenceSystem crs;
+        try {
+            crs = CRS.fromWKT(wkt);
+        } catch (FactoryException e) {
+            throw new IllegalArgumentException("Invalid WKT: " + e.getMessage(), e);
+        }
+        final String hash = store.add(wkt);
+        PARSED.putIfAbsent(hash, crs);
+        return AUTHORITY + ':' + PREFIX + hash;
+    }
+
+    @Override
+    public CoordinateReferenceSystem createCoordinateReferenceSystem(final String code) throws NoSuchAuthorityCodeException, FactoryException {
+        final String local = trimNamespace(code).strip().toLowerCase(Locale.ROOT);
+        final String hash = local.startsWith(PREFIX) ? local.substring(PREFIX.length()) : local;
+        CoordinateReferenceSystem crs = PARSED.peek(hash);
+        if (crs == null) {
+            final Cache.Handler<CoordinateReferenceSystem> handler = PARSED.lock(hash);
+            try {
+                crs = handler.peek();
+                if (crs == null) {
+                    final String wkt;
+                    try {
+                        wkt = WKTStore.isHash(hash) ? store.get(hash) : null;
+                    } catch (IOException e) {
+                        throw new FactoryException("Cannot read registered WKT " + code, e);
+                    }
+                    if (wkt == null) {
+                        throw new NoSuchAuthorityCodeException("Unknown or expired WKT handle: " + code, AUTHORITY, code);
+                    }
+                    crs = CRS.fromWKT(wkt);
+                }
+            } finally {
+                handler.putAndUnlock(crs);
+            }
+        }
+        return crs;
+    }
+
+    @Override
+    public IdentifiedObject createObject(final String code) throws NoSuchAuthorityCodeException, FactoryException {
+        return createCoordinateReferenceSystem(code);
+    }
+
+    @Override
+    public Citation getAuthority() {
+        return CITATION;
+    }
+
+    /**
+     * Returns an empty set, since handles are not enumerated.
+     */
+    @Override
+    public Set<String> getAuthorityCodes(final Class<? extends IdentifiedObject> type) {
+        return Set.of();
+    }
+}
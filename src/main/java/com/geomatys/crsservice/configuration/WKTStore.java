@@ -0,0 +1,129 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded store of WKT texts identified by the SHA-256 hash of their content.
+ * The most recently used texts are kept in memory. If a directory is specified, texts are also written
+ * in that directory, one file per text, so that they survive restarts. The number of files is bounded too:
+ * when the capacity is exceeded, the files which have not been registered for the longest time are deleted.
+ * A relative directory is resolved against the working directory of the process.
+ *
+ * @see BoundedFileStore
+ */
+final class WKTStore {
+
+    /**
+     * Suffix of the files containing WKT texts. File names are the hexadecimal hashes.
+     */
+    private static final String SUFFIX = ".wkt";
+
+    private static final System.Logger logger = System.getLogger("com.geomatys.crsservice.configuration");
+
+    /**
+     * Files of the texts, or null for keeping them in memory only.
+     */
+    private final BoundedFileStore files;
+
+    /**
+     * Most recently used texts by hash, in access order.
+     */
+    private final Map<String, String> texts;
+
+    /**
+     * Creates a store writing texts in the given directory.
+     *
+     * @param directory Directory where to write the texts, or null for keeping them in memory only.
+     * @param capacity Maximal number of texts.
+     * @throws IOException if the directory cannot be created or listed.
+     */
+    WKTStore(final Path directory, final int capacity) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        texts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+                return size() > capacity;
+            }
+        };
+        if (directory != null) {
+            files = new BoundedFileStore(directory, SUFFIX, capacity);
+            logger.log(System.Logger.Level.INFO, "{0} registered WKT found in {1}", files.size(), files.directory());
+        } else {
+            files = null;
+        }
+    }
+
+    /**
+     * Adds the given text in this store if not already present.
+     *
+     * @param wkt The text to add.
+     * @return Hexadecimal SHA-256 hash of the text.
+     * @throws IOException if the text cannot be written.
+     */
+    synchronized String add(final String wkt) throws IOException {
+        final String hash = hash(wkt);
+        texts.put(hash, wkt);
+        if (files != null) {
+            // Registering again makes the text the most recent one, so it is evicted last.
+            texts.keySet().removeAll(files.contains(hash) ? files.touch(hash) : files.write(hash, wkt));
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the text having the given hash, or null if none.
+     *
+     * @param hash Hexadecimal SHA-256 hash of the text, as returned by {@link #add(String)}.
+     * @return The text, or null if unknown or evicted.
+     * @throws IOException if the file of the text exists but cannot be read.
+     */
+    synchronized String get(final String hash) throws IOException {
+        String wkt = texts.get(hash);
+        if (wkt == null && files != null) {
+            wkt = files.read(hash);
+            if (wkt != null) {
+                texts.put(hash, wkt);
+            }
+        }
+        return wkt;
+    }
+
+    /**
+     * Returns whether the given string is a lower case hexadecimal SHA-256 hash.
+     * This check prevents the resolution of arbitrary file names.
+     */
+    static boolean isHash(final String hash) {
+        return BoundedFileStore.isHash(hash);
+    }
+
+    /**
+     * Returns the hexadecimal SHA-256 hash of the given text encoded in UTF-8.
+     */
+    static String hash(final String wkt) {
+        return BoundedFileStore.hash(wkt);
+    }
+}
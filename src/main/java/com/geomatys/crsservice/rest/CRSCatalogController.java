@@ -0,0 +1,94 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.rest;
+
+import com.geomatys.crsservice.service.CrsCatalogService;
+import io.swagger.v3.oas.annotations.Parameter;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/crs")
+public class CRSCatalogController {
+
+    private final CrsCatalogService service;
+
+    public CRSCatalogController(CrsCatalogService service) {
+        this.service = service;
+    }
+
+    /**
+     * Search Coordinate Reference Systems by code, name, celestial body or projection.
+     * Each word of the query matches the beginning of a word, so this end point can be used for autocompletion.
+     *
+     * @param q Words to search, for example "mars merc". An empty query matches all CRSs.
+     * @param authority Optional authority filter (IAU or EPSG).
+     * @param body Optional celestial body filter.
+     * @param offset Index of the first match to return.
+     * @param limit Maximum number of matches to return (1000 at most).
+     * @return A page of matching CRSs, with the total number of matches.
+     */
+    @CrossOrigin
+    @RequestMapping(path = "search", method = RequestMethod.GET)
+    @Parameter(name = "q", example = "mars merc")
+    public ResponseEntity<CrsCatalogService.SearchResult> search(
+                                 @RequestParam(required = false, defaultValue = "") String q,
+                                 @RequestParam(required = false) String authority,
+                                 @RequestParam(required = false) String body,
+                                 @RequestParam(required = false, defaultValue = "0") int offset,
+                                 @RequestParam(required = false, defaultValue = "20") int limit) {
+        return ResponseEntity.ok(service.search(new CrsCatalogService.SearchParameters(q, authority, body, offset, limit)));
+    }
+
+    /**
+     * Find the Coordinate Reference Systems of a celestial body which can be used at a given location.
+     * Exactly one of the point or bbox parameters must be given.
+     * The CRSs with the smallest domain of validity come first.
+     *
+     * @param body Celestial body, for example Mars.
+     * @param point Location as [longitude,latitude] in degrees.
+     * @param bbox Area as [west,south,east,north] in degrees. West is greater than east when crossing the anti-meridian.
+     * @param limit Maximum number of matches to return (1000 at most).
+     * @return CRSs whose domain of validity contains the given point or area.
+     */
+    @CrossOrigin
+    @RequestMapping(path = "locate", method = RequestMethod.GET)
+    @Parameter(name = "body", example = "Mars")
+    @Parameter(name = "point", example = "137.4,-4.6")
+    public ResponseEntity<CrsCatalogService.LocateResult> locate(
+                                 @RequestParam String body,
+                                 @RequestParam(required = false) double[] point,
+                                 @RequestParam(required = false) double[] bbox,
+                                 @RequestParam(required = false, defaultValue = "100") int limit) {
+        final double[] area;
+        if (point != null && bbox == null && point.length == 2) {
+            area = new double[] {point[0], point[1], point[0], point[1]};
+        } else if (bbox != null && point == null) {
+            area = bbox;
+        } else {
+            throw new IllegalArgumentException("Either a point as [longitude,latitude] or a bbox as [west,south,east,north] must be given");
+        }
+        return ResponseEntity.ok(service.locate(new CrsCatalogService.LocateParameters(body, area, limit)));
+    }
+}
@@ -20,12 +20,27 @@
 package com.geomatys.crsservice.rest;
 
 import com.geomatys.crsservice.service.CrsOperationService;
+import io.swagger.v3.oas.annotations.Hidden;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -36,19 +51,43 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/crs")
 public class CRSOperationController {
 
+    /**
+     * Maximal number of operations in a batch request. Operations are generated in the thread of the request.
+     */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    /**
+     * Maximal number of batch requests processed at the same time, so that batches cannot occupy all request threads.
+     * Other batch requests are answered with status 429 (Too Many Requests).
+     */
+    private static final int MAX_CONCURRENT_BATCHES = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    /**
+     * Maximal number of approximated operations (with a tolerance) in a batch request, because each one is fitted
+     * in the thread of the request.
+     */
+    private static final int MAX_BATCH_APPROXIMATIONS = 16;
+
     private final CrsOperationService service;
 
+    /**
+     * Permits for processing batch requests, at most {@link #MAX_CONCURRENT_BATCHES}.
+     */
+    private final Semaphore batches = new Semaphore(MAX_CONCURRENT_BATCHES);
+
     public CRSOperationController(CrsOperationService service) {
         this.service = service;
     }
 
     /**
      * Get Coordinate Reference System definition.
+     * Requests are redirected to their canonical form, which ends with the registry and code versions ({@code v} parameter).
+     * Responses to canonical requests with the current version never change.
      *
-     * @param source EPSG/CRS/IAU/IGNF code, WKT, or URN.
+     * @param source EPSG/CRS/IAU/IGNF code, WKT, registered WKT handle, or URN.
      * @param longitudeFirst Set to true to force longitude first.
      * @param format Output format, only application/json is supported.
-     * @return CRS definition
+     * @return CRS definition, or a redirection to the canonical request.
      */
     @CrossOrigin
     @RequestMapping(path = "define", method = RequestMethod.GET)
@@ -57,8 +96,22 @@ public class CRSOperationController {
     public ResponseEntity<Resource> getCRS(
                                  @RequestParam String source,
                                  @RequestParam(required = false, defaultValue = "false") boolean longitudeFirst,
-                                 @RequestParam(defaultValue = "application/json") String format) {
-        return getCRS(new CrsOperationService.CRSParameters(source, longitudeFirst, format));
+                                 @RequestParam(defaultValue = "application/json") String format,
+                                 HttpServletRequest request) {
+        final CanonicalQuery canonical = new CanonicalQuery()
+                .crs("source", source)
+                .flag("longitudeFirst", longitudeFirst)
+                .add("format", format, "application/json");
+        final ResponseEntity<Resource> redirect = canonical.redirect("define", request.getQueryString());
+        if (redirect != null) {
+            return redirect;
+        }
+        var result = service.getCRS(new CrsOperationService.CRSParameters(source, longitudeFirst, format));
+        return ResponseEntity.ok()
+                .contentType(result.contentType())
+                .cacheControl(canonical.cacheControl(request.getQueryString()))
+                .eTag(CanonicalQuery.eTag(result.sourceCode()))
+                .body(result.sourceCode());
     }
 
     /**
@@ -74,23 +127,45 @@ public class CRSOperationController {
                 .body(result.sourceCode());
     }
 
+    /**
+     * Register a coordinate reference system defined by a WKT.
+     * The returned handle can be given instead of the WKT to the other end points, which keeps URLs short.
+     * The handle is the hash of the WKT, so registering the same WKT again returns the same handle.
+     *
+     * @param wkt WKT of the coordinate reference system.
+     * @return handle of the coordinate reference system, such as {@code wkt:sha256-…}.
+     */
+    @CrossOrigin
+    @RequestMapping(path = "register", method = RequestMethod.POST, consumes = MediaType.TEXT_PLAIN_VALUE, produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> registerCRS(@RequestBody String wkt) {
+        return ResponseEntity.ok(service.registerCRS(wkt));
+    }
+
     /**
      * Get coordinate operation between two coordinate reference systems.
      *
-     * @param source EPSG/CRS/IAU/IGNF code, WKT, or URN.
+     * @param source EPSG/CRS/IAU/IGNF code, WKT, registered WKT handle, or URN.
      * @param sourceLongitudeFirst Set to true to force longitude first.
-     * @param target EPSG/CRS/IAU/IGNF code, WKT, or URN.
+     * @param target EPSG/CRS/IAU/IGNF code, WKT, registered WKT handle, or URN.
      * @param targetLongitudeFirst Set to true to force longitude first.
-     * @param format Output format, only text/javascript and text/x-python are supported.
+     * @param format Output format, only text/javascript, application/javascript;variant=module and text/x-python are supported.
      * @param aoi Optional bounding box [west,south,east,north]
      * @param time Optional time
-     * @return operation between the two coordinate reference systems.
+     * @param profile Code profile: full (with license and documentation), compact (without comments) or minified.
+     * @param direction Transforms to include: forward, inverse or both.
+     * @param tolerance Optional maximal error in units of the target CRS. If specified with an aoi, the operation
+     *                  is approximated by polynomials over that area. Only for text/javascript and text/x-python,
+     *                  and required by text/javascript;variant=grid which interpolates in a grid sampled over the aoi.
+     * @return operation between the two coordinate reference systems, or a redirection to the canonical request.
+     *         Like definitions, requests are redirected to their canonical form and canonical responses never change.
      */
     @CrossOrigin
     @RequestMapping(path = "operation", method = RequestMethod.GET)
     @Parameter(name = "source", example = "EPSG:4326")
     @Parameter(name = "target", example = "EPSG:3395")
-    @Parameter(name = "format", schema = @Schema(type = "string", allowableValues = {"text/javascript", "text/x-python"}))
+    @Parameter(name = "format", schema = @Schema(type = "string", allowableValues = {"text/javascript", "application/javascript;variant=module", "text/x-python", "text/x-python;variant=numpy", "application/wasm", "application/json;variant=plan", "text/javascript;variant=grid"}))
+    @Parameter(name = "profile", schema = @Schema(type = "string", allowableValues = {"full", "compact", "minified"}))
+    @Parameter(name = "direction", schema = @Schema(type = "string", allowableValues = {"forward", "inverse", "both"}))
     public ResponseEntity<Resource> getOperation(
                                  @RequestParam String source,
                                  @RequestParam(required = false, defaultValue = "false") boolean sourceLongitudeFirst,
@@ -98,8 +173,40 @@ public class CRSOperationController {
                                  @RequestParam(required = false, defaultValue = "false") boolean targetLongitudeFirst,
                                  @RequestParam String format,
                                  @RequestParam(required = false) double[] aoi,
-                                 @RequestParam(required = false) OffsetDateTime time) {
-        return getOperation(new CrsOperationService.OperationParameters(source, sourceLongitudeFirst, target, targetLongitudeFirst, format, aoi, time));
+                                 @RequestParam(required = false) OffsetDateTime time,
+                                 @RequestParam(required = false, defaultValue = "full") String profile,
+                                 @RequestParam(required = false, defaultValue = "both") String direction,
+                                 @RequestParam(required = false) Double tolerance,
+                                 HttpServletRequest request) {
+        final var parameters = new CrsOperationService.OperationParameters(source, sourceLongitudeFirst, target, targetLongitudeFirst, format, aoi, time, profile, direction, tolerance);
+        final CanonicalQuery canonical = canonical(parameters);
+        final ResponseEntity<Resource> redirect = canonical.redirect("operation", request.getQueryString());
+        if (redirect != null) {
+            return redirect;
+        }
+        var result = service.getOperation(parameters);
+        return ResponseEntity.ok()
+                .contentType(result.contentType())
+                .cacheControl(canonical.cacheControl(request.getQueryString()))
+                .eTag(CanonicalQuery.eTag(result.sourceCode()))
+                .body(result.sourceCode());
+    }
+
+    /**
+     * Returns the canonical query of the GET request for the given operation.
+     */
+    private static CanonicalQuery canonical(final CrsOperationService.OperationParameters p) {
+        return new CanonicalQuery()
+                .crs("source", p.source())
+                .flag("sourceLongitudeFirst", p.sourceLongFirst())
+                .crs("target", p.target())
+                .flag("targetLongitudeFirst", p.targetLongFirst())
+                .add("format", p.format())
+                .numbers("aoi", p.aoi())
+                .add("time", p.time())
+                .add("profile", Objects.requireNonNullElse(p.profile(), "full"), "full")
+                .add("direction", Objects.requireNonNullElse(p.direction(), "both"), "both")
+                .add("tolerance", p.tolerance());
     }
 
     /**
@@ -114,4 +221,95 @@ public class CRSOperationController {
                 .contentType(result.contentType())
                 .body(result.sourceCode());
     }
+
+    /**
+     * Get many coordinate operations in one request, for clients prefetching the operations they will need.
+     * Only text formats are supported.
+     *
+     * @param parameters Wanted operations, specified as for the end point with request method POST.
+     * @return the operations in the same order, each with the location of its canonical GET request and its ETag,
+     *         or status 429 if too many batch requests are in progress.
+     */
+    @CrossOrigin
+    @RequestMapping(path = "operations", method = RequestMethod.POST)
+    public ResponseEntity<List<BatchOperation>> getOperations(@RequestBody List<CrsOperationService.OperationParameters> parameters) {
+        if (parameters.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Too many operations in one request: " + parameters.size() + " > " + MAX_BATCH_SIZE);
+        }
+        final long approximations = parameters.stream().filter(p -> p.tolerance() != null).count();
+        if (approximations > MAX_BATCH_APPROXIMATIONS) {
+            throw new IllegalArgumentException("Too many approximated operations in one request: " + approximations + " > " + MAX_BATCH_APPROXIMATIONS);
+        }
+        if (!batches.tryAcquire()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        try {
+            final var operations = new ArrayList<BatchOperation>(parameters.size());
+            for (var p : parameters) {
+                var result = service.getOperation(p);
+                final Charset charset = result.contentType().getCharset();
+                if (charset == null) {
+                    throw new IllegalArgumentException("Binary format not supported in batch requests: " + p.format());
+                }
+                final String code;
+                try {
+                    code = result.sourceCode().getContentAsString(charset);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                operations.add(new BatchOperation("operation?" + canonical(p).query(), result.contentType().toString(),
+                        CanonicalQuery.eTag(result.sourceCode()), code));
+            }
+            return ResponseEntity.ok().body(operations);
+        } finally {
+            batches.release();
+        }
+    }
+
+    /**
+     * An operation returned by a batch request.
+     *
+     * @param location Canonical GET request of the operation, relative to the controller.
+     * @param contentType Media type of the code, as returned by the GET request.
+     * @param eTag Entity tag of the code, as returned by the GET request.
+     * @param code Source code of the operation.
+     */
+    public record BatchOperation(String location, String contentType, String eTag, String code) {}
+
+    /**
+     * Get an operation cached by this instance, for other instances of the service.
+     * The operation is not generated if absent.
+     *
+     * @param key Fingerprint of the operation request, computed by the instance asking.
+     * @return the cached operation, or status 404 if absent.
+     */
+    @Hidden
+    @RequestMapping(path = "peer", method = RequestMethod.POST, consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<byte[]> getCachedOperation(@RequestBody String key) {
+        final byte[] result = service.getCachedOperation(key);
+        if (result == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(result);
+    }
+
+    /**
+     * Get a kernel module imported by operations generated as JavaScript modules.
+     * Modules are identified by a hash of their content, so they can be cached forever.
+     *
+     * @param name Module name, as given in the import declarations of generated operations.
+     * @return the JavaScript module.
+     */
+    @CrossOrigin
+    @RequestMapping(path = "runtime/{name}", method = RequestMethod.GET)
+    public ResponseEntity<Resource> getRuntimeModule(@PathVariable String name) {
+        var result = service.getRuntimeModule(name);
+        if (result == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(result.contentType())
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                .body(result.sourceCode());
+    }
 }
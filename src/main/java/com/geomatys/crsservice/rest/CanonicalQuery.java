@@ -0,0 +1,233 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.rest;
+
+import com.geomatys.crsservice.configuration.IAUGeodeticAuthorityFactory;
+import com.geomatys.crsservice.configuration.ServiceVersion;
+import com.geomatys.crsservice.configuration.WKTRegistryFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Canonical query of a GET request. Requests having the same meaning have the same canonical query:
+ * parameters are in a fixed order, parameters having their default value are omitted, and codes are
+ * written as {@code AUTHORITY:code} whatever their spelling (URN, HTTP URI, case of the authority).
+ * The canonical query ends with the version of the registry and of the code generating the responses,
+ * so that responses to canonical queries never change and can be cached forever.
+ *
+ * <p>Queries with another well-formed version are not redirected, because during a rolling update
+ * the instances serving the redirection and the redirected request may have different versions.
+ * Those responses are cached with revalidation instead of forever.</p>
+ */
+final class CanonicalQuery {
+
+    /**
+     * Name of the parameter giving the registry and code versions.
+     */
+    static final String VERSION = "v";
+
+    /**
+     * Syntax of the value of the {@value #VERSION} parameter.
+     */
+    private static final Pattern VERSION_VALUE = Pattern.compile("[0-9a-f]*-[0-9a-f]+");
+
+    /**
+     * Cache control of responses to canonical queries.
+     */
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
+    /**
+     * Cache control of responses to queries with another version than the current one, revalidated with their ETag.
+     */
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePublic();
+
+    /**
+     * Cache control of redirections to canonical queries, which change when the registry is reloaded.
+     */
+    private static final CacheControl REDIRECT = CacheControl.maxAge(1, TimeUnit.MINUTES).cachePublic();
+
+    private static final Pattern URN = Pattern.compile("(?i)urn:(?:x-)?ogc:def:crs:([^:]+):([^:]*):([^:]+)");
+
+    private static final Pattern HTTP = Pattern.compile("(?i)https?://www\\.opengis\\.net/def/crs/([^/]+)/0/([^/]+)");
+
+    private final UriComponentsBuilder builder = UriComponentsBuilder.newInstance();
+
+    CanonicalQuery() {}
+
+    /**
+     * Adds a parameter if its value is not null.
+     */
+    CanonicalQuery add(final String name, final Object value) {
+        if (value != null) {
+            builder.queryParam(name, value);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a parameter if its value is not the default value.
+     */
+    CanonicalQuery add(final String name, final Object value, final Object defaultValue) {
+        return value.equals(defaultValue) ? this : add(name, value);
+    }
+
+    /**
+     * Adds a parameter for a flag which is false by default.
+     */
+    CanonicalQuery flag(final String name, final boolean value) {
+        return value ? add(name, Boolean.TRUE) : this;
+    }
+
+    /**
+     * Adds a parameter for a CRS given by code, URN, handle or WKT.
+     */
+    CanonicalQuery crs(final String name, final String value) {
+        return add(name, code(value));
+    }
+
+    /**
+     * Adds a parameter for an array of numbers if not null.
+     */
+    CanonicalQuery numbers(final String name, final double[] values) {
+        return (values == null) ? this : add(name, Arrays.stream(values).mapToObj(Double::toString).collect(Collectors.joining(",")));
+    }
+
+    /**
+     * Returns a redirection to the canonical query if the given query is not canonical, or null otherwise.
+     * A query is canonical if its parameters are canonical and end with a well-formed version, current or not.
+     *
+     * @param path Path of the end point relative to the controller, for the location of the redirection.
+     * @param query Query string of the request, still encoded.
+     * @return The redirection, or null if the query is canonical.
+     */
+    <T> ResponseEntity<T> redirect(final String path, final String query) {
+        if (query != null) {
+            final String prefix = parameters() + '&' + VERSION + '=';
+            if (query.startsWith(prefix) && VERSION_VALUE.matcher(query.substring(prefix.length())).matches()) {
+                return null;
+            }
+        }
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(URI.create(path + '?' + query()))
+                .cacheControl(REDIRECT)
+                .build();
+    }
+
+    /**
+     * Returns the cache control of the response to a canonical query: cached forever if the query has the current
+     * version, or revalidated otherwise because the response may differ from the one of the version in the query.
+     *
+     * @param query Query string of the request, still encoded.
+     * @return Cache control of the response.
+     */
+    CacheControl cacheControl(final String query) {
+        return query().equals(query) ? IMMUTABLE : REVALIDATE;
+    }
+
+    /**
+     * Returns the canonical query, encoded and ending with the current version.
+     */
+    String query() {
+        return parameters() + '&' + VERSION + '=' + version();
+    }
+
+    /**
+     * Returns the canonical parameters without the version, encoded.
+     */
+    private String parameters() {
+        // The '+' character is legal in queries, but decoded as a space by servers.
+        return builder.build().encode().getQuery().replace("+", "%2B");
+    }
+
+    /**
+     * Returns the current version of the registry and of the code generating the responses.
+     */
+    static String version() {
+        return IAUGeodeticAuthorityFactory.getRegistryVersion() + '-' + ServiceVersion.get();
+    }
+
+    /**
+     * Returns the entity tag of the given response body, for clients revalidating their cached copy.
+     * The tag is a hash of the content, so it changes if the service generates different code for the same query.
+     */
+    static String eTag(final Resource body) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(body.getContentAsByteArray());
+            return '"' + HexFormat.of().formatHex(digest, 0, 16) + '"';
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the canonical spelling of the given CRS. Codes are written as {@code AUTHORITY:code}
+     * or {@code AUTHORITY:version:code}, handles of registered WKTs are written in lower case, and WKTs are only stripped.
+     */
+    static String code(String text) {
+        text = text.strip();
+        if (text.indexOf('[') >= 0 || text.indexOf('(') >= 0) {
+            return text;
+        }
+        Matcher m = URN.matcher(text);
+        if (m.matches()) {
+            if (!m.group(2).isEmpty()) {
+                return text;    // Versioned codes are kept as given.
+            }
+            text = m.group(1) + ':' + m.group(3);
+        } else if ((m = HTTP.matcher(text)).matches()) {
+            text = m.group(1) + ':' + m.group(2);
+        }
+        final int s = text.indexOf(':');
+        if (s <= 0) {
+            return text;
+        }
+        final String authority = text.substring(0, s).strip();
+        final int v = text.indexOf(':', s + 1);
+        if (v >= 0) {
+            // Versioned code as AUTHORITY:version:code, for example IAU:2015:1000.
+            if (text.indexOf(':', v + 1) >= 0) {
+                return text;
+            }
+            return authority.toUpperCase(Locale.ROOT) + ':' + text.substring(s + 1, v).strip() + ':' + text.substring(v + 1).strip();
+        }
+        final String code = text.substring(s + 1).strip();
+        if (authority.equalsIgnoreCase(WKTRegistryFactory.AUTHORITY)) {
+            return WKTRegistryFactory.AUTHORITY + ':' + code.toLowerCase(Locale.ROOT);
+        }
+        return authority.toUpperCase(Locale.ROOT) + ':' + code;
+    }
+}
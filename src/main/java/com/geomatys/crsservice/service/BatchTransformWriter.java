@@ -0,0 +1,388 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import org.apache.sis.referencing.operation.matrix.Matrices;
+import org.apache.sis.referencing.operation.transform.MathTransforms;
+import org.apache.sis.referencing.operation.transform.PassThroughTransform;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.Matrix;
+
+/**
+ * Writes the JavaScript object of a transform with a {@code transformArray(src, srcOff, dst, dstOff, count)} method
+ * working on flat arrays of coordinates, and a {@code transform(src)} method for a single point delegating to it.
+ * Can also write a Python function transforming a point, or NumPy arrays of coordinates with one array per dimension.
+ *
+ * <p>Coordinates are held in local variables while they go through the steps. Linear and pass-through steps
+ * are written as arithmetic on those variables. Consecutive linear steps, for example axis swaps, unit conversions
+ * and normalization, are merged in a single matrix multiplication, and identity steps are omitted. Other steps are Apache SIS objects, called with scratch arrays
+ * allocated once per invocation of {@code transformArray}, so that the loop does not allocate arrays except
+ * the ones returned by those objects.</p>
+ *
+ * <p>In Python, step objects are instances of module-level classes, created once when the module is loaded.
+ * In NumPy functions, the variables hold arrays. Steps are applied on whole arrays when their code can be translated
+ * for arrays, with branches selected point by point by {@code np.where}. Other steps, for example steps with loops,
+ * are applied on each point by {@code np.vectorize}.</p>
+ */
+final class BatchTransformWriter {
+
+    private enum Dialect { JAVASCRIPT, PYTHON, NUMPY }
+
+    private final Dialect dialect;
+
+    /**
+     * Prefix of the names of step objects.
+     */
+    private final String prefix;
+
+    /**
+     * Step objects, as properties of the written object in JavaScript or module-level declarations in Python.
+     */
+    private final StringBuilder properties = new StringBuilder();
+
+    /**
+     * Body of the loop over points, or of the function in Python.
+     */
+    private final StringBuilder loop = new StringBuilder();
+
+    /**
+     * Dimensions of the scratch arrays used for calling step objects.
+     */
+    private final Set<Integer> buffers = new TreeSet<>();
+
+    /**
+     * Provides the code of the object of a step which is neither linear nor a pass-through.
+     * In Python, this is the body of a class following {@code "class Name:"}.
+     */
+    private final Function<MathTransform, String> stepObject;
+
+    /**
+     * Provides the body of the Python class of a step applied on NumPy arrays, or null if the step
+     * cannot be applied on arrays. Used only with NumPy.
+     */
+    private final Function<MathTransform, String> arrayObject;
+
+    private int stepCount;
+
+    private int variableCount;
+
+    /**
+     * Whether to merge consecutive linear steps and omit identity steps.
+     */
+    private final boolean optimize;
+
+    private BatchTransformWriter(final Dialect dialect, final String prefix, final Function<MathTransform, String> stepObject,
+                                 final Function<MathTransform, String> arrayObject, final boolean optimize)
+    {
+        this.dialect = dialect;
+        this.prefix = prefix;
+        this.stepObject = stepObject;
+        this.arrayObject = arrayObject;
+        this.optimize = optimize;
+    }
+
+    /**
+     * Writes the JavaScript object of the given transform.
+     *
+     * @param trs The transform to write.
+     * @param stepObject Provides the JavaScript object of a step, with a {@code transform(src)} method.
+     * @return A JavaScript object literal.
+     */
+    static String write(final MathTransform trs, final Function<MathTransform, String> stepObject) {
+        return write(trs, stepObject, true);
+    }
+
+    /**
+     * Writes the JavaScript object of the given transform, optionally without optimization.
+     * Consecutive linear steps are merged in a single matrix multiplication only if {@code optimize} is true.
+     *
+     * @param trs The transform to write.
+     * @param stepObject Provides the JavaScript object of a step, with a {@code transform(src)} method.
+     * @param optimize Whether to merge consecutive linear steps and omit identity steps.
+     * @return A JavaScript object literal.
+     */
+    static String write(final MathTransform trs, final Function<MathTransform, String> stepObject, final boolean optimize) {
+        final var writer = new BatchTransformWriter(Dialect.JAVASCRIPT, "", stepObject, null, optimize);
+        final int srcDim = trs.getSourceDimensions();
+        final int tgtDim = trs.getTargetDimensions();
+        final List<String> input = new ArrayList<>(srcDim);
+        for (int i = 0; i < srcDim; i++) {
+            input.add(writer.declare(i == 0 ? "src[srcOff]" : "src[srcOff + " + i + "]"));
+        }
+        final List<String> output = writer.steps(trs, input);
+
+        final StringBuilder sb = new StringBuilder();
+        sb.append("{\n").append(writer.properties);
+        sb.append("\ttransformArray : function(src, srcOff, dst, dstOff, count) {\n");
+        sb.append("\t\tif (src === dst) {\n");
+        sb.append("\t\t\tsrc = src.slice(srcOff, srcOff + count * ").append(srcDim).append(");\n");
+        sb.append("\t\t\tsrcOff = 0;\n");
+        sb.append("\t\t}\n");
+        for (int dimension : writer.buffers) {
+            sb.append("\t\tconst b").append(dimension).append(" = new Array(").append(dimension).append(");\n");
+        }
+        sb.append("\t\tfor (let k = 0; k < count; k++, srcOff += ").append(srcDim).append(", dstOff += ").append(tgtDim).append(") {\n");
+        sb.append(writer.loop);
+        for (int i = 0; i < tgtDim; i++) {
+            sb.append("\t\t\tdst[dstOff").append(i == 0 ? "" : " + " + i).append("] = ").append(output.get(i)).append(";\n");
+        }
+        sb.append("\t\t}\n");
+        sb.append("\t},\n");
+        sb.append("\ttransform : function(src) {\n");
+        sb.append("\t\tconst dst = new Array(").append(tgtDim).append(");\n");
+        sb.append("\t\tthis.transformArray(src, 0, dst, 0, 1);\n");
+        sb.append("\t\treturn dst;\n");
+        sb.append("\t}\n");
+        sb.append("}");
+        return sb.toString();
+    }
+
+    /**
+     * Writes a Python function transforming a point, preceded by the module-level declarations it needs.
+     * The function takes a list of coordinates and returns a list of coordinates.
+     *
+     * @param trs The transform to write.
+     * @param name Name of the function, also used as a prefix for the names of module-level declarations.
+     * @param stepClass Provides the body of the Python class of a step, with a {@code transform(self, src)} method.
+     * @return Python module-level code.
+     */
+    static String writePython(final MathTransform trs, final String name, final Function<MathTransform, String> stepClass) {
+        return writeFunction(Dialect.PYTHON, trs, name, stepClass, null);
+    }
+
+    /**
+     * Writes a Python function transforming NumPy arrays, preceded by the module-level declarations it needs.
+     * The function takes a list of arrays, one per source dimension, and returns a list of arrays or scalars,
+     * one per target dimension.
+     *
+     * @param trs The transform to write.
+     * @param name Name of the function, also used as a prefix for the names of module-level declarations.
+     * @param stepClass Provides the body of the Python class of a step, with a {@code transform(self, src)} method.
+     * @param arrayStepClass Provides the body of the Python class of a step applied on arrays, or null if the step
+     *        cannot be applied on arrays. In the latter case, {@code stepClass} is applied on each point.
+     * @return Python module-level code.
+     */
+    static String writeNumPy(final MathTransform trs, final String name, final Function<MathTransform, String> stepClass,
+                             final Function<MathTransform, String> arrayStepClass)
+    {
+        return writeFunction(Dialect.NUMPY, trs, name, stepClass, arrayStepClass);
+    }
+
+    private static String writeFunction(final Dialect dialect, final MathTransform trs, final String name,
+                                        final Function<MathTransform, String> stepClass, final Function<MathTransform, String> arrayStepClass)
+    {
+        final var writer = new BatchTransformWriter(dialect, name, stepClass, arrayStepClass, true);
+        final int srcDim = trs.getSourceDimensions();
+        final List<String> input = new ArrayList<>(srcDim);
+        for (int i = 0; i < srcDim; i++) {
+            input.add(writer.declare("c[" + i + "]"));
+        }
+        final List<String> output = writer.steps(trs, input);
+        final StringBuilder sb = new StringBuilder(writer.properties);
+        sb.append("def ").append(name).append("(c):\n");
+        sb.append(writer.loop);
+        sb.append("  return [").append(String.join(", ", output)).append("]\n\n");
+        return sb.toString();
+    }
+
+    /**
+     * Writes the computation of the given transform.
+     *
+     * @param trs The transform to write.
+     * @param input Names of the variables holding the source coordinates.
+     * @return Names of the variables or expressions giving the target coordinates.
+     */
+    private List<String> steps(final MathTransform trs, List<String> input) {
+        Matrix pending = null;
+        for (MathTransform step : MathTransforms.getSteps(trs)) {
+            final Matrix matrix = MathTransforms.getMatrix(step);
+            if (matrix != null) {
+                if (!optimize) {
+                    input = linear(matrix, input);
+                } else {
+                    pending = (pending == null) ? matrix : Matrices.multiply(matrix, pending);
+                }
+                continue;
+            }
+            if (pending != null) {
+                input = linear(pending, input);
+                pending = null;
+            }
+            if (step instanceof PassThroughTransform pass) {
+                final int[] modified = pass.getModifiedCoordinates();
+                final int first = modified[0];
+                final int last = modified[modified.length - 1] + 1;
+                final List<String> output = new ArrayList<>(input.subList(0, first));
+                output.addAll(steps(pass.getSubTransform(), new ArrayList<>(input.subList(first, last))));
+                output.addAll(input.subList(last, input.size()));
+                input = output;
+            } else if (MathTransforms.getSteps(step).size() > 1) {
+                input = steps(step, input);
+            } else {
+                input = call(step, input);
+            }
+        }
+        if (pending != null) {
+            input = linear(pending, input);
+        }
+        return input;
+    }
+
+    /**
+     * Writes a linear step as arithmetic on the coordinate variables.
+     */
+    private List<String> linear(final Matrix matrix, final List<String> input) {
+        if (optimize && matrix.isIdentity()) {
+            return input;
+        }
+        final int numRow = matrix.getNumRow() - 1;
+        final int numCol = matrix.getNumCol() - 1;
+        boolean affine = (matrix.getElement(numRow, numCol) == 1);
+        for (int i = 0; i < numCol; i++) {
+            affine &= (matrix.getElement(numRow, i) == 0);
+        }
+        final String w = affine ? null : declare(row(matrix, numRow, input));
+        final List<String> output = new ArrayList<>(numRow);
+        for (int j = 0; j < numRow; j++) {
+            final String value = row(matrix, j, input);
+            if (w != null) {
+                output.add(declare("(" + value + ") / " + w));
+            } else if (input.contains(value) || isNumber(value)) {
+                output.add(value);
+            } else {
+                output.add(declare(value));
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Returns the expression computing one row of a matrix multiplication.
+     */
+    private String row(final Matrix matrix, final int j, final List<String> input) {
+        final int numCol = matrix.getNumCol() - 1;
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < numCol; i++) {
+            final double m = matrix.getElement(j, i);
+            if (m != 0) {
+                if (!sb.isEmpty()) sb.append(" + ");
+                if (m != 1) sb.append(number(m)).append(" * ");
+                sb.append(input.get(i));
+            }
+        }
+        final double t = matrix.getElement(j, numCol);
+        if (t != 0 || sb.isEmpty()) {
+            if (!sb.isEmpty()) sb.append(" + ");
+            sb.append(number(t));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes a call to the object of a step, through a scratch array.
+     */
+    private List<String> call(final MathTransform step, final List<String> input) {
+        if (dialect != Dialect.JAVASCRIPT) {
+            return callPython(step, input);
+        }
+        final String name = "_step" + stepCount++;
+        properties.append('\t').append(name).append(" : ").append(stepObject.apply(step).replace("\n", "\n\t")).append(",\n");
+        final int dimension = input.size();
+        buffers.add(dimension);
+        for (int i = 0; i < dimension; i++) {
+            loop.append("\t\t\tb").append(dimension).append('[').append(i).append("] = ").append(input.get(i)).append(";\n");
+        }
+        final String result = declare("this." + name + ".transform(b" + dimension + ")");
+        final int tgtDim = step.getTargetDimensions();
+        final List<String> output = new ArrayList<>(tgtDim);
+        for (int i = 0; i < tgtDim; i++) {
+            output.add(declare(result + '[' + i + ']'));
+        }
+        return output;
+    }
+
+    /**
+     * Writes a call to the Python object of a step. With NumPy, the step is applied on arrays
+     * either directly or through {@code np.vectorize}.
+     */
+    private List<String> callPython(final MathTransform step, final List<String> input) {
+        final int n = stepCount++;
+        final String type = prefix + "Step" + n;
+        final String instance = prefix + "_step" + n;
+        final String arrayWise = (dialect == Dialect.NUMPY) ? arrayObject.apply(step) : stepObject.apply(step);
+        properties.append("class ").append(type).append(": ").append(arrayWise != null ? arrayWise : stepObject.apply(step)).append('\n');
+        properties.append(instance).append(" = ").append(type).append("()\n");
+        final int tgtDim = step.getTargetDimensions();
+        final String result;
+        if (arrayWise != null) {
+            result = declare(instance + ".transform([" + String.join(", ", input) + "])");
+        } else {
+            final String call = instance + ".transform(list(c))";
+            properties.append(instance).append("_v = np.vectorize(lambda *c: ").append(tgtDim == 1 ? call + "[0]" : "tuple(" + call + ')')
+                      .append(", otypes=[").append(String.join(", ", Collections.nCopies(tgtDim, "float"))).append("])\n");
+            result = declare(instance + "_v(" + String.join(", ", input) + ")");
+        }
+        properties.append('\n');
+        if (arrayWise == null && tgtDim == 1) {
+            return List.of(result);
+        }
+        final List<String> output = new ArrayList<>(tgtDim);
+        for (int i = 0; i < tgtDim; i++) {
+            output.add(declare(result + '[' + i + ']'));
+        }
+        return output;
+    }
+
+    /**
+     * Declares a variable initialized to the given expression and returns its name.
+     */
+    private String declare(final String value) {
+        final String name = "v" + variableCount++;
+        if (dialect != Dialect.JAVASCRIPT) {
+            loop.append("  ").append(name).append(" = ").append(value).append('\n');
+        } else {
+            loop.append("\t\t\tconst ").append(name).append(" = ").append(value).append(";\n");
+        }
+        return name;
+    }
+
+    private String number(final double value) {
+        if (dialect != Dialect.JAVASCRIPT && !Double.isFinite(value)) {
+            final String module = (dialect == Dialect.NUMPY) ? "np." : "math.";
+            return Double.isNaN(value) ? module + "nan" : (value > 0 ? "" : "-") + module + "inf";
+        }
+        return (value == Math.rint(value) && Math.abs(value) < 1E15) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static boolean isNumber(final String value) {
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
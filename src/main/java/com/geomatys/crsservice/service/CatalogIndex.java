@@ -0,0 +1,181 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import com.geomatys.crsservice.service.CrsCatalogService.CatalogEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable inverted index over catalog entries.
+ * Words are kept in a sorted array, so that all words starting with a given prefix
+ * are found with a binary search followed by a sequential scan.
+ */
+final class CatalogIndex {
+
+    /**
+     * Version of the IAU registry this index has been built from.
+     */
+    final String iauVersion;
+
+    /**
+     * All indexed entries, in the order they should be returned.
+     */
+    final List<CatalogEntry> entries;
+
+    /**
+     * All distinct words, sorted in lexicographic order.
+     */
+    private final String[] words;
+
+    /**
+     * For each word, the indices (in {@link #entries}) of the entries containing it.
+     */
+    private final int[][] postings;
+
+    /**
+     * Entries grouped by lower-case authority and by lower-case celestial body, for filtering.
+     */
+    private final Map<String, BitSet> byAuthority, byBody;
+
+    CatalogIndex(final String iauVersion, final List<CatalogEntry> entries) {
+        this.iauVersion = iauVersion;
+        this.entries = List.copyOf(entries);
+
+        final Map<String, BitSet> occurrences = new HashMap<>();
+        byAuthority = new HashMap<>();
+        byBody = new HashMap<>();
+        for (int i = 0, n = this.entries.size(); i < n; i++) {
+            final CatalogEntry entry = this.entries.get(i);
+            byAuthority.computeIfAbsent(authority(entry.code()), k -> new BitSet()).set(i);
+            byBody.computeIfAbsent(entry.body().toLowerCase(Locale.ROOT), k -> new BitSet()).set(i);
+            for (String word : tokenize(entry.code(), entry.name(), entry.body(), entry.projection())) {
+                occurrences.computeIfAbsent(word, k -> new BitSet()).set(i);
+            }
+        }
+        words = occurrences.keySet().toArray(String[]::new);
+        Arrays.sort(words);
+        postings = new int[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            postings[i] = occurrences.get(words[i]).stream().toArray();
+        }
+    }
+
+    /**
+     * Returns the indices of all entries containing, for each word of the query, a word starting with it.
+     *
+     * @param query Words to search. An empty query matches all entries.
+     * @return Indices of matching entries, in {@link #entries} order.
+     */
+    BitSet search(final String query) {
+        final BitSet result = new BitSet(entries.size());
+        result.set(0, entries.size());
+        for (String prefix : tokenize(query)) {
+            final BitSet matches = new BitSet(entries.size());
+            int i = Arrays.binarySearch(words, prefix);
+            if (i < 0) i = ~i;
+            for (; i < words.length && words[i].startsWith(prefix); i++) {
+                for (int entry : postings[i]) {
+                    matches.set(entry);
+                }
+            }
+            result.and(matches);
+            if (result.isEmpty()) break;
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether at least one entry applies to the given celestial body.
+     *
+     * @param body Lower-case name of the celestial body.
+     */
+    boolean hasBody(final String body) {
+        return byBody.containsKey(body);
+    }
+
+    /**
+     * Removes from the given matches all entries which do not belong to the given authority or celestial body.
+     *
+     * @param matches Result of a previous search, modified in place.
+     * @param authority Authority to keep, or null for all.
+     * @param body Celestial body to keep, or null for all.
+     */
+    void filter(final BitSet matches, final String authority, final String body) {
+        if (authority != null && !authority.isBlank()) {
+            matches.and(byAuthority.getOrDefault(authority.strip().toLowerCase(Locale.ROOT), new BitSet()));
+        }
+        if (body != null && !body.isBlank()) {
+            matches.and(byBody.getOrDefault(body.strip().toLowerCase(Locale.ROOT), new BitSet()));
+        }
+    }
+
+    /**
+     * Returns the lower-case authority part of a code such as {@code "IAU:2015:1000"}.
+     */
+    private static String authority(final String code) {
+        final int s = code.indexOf(':');
+        return (s < 0 ? code : code.substring(0, s)).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Splits the given texts into lower-case words. Any character which is neither a letter nor a digit is a separator.
+     * Null texts are ignored.
+     */
+    static Set<String> tokenize(final String... texts) {
+        final Set<String> words = new LinkedHashSet<>();
+        for (String text : texts) {
+            if (text == null) continue;
+            final String lower = text.toLowerCase(Locale.ROOT);
+            int start = -1;
+            for (int i = 0, n = lower.length(); i <= n; i++) {
+                final boolean letter = i < n && Character.isLetterOrDigit(lower.charAt(i));
+                if (letter && start < 0) {
+                    start = i;
+                } else if (!letter && start >= 0) {
+                    words.add(lower.substring(start, i));
+                    start = -1;
+                }
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Returns the entries at the given positions, skipping the first {@code offset} matches.
+     */
+    List<CatalogEntry> page(final BitSet matches, final int offset, final int limit) {
+        final List<CatalogEntry> page = new ArrayList<>(Math.min(limit, matches.cardinality()));
+        int skipped = 0;
+        for (int i = matches.nextSetBit(0); i >= 0 && page.size() < limit; i = matches.nextSetBit(i + 1)) {
+            if (skipped++ >= offset) {
+                page.add(entries.get(i));
+            }
+        }
+        return page;
+    }
+}
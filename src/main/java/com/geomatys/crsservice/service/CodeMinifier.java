@@ -0,0 +1,529 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reduces the size of generated JavaScript or Python code.
+ * This is not a general purpose minifier: it relies on the code being generated by this service,
+ * which contains no regular expression literal and no multi-line string.
+ *
+ * <p>Newlines are kept in JavaScript where removing them could change the automatic semicolon insertion,
+ * and always kept in Python where they are significant.</p>
+ */
+final class CodeMinifier {
+
+    enum Language { JAVASCRIPT, JAVASCRIPT_MODULE, PYTHON }
+
+    /**
+     * Code in which floating point literals have been replaced by parameters.
+     *
+     * @param code The code with parameter names in place of literals.
+     * @param parameters Parameter names, in order of appearance.
+     * @param values Literals replaced by the parameters.
+     */
+    record Template(String code, List<String> parameters, List<String> values) {}
+
+    private enum Kind { SPACE, NEWLINE, COMMENT, STRING, WORD, NUMBER, SYMBOL }
+
+    private record Token(Kind kind, String text) {}
+
+    /**
+     * Minimal length of a numeric literal for being shared between all its occurrences.
+     */
+    private static final int MIN_SHARED_LENGTH = 4;
+
+    /**
+     * Characters which may be combined in a single operator.
+     */
+    private static final String OPERATORS = "+-*/<>=!&|";
+
+    private CodeMinifier() {
+    }
+
+    /**
+     * Removes comments, trailing spaces and blank lines.
+     *
+     * @param code Code to compact.
+     * @param language Language of the code.
+     * @return Code without comments.
+     */
+    static String stripComments(final String code, final Language language) {
+        final StringBuilder sb = new StringBuilder(code.length());
+        for (List<Token> line : lines(tokenize(code, language))) {
+            for (Token token : line) {
+                sb.append(token.text());
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Removes comments and unnecessary spaces, renames identifiers and declares the long numeric literals
+     * used many times as constants. In JavaScript, the code must be an expression (for example a class expression)
+     * which is wrapped in a function if constants are declared. In JavaScript modules and in Python,
+     * constants are declared at the beginning of the module or after the {@code import} statements respectively.
+     *
+     * @param code Code to minify.
+     * @param language Language of the code.
+     * @param rename Function giving the new name of an identifier, or the same name if unchanged.
+     * @return Minified code.
+     */
+    static String minify(final String code, final Language language, final UnaryOperator<String> rename) {
+        final boolean python = (language == Language.PYTHON);
+        final List<List<Token>> lines = lines(tokenize(code, language));
+        /*
+         * Rename identifiers and count the occurrences of long numeric literals.
+         */
+        final Map<String, Integer> counts = new LinkedHashMap<>();
+        final List<String> words = new ArrayList<>();
+        for (List<Token> line : lines) {
+            for (int i = 0; i < line.size(); i++) {
+                final Token token = line.get(i);
+                if (token.kind() == Kind.WORD) {
+                    final Token renamed = new Token(Kind.WORD, rename.apply(token.text()));
+                    line.set(i, renamed);
+                    words.add(renamed.text());
+                } else if (token.kind() == Kind.NUMBER && token.text().length() >= MIN_SHARED_LENGTH && !isPropertyKey(line, i)) {
+                    counts.merge(token.text(), 1, Integer::sum);
+                }
+            }
+        }
+        /*
+         * Select the literals for which a constant declaration is shorter than the repetitions.
+         * A declaration costs the name, the literal and two separators.
+         */
+        String prefix = python ? "_k" : "$";
+        while (hasPrefix(words, prefix)) {
+            prefix += '_';
+        }
+        final Map<String, String> constants = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            final String name = prefix + constants.size();
+            final int length = entry.getKey().length();
+            final int count = entry.getValue();
+            if (count * length > count * name.length() + name.length() + length + 2) {
+                constants.put(entry.getKey(), name);
+            }
+        }
+        /*
+         * Write the code with only the spaces which are required for separating tokens.
+         */
+        final StringBuilder sb = new StringBuilder(code.length());
+        final int indentation = python ? indentationDivisor(lines) : 0;
+        Token previous = null;
+        for (List<Token> line : lines) {
+            boolean spaced = true;
+            int start = 0;
+            if (python) {
+                if (previous != null) sb.append('\n');
+                if (line.get(0).kind() == Kind.SPACE) {
+                    sb.repeat(' ', line.get(0).text().length() / indentation);
+                    start = 1;
+                }
+                previous = null;
+            } else if (previous != null && !canJoin(previous, significant(line, -1, +1))) {
+                sb.append('\n');
+                previous = null;
+            }
+            for (int i = start; i < line.size(); i++) {
+                Token token = line.get(i);
+                if (token.kind() == Kind.SPACE) {
+                    spaced = true;
+                    continue;
+                }
+                if (token.kind() == Kind.NUMBER && !isPropertyKey(line, i)) {
+                    final String name = constants.get(token.text());
+                    if (name != null) token = new Token(Kind.WORD, name);
+                }
+                if (spaced && previous != null && needsSpace(previous, token)) {
+                    sb.append(' ');
+                }
+                sb.append(token.text());
+                previous = token;
+                spaced = false;
+            }
+        }
+        if (python) {
+            sb.append('\n');
+        }
+        if (constants.isEmpty()) {
+            return sb.toString();
+        }
+        final StringBuilder declarations = new StringBuilder();
+        for (Map.Entry<String, String> entry : constants.entrySet()) {
+            if (python) {
+                declarations.append(entry.getValue()).append('=').append(entry.getKey()).append('\n');
+            } else {
+                declarations.append(declarations.isEmpty() ? "const " : ",").append(entry.getValue()).append('=').append(entry.getKey());
+            }
+        }
+        switch (language) {
+            case PYTHON: return sb.insert(importsEnd(sb), declarations).toString();
+            case JAVASCRIPT_MODULE: return declarations + ";\n" + sb;
+            default: return "(()=>{" + declarations + ";return " + sb + "})()";
+        }
+    }
+
+    /**
+     * Returns the position after the import statements at the beginning of the given Python code.
+     * Constants declared there are defined before any module-level code using them.
+     */
+    private static int importsEnd(final CharSequence code) {
+        int end = 0;
+        int start = 0;
+        while (start < code.length()) {
+            int next = start;
+            while (next < code.length() && code.charAt(next) != '\n') next++;
+            final String line = code.subSequence(start, next).toString();
+            if (line.startsWith("import ") || line.startsWith("from ")) {
+                end = Math.min(next + 1, code.length());
+            } else if (!line.isBlank() && !line.startsWith("#")) {
+                break;
+            }
+            start = next + 1;
+        }
+        return end;
+    }
+
+    /**
+     * Replaces the floating point literals of the given JavaScript code by parameters.
+     * Codes which differ only by the values of those literals give the same template.
+     *
+     * @param code JavaScript code.
+     * @return The code with parameters, without comments.
+     */
+    static Template parameterize(final String code) {
+        final List<List<Token>> lines = lines(tokenize(code, Language.JAVASCRIPT));
+        final List<String> words = new ArrayList<>();
+        for (List<Token> line : lines) {
+            for (Token token : line) {
+                if (token.kind() == Kind.WORD) words.add(token.text());
+            }
+        }
+        String prefix = "$";
+        while (hasPrefix(words, prefix)) {
+            prefix += '_';
+        }
+        final List<String> parameters = new ArrayList<>();
+        final List<String> values = new ArrayList<>();
+        final StringBuilder sb = new StringBuilder(code.length());
+        for (List<Token> line : lines) {
+            for (int i = 0; i < line.size(); i++) {
+                final String text = line.get(i).text();
+                if (line.get(i).kind() == Kind.NUMBER && !isPropertyKey(line, i) && isFloat(text)) {
+                    final String name = prefix + parameters.size();
+                    parameters.add(name);
+                    values.add(text);
+                    sb.append(name);
+                } else {
+                    sb.append(text);
+                }
+            }
+            sb.append('\n');
+        }
+        return new Template(sb.toString(), parameters, values);
+    }
+
+    /**
+     * Replaces the references to numeric properties of a JavaScript object literal, for example {@code this.a},
+     * by the property values. Only the properties defined once with a numeric literal and never assigned are replaced.
+     * Nothing is replaced if the code accesses properties by computed names.
+     *
+     * @param code JavaScript code of an object literal.
+     * @return The code with constant properties folded.
+     */
+    static String foldConstants(final String code) {
+        final List<Token> tokens = tokenize(code, Language.JAVASCRIPT);
+        final Map<String, String> values = new HashMap<>();
+        final Set<String> excluded = new HashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            final Token token = tokens.get(i);
+            if (token.kind() != Kind.WORD) continue;
+            final Token next = significant(tokens, i, +1);
+            if (token.text().equals("this")) {
+                if (next != null && next.text().equals("[")) {
+                    return code;
+                }
+                final int p = index(tokens, i, +2);
+                if (next != null && next.text().equals(".") && p >= 0 && isAssigned(tokens, i, p)) {
+                    excluded.add(tokens.get(p).text());
+                }
+            } else if (next != null && next.text().equals(":")) {
+                final String value = propertyValue(tokens, i);
+                if (value == null || values.putIfAbsent(token.text(), value) != null) {
+                    excluded.add(token.text());
+                }
+            }
+        }
+        values.keySet().removeAll(excluded);
+        if (values.isEmpty()) {
+            return code;
+        }
+        final StringBuilder sb = new StringBuilder(code.length());
+        for (int i = 0; i < tokens.size(); i++) {
+            final Token token = tokens.get(i);
+            if (token.text().equals("this")) {
+                final Token next = significant(tokens, i, +1);
+                final int p = index(tokens, i, +2);
+                final String value = (next != null && next.text().equals(".") && p >= 0) ? values.get(tokens.get(p).text()) : null;
+                if (value != null) {
+                    sb.append(value.startsWith("-") ? "(" + value + ")" : value);
+                    i = p;
+                    continue;
+                }
+            }
+            sb.append(token.text());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the numeric value of the property defined by the word at the given index,
+     * or null if the word is not a property defined by a numeric literal.
+     */
+    private static String propertyValue(final List<Token> tokens, final int index) {
+        final Token before = significant(tokens, index, -1);
+        if (before == null || !(before.text().equals("{") || before.text().equals(","))) {
+            return null;
+        }
+        int i = index(tokens, index, +2);
+        if (i < 0) return null;
+        String value = tokens.get(i).text();
+        if (value.equals("-")) {
+            i = index(tokens, i, +1);
+            if (i < 0) return null;
+            value = "-" + tokens.get(i).text();
+        }
+        final Token after = significant(tokens, i, +1);
+        if (tokens.get(i).kind() != Kind.NUMBER || after == null || !(after.text().equals(",") || after.text().equals("}"))) {
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * Returns whether the property at index {@code p}, accessed by {@code this} at index {@code i}, is modified.
+     */
+    private static boolean isAssigned(final List<Token> tokens, final int i, final int p) {
+        final int a = index(tokens, p, +1);
+        final int b = (a >= 0) ? index(tokens, a, +1) : -1;
+        final String op1 = (a >= 0) ? tokens.get(a).text() : "";
+        final String op2 = (b == a + 1) ? tokens.get(b).text() : "";
+        if (op1.equals("=")) {
+            return !op2.equals("=");
+        }
+        if (op2.equals("=") && "+-*/%&|^".contains(op1)) {
+            return true;
+        }
+        if ((op1.equals("+") || op1.equals("-")) && op2.equals(op1)) {
+            return true;
+        }
+        final int c = index(tokens, i, -1);
+        return c > 0 && (tokens.get(c).text().equals("+") || tokens.get(c).text().equals("-"))
+                && tokens.get(c - 1).text().equals(tokens.get(c).text());
+    }
+
+    /**
+     * Returns the index of the n-th significant token after (if positive) or before (if negative)
+     * the given index, or -1 if none.
+     */
+    private static int index(final List<Token> tokens, int index, final int n) {
+        final int step = Integer.signum(n);
+        for (int count = Math.abs(n); count > 0; count--) {
+            do {
+                index += step;
+                if (index < 0 || index >= tokens.size()) return -1;
+            } while (isBlank(tokens.get(index)));
+        }
+        return index;
+    }
+
+    private static boolean isBlank(final Token token) {
+        return token.kind() == Kind.SPACE || token.kind() == Kind.NEWLINE || token.kind() == Kind.COMMENT;
+    }
+
+    /**
+     * Returns whether the given numeric literal is a decimal floating point number.
+     */
+    private static boolean isFloat(final String number) {
+        if (number.startsWith("0x") || number.startsWith("0X")) {
+            return false;
+        }
+        return number.indexOf('.') >= 0 || number.indexOf('e') >= 0 || number.indexOf('E') >= 0;
+    }
+
+    /**
+     * Splits the given code in lines with comments, trailing spaces and blank lines removed.
+     */
+    private static List<List<Token>> lines(final List<Token> tokens) {
+        final List<List<Token>> lines = new ArrayList<>();
+        List<Token> line = new ArrayList<>();
+        for (Token token : tokens) {
+            switch (token.kind()) {
+                case COMMENT -> line.add(new Token(Kind.SPACE, " "));
+                case NEWLINE -> {
+                    addLine(lines, line);
+                    line = new ArrayList<>();
+                }
+                default -> line.add(token);
+            }
+        }
+        addLine(lines, line);
+        return lines;
+    }
+
+    private static void addLine(final List<List<Token>> lines, final List<Token> line) {
+        while (!line.isEmpty() && line.getLast().kind() == Kind.SPACE) {
+            line.removeLast();
+        }
+        if (!line.isEmpty()) {
+            lines.add(line);
+        }
+    }
+
+    /**
+     * Splits the given code in tokens. Comments, strings and spaces are single tokens.
+     * Symbols are single characters.
+     */
+    private static List<Token> tokenize(final String code, final Language language) {
+        final boolean python = (language == Language.PYTHON);
+        final List<Token> tokens = new ArrayList<>();
+        final int n = code.length();
+        int i = 0;
+        while (i < n) {
+            final int start = i;
+            final char c = code.charAt(i++);
+            final char next = (i < n) ? code.charAt(i) : 0;
+            final Kind kind;
+            if (c == '\n') {
+                kind = Kind.NEWLINE;
+            } else if (c == ' ' || c == '\t' || c == '\r') {
+                while (i < n && (code.charAt(i) == ' ' || code.charAt(i) == '\t' || code.charAt(i) == '\r')) i++;
+                kind = Kind.SPACE;
+            } else if (python ? c == '#' : (c == '/' && next == '/')) {
+                while (i < n && code.charAt(i) != '\n') i++;
+                kind = Kind.COMMENT;
+            } else if (!python && c == '/' && next == '*') {
+                final int end = code.indexOf("*/", i + 1);
+                i = (end >= 0) ? end + 2 : n;
+                kind = Kind.COMMENT;
+            } else if (c == '"' || c == '\'' || (!python && c == '`')) {
+                while (i < n && code.charAt(i) != c) {
+                    if (code.charAt(i) == '\\') i++;
+                    i++;
+                }
+                i = Math.min(i + 1, n);
+                kind = Kind.STRING;
+            } else if (Character.isDigit(c) || (c == '.' && Character.isDigit(next))) {
+                final boolean hexadecimal = (c == '0' && (next == 'x' || next == 'X'));
+                while (i < n) {
+                    final char d = code.charAt(i);
+                    final char p = code.charAt(i - 1);
+                    if (Character.isLetterOrDigit(d) || d == '.' || d == '_'
+                            || (!hexadecimal && (d == '+' || d == '-') && (p == 'e' || p == 'E')))
+                    {
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                kind = Kind.NUMBER;
+            } else if (Character.isJavaIdentifierStart(c) || (!python && c == '#')) {
+                while (i < n && Character.isJavaIdentifierPart(code.charAt(i))) i++;
+                kind = Kind.WORD;
+            } else {
+                kind = Kind.SYMBOL;
+            }
+            tokens.add(new Token(kind, code.substring(start, i)));
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns whether the token at the given index is a property key in an object literal, e.g. {@code {0.25: x}}.
+     * Such numbers cannot be replaced by constants.
+     */
+    private static boolean isPropertyKey(final List<Token> line, final int index) {
+        final Token before = significant(line, index, -1);
+        final Token after = significant(line, index, +1);
+        return before != null && after != null && after.text().equals(":")
+                && (before.text().equals("{") || before.text().equals(","));
+    }
+
+    private static Token significant(final List<Token> line, int index, final int step) {
+        while ((index += step) >= 0 && index < line.size()) {
+            final Token token = line.get(index);
+            if (!isBlank(token)) return token;
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether two tokens separated by spaces in the original code still need a space.
+     * This is the case of words and numbers, and of operator characters which would otherwise
+     * be merged in a different operator, e.g. {@code - -x}.
+     */
+    private static boolean needsSpace(final Token previous, final Token next) {
+        if (previous.kind() == Kind.SYMBOL || next.kind() == Kind.SYMBOL) {
+            return OPERATORS.contains(previous.text()) && OPERATORS.contains(next.text());
+        }
+        return previous.kind() != Kind.STRING && next.kind() != Kind.STRING;
+    }
+
+    /**
+     * Returns whether a JavaScript line ending with the given token can be joined with the next line
+     * without changing the automatic semicolon insertion.
+     */
+    private static boolean canJoin(final Token last, final Token first) {
+        return (last.kind() == Kind.SYMBOL && "{;,([:=?".contains(last.text()))
+            || (first.kind() == Kind.SYMBOL && "});,]:.".contains(first.text()));
+    }
+
+    /**
+     * Returns the divisor to apply on Python indentation. Indentation can be halved
+     * if all lines are indented by an even number of spaces.
+     */
+    private static int indentationDivisor(final List<List<Token>> lines) {
+        for (List<Token> line : lines) {
+            final Token first = line.get(0);
+            if (first.kind() == Kind.SPACE && (first.text().indexOf('\t') >= 0 || (first.text().length() & 1) != 0)) {
+                return 1;
+            }
+        }
+        return 2;
+    }
+
+    private static boolean hasPrefix(final List<String> words, final String prefix) {
+        for (String word : words) {
+            if (word.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import java.util.List;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Browse the coordinate reference systems known by the service (IAU and EPSG authorities).
+ */
+public interface CrsCatalogService {
+
+    /**
+     * Search coordinate reference systems matching all words of a query.
+     * Each word of the query is matched as a prefix of the words found in the CRS code, name, celestial body or projection.
+     *
+     * @param parameters Query and paging parameters.
+     * @return The requested page of matching CRSs, with the total number of matches.
+     *
+     * @throws IllegalArgumentException If paging parameters are invalid.
+     */
+    SearchResult search(SearchParameters parameters) throws IllegalArgumentException;
+
+    /**
+     * Find the coordinate reference systems of a celestial body whose domain of validity contains a point or a box.
+     * Matches are sorted by increasing area of their domain of validity, so the most specific CRSs come first.
+     *
+     * @param parameters Celestial body and area to cover.
+     * @return The matching CRSs with their domain of validity.
+     *
+     * @throws IllegalArgumentException If the area is invalid.
+     */
+    LocateResult locate(LocateParameters parameters) throws IllegalArgumentException;
+
+    record SearchParameters(
+            /**
+             * Words to search, separated by spaces or punctuation. An empty query matches all CRSs.
+             */
+            String query,
+            /**
+             * Optional authority filter (IAU, EPSG).
+             */
+            @Nullable String authority,
+            /**
+             * Optional celestial body filter (Earth, Mars, ...).
+             */
+            @Nullable String body,
+            /**
+             * Index of the first match to return.
+             */
+            int offset,
+            /**
+             * Maximum number of matches to return.
+             */
+            int limit
+    ) {}
+
+    record SearchResult(int total, int offset, int limit, List<CatalogEntry> entries) {}
+
+    record LocateParameters(
+            /**
+             * Celestial body (Earth, Mars, ...).
+             */
+            String body,
+            /**
+             * Area to cover as [west, south, east, north] in degrees. West and east are equal for a point,
+             * and west is greater than east for a box crossing the anti-meridian.
+             */
+            double[] area,
+            /**
+             * Maximum number of matches to return.
+             */
+            int limit
+    ) {}
+
+    record LocateResult(int total, List<LocatedEntry> entries) {}
+
+    /**
+     * A CRS matching a locate request.
+     *
+     * @param crs Summary of the CRS definition.
+     * @param domainOfValidity Geographic area where the CRS can be used, as [west, south, east, north] in degrees.
+     */
+    record LocatedEntry(CatalogEntry crs, double[] domainOfValidity) {}
+
+    /**
+     * Summary of a coordinate reference system definition.
+     *
+     * @param code Authority code, usable as source or target of other requests.
+     * @param name CRS name.
+     * @param body Celestial body the CRS applies to.
+     * @param projection Projection name, or null for non-projected CRSs.
+     */
+    record CatalogEntry(String code, String name, String body, @Nullable String projection) {}
+}
@@ -0,0 +1,223 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.measure.Unit;
+import org.apache.sis.geometry.Envelopes;
+import org.apache.sis.referencing.CRS;
+import org.apache.sis.referencing.datum.BursaWolfParameters;
+import org.apache.sis.referencing.datum.DefaultGeodeticDatum;
+import org.opengis.geometry.Envelope;
+import org.opengis.parameter.GeneralParameterValue;
+import org.opengis.parameter.ParameterValue;
+import org.opengis.parameter.ParameterValueGroup;
+import org.opengis.referencing.crs.CompoundCRS;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.crs.GeneralDerivedCRS;
+import org.opengis.referencing.crs.SingleCRS;
+import org.opengis.referencing.cs.CartesianCS;
+import org.opengis.referencing.cs.CoordinateSystem;
+import org.opengis.referencing.cs.CoordinateSystemAxis;
+import org.opengis.referencing.cs.EllipsoidalCS;
+import org.opengis.referencing.cs.RangeMeaning;
+import org.opengis.referencing.cs.SphericalCS;
+import org.opengis.referencing.datum.Datum;
+import org.opengis.referencing.datum.Ellipsoid;
+import org.opengis.referencing.datum.GeodeticDatum;
+import org.opengis.referencing.datum.PrimeMeridian;
+import org.opengis.referencing.datum.TemporalDatum;
+import org.opengis.referencing.operation.Conversion;
+
+/**
+ * Canonical fingerprints of coordinate reference systems, ignoring metadata.
+ * The same CRS can be spelled as a code, a URN or a WKT with any formatting, names, identifiers and domain of validity.
+ * All spellings are parsed to CRSs having the same fingerprint, which is therefore used as cache key instead of the spelling.
+ *
+ * <p>The fingerprint contains the properties used in coordinate operations, in the spirit of
+ * {@link org.apache.sis.util.ComparisonMode#IGNORE_METADATA}: kind of CRS, axis directions, units and ranges,
+ * ellipsoid, prime meridian, Bursa-Wolf parameters (the {@code TOWGS84} element of WKT 1), conversion method
+ * and parameter values. Datum names are kept in a normalized form,
+ * because the operations between two datums may depend on their names. The fingerprint may distinguish CRSs
+ * that Apache SIS considers equal, which causes cache misses.</p>
+ *
+ * <p>Names and domains of validity are copied in definitions and generated operations. Caches of those results
+ * are therefore keyed by {@link #withMetadata(CoordinateReferenceSystem)}, otherwise the metadata of the first
+ * spelling would be returned for all spellings.</p>
+ */
+final class CrsFingerprint {
+
+    private CrsFingerprint() {
+    }
+
+    /**
+     * Returns the fingerprint of the given CRS.
+     *
+     * @param crs The CRS, in the axis order to take in account.
+     * @return A string which is the same for all CRSs having the same meaning.
+     */
+    static String of(final CoordinateReferenceSystem crs) {
+        final StringBuilder buffer = new StringBuilder(200);
+        append(buffer, crs);
+        return buffer.toString();
+    }
+
+    /**
+     * Returns the fingerprint of the given CRS completed with the metadata copied in definitions and generated operations:
+     * the name and the domain of validity.
+     *
+     * @param crs The CRS, in the axis order to take in account.
+     * @return A string which is the same for all CRSs having the same meaning, name and domain of validity.
+     */
+    static String withMetadata(final CoordinateReferenceSystem crs) {
+        final StringBuilder buffer = new StringBuilder(300);
+        append(buffer, crs);
+        buffer.append('\n').append(crs.getName().getCode());
+        final Envelope domainOfValidity = CRS.getDomainOfValidity(crs);
+        if (domainOfValidity != null) {
+            buffer.append('\n').append(Envelopes.toString(domainOfValidity));
+        }
+        return buffer.toString();
+    }
+
+    private static void append(final StringBuilder buffer, final CoordinateReferenceSystem crs) {
+        if (crs instanceof CompoundCRS compound) {
+            buffer.append("Compound(");
+            for (CoordinateReferenceSystem component : compound.getComponents()) {
+                append(buffer, component);
+                buffer.append(';');
+            }
+            buffer.append(')');
+            return;
+        }
+        buffer.append(kind(crs)).append('(');
+        if (crs instanceof GeneralDerivedCRS derived) {
+            append(buffer, derived.getBaseCRS());
+            buffer.append(';');
+            append(buffer, derived.getConversionFromBase());
+        } else if (crs instanceof SingleCRS single) {
+            append(buffer, single.getDatum());
+        }
+        buffer.append(';');
+        append(buffer, crs.getCoordinateSystem());
+        buffer.append(')');
+    }
+
+    /**
+     * Returns the name of the GeoAPI interface implemented by the given CRS.
+     * Implementation classes are not used, because different factories may create different classes.
+     */
+    private static String kind(final CoordinateReferenceSystem crs) {
+        for (Class<?> type : crs.getClass().getInterfaces()) {
+            if (CoordinateReferenceSystem.class.isAssignableFrom(type)) {
+                return type.getSimpleName();
+            }
+        }
+        return crs.getClass().getName();
+    }
+
+    private static void append(final StringBuilder buffer, final Datum datum) {
+        buffer.append(normalize(datum.getName().getCode()));
+        if (datum instanceof GeodeticDatum geodetic) {
+            final Ellipsoid ellipsoid = geodetic.getEllipsoid();
+            final PrimeMeridian meridian = geodetic.getPrimeMeridian();
+            buffer.append(',').append(ellipsoid.getSemiMajorAxis())
+                  .append(',').append(ellipsoid.getSemiMinorAxis())
+                  .append(' ').append(ellipsoid.getAxisUnit())
+                  .append(',').append(meridian.getGreenwichLongitude())
+                  .append(' ').append(meridian.getAngularUnit());
+            if (geodetic instanceof DefaultGeodeticDatum sis) {
+                // Operations use those parameters when no operation between the datums is found in the EPSG database.
+                for (BursaWolfParameters shift : sis.getBursaWolfParameters()) {
+                    buffer.append(",to ").append(normalize(shift.getTargetDatum().getName().getCode()))
+                          .append(Arrays.toString(shift.getValues()));
+                }
+            }
+        } else if (datum instanceof TemporalDatum temporal) {
+            buffer.append(',').append(temporal.getOrigin().getTime());
+        }
+    }
+
+    private static void append(final StringBuilder buffer, final Conversion conversion) {
+        buffer.append(normalize(conversion.getMethod().getName().getCode()));
+        final Map<String, String> values = new TreeMap<>();
+        collect(values, "", conversion.getParameterValues());
+        values.forEach((name, value) -> buffer.append(',').append(name).append('=').append(value));
+    }
+
+    /**
+     * Collects the parameter values by normalized name, with values converted to the units of their descriptors.
+     * Values are sorted by name because parameters may be declared in any order.
+     */
+    private static void collect(final Map<String, String> values, final String prefix, final ParameterValueGroup group) {
+        for (GeneralParameterValue parameter : group.values()) {
+            final String name = prefix + normalize(parameter.getDescriptor().getName().getCode());
+            if (parameter instanceof ParameterValueGroup subgroup) {
+                collect(values, name + '.', subgroup);
+            } else if (parameter instanceof ParameterValue<?> value) {
+                final Object object = value.getValue();
+                final Unit<?> unit = value.getDescriptor().getUnit();
+                final String text;
+                if (object instanceof Number && unit != null) {
+                    text = Double.toString(value.doubleValue(unit));
+                } else if (object instanceof Object[] array) {
+                    text = Arrays.deepToString(array);
+                } else if (object instanceof double[] array) {
+                    text = Arrays.toString(array);
+                } else {
+                    text = String.valueOf(object);
+                }
+                values.put(name, text);
+            }
+        }
+    }
+
+    private static void append(final StringBuilder buffer, final CoordinateSystem cs) {
+        if (cs instanceof EllipsoidalCS) {
+            buffer.append("ellipsoidal");
+        } else if (cs instanceof CartesianCS) {
+            buffer.append("Cartesian");
+        } else if (cs instanceof SphericalCS) {
+            buffer.append("spherical");
+        } else {
+            buffer.append(cs.getClass().getName());
+        }
+        for (int i = 0; i < cs.getDimension(); i++) {
+            final CoordinateSystemAxis axis = cs.getAxis(i);
+            buffer.append(',').append(axis.getDirection().identifier()).append(' ').append(axis.getUnit());
+            if (axis.getRangeMeaning() == RangeMeaning.WRAPAROUND) {
+                buffer.append('[').append(axis.getMinimumValue()).append(' ').append(axis.getMaximumValue()).append(']');
+            }
+        }
+    }
+
+    /**
+     * Returns the given name in lower case without spaces, underscores or other punctuation,
+     * so that the same name spelled in the EPSG or ESRI styles gives the same result.
+     */
+    private static String normalize(final String name) {
+        final StringBuilder buffer = new StringBuilder(name.length());
+        name.codePoints().filter(Character::isLetterOrDigit).forEach(buffer::appendCodePoint);
+        return buffer.toString().toLowerCase(Locale.ROOT);
+    }
+}
@@ -39,6 +39,17 @@ public interface CrsOperationService {
      */
     SourceCode getCRS(CRSParameters parameters) throws IllegalArgumentException, UnsupportedOperationException;
 
+    /**
+     * Register a CRS defined by a WKT, for using it in next requests without sending the WKT again.
+     *
+     * @param wkt The WKT of a coordinate reference system.
+     * @return A short handle, such as {@code "wkt:sha256-…"}, accepted wherever a code is accepted.
+     *
+     * @throws IllegalArgumentException If the WKT cannot be parsed.
+     * @throws UnsupportedOperationException If the WKT cannot be stored.
+     */
+    String registerCRS(String wkt) throws IllegalArgumentException, UnsupportedOperationException;
+
     /**
      * Create a source code to convert coordinates from a given <em>source CRS</em> to a <em>target CRS</em>.
      *
@@ -52,9 +63,27 @@ public interface CrsOperationService {
      */
     SourceCode getOperation(OperationParameters parameters) throws IllegalArgumentException, UnsupportedOperationException;
 
+    /**
+     * Get an operation generated by this instance, without generating it if absent.
+     * This is used by other instances of the service sharing their caches, and resolving the kernels of modules.
+     *
+     * @param key Fingerprint of the operation request, computed by the instance asking, or name of a kernel module.
+     * @return The generated operation, or null if not cached by this instance.
+     */
+    byte @Nullable [] getCachedOperation(String key);
+
+    /**
+     * Get a module of the runtime imported by operations generated as JavaScript modules.
+     * Runtime modules are identified by a hash of their content, so they never change.
+     *
+     * @param name Module name, as given in the import declarations of generated operations.
+     * @return The module source code, or null if unknown.
+     */
+    @Nullable SourceCode getRuntimeModule(String name);
+
     record CRSParameters(
             /**
-             * EPSG/CRS/IAU/IGNF code, WKT, or URN.
+             * EPSG/CRS/IAU/IGNF code, WKT, registered WKT handle, or URN.
              */
             String source,
             /**
@@ -74,8 +103,32 @@ public interface CrsOperationService {
             boolean targetLongFirst,
             String format,
             @Nullable double[] aoi,
-            @Nullable OffsetDateTime time
-    ) {}
+            @Nullable OffsetDateTime time,
+            /**
+             * Code profile: full (default), compact or minified.
+             */
+            @Nullable String profile,
+            /**
+             * Transforms to include: forward, inverse or both (default).
+             */
+            @Nullable String direction,
+            /**
+             * Maximal error in units of the target CRS for approximating the operation over the area of interest,
+             * or null for the exact operation.
+             */
+            @Nullable Double tolerance
+    ) {
+        public OperationParameters(String source, boolean sourceLongFirst, String target, boolean targetLongFirst,
+                                   String format, @Nullable double[] aoi, @Nullable OffsetDateTime time) {
+            this(source, sourceLongFirst, target, targetLongFirst, format, aoi, time, null, null);
+        }
+
+        public OperationParameters(String source, boolean sourceLongFirst, String target, boolean targetLongFirst,
+                                   String format, @Nullable double[] aoi, @Nullable OffsetDateTime time,
+                                   @Nullable String profile, @Nullable String direction) {
+            this(source, sourceLongFirst, target, targetLongFirst, format, aoi, time, profile, direction, null);
+        }
+    }
 
     record SourceCode(MediaType contentType, Resource sourceCode) {}
 }
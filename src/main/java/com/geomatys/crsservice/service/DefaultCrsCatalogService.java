@@ -0,0 +1,420 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import com.geomatys.crsservice.configuration.IAUGeodeticAuthorityFactory;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.sis.geometry.Envelopes;
+import org.apache.sis.geometry.GeneralEnvelope;
+import org.apache.sis.referencing.CRS;
+import org.apache.sis.referencing.crs.AbstractCRS;
+import org.apache.sis.referencing.cs.AxesConvention;
+import org.apache.sis.referencing.operation.transform.MathTransforms;
+import org.opengis.geometry.Envelope;
+import org.opengis.metadata.extent.GeographicBoundingBox;
+import org.opengis.referencing.crs.CRSAuthorityFactory;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.crs.ProjectedCRS;
+import org.opengis.referencing.operation.TransformException;
+import org.opengis.util.FactoryException;
+import org.opengis.util.InternationalString;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Catalog of IAU and EPSG coordinate reference systems, backed by an in-memory {@link CatalogIndex}.
+ * The index is built in background after startup, or on first request if the latter comes first.
+ * When the IAU registry is reloaded, only the IAU part of the catalog is read again.
+ *
+ * <p>Domains of validity are indexed in one {@link SpatialIndex} per celestial body.
+ * Those spatial indexes require parsing all CRSs of the body, so they are built lazily
+ * on first request for a body, or in background after the catalog index.</p>
+ */
+@Service
+public class DefaultCrsCatalogService implements CrsCatalogService {
+
+    /**
+     * Maximal number of entries returned by a single search.
+     */
+    static final int MAX_LIMIT = 1000;
+
+    private final System.Logger logger = System.getLogger("com.geomatys.crsservice.service");
+
+    /**
+     * The index of the current IAU registry version, or null if not yet built.
+     */
+    private volatile CatalogIndex index;
+
+    /**
+     * IAU entries of the last built index, by code. Used for reusing entries when the registry is reloaded.
+     */
+    private Map<String, CatalogEntry> iauEntries = Map.of();
+
+    /**
+     * EPSG entries, loaded only once since the EPSG database does not change while the service is running.
+     */
+    private List<CatalogEntry> epsgEntries;
+
+    /**
+     * Spatial index of domains of validity, by lower-case celestial body name.
+     */
+    private final Map<String, BodyIndex> bodies = new ConcurrentHashMap<>();
+
+    /**
+     * Domains of validity of all CRSs of a celestial body.
+     *
+     * @param iauVersion Version of the IAU registry this index has been built from.
+     * @param entries CRSs of the body, sorted by increasing domain area.
+     * @param boxes Boxes indexed in the tree. A domain crossing the anti-meridian is split in two boxes.
+     * @param owners For each box, index of the entry it belongs to.
+     * @param tree Spatial index of the boxes. Values are indices in {@code boxes}.
+     */
+    private record BodyIndex(String iauVersion, List<LocatedEntry> entries, List<double[]> boxes, int[] owners, SpatialIndex tree) {}
+
+    @Override
+    public SearchResult search(final SearchParameters parameters) throws IllegalArgumentException {
+        if (parameters.offset() < 0) {
+            throw new IllegalArgumentException("Offset must be positive or zero: " + parameters.offset());
+        }
+        if (parameters.limit() < 1 || parameters.limit() > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT + ": " + parameters.limit());
+        }
+        final CatalogIndex index = index();
+        final BitSet matches = index.search(parameters.query() == null ? "" : parameters.query());
+        index.filter(matches, parameters.authority(), parameters.body());
+        return new SearchResult(matches.cardinality(), parameters.offset(), parameters.limit(),
+                index.page(matches, parameters.offset(), parameters.limit()));
+    }
+
+    @Override
+    public LocateResult locate(final LocateParameters parameters) throws IllegalArgumentException {
+        final double[] area = parameters.area();
+        if (area == null || area.length != 4) {
+            throw new IllegalArgumentException("Area must be given as [west, south, east, north]");
+        }
+        for (double value : area) {
+            if (!Double.isFinite(value)) {
+                throw new IllegalArgumentException("Area coordinates must be finite numbers");
+            }
+        }
+        if (area[1] > area[3] || area[1] < -90 || area[3] > 90) {
+            throw new IllegalArgumentException("Invalid latitude range: " + area[1] + " to " + area[3]);
+        }
+        if (parameters.limit() < 1 || parameters.limit() > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT + ": " + parameters.limit());
+        }
+        final String body = (parameters.body() == null) ? "" : parameters.body().strip().toLowerCase(Locale.ROOT);
+        if (!index().hasBody(body)) {
+            return new LocateResult(0, List.of());
+        }
+        final BodyIndex index = bodyIndex(body);
+        final double west = normalizeLongitude(area[0]);
+        final double east = normalizeLongitude(area[2]);
+        final List<double[]> parts = (west <= east)
+                ? List.of(new double[] {west, area[1], east, area[3]})
+                : List.of(new double[] {west, area[1], 180, area[3]}, new double[] {-180, area[1], east, area[3]});
+        BitSet matches = null;
+        for (double[] part : parts) {
+            final BitSet covering = new BitSet(index.entries().size());
+            index.tree().search(part[0], part[1], part[2], part[3], box -> {
+                final double[] domain = index.boxes().get(box);
+                if (domain[0] <= part[0] && domain[1] <= part[1] && domain[2] >= part[2] && domain[3] >= part[3]) {
+                    covering.set(index.owners()[box]);
+                }
+            });
+            if (matches == null) matches = covering;
+            else matches.and(covering);
+        }
+        final List<LocatedEntry> entries = new ArrayList<>();
+        for (int i = matches.nextSetBit(0); i >= 0 && entries.size() < parameters.limit(); i = matches.nextSetBit(i + 1)) {
+            entries.add(index.entries().get(i));
+        }
+        return new LocateResult(matches.cardinality(), entries);
+    }
+
+    /**
+     * Builds the index in a background thread once the application is started,
+     * so that the first search does not pay the cost of reading all authority codes.
+     * The spatial indexes of all celestial bodies are built next.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        Thread.ofVirtual().name("crs-catalog-index").start(() -> {
+            final Set<String> names = new LinkedHashSet<>();
+            for (CatalogEntry entry : index().entries) {
+                names.add(entry.body().toLowerCase(Locale.ROOT));
+            }
+            final long start = System.nanoTime();
+            names.forEach(this::bodyIndex);
+            logger.log(System.Logger.Level.INFO, "Domains of validity of {0} celestial bodies indexed in {1} ms",
+                    names.size(), (System.nanoTime() - start) / 1_000_000);
+        });
+    }
+
+    /**
+     * Returns the index for the current IAU registry version, (re)building it if needed.
+     */
+    final CatalogIndex index() {
+        final CatalogIndex current = index;
+        if (current != null && current.iauVersion.equals(IAUGeodeticAuthorityFactory.getRegistryVersion())) {
+            return current;
+        }
+        return rebuild();
+    }
+
+    private synchronized CatalogIndex rebuild() {
+        final String version = IAUGeodeticAuthorityFactory.getRegistryVersion();
+        CatalogIndex current = index;
+        if (current != null && current.iauVersion.equals(version)) {
+            return current;
+        }
+        final long start = System.nanoTime();
+        final List<CatalogEntry> entries = new ArrayList<>(readIAU());
+        entries.addAll(readEPSG());
+        current = new CatalogIndex(version, entries);
+        index = current;
+        logger.log(System.Logger.Level.INFO, "CRS catalog index built with {0} entries in {1} ms",
+                entries.size(), (System.nanoTime() - start) / 1_000_000);
+        return current;
+    }
+
+    /**
+     * Returns the spatial index of the given celestial body for the current IAU registry version, building it if needed.
+     * The index is built without lock, so concurrent requests for the same body may build it twice.
+     *
+     * @param body Lower-case name of a celestial body of the catalog.
+     */
+    private BodyIndex bodyIndex(final String body) {
+        final CatalogIndex catalog = index();
+        final BodyIndex current = bodies.get(body);
+        if (current != null && current.iauVersion().equals(catalog.iauVersion)) {
+            return current;
+        }
+        final BodyIndex created = createBodyIndex(catalog, body);
+        return bodies.merge(body, created, (old, value) -> old.iauVersion().equals(catalog.iauVersion) ? old : value);
+    }
+
+    private BodyIndex createBodyIndex(final CatalogIndex catalog, final String body) {
+        final List<LocatedEntry> entries = new ArrayList<>();
+        for (CatalogEntry entry : catalog.entries) {
+            if (entry.body().toLowerCase(Locale.ROOT).equals(body)) {
+                final double[] domain = domainOfValidity(entry.code());
+                if (domain != null) {
+                    entries.add(new LocatedEntry(entry, domain));
+                }
+            }
+        }
+        // Stable sort: entries of same area stay in code order.
+        entries.sort(Comparator.comparingDouble(e -> area(e.domainOfValidity())));
+        final List<double[]> boxes = new ArrayList<>();
+        final List<Integer> owners = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            final double[] d = entries.get(i).domainOfValidity();
+            if (d[0] <= d[2]) {
+                boxes.add(d);
+                owners.add(i);
+            } else {
+                boxes.add(new double[] {d[0], d[1], 180, d[3]});
+                boxes.add(new double[] {-180, d[1], d[2], d[3]});
+                owners.add(i);
+                owners.add(i);
+            }
+        }
+        final int[] values = new int[boxes.size()];
+        for (int i = 0; i < values.length; i++) values[i] = i;
+        return new BodyIndex(catalog.iauVersion, List.copyOf(entries), boxes,
+                owners.stream().mapToInt(Integer::intValue).toArray(), new SpatialIndex(boxes, values));
+    }
+
+    /**
+     * Returns the geographic domain of validity of the given CRS as [west, south, east, north], or null if the CRS
+     * cannot be created. The domain declared in the CRS definition is used if present. Otherwise, the domain of
+     * the map projection is used for projected CRSs, and the whole body is assumed for other CRSs.
+     */
+    private double[] domainOfValidity(final String code) {
+        final CoordinateReferenceSystem crs;
+        try {
+            crs = CRS.forCode(code);
+        } catch (FactoryException e) {
+            logger.log(System.Logger.Level.DEBUG, "Cannot create " + code, e);
+            return null;
+        }
+        final GeographicBoundingBox bbox = CRS.getGeographicBoundingBox(crs);
+        if (bbox != null) {
+            return longitudeRange(bbox.getWestBoundLongitude(), bbox.getEastBoundLongitude(),
+                                  bbox.getSouthBoundLatitude(), bbox.getNorthBoundLatitude());
+        }
+        if (crs instanceof ProjectedCRS projected) {
+            try {
+                final Optional<Envelope> domain = MathTransforms.getDomain(projected.getConversionFromBase().getMathTransform());
+                if (domain.isPresent()) {
+                    final GeneralEnvelope envelope = new GeneralEnvelope(domain.get());
+                    envelope.setCoordinateReferenceSystem(projected.getBaseCRS());
+                    final Envelope normalized = Envelopes.transform(envelope,
+                            AbstractCRS.castOrCopy(projected.getBaseCRS()).forConvention(AxesConvention.NORMALIZED));
+                    return longitudeRange(normalized.getMinimum(0), normalized.getMaximum(0),
+                                          normalized.getMinimum(1), normalized.getMaximum(1));
+                }
+            } catch (TransformException | RuntimeException e) {
+                logger.log(System.Logger.Level.DEBUG, "Cannot compute the domain of " + code, e);
+            }
+        }
+        return new double[] {-180, -90, 180, 90};
+    }
+
+    /**
+     * Creates a [west, south, east, north] array with longitudes in the [-180 … 180]° range
+     * and latitudes in the [-90 … 90]° range. Unbounded values are replaced by the world bounds.
+     */
+    private static double[] longitudeRange(double west, double east, double south, double north) {
+        south = Double.isNaN(south) ? -90 : Math.max(south, -90);
+        north = Double.isNaN(north) ?  90 : Math.min(north,  90);
+        if (!Double.isFinite(west) || !Double.isFinite(east) || east - west >= 360) {
+            return new double[] {-180, south, 180, north};
+        }
+        return new double[] {normalizeLongitude(west), south, normalizeLongitude(east), north};
+    }
+
+    /**
+     * Brings the given longitude in the [-180 … 180]° range. The 180° value is left unchanged.
+     */
+    private static double normalizeLongitude(final double longitude) {
+        if (longitude >= -180 && longitude <= 180) {
+            return longitude;
+        }
+        return ((longitude + 180) % 360 + 360) % 360 - 180;
+    }
+
+    /**
+     * Returns the area of the given domain on a unit sphere.
+     */
+    private static double area(final double[] domain) {
+        double width = domain[2] - domain[0];
+        if (width < 0) width += 360;
+        return Math.toRadians(width) * (Math.sin(Math.toRadians(domain[3])) - Math.sin(Math.toRadians(domain[1])));
+    }
+
+    /**
+     * Reads the IAU entries, reusing the entries of the previous index for codes which are still present
+     * with the same name. Entries are derived from the name only, so an entry is reused only if it would be
+     * created identical.
+     */
+    private List<CatalogEntry> readIAU() {
+        final var factory = new IAUGeodeticAuthorityFactory();
+        final Map<String, CatalogEntry> previous = iauEntries;
+        final Map<String, CatalogEntry> entries = new HashMap<>();
+        try {
+            for (String code : factory.getAuthorityCodes(CoordinateReferenceSystem.class)) {
+                final String key = "IAU:" + code;
+                final String name = name(factory, code, key);
+                if (name == null) continue;
+                CatalogEntry entry = previous.get(key);
+                if (entry == null || !entry.name().equals(name)) {
+                    entry = toEntry(key, name, null);
+                }
+                entries.put(key, entry);
+            }
+        } catch (FactoryException e) {
+            logger.log(System.Logger.Level.WARNING, "Cannot list IAU codes", e);
+        }
+        iauEntries = entries;
+        return sorted(entries.values());
+    }
+
+    /**
+     * Reads the EPSG entries on first invocation. All EPSG CRSs apply to Earth.
+     */
+    private List<CatalogEntry> readEPSG() {
+        if (epsgEntries == null) {
+            final List<CatalogEntry> entries = new ArrayList<>();
+            try {
+                final CRSAuthorityFactory factory = CRS.getAuthorityFactory("EPSG");
+                for (String code : factory.getAuthorityCodes(CoordinateReferenceSystem.class)) {
+                    final String key = "EPSG:" + code;
+                    final String name = name(factory, code, key);
+                    if (name != null) entries.add(toEntry(key, name, "Earth"));
+                }
+            } catch (FactoryException e) {
+                logger.log(System.Logger.Level.WARNING, "Cannot list EPSG codes", e);
+            }
+            epsgEntries = sorted(entries);
+        }
+        return epsgEntries;
+    }
+
+    /**
+     * Returns the description of the given code, or null if the code has no description.
+     */
+    private String name(final CRSAuthorityFactory factory, final String code, final String key) {
+        try {
+            final InternationalString description = factory.getDescriptionText(code);
+            return (description != null) ? description.toString() : null;
+        } catch (FactoryException e) {
+            logger.log(System.Logger.Level.DEBUG, "No description for " + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Creates a catalog entry from the description of a code.
+     * Names are expected to follow the {@code "Body (version) - Shape / Projection, parameters"} pattern used by IAU.
+     *
+     * @param body Celestial body, or null for inferring it from the name.
+     */
+    private static CatalogEntry toEntry(final String key, final String name, String body) {
+        String projection = null;
+        final int slash = name.indexOf(" / ");
+        // In IAU names, "Body (version) / Ocentric" denotes a geocentric or geographic CRS, not a projection.
+        if (slash >= 0 && (body != null || name.lastIndexOf(" - ", slash) >= 0)) {
+            projection = name.substring(slash + 3);
+            final int comma = projection.indexOf(',');
+            if (comma >= 0) projection = projection.substring(0, comma);
+            projection = projection.strip();
+        }
+        if (body == null) {
+            int end = name.indexOf(" (");
+            if (end < 0) end = name.indexOf(" - ");
+            if (end < 0) end = (slash >= 0) ? slash : name.length();
+            body = name.substring(0, end).strip();
+        }
+        return new CatalogEntry(key, name, body, projection);
+    }
+
+    /**
+     * Sorts entries by code, comparing numerically the codes of same length.
+     */
+    private static List<CatalogEntry> sorted(final Iterable<CatalogEntry> entries) {
+        final List<CatalogEntry> list = new ArrayList<>();
+        entries.forEach(list::add);
+        list.sort(Comparator.comparingInt((CatalogEntry e) -> e.code().length()).thenComparing(CatalogEntry::code));
+        return list;
+    }
+}
@@ -19,27 +19,37 @@
  */
 package com.geomatys.crsservice.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geomatys.crsservice.configuration.IAUGeodeticAuthorityFactory;
+import com.geomatys.crsservice.configuration.OperationStoreConfiguration;
+import com.geomatys.crsservice.configuration.PeerCacheConfiguration;
+import com.geomatys.crsservice.configuration.ServiceVersion;
+import com.geomatys.crsservice.configuration.WKTRegistryFactory;
+import java.io.IOException;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.sis.geometry.Envelopes;
+import org.apache.sis.geometry.GeneralEnvelope;
+import org.apache.sis.metadata.iso.extent.DefaultGeographicBoundingBox;
 import org.apache.sis.referencing.CRS;
-import org.apache.sis.referencing.crs.AbstractCRS;
-import org.apache.sis.referencing.cs.AxesConvention;
-import org.apache.sis.referencing.operation.transform.MathTransforms;
 import org.apache.sis.referencing.ExportableTransform;
+import org.apache.sis.util.collection.Cache;
 import org.opengis.geometry.Envelope;
 import org.opengis.metadata.extent.GeographicBoundingBox;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.CoordinateOperation;
 import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.NoninvertibleTransformException;
+import org.opengis.referencing.operation.TransformException;
 import org.opengis.util.FactoryException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
@@ -53,12 +63,97 @@ public class DefaultCrsOperationService implements CrsOperationService {
 
     public static final String FORMAT_JAVASCRIPT    = "text/javascript";
     public static final String FORMAT_PYTHON        = "text/x-python";
+    /**
+     * JavaScript module importing shared kernel modules, which are served by {@link #getRuntimeModule(String)}.
+     */
+    public static final String FORMAT_JAVASCRIPT_MODULE = "application/javascript;variant=module";
+    /**
+     * Python transforming NumPy arrays of points, where each point is a row. Steps are applied on whole arrays,
+     * with both sides of their branches computed for all points and selected by {@code np.where}. Only steps
+     * with loops are applied point by point through {@code np.vectorize}.
+     */
+    public static final String FORMAT_PYTHON_NUMPY  = "text/x-python;variant=numpy";
+    /**
+     * WebAssembly module transforming coordinates in its linear memory. Profiles do not apply to this format.
+     */
+    public static final String FORMAT_WASM          = "application/wasm";
+    /**
+     * JSON list of the steps of the operation, for clients implementing the operation methods themselves.
+     * Profiles and direction do not apply to this format.
+     */
+    public static final String FORMAT_PLAN          = "application/json;variant=plan";
+    /**
+     * JavaScript interpolating in a grid of single-precision points sampled over the area of interest.
+     * Requires an area of interest and a tolerance.
+     */
+    public static final String FORMAT_JAVASCRIPT_GRID = "text/javascript;variant=grid";
     private static final String FORMAT_JSON         = "application/json";
     private static final String FORMAT_WKT          = "application/wkt";
+    private static final MediaType JSON_CONTENT_TYPE = MediaType.parseMediaType(FORMAT_JSON + "; charset=utf-8");
+
+    /**
+     * Python translations of step kernels, by JavaScript template. Kernels are the same for all operations
+     * using the same kind of step, so this map stays small.
+     */
+    private static final Map<String, String> PYTHON_KERNELS = new ConcurrentHashMap<>();
+
+    /**
+     * Python translations of step kernels applied on NumPy arrays, by JavaScript template.
+     * An empty string means that the kernel cannot be applied on arrays.
+     */
+    private static final Map<String, String> NUMPY_KERNELS = new ConcurrentHashMap<>();
+
+    /**
+     * Generated code with license header and documentation. This is the default.
+     */
+    public static final String PROFILE_FULL         = "full";
+    /**
+     * Generated code without license header and comments.
+     */
+    public static final String PROFILE_COMPACT      = "compact";
+    /**
+     * Compact code with shortened identifiers, shared constants and no unnecessary spaces.
+     */
+    public static final String PROFILE_MINIFIED     = "minified";
+
+    public static final String DIRECTION_FORWARD    = "forward";
+    public static final String DIRECTION_INVERSE    = "inverse";
+    public static final String DIRECTION_BOTH       = "both";
+
+    /**
+     * Encoded JSON definitions of CRSs identified by codes.
+     */
+    private final DefinitionStore definitions = new DefinitionStore();
+
+    /**
+     * Kernels imported by operations generated as JavaScript modules.
+     */
+    private final KernelRuntime kernels = new KernelRuntime();
+
+    /**
+     * Operations between base geographic CRSs, reused for all projected CRSs having those bases.
+     */
+    private final OperationCache operations = new OperationCache();
+
+    /**
+     * Encodes the definitions of all IAU CRSs in a background thread once the application is started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void precomputeDefinitions() {
+        Thread.ofVirtual().name("crs-definitions").start(definitions::precomputeIAU);
+    }
 
     @Override
     public SourceCode getCRS(CRSParameters request) throws IllegalArgumentException, UnsupportedOperationException {
 
+        final String format = request.format();
+        if (FORMAT_JSON.equals(format)) {
+            final byte[] json = definitions.get(request.source(), request.longitudeFirst());
+            if (json != null) {
+                return new SourceCode(JSON_CONTENT_TYPE, new ByteArrayResource(json));
+            }
+        }
+
         final CoordinateReferenceSystem crs;
         try {
             crs = parseCRS(request.source(), request.longitudeFirst());
@@ -66,34 +161,10 @@ public class DefaultCrsOperationService implements CrsOperationService {
             throw new IllegalArgumentException("Source CRS unsupported : " + request.source(), ex);
         }
 
-        final String format = request.format();
         if (FORMAT_JSON.equals(format)) {
-            final Map<String,Object> map = new LinkedHashMap<>();
-            map.put("code", request.source());
-
-            final Envelope domainOfValidity = CRS.getDomainOfValidity(crs);
-            if (domainOfValidity != null) {
-                map.put("domainOfValidity", new double[]{domainOfValidity.getMinimum(0), domainOfValidity.getMinimum(1), domainOfValidity.getMaximum(0), domainOfValidity.getMaximum(1)});
-            }
-            map.put("units", crs.getCoordinateSystem().getAxis(0).getUnit().getSymbol());
-
-            final List<String> axisDirection = new ArrayList();
-            for (int i = 0; i < crs.getCoordinateSystem().getDimension(); i++) {
-                axisDirection.add(crs.getCoordinateSystem().getAxis(i).getDirection().identifier());
-            }
-            map.put("axisDirection", axisDirection);
-
-            final ObjectMapper mapper = new ObjectMapper();
-            final String json;
-            try {
-                json = mapper.writeValueAsString(map);
-            } catch (JsonProcessingException ex) {
-                throw new RuntimeException(ex.getMessage(), ex);
-            }
-
             return new SourceCode(
-                MediaType.parseMediaType(FORMAT_JSON + "; charset=utf-8"),
-                new ByteArrayResource(json.getBytes(StandardCharsets.UTF_8))
+                JSON_CONTENT_TYPE,
+                new ByteArrayResource(definitions.put(request.source(), request.longitudeFirst(), crs))
             );
 
         } else if (FORMAT_WKT.equals(format)) {
@@ -104,86 +175,319 @@ public class DefaultCrsOperationService implements CrsOperationService {
 
     }
 
+    @Override
+    public String registerCRS(String wkt) throws IllegalArgumentException, UnsupportedOperationException {
+        try {
+            return WKTRegistryFactory.register(wkt);
+        } catch (IOException ex) {
+            throw new UnsupportedOperationException("Cannot store the WKT", ex);
+        }
+    }
+
+    /**
+     * Operations generated at build time, if any.
+     */
+    private final OperationBundles bundles = new OperationBundles();
+
+    /**
+     * Generated operations by registry and code versions and fingerprint of the request. Values are softly referenced.
+     */
+    private final Cache<String, byte[]> results = new Cache<>();
+
+    /**
+     * Generated operations shared with other instances and kept across restarts, or null if not configured.
+     * Consulted when an operation is not in {@link #results}.
+     */
+    private volatile OperationStore store;
+
+    /**
+     * Generated operations cached by other instances, or null if not configured.
+     * Consulted when an operation is neither in {@link #results} nor in {@link #store}.
+     */
+    private volatile PeerCache peers;
+
+    /**
+     * Enables the store of generated operations if a directory is configured.
+     *
+     * @param properties Configuration of the store.
+     * @throws IOException if the directory cannot be created.
+     */
+    @Autowired
+    public void setOperationStore(final OperationStoreConfiguration.OperationStoreProperties properties) throws IOException {
+        if (properties.directory() != null) {
+            store = new OperationStore(properties.directory(), properties.capacity().toBytes());
+            kernels.setDirectory(properties.directory().resolve("kernels"));
+        }
+    }
+
+    /**
+     * Enables the peer cache if other instances are configured, either as a static list or as a DNS name.
+     *
+     * @param properties Configuration of the peer cache.
+     */
+    @Autowired
+    public void setPeerCache(final PeerCacheConfiguration.PeerCacheProperties properties) {
+        final List<URI> urls = (properties.urls() != null) ? properties.urls() : List.of();
+        if (!urls.isEmpty() || properties.dns() != null) {
+            if (properties.self() == null) {
+                throw new IllegalArgumentException("The URL of this instance is required by the peer cache");
+            }
+            peers = new PeerCache(properties.self(), urls, properties.dns(), properties.port(), properties.timeout(), properties.refresh());
+        }
+    }
+
+    /**
+     * Stops the discovery of other instances when the application is stopped.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void closePeerCache() {
+        final PeerCache peers = this.peers;
+        if (peers != null) {
+            peers.close();
+        }
+    }
+
+    @Override
+    public byte[] getCachedOperation(String key) {
+        if (key.startsWith(KernelRuntime.KEY_PREFIX)) {
+            return kernels.get(key.substring(KernelRuntime.KEY_PREFIX.length()));
+        }
+        final byte[] result = results.peek(key);
+        if (result != null) {
+            return result;
+        }
+        final OperationStore store = this.store;
+        return (store != null) ? store.get(key) : null;
+    }
+
     @Override
     public SourceCode getOperation(OperationParameters request) throws IllegalArgumentException, UnsupportedOperationException {
 
+        final byte[] bundled = bundles.find(request);
+        if (bundled != null) {
+            return new SourceCode(
+                MediaType.parseMediaType(request.format() + "; charset=utf-8"),
+                new ByteArrayResource(bundled)
+            );
+        }
+
+        final String profile = (request.profile() == null) ? PROFILE_FULL : request.profile();
+        if (!(PROFILE_FULL.equals(profile) || PROFILE_COMPACT.equals(profile) || PROFILE_MINIFIED.equals(profile))) {
+            throw new IllegalArgumentException("Profile not supported " + profile);
+        }
+        final String direction = (request.direction() == null) ? DIRECTION_BOTH : request.direction();
+        final boolean forward = DIRECTION_FORWARD.equals(direction) || DIRECTION_BOTH.equals(direction);
+        final boolean inverse = DIRECTION_INVERSE.equals(direction) || DIRECTION_BOTH.equals(direction);
+        if (!forward && !inverse) {
+            throw new IllegalArgumentException("Direction not supported " + direction);
+        }
+
+        // Longitude first variants are derived from the operation between CRSs in their defined axis order.
         final CoordinateReferenceSystem crs1;
         final CoordinateReferenceSystem crs2;
         try {
-            crs1 = parseCRS(request.source(), request.sourceLongFirst());
+            crs1 = parseCRS(request.source(), false);
         } catch (FactoryException ex) {
             throw new IllegalArgumentException("Source CRS unsupported : " + request.source(), ex);
         }
         try {
-            crs2 = parseCRS(request.target(), request.targetLongFirst());
+            crs2 = parseCRS(request.target(), false);
         } catch (FactoryException ex) {
             throw new IllegalArgumentException("Target CRS unsupported : " + request.target(), ex);
         }
 
         final double[] aoi = request.aoi();
-        final GeographicBoundingBox ggb = (aoi == null) ? null : null;
+        final GeographicBoundingBox ggb;
+        if (aoi == null) {
+            ggb = null;
+        } else if (aoi.length == 4) {
+            ggb = new DefaultGeographicBoundingBox(aoi[0], aoi[2], aoi[1], aoi[3]);
+        } else {
+            throw new IllegalArgumentException("Area of interest must be [west, south, east, north]");
+        }
+        // Operations are deterministic for given registry and code versions. The key is also sent to peers, so that
+        // instances running another build during a rolling update do not share their operations.
+        // Kernels imported by modules are resolved by getRuntimeModule(…).
+        final String format = request.format();
+        final String key = String.join("\n", IAUGeodeticAuthorityFactory.getRegistryVersion(), ServiceVersion.get(), CrsFingerprint.withMetadata(crs1), CrsFingerprint.withMetadata(crs2),
+                Boolean.toString(request.sourceLongFirst()), Boolean.toString(request.targetLongFirst()),
+                format, profile, direction, Arrays.toString(aoi), String.valueOf(request.tolerance()));
+        byte[] result = results.peek(key);
+        if (result == null) {
+            final Cache.Handler<byte[]> handler = results.lock(key);
+            try {
+                result = handler.peek();
+                if (result == null) {
+                    final OperationStore store = this.store;
+                    final PeerCache peers = this.peers;
+                    result = (store != null) ? store.get(key) : null;
+                    if (result == null) {
+                        result = (peers != null) ? peers.get(key) : null;
+                        if (result == null) {
+                            result = generate(request, crs1, crs2, ggb, profile, forward, inverse);
+                        }
+                        if (store != null) {
+                            store.put(key, result);
+                        }
+                    }
+                }
+            } finally {
+                handler.putAndUnlock(result);
+            }
+        }
+        return new SourceCode(contentType(format), new ByteArrayResource(result));
+    }
+
+    /**
+     * Generates the operation in the requested format.
+     *
+     * @param request Wanted operation specification.
+     * @param crs1 Source CRS in its defined axis order.
+     * @param crs2 Target CRS in its defined axis order.
+     * @param ggb Area of interest, or null.
+     * @param profile One of the {@code PROFILE_*} constants.
+     * @param forward Whether the forward transform has been requested.
+     * @param inverse Whether the inverse transform has been requested.
+     * @return The generated code or module.
+     */
+    private byte[] generate(final OperationParameters request, final CoordinateReferenceSystem crs1, final CoordinateReferenceSystem crs2,
+                            final GeographicBoundingBox ggb, final String profile, final boolean forward, final boolean inverse)
+    {
         final CoordinateOperation operation;
         try {
-            operation = CRS.findOperation(crs1, crs2, ggb);
+            operation = operations.find(crs1, crs2, ggb, request.sourceLongFirst(), request.targetLongFirst());
         } catch (FactoryException ex) {
             throw new UnsupportedOperationException("No coordinate operation found between " + request.source() + " and " + request.target(), ex);
         }
         final MathTransform trs = operation.getMathTransform();
         MathTransform inverseTrs = null;
-        try {
-            inverseTrs = trs.inverse();
-        } catch (NoninvertibleTransformException ex) {
-            //no nothing
+        if (inverse) {
+            try {
+                inverseTrs = trs.inverse();
+            } catch (NoninvertibleTransformException ex) {
+                if (!forward) {
+                    throw new UnsupportedOperationException("Operation between " + request.source() + " and " + request.target() + " is not invertible", ex);
+                }
+            }
         }
 
         final double linearAccuracy = CRS.getLinearAccuracy(operation);
-        final GeographicBoundingBox gbb = CRS.getGeographicBoundingBox(operation);
-        final Envelope domainOfValidity = CRS.getDomainOfValidity(crs2);
-
+        final Envelope domainOfValidity = CRS.getDomainOfValidity(operation.getTargetCRS());
         final String format = request.format();
-        if (FORMAT_JAVASCRIPT.equals(format)) {
-            final String code = toJavaScript(trs, inverseTrs, linearAccuracy, gbb, domainOfValidity);
-            return new SourceCode(
-                MediaType.parseMediaType(FORMAT_JAVASCRIPT + "; charset=utf-8"),
-                new ByteArrayResource(code.getBytes(StandardCharsets.UTF_8))
-            );
+
+        final boolean grid = FORMAT_JAVASCRIPT_GRID.equals(format);
+        TransformApproximation forwardApproximation = null;
+        TransformApproximation inverseApproximation = null;
+        if (request.tolerance() != null || grid) {
+            if (ggb == null || request.tolerance() == null) {
+                throw new IllegalArgumentException("Approximations require an area of interest and a tolerance");
+            }
+            if (!(grid || FORMAT_JAVASCRIPT.equals(format) || FORMAT_PYTHON.equals(format))) {
+                throw new IllegalArgumentException("Tolerance not supported for format " + format);
+            }
+            try {
+                final Envelope sourceArea = Envelopes.transform(new GeneralEnvelope(ggb), operation.getSourceCRS());
+                final double tolerance = request.tolerance();
+                if (forward) {
+                    forwardApproximation = grid ? InterpolationGrid.fit(trs, sourceArea, tolerance)
+                                                : PolynomialApproximation.fit(trs, sourceArea, tolerance);
+                }
+                if (inverseTrs != null) {
+                    final Envelope targetArea = Envelopes.transform(trs, sourceArea);
+                    inverseApproximation = grid ? InterpolationGrid.fitInverse(inverseTrs, trs, targetArea, tolerance)
+                                                : PolynomialApproximation.fitInverse(inverseTrs, trs, targetArea, tolerance);
+                }
+            } catch (TransformException ex) {
+                throw new UnsupportedOperationException("Operation between " + request.source() + " and " + request.target()
+                        + " cannot be evaluated in the area of interest", ex);
+            }
+        }
+        final GeographicBoundingBox gbb = (request.tolerance() != null) ? ggb : CRS.getGeographicBoundingBox(operation);
+
+        if (FORMAT_JAVASCRIPT.equals(format) || grid) {
+            final String code = toJavaScript(forward ? trs : null, inverseTrs, inverse, linearAccuracy, gbb, domainOfValidity, profile, null,
+                                             forwardApproximation, inverseApproximation);
+            return code.getBytes(StandardCharsets.UTF_8);
+        } else if (FORMAT_JAVASCRIPT_MODULE.equals(format)) {
+            final String code = toJavaScript(forward ? trs : null, inverseTrs, inverse, linearAccuracy, gbb, domainOfValidity, profile, kernels, null, null);
+            return code.getBytes(StandardCharsets.UTF_8);
         } else if (FORMAT_PYTHON.equals(format)) {
-            final String code = toPython(trs, inverseTrs, linearAccuracy, gbb, domainOfValidity);
-            return new SourceCode(
-                MediaType.parseMediaType(FORMAT_PYTHON + "; charset=utf-8"),
-                new ByteArrayResource(code.getBytes(StandardCharsets.UTF_8))
-            );
+            final String code = toPython(forward ? trs : null, inverseTrs, inverse, linearAccuracy, gbb, domainOfValidity, profile,
+                                         (PolynomialApproximation) forwardApproximation, (PolynomialApproximation) inverseApproximation);
+            return code.getBytes(StandardCharsets.UTF_8);
+        } else if (FORMAT_PYTHON_NUMPY.equals(format)) {
+            final String code = toNumPy(forward ? trs : null, inverseTrs, inverse, linearAccuracy, gbb, domainOfValidity, profile);
+            return code.getBytes(StandardCharsets.UTF_8);
+        } else if (FORMAT_PLAN.equals(format)) {
+            return OperationPlanWriter.write(operation, linearAccuracy, gbb, domainOfValidity);
+        } else if (FORMAT_WASM.equals(format)) {
+            return WasmWriter.write(forward ? trs : null, inverseTrs, step -> toJavaScriptStep(step, null, null));
         } else {
             throw new IllegalArgumentException("Format not supported " + format);
         }
 
     }
 
-    private static CoordinateReferenceSystem parseCRS(String text, boolean longFirst) throws FactoryException {
+
+    /**
+     * Returns the content type of operations in the given format.
+     */
+    private static MediaType contentType(final String format) {
+        return MediaType.parseMediaType(FORMAT_WASM.equals(format) ? format : format + "; charset=utf-8");
+    }
+
+    @Override
+    public SourceCode getRuntimeModule(String name) {
+        byte[] module = kernels.get(name);
+        if (module == null) {
+            // The module importing this kernel may have been generated by another instance.
+            final PeerCache peers = this.peers;
+            if (peers == null || !KernelRuntime.isName(name)) {
+                return null;
+            }
+            module = peers.find(KernelRuntime.KEY_PREFIX + name);
+            if (module == null || !kernels.add(name, module)) {
+                return null;
+            }
+        }
+        return new SourceCode(
+            MediaType.parseMediaType(FORMAT_JAVASCRIPT + "; charset=utf-8"),
+            new ByteArrayResource(module)
+        );
+    }
+
+    static CoordinateReferenceSystem parseCRS(String text, boolean longFirst) throws FactoryException {
         CoordinateReferenceSystem crs;
         try {
             crs = CRS.fromWKT(text);
         } catch (FactoryException ex) {
             try {
-                return CRS.forCode(text);
+                crs = CRS.forCode(text);
             } catch (FactoryException ex1) {
                 ex.addSuppressed(ex1);
                 throw ex;
             }
         }
-        if (longFirst) {
-            crs = AbstractCRS.castOrCopy(crs).forConvention(AxesConvention.DISPLAY_ORIENTED);
-        }
-        return crs;
+        return longFirst ? OperationCache.longitudeFirst(crs) : crs;
     }
 
     /**
      * Generate Javascript
+     *
+     * @param trs The forward transform, or null if not requested.
+     * @param invtrs The inverse transform, or null if not requested or not invertible.
+     * @param inverse Whether the inverse transform has been requested.
+     * @param profile One of the {@code PROFILE_*} constants.
+     * @param kernels Where to register the kernels for generating a module, or null for generating a script.
+     * @param approximation Approximation of the forward transform to write instead of its steps, or null.
+     * @param invApproximation Approximation of the inverse transform to write instead of its steps, or null.
      */
-    private static String toJavaScript(MathTransform trs, MathTransform invtrs, double accuracy, GeographicBoundingBox operationGeographicBoundingBox, Envelope targetCrsDomainOfValidity) {
+    private static String toJavaScript(MathTransform trs, MathTransform invtrs, boolean inverse, double accuracy, GeographicBoundingBox operationGeographicBoundingBox, Envelope targetCrsDomainOfValidity, String profile, KernelRuntime kernels,
+                                       TransformApproximation approximation, TransformApproximation invApproximation) {
         final StringBuilder sb = new StringBuilder();
+        final Map<String, String> imports = new LinkedHashMap<>();
 
-        sb.append(
+        final String header = PROFILE_FULL.equals(profile) ? (
                 "/* Code generated by Apache SIS. https://sis.apache.org \n" +
                 " *\n" +
                 " * Licensed to the Apache Software Foundation (ASF) under one or more\n" +
@@ -200,9 +504,9 @@ public class DefaultCrsOperationService implements CrsOperationService {
                 " * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.\n" +
                 " * See the License for the specific language governing permissions and\n" +
                 " * limitations under the License.\n" +
-                " */\n");
+                " */\n") : "/* Code generated by Apache SIS, Apache License 2.0. https://sis.apache.org */\n";
 
-        sb.append("class Operation {\n");
+        sb.append(kernels != null ? "export default class Operation {\n" : "class Operation {\n");
 
         sb.append("/*\n * The valid geographic area for the given coordinate operation (as an array [west, south, east, north]), or undefined\n */\n");
         if (operationGeographicBoundingBox != null) {
@@ -242,79 +546,153 @@ public class DefaultCrsOperationService implements CrsOperationService {
         sb.append(";");
         sb.append("\n\n");
 
-        {
+        if (approximation != null || invApproximation != null) {
+            sb.append("/*\n * Largest error of the approximation in units of the target CRS, measured on a dense sample of the area.\n */\n");
+            sb.append("approximationError = ").append(approximationError(approximation, invApproximation)).append(";\n\n");
+        }
+
+        if (trs != null) {
             sb.append("/*\n * The mathematical formula to transform coordinates\n */\n");
-            final String jsobj = toJavaScriptObject(trs);
+            final String jsobj = (approximation != null) ? approximation.toJavaScript()
+                    : BatchTransformWriter.write(trs, step -> toJavaScriptStep(step, kernels, imports));
             sb.append("#forward = ").append(jsobj).append(";\n");
             sb.append("transform = (src) => {\n\treturn this.#forward.transform(src);\n\t};\n");
+            sb.append("/*\n * Transforms count points from a flat array of coordinates, starting at srcOff, to a flat array starting at dstOff.\n */\n");
+            sb.append("transformArray = (src, srcOff, dst, dstOff, count) => {\n\tthis.#forward.transformArray(src, srcOff, dst, dstOff, count);\n\t};\n");
 
         }
 
-        {
+        if (inverse) {
             sb.append("/*\n * The mathematical formula to inverse transform coordinates, can be undefined.\n */\n");
             if (invtrs != null) {
-                final String jsobj = toJavaScriptObject(invtrs);
+                final String jsobj = (invApproximation != null) ? invApproximation.toJavaScript()
+                        : BatchTransformWriter.write(invtrs, step -> toJavaScriptStep(step, kernels, imports));
                 sb.append("#inverse = ").append(jsobj).append(";\n");
                 sb.append("inverseTransform = (src) => {\n\treturn this.#inverse.transform(src);\n\t};\n");
+                sb.append("inverseTransformArray = (src, srcOff, dst, dstOff, count) => {\n\tthis.#inverse.transformArray(src, srcOff, dst, dstOff, count);\n\t};\n");
             } else {
-                sb.append("const inverseTransform = undefined;");
+                sb.append("inverseTransform = undefined;");
+                sb.append("\n\n");
+                sb.append("inverseTransformArray = undefined;");
                 sb.append("\n\n");
             }
         }
 
         sb.append("}");
 
-        return sb.toString();
+        if (kernels != null) {
+            sb.insert(0, KernelRuntime.imports(imports));
+            return header + compact(sb.toString(), CodeMinifier.Language.JAVASCRIPT_MODULE, profile);
+        }
+        return header + compact(sb.toString(), CodeMinifier.Language.JAVASCRIPT, profile);
     }
 
-    private static String toJavaScriptObject(MathTransform trs) {
+    /**
+     * Returns the largest error of the given approximations, ignoring null ones.
+     */
+    private static double approximationError(TransformApproximation approximation, TransformApproximation invApproximation) {
+        return Math.max(approximation != null ? approximation.maximalError() : 0,
+                        invApproximation != null ? invApproximation.maximalError() : 0);
+    }
 
-        final List<MathTransform> steps = decompose(trs);
+    /**
+     * Applies the given profile on generated code, without header.
+     */
+    private static String compact(final String code, final CodeMinifier.Language language, final String profile) {
+        switch (profile) {
+            case PROFILE_COMPACT: return CodeMinifier.stripComments(code, language);
+            case PROFILE_MINIFIED: return CodeMinifier.minify(code, language, DefaultCrsOperationService::shortName);
+            default: return code;
+        }
+    }
 
-        if (steps.size() == 1) {
-            final MathTransform step = steps.get(0);
-            if (step instanceof ExportableTransform exp) {
-                final String code;
-                try {
-                    code = exp.toECMAScript();
-                } catch (UnsupportedOperationException ex) {
-                    return "TODO " + step.getClass().getName();
-                }
+    /**
+     * Returns a short name for the identifiers created by this class.
+     * Identifiers created by Apache SIS are left unchanged.
+     */
+    private static String shortName(final String identifier) {
+        switch (identifier) {
+            case "#forward": return "#f";
+            case "#inverse": return "#i";
+            case "_Forward": return "_F";
+            case "_Inverse": return "_I";
+        }
+        if (identifier.startsWith("_step") && identifier.length() > 5 && Character.isDigit(identifier.charAt(5))) {
+            return '_' + identifier.substring(5);
+        }
+        return identifier;
+    }
 
-                return code;
-            } else {
+    /**
+     * Generate the JavaScript object of a single step, with the references to constant parameters folded.
+     *
+     * @param kernels Where to register the kernel of the step, or null for inlining the code of the step.
+     * @param imports Local names of imported kernels, by module name. Updated by this method if kernels are used.
+     */
+    private static String toJavaScriptStep(MathTransform step, KernelRuntime kernels, Map<String, String> imports) {
+        if (step instanceof ExportableTransform exp) {
+            final String code;
+            try {
+                code = CodeMinifier.foldConstants(exp.toECMAScript());
+            } catch (UnsupportedOperationException ex) {
                 return "TODO " + step.getClass().getName();
             }
-        } else {
-            final StringBuilder sb = new StringBuilder();
-            final StringBuilder trsSb = new StringBuilder();
-            sb.append("{\n");
-            trsSb.append("\ttransform : function(src) {\n");
-            trsSb.append("\t\tlet dst;\n");
-
-            for (int i = 0, n = steps.size(); i < n; i++) {
-                final MathTransform step = steps.get(i);
-                final String stepObj = toJavaScriptObject(step);
-                sb.append("\t_step").append(i).append(" : ").append(stepObj.replaceAll("\n", "\n\t")).append(",\n");
-                //dst becomes src for next step
-                trsSb.append("\t\tdst = src = this._step").append(i).append(".transform(src);\n");
-            }
-
-            trsSb.append("\t\treturn dst;\n\t}\n");
-
-            sb.append(trsSb.toString());
-            sb.append("}");
-            return sb.toString();
+            return (kernels != null) ? kernels.instantiate(code, imports) : code;
         }
+        return "TODO " + step.getClass().getName();
     }
 
     /**
      * Generate Python
+     *
+     * @see #toJavaScript(MathTransform, MathTransform, boolean, double, GeographicBoundingBox, Envelope, String, KernelRuntime, TransformApproximation, TransformApproximation)
      */
-    private static String toPython(MathTransform trs, MathTransform invtrs, double accuracy, GeographicBoundingBox operationGeographicBoundingBox, Envelope targetCrsDomainOfValidity) {
+    private static String toPython(MathTransform trs, MathTransform invtrs, boolean inverse, double accuracy, GeographicBoundingBox operationGeographicBoundingBox, Envelope targetCrsDomainOfValidity, String profile,
+                                   PolynomialApproximation approximation, PolynomialApproximation invApproximation) {
         final StringBuilder sb = new StringBuilder();
 
-        sb.append(
+        final String header = pythonHeader(profile);
+
+        sb.append("import math\n\n");
+        if (approximation != null) {
+            sb.append(approximation.toPython("_forward"));
+        } else if (trs != null) {
+            sb.append(BatchTransformWriter.writePython(trs, "_forward", DefaultCrsOperationService::toPythonStep));
+        }
+        if (invApproximation != null) {
+            sb.append(invApproximation.toPython("_inverse"));
+        } else if (invtrs != null) {
+            sb.append(BatchTransformWriter.writePython(invtrs, "_inverse", DefaultCrsOperationService::toPythonStep));
+        }
+        sb.append("class Operation:\n");
+
+        appendPythonMetadata(sb, accuracy, operationGeographicBoundingBox, targetCrsDomainOfValidity);
+        if (approximation != null || invApproximation != null) {
+            sb.append("  #\n  # Largest error of the approximation in units of the target CRS, measured on a dense sample of the area.\n  #\n");
+            sb.append("  approximationError = ").append(approximationError(approximation, invApproximation)).append("\n\n");
+        }
+
+        if (trs != null) {
+            sb.append("  #\n  # The mathematical formula to transform coordinates\n  #\n");
+            sb.append("  def transform(self,src): \n    return _forward(src)\n\n");
+
+        }
+
+        if (inverse) {
+            sb.append("  #\n  # The mathematical formula to inverse transform coordinates, can be undefined.\n  #\n");
+            if (invtrs != null) {
+                sb.append("  def inverseTransform(self,src): \n    return _inverse(src)\n\n");
+            } else {
+                sb.append("  inverseTransform = None");
+                sb.append("\n\n");
+            }
+        }
+
+        return header + compact(sb.toString(), CodeMinifier.Language.PYTHON, profile);
+    }
+
+    private static String pythonHeader(String profile) {
+        return PROFILE_FULL.equals(profile) ? (
                 "# Code generated by Apache SIS. https://sis.apache.org \n" +
                 "#\n" +
                 "# Licensed to the Apache Software Foundation (ASF) under one or more\n" +
@@ -331,11 +709,13 @@ public class DefaultCrsOperationService implements CrsOperationService {
                 "# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.\n" +
                 "# See the License for the specific language governing permissions and\n" +
                 "# limitations under the License.\n" +
-                "#\n");
-
-        sb.append("import math\n");
-        sb.append("class Operation:\n");
+                "#\n") : "# Code generated by Apache SIS, Apache License 2.0. https://sis.apache.org\n";
+    }
 
+    /**
+     * Appends the attributes of the Python {@code Operation} class, other than the transform methods.
+     */
+    private static void appendPythonMetadata(StringBuilder sb, double accuracy, GeographicBoundingBox operationGeographicBoundingBox, Envelope targetCrsDomainOfValidity) {
         sb.append("  #\n  # The valid geographic area for the given coordinate operation (as an array [west, south, east, north]), or undefined\n  #\n");
         if (operationGeographicBoundingBox != null) {
             sb.append("  operationGeographicBoundingBox =");
@@ -370,412 +750,83 @@ public class DefaultCrsOperationService implements CrsOperationService {
         sb.append("  accuracy = ");
         sb.append(Double.toString(accuracy));
         sb.append("\n\n");
+    }
 
-        {
-            sb.append("  #\n  # The mathematical formula to transform coordinates\n  #\n");
-            final String pyClass = toPythonClass(trs);
-            sb.append("  class _Forward: ").append(pyClass).append("\n");
-            sb.append("  def transform(self,src): \n    return self._Forward().transform(src)\n\n");
-
+    /**
+     * Generate Python working on NumPy arrays. The {@code transform} and {@code inverseTransform} methods
+     * accept a single point or an array of points with one point per row, and return the same shape.
+     *
+     * @see #toPython(MathTransform, MathTransform, boolean, double, GeographicBoundingBox, Envelope, String, PolynomialApproximation, PolynomialApproximation)
+     */
+    private static String toNumPy(MathTransform trs, MathTransform invtrs, boolean inverse, double accuracy, GeographicBoundingBox operationGeographicBoundingBox, Envelope targetCrsDomainOfValidity, String profile) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("import math\n");
+        sb.append("import numpy as np\n\n");
+        if (trs != null) {
+            sb.append(BatchTransformWriter.writeNumPy(trs, "_forward", DefaultCrsOperationService::toPythonStep, DefaultCrsOperationService::toNumPyStep));
         }
+        if (invtrs != null) {
+            sb.append(BatchTransformWriter.writeNumPy(invtrs, "_inverse", DefaultCrsOperationService::toPythonStep, DefaultCrsOperationService::toNumPyStep));
+        }
+        sb.append("#\n# Applies a function on the columns of the given points, as one array per dimension.\n#\n");
+        sb.append("def _apply(function, points):\n");
+        sb.append("  a = np.asarray(points, dtype=float)\n");
+        sb.append("  r = np.stack(np.broadcast_arrays(*function(list(np.atleast_2d(a).T))), axis=-1)\n");
+        sb.append("  return r[0] if a.ndim == 1 else r\n\n");
+
+        sb.append("class Operation:\n");
+        appendPythonMetadata(sb, accuracy, operationGeographicBoundingBox, targetCrsDomainOfValidity);
 
-        {
+        if (trs != null) {
+            sb.append("  #\n  # The mathematical formula to transform coordinates\n  #\n");
+            sb.append("  def transform(self,src): \n    return _apply(_forward, src)\n\n");
+        }
+        if (inverse) {
             sb.append("  #\n  # The mathematical formula to inverse transform coordinates, can be undefined.\n  #\n");
             if (invtrs != null) {
-                final String pyclass = toPythonClass(invtrs);
-                sb.append("  class _Inverse: ").append(pyclass).append("\n");
-                sb.append("  def inverseTransform(self,src): \n    return self._Inverse().transform(src)\n\n");
+                sb.append("  def inverseTransform(self,src): \n    return _apply(_inverse, src)\n\n");
             } else {
                 sb.append("  inverseTransform = None");
                 sb.append("\n\n");
             }
         }
+        return pythonHeader(profile) + compact(sb.toString(), CodeMinifier.Language.PYTHON, profile);
+    }
 
-        return sb.toString();
+    /**
+     * Generate the body of the Python class of a single step. The JavaScript code of the step is translated once
+     * per kernel, that is once for all steps which differ only by the values of their floating point literals.
+     */
+    private static String toPythonStep(MathTransform step) {
+        final CodeMinifier.Template template = CodeMinifier.parameterize(toJavaScriptStep(step, null, null));
+        return substitute(PYTHON_KERNELS.computeIfAbsent(template.code(), PythonTranslator::translate), template);
     }
 
-    private static String toPythonClass(MathTransform trs) {
-
-        String ecmaCode = toJavaScriptObject(trs);
-        ecmaCode = ecmaCode.replace("\n", "\n\t");
-
-        String pythonCode = ecmaCode;
-
-        //======= elements whatever the depth =================
-        //remove long comments
-        pythonCode = pythonCode.replaceAll("\\/\\*[\\S\\s]*?\\*\\/", "");
-        //remove object starting {
-        pythonCode = pythonCode.replaceAll("\\A\\{", "");
-        //remove object ending }
-        pythonCode = pythonCode.replaceAll("\\}\\Z", "");
-        //replace tabs by 2 spaces
-        pythonCode = pythonCode.replace("\t", "  ");
-
-        {//remove variable creation without initialisation - must be performed after tabs replacement and removal of variable creation.
-            final Pattern objPattern = Pattern.compile("(?<=\\n)( *(let|const) +\\S+ *(?!\\=) *;* *\\n)");
-            final Matcher m = objPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                sb.append(pythonCode.substring(groupEnd, m.start()));
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        //remove variable creation
-        pythonCode = pythonCode.replaceAll("let ", "");
-        pythonCode = pythonCode.replaceAll("const ", "");
-        //replace all this by self
-        pythonCode = pythonCode.replace("this.", "self.");
-        //replace short comments
-        pythonCode = pythonCode.replaceAll("\\/\\/", "#");
-        //replace ; endline
-        pythonCode = pythonCode.replaceAll("; *\n", "\n");
-        //replace &&
-        pythonCode = pythonCode.replaceAll("&&", "and");
-        //replace false
-        pythonCode = pythonCode.replaceAll("false", "False");
-        //replace true
-        pythonCode = pythonCode.replaceAll("true", "True");
-        //replace !
-        pythonCode = pythonCode.replaceAll("!found", "(not found)");
-        //replace Math
-        pythonCode = pythonCode.replaceAll("Math", "math");
-        //replace math.abs
-        pythonCode = pythonCode.replaceAll("math.abs", "math.fabs");
-        //replace Number.POSITIVE_INFINITY
-        pythonCode = pythonCode.replaceAll("Number.POSITIVE_INFINITY", "math.inf");
-        //replace math.sign
-        pythonCode = pythonCode.replaceAll("math.sign\\(", "math.copysign(1,");
-        //replace _expΨ
-        pythonCode = pythonCode.replaceAll("expΨ", "expPsi");
-        //replace Ψ
-        pythonCode = pythonCode.replaceAll("Ψ", "psi");
-        //replace sinφ
-        pythonCode = pythonCode.replaceAll("sinφ", "sinLat");
-        //replace ℯsin
-        pythonCode = pythonCode.replaceAll("ℯsin", "esin");
-        //replace φ
-        pythonCode = pythonCode.replaceAll("φ", "lat");
-        //replace θ
-        pythonCode = pythonCode.replaceAll("θ", "theta");
-        //replace μ
-        pythonCode = pythonCode.replaceAll("μ", "mu");
-        //replace μ
-        pythonCode = pythonCode.replaceAll("λ", "long");
-        //replace ν
-        pythonCode = pythonCode.replaceAll("ν", "pvr");
-        //replace η
-        pythonCode = pythonCode.replaceAll("η", "eta");
-        //replace ξ
-        pythonCode = pythonCode.replaceAll("ξ", "xi");
-        //replace β
-        pythonCode = pythonCode.replaceAll("β", "beta");
-        //replace ρ
-        pythonCode = pythonCode.replaceAll("ρ", "rho");
-
-        {//replace NaN
-            final Pattern objPattern = Pattern.compile("(Number.math.NaN|Number.NaN|NaN)");
-            final Matcher m = objPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                sb.append(pythonCode.substring(groupEnd, m.start()));
-                sb.append("math.nan");
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        {//replace Pi
-            final Pattern objPattern = Pattern.compile("(math.PI|PI)");
-            final Matcher m = objPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                sb.append(pythonCode.substring(groupEnd, m.start()));
-                sb.append("math.pi");
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        {//replace objects
-            final Pattern objPattern = Pattern.compile("( +)(\\S+)( +: +)\\{");
-            final Matcher m = objPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                final int depth = m.group(1).length();
-                final String objName = m.group(2);
-                sb.append(pythonCode.substring(groupEnd, m.start()));
-
-                for (int i = 0; i < depth; i++) sb.append(' ');
-                sb.append("class ").append(objName).append("C :");
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        {//replace method invoke
-            final Pattern objPattern = Pattern.compile("(self._)(step\\d+)(.)");
-            final Matcher m = objPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                final String before = m.group(1);
-                final String step = m.group(2);
-                sb.append(pythonCode, groupEnd, m.start());
-                sb.append(before).append(step).append("C().");
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        {//replace else if
-            final Pattern fctPattern = Pattern.compile("(?<=\\n)( *)(} else if)( *\\( *)(.*)(\\))( +)(\\{)( *\\n)");
-            final Matcher m = fctPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                final String before = m.group(1);
-                final String condition = m.group(4);
-                sb.append(pythonCode, groupEnd, m.start());
-                sb.append(before).append("elif ").append(condition).append(":\n");
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        {//replace if
-            final Pattern fctPattern = Pattern.compile("(?<=\\n)( *)(if)( *\\( *)(.*)(\\))( +)(\\{)( *\\n)");
-            final Matcher m = fctPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                final String before = m.group(1);
-                final String condition = m.group(4);
-                sb.append(pythonCode, groupEnd, m.start());
-                sb.append(before).append("if ").append(condition).append(":\n");
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        {//replace else
-            final Pattern fctPattern = Pattern.compile("(?<=\\n)( *)(} else)( *\\{ *\\n)");
-            final Matcher m = fctPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                final String before = m.group(1);
-                sb.append(pythonCode, groupEnd, m.start());
-                sb.append(before).append("else:\n");
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        //remove object,function,control flow { and }
-        pythonCode = pythonCode.replaceAll("\\{|\\},?", "");
-        {//replace functions
-            final Pattern fctPattern = Pattern.compile("(?<=\\n)( +)(\\S+)( *: *)(function *)(\\()(.*)(\\))");
-            final Matcher m = fctPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                final String before = m.group(1);
-                final String fctName = m.group(2);
-                final String fctParams = m.group(6);
-                sb.append(pythonCode.substring(groupEnd, m.start()));
-                sb.append(before).append("def ").append(fctName).append("(self, ").append(fctParams).append("):");
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        {//replace object properties
-            final Pattern propPattern = Pattern.compile("(?<=\\n)( +)(\\S+)( *: *)(\\S+)( *, *(?=\\n))");
-            final Matcher m = propPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                final String before = m.group(1);
-                final String propName = m.group(2);
-                final String propValue = m.group(4);
-                sb.append(pythonCode.substring(groupEnd, m.start()));
-                sb.append(before).append(propName).append(" = ").append(propValue);
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        {//replace array creation
-            final Pattern arrayPattern = Pattern.compile("(new Array\\()(.*)(\\))");
-            final Matcher m = arrayPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                final String arraySize = m.group(2);
-                sb.append(pythonCode.substring(groupEnd, m.start()));
-                sb.append("[None] * ").append(arraySize);
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        {//replace ternary operator
-            final Pattern ternaryPattern = Pattern.compile("(?<=\\s)(\\S+ +\\S+ +\\S+)( +\\? +)(\\S+)( +: +)(\\S+)");
-            final Matcher m = ternaryPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                final String condition = m.group(1).replace("===", "==");
-                final String valueIf = m.group(3);
-                final String valueElse = m.group(5);
-                sb.append(pythonCode.substring(groupEnd, m.start()));
-                sb.append(valueIf).append(" if ").append(condition).append(" else ").append(valueElse);
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        {//remove extra tabulations when splitting line into several ones.
-            final Pattern blocPattern = Pattern.compile("(?<=\\n)( +)(.+ += +)(.+)(\\n)(( +)(\\+ +)(.+ *)(\\n))+");
-            final Pattern linesPattern = Pattern.compile("(?<=\\n)( +)(\\+ +)(.+ *)(\\n)");
-            final Matcher m = blocPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while(m.find()) {
-                final String before = m.group(1);
-                sb.append(pythonCode.substring(groupEnd, m.start()));
-                sb.append(before).append(m.group(2)).append("(").append(m.group(3));
-                final Matcher lm = linesPattern.matcher(m.group(0));
-                while (lm.find()) {
-                    sb.append("\n").append(before).append("+ ").append(lm.group(3));
-                }
-                sb.append(")\n");
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        {//replace for loops.
-            final Pattern forPattern = Pattern.compile("(?<=\\n)( +)(for \\( *)(.+)( *= *.+)( *; *)(.+)( *; *)(.+)( *\\))( *\\n)");
-            final Matcher m = forPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                final String before = m.group(1);
-                final String variable = m.group(3);
-                final String startString = m.group(4);
-                final String limit = m.group(6);
-                sb.append(pythonCode.substring(groupEnd, m.start()));
-                sb.append(before).append(variable).append(startString).append("\n");
-                sb.append(before).append("while ").append(limit).append(":\n");
-                sb.append(before).append("  ").append(variable).append(" = ").append(variable).append(" + 1\n");
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        {//replace array init from slice.
-            final Pattern forPattern = Pattern.compile("(\\[...)(\\S+)(\\.slice\\()(\\-*\\d+)(,)(\\-*\\d+)(\\)\\])");
-            final Matcher m = forPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                final String variable = m.group(2);
-                final String value1 = m.group(4);
-                final String value2 = m.group(6);
-                sb.append(pythonCode.substring(groupEnd, m.start()));
-                sb.append(variable).append("[").append(value1).append(":").append(value2).append("]");
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        {//replace array slice with 2 numbers.
-            final Pattern forPattern = Pattern.compile("(\\S+)(\\.slice\\()(\\-*\\d+)(,)(\\-*\\d+)(\\))");
-            final Matcher m = forPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                final String variable = m.group(1);
-                final String value1 = m.group(3);
-                final String value2 = m.group(5);
-                sb.append(pythonCode.substring(groupEnd, m.start()));
-                sb.append(variable).append("[").append(value1).append(":").append(value2).append("]");
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        {//replace array slice with one number.
-            final Pattern forPattern = Pattern.compile("(\\S+)(\\.slice\\()(\\-*\\d+)(\\))");
-            final Matcher m = forPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                final String variable = m.group(1);
-                final String value = m.group(3);
-                sb.append(pythonCode.substring(groupEnd, m.start()));
-                sb.append("[").append(variable).append("[").append(value).append("]]");
-                groupEnd = m.end();
-            }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-
-        {//replace .concat(..)
-            final Pattern forPattern = Pattern.compile("(\\.concat\\()(\\S+)((\\)\\n))");
-            final Matcher m = forPattern.matcher(pythonCode);
-            final StringBuilder sb = new StringBuilder();
-            int groupEnd = 0;
-            while (m.find()) {
-                final String content = m.group(2);
-                final String result = content.replace(").concat(", " + ");
-                sb.append(pythonCode.substring(groupEnd, m.start()));
-                sb.append(" + ").append(result);
-                groupEnd = m.end();
+    /**
+     * Generate the body of the Python class of a single step applied on NumPy arrays,
+     * or null if the step cannot be applied on arrays, for example because of a loop.
+     */
+    private static String toNumPyStep(MathTransform step) {
+        final CodeMinifier.Template template = CodeMinifier.parameterize(toJavaScriptStep(step, null, null));
+        final String code = NUMPY_KERNELS.computeIfAbsent(template.code(), js -> {
+            try {
+                return PythonTranslator.translateNumPy(js);
+            } catch (UnsupportedOperationException e) {
+                return "";
             }
-            sb.append(pythonCode.substring(groupEnd));
-            pythonCode = sb.toString();
-        }
-
-        return pythonCode;
+        });
+        return code.isEmpty() ? null : substitute(code, template);
     }
 
-    private static List<MathTransform> decompose(MathTransform trs) {
-        final List<MathTransform> steps = MathTransforms.getSteps(trs);
-
-        if (steps.size() == 1) {
-            return steps;
-        }
-
-        final List<MathTransform> decompose = new ArrayList<>();
-        for (MathTransform step : steps) {
-            decompose.addAll(decompose(step));
+    /**
+     * Replaces the parameters of a translated kernel by the values of the step.
+     */
+    private static String substitute(String code, final CodeMinifier.Template template) {
+        final List<String> parameters = template.parameters();
+        for (int i = parameters.size(); --i >= 0;) {
+            code = code.replace(parameters.get(i), template.values().get(i));
         }
-        return decompose;
+        return code;
     }
 
 }
@@ -0,0 +1,211 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geomatys.crsservice.configuration.IAUGeodeticAuthorityFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.sis.referencing.CRS;
+import org.apache.sis.util.collection.Cache;
+import org.opengis.geometry.Envelope;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.cs.CoordinateSystem;
+import org.opengis.util.FactoryException;
+
+/**
+ * Encoded JSON definitions of coordinate reference systems identified by a code.
+ * Definitions never change for a given code and registry version, so they are encoded only once.
+ * All IAU definitions can be encoded in advance by {@link #precomputeIAU()}, other codes are encoded on first request.
+ *
+ * <p>The {@code "code"} property echoes the code as spelled in the request. It is therefore not stored,
+ * but written in front of the stored properties when a response is requested.</p>
+ *
+ * <p>Definitions are also stored by {@linkplain CrsFingerprint fingerprint}, so that a CRS spelled as a WKT
+ * or an URN reuses the definition encoded for another spelling. The {@linkplain CrsFingerprint#withMetadata
+ * fingerprint with metadata} is used because the domain of validity is part of the definition.
+ * Those definitions are softly referenced, because any number of WKT can be requested.</p>
+ */
+final class DefinitionStore {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final System.Logger logger = System.getLogger("com.geomatys.crsservice.service");
+
+    /**
+     * Encoded definitions for a given IAU registry version.
+     *
+     * @param version IAU registry version.
+     * @param definitions JSON object without the code property, by normalized code and axis order.
+     * @param fingerprints JSON object without the code property, by fingerprint with metadata. Values are softly referenced.
+     */
+    private record Snapshot(String version, Map<Key, byte[]> definitions, Map<String, byte[]> fingerprints) {}
+
+    private record Key(String code, boolean longitudeFirst) {}
+
+    private volatile Snapshot snapshot = new Snapshot("", new ConcurrentHashMap<>(), new Cache<>());
+
+    /**
+     * Returns the encoded definition of the given source, or null if not yet encoded.
+     *
+     * @param source CRS code as given in the request.
+     * @param longitudeFirst Whether longitude first axis order is forced.
+     * @return JSON definition, or null.
+     */
+    byte[] get(final String source, final boolean longitudeFirst) {
+        final Key key = key(source, longitudeFirst);
+        if (key == null) return null;
+        final byte[] properties = current().definitions().get(key);
+        return (properties != null) ? withCode(source, properties) : null;
+    }
+
+    /**
+     * Encodes the definition of the given CRS, or reuses the definition of an equivalent CRS,
+     * and keeps it for next requests if the source is a code.
+     *
+     * @param source CRS code, WKT or URN as given in the request.
+     * @param longitudeFirst Whether longitude first axis order is forced.
+     * @param crs The CRS parsed from the source.
+     * @return JSON definition.
+     */
+    byte[] put(final String source, final boolean longitudeFirst, final CoordinateReferenceSystem crs) {
+        final Snapshot current = current();
+        final byte[] properties = current.fingerprints().computeIfAbsent(CrsFingerprint.withMetadata(crs), k -> encode(crs));
+        final Key key = key(source, longitudeFirst);
+        if (key != null) {
+            current.definitions().putIfAbsent(key, properties);
+        }
+        return withCode(source, properties);
+    }
+
+    /**
+     * Encodes all IAU definitions with both axis orders.
+     * This method may be long and should be invoked in a background thread.
+     */
+    void precomputeIAU() {
+        final long start = System.nanoTime();
+        final Snapshot target = current();
+        final var factory = new IAUGeodeticAuthorityFactory();
+        int count = 0;
+        try {
+            for (String code : factory.getAuthorityCodes(CoordinateReferenceSystem.class)) {
+                final String source = "IAU:" + code;
+                for (boolean longitudeFirst : new boolean[] {false, true}) {
+                    final Key key = key(source, longitudeFirst);
+                    if (target.definitions().containsKey(key)) continue;
+                    try {
+                        target.definitions().putIfAbsent(key, encode(DefaultCrsOperationService.parseCRS(source, longitudeFirst)));
+                        count++;
+                    } catch (FactoryException | RuntimeException e) {
+                        logger.log(System.Logger.Level.DEBUG, "Cannot encode definition of " + source, e);
+                    }
+                }
+                if (snapshot != target) {
+                    // The registry has been reloaded meanwhile. Stop here, remaining definitions will be encoded lazily.
+                    return;
+                }
+            }
+        } catch (FactoryException e) {
+            logger.log(System.Logger.Level.WARNING, "Cannot list IAU codes", e);
+        }
+        logger.log(System.Logger.Level.INFO, "{0} IAU definitions encoded in {1} ms", count, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Returns the definitions of the current registry version, discarding the previous ones if the registry has been reloaded.
+     */
+    private Snapshot current() {
+        final String version = IAUGeodeticAuthorityFactory.getRegistryVersion();
+        Snapshot current = snapshot;
+        if (!current.version().equals(version)) {
+            synchronized (this) {
+                current = snapshot;
+                if (!current.version().equals(version)) {
+                    snapshot = current = new Snapshot(version, new ConcurrentHashMap<>(), new Cache<>());
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Returns the key for the given source, or null if the source is not a code (e.g. a WKT).
+     */
+    private static Key key(final String source, final boolean longitudeFirst) {
+        final String code = source.strip();
+        if (code.isEmpty() || code.indexOf('[') >= 0 || code.indexOf('(') >= 0) {
+            return null;
+        }
+        return new Key(code.toUpperCase(Locale.ROOT), longitudeFirst);
+    }
+
+    /**
+     * Encodes all properties of the JSON definition except the code.
+     */
+    private static byte[] encode(final CoordinateReferenceSystem crs) {
+        final Map<String,Object> map = new LinkedHashMap<>();
+        final Envelope domainOfValidity = CRS.getDomainOfValidity(crs);
+        if (domainOfValidity != null) {
+            map.put("domainOfValidity", new double[]{domainOfValidity.getMinimum(0), domainOfValidity.getMinimum(1), domainOfValidity.getMaximum(0), domainOfValidity.getMaximum(1)});
+        }
+        final CoordinateSystem cs = crs.getCoordinateSystem();
+        map.put("units", cs.getAxis(0).getUnit().getSymbol());
+
+        final List<String> axisDirection = new ArrayList<>(cs.getDimension());
+        for (int i = 0; i < cs.getDimension(); i++) {
+            axisDirection.add(cs.getAxis(i).getDirection().identifier());
+        }
+        map.put("axisDirection", axisDirection);
+        try {
+            return MAPPER.writeValueAsBytes(map);
+        } catch (JsonProcessingException ex) {
+            throw new RuntimeException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Returns the JSON object with the given code inserted as the first property.
+     */
+    private static byte[] withCode(final String source, final byte[] properties) {
+        final byte[] code;
+        try {
+            code = MAPPER.writeValueAsBytes(source);
+        } catch (JsonProcessingException ex) {
+            throw new RuntimeException(ex.getMessage(), ex);
+        }
+        final byte[] json = new byte[properties.length + code.length + 8];
+        int p = put(json, 0, "{\"code\":".getBytes(StandardCharsets.US_ASCII));
+        p = put(json, p, code);
+        json[p++] = ',';
+        System.arraycopy(properties, 1, json, p, properties.length - 1);
+        return json;
+    }
+
+    private static int put(final byte[] target, final int offset, final byte[] bytes) {
+        System.arraycopy(bytes, 0, target, offset, bytes.length);
+        return offset + bytes.length;
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import org.opengis.geometry.Envelope;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.TransformException;
+
+/**
+ * Regular grid of transformed points over a two-dimensional area, with bilinear interpolation between them.
+ * Like the grids of {@code LocalizationGridBuilder} in Apache SIS, the grid stores the residuals of the points
+ * after an affine transform fitted by least squares, which is added back after interpolation.
+ * The residuals are small compared to the coordinates, so they are stored as single-precision numbers.
+ *
+ * <p>The number of cells along each axis starts at {@value #INITIAL_SIZE}. The interpolation is verified on the
+ * points of a grid twice as dense, which contains the nodes, the middle of the edges and the center of each cell.
+ * The number of cells is doubled along the axes of the edges where the error is larger than half the tolerance,
+ * or along both axes if only the centers are in error, until all errors are within half the tolerance.
+ * The other half is a margin for the points between the samples. Points outside the area are transformed to NaN.
+ * The refinement stops when the exact transforms have been evaluated on {@value TransformApproximation#MAX_EVALUATIONS} points.</p>
+ */
+final class InterpolationGrid implements TransformApproximation {
+
+    /**
+     * Number of cells along each axis of the first grid.
+     */
+    private static final int INITIAL_SIZE = 4;
+
+    /**
+     * Maximal number of cells along each axis.
+     */
+    private static final int MAX_SIZE = 1024;
+
+    /**
+     * Maximal number of nodes in a grid.
+     */
+    private static final int MAX_NODES = 513 * 513;
+
+    /**
+     * Coordinates of the lower corner of the area.
+     */
+    private final double x0, y0;
+
+    /**
+     * Number of cells per unit of source coordinates, along each axis.
+     */
+    private final double scaleX, scaleY;
+
+    /**
+     * Number of cells along each axis.
+     */
+    private final int sizeX, sizeY;
+
+    /**
+     * Number of target dimensions.
+     */
+    private final int dimension;
+
+    /**
+     * Coefficients of the affine transform from grid coordinates, as (constant, x factor, y factor) for each dimension.
+     */
+    private final double[] affine;
+
+    /**
+     * Residuals of the nodes after the affine transform, in (row, column, dimension) order.
+     */
+    private final float[] residuals;
+
+    /**
+     * Largest distance between the interpolation and the exact transform found on the verification sample.
+     */
+    private double maximalError;
+
+    /**
+     * Creates a grid from the values of the transform at its nodes.
+     *
+     * @param values Target coordinates of the {@code (sizeX+1)(sizeY+1)} nodes, in (row, column, dimension) order.
+     */
+    private InterpolationGrid(final Envelope area, final int sizeX, final int sizeY, final int dimension, final double[] values) {
+        this.x0 = area.getMinimum(0);
+        this.y0 = area.getMinimum(1);
+        this.scaleX = sizeX / area.getSpan(0);
+        this.scaleY = sizeY / area.getSpan(1);
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.dimension = dimension;
+        this.affine = new double[dimension * 3];
+        this.residuals = new float[values.length];
+        /*
+         * On a regular grid, the least-squares factors along the two axes are independent
+         * because the deviations of the x and y indices from their means are uncorrelated.
+         */
+        final int nx = sizeX + 1;
+        final int ny = sizeY + 1;
+        final double meanX = sizeX / 2.0;
+        final double meanY = sizeY / 2.0;
+        double varianceX = 0, varianceY = 0;
+        for (int i = 0; i < nx; i++) {
+            varianceX += (i - meanX) * (i - meanX) * ny;
+        }
+        for (int j = 0; j < ny; j++) {
+            varianceY += (j - meanY) * (j - meanY) * nx;
+        }
+        for (int d = 0; d < dimension; d++) {
+            double sum = 0, sx = 0, sy = 0;
+            for (int j = 0; j < ny; j++) {
+                for (int i = 0; i < nx; i++) {
+                    final double v = values[(j * nx + i) * dimension + d];
+                    sum += v;
+                    sx  += (i - meanX) * v;
+                    sy  += (j - meanY) * v;
+                }
+            }
+            final double bx = sx / varianceX;
+            final double by = sy / varianceY;
+            affine[d * 3]     = sum / (nx * ny) - bx * meanX - by * meanY;
+            affine[d * 3 + 1] = bx;
+            affine[d * 3 + 2] = by;
+            for (int j = 0; j < ny; j++) {
+                for (int i = 0; i < nx; i++) {
+                    final int k = (j * nx + i) * dimension + d;
+                    residuals[k] = (float) (values[k] - (affine[d * 3] + bx * i + by * j));
+                }
+            }
+        }
+    }
+
+    /**
+     * Samples the given transform over the given area.
+     * Errors are distances in units of the target coordinates of {@code trs}.
+     *
+     * @param trs The transform to sample, with two source dimensions.
+     * @param area The area where the grid is used, in source coordinates.
+     * @param tolerance Maximal error of the interpolation.
+     * @return A grid within half the tolerance on the verification sample.
+     * @throws IllegalArgumentException if the transform has non-finite values in the area,
+     *         or if the largest grid is not within the tolerance.
+     * @throws TransformException if the transform cannot be evaluated in the area.
+     */
+    static InterpolationGrid fit(final MathTransform trs, final Envelope area, final double tolerance) throws TransformException {
+        return fit(trs, null, area, tolerance);
+    }
+
+    /**
+     * Samples the inverse of a transform over the given area.
+     * Errors are distances between a point and the result of {@code forward} applied on its interpolated inverse,
+     * so that they are in units of the target coordinates of {@code forward} like the errors of the forward grid.
+     *
+     * @param inverse The transform to sample, with two source dimensions.
+     * @param forward The inverse of {@code inverse}.
+     * @param area The area where the grid is used, in source coordinates of {@code inverse}.
+     * @param tolerance Maximal error of the interpolation.
+     * @return A grid within half the tolerance on the verification sample.
+     * @throws IllegalArgumentException if the transform has non-finite values in the area,
+     *         or if the largest grid is not within the tolerance.
+     * @throws TransformException if the transforms cannot be evaluated in the area.
+     */
+    static InterpolationGrid fitInverse(final MathTransform inverse, final MathTransform forward, final Envelope area, final double tolerance) throws TransformException {
+        return fit(inverse, forward, area, tolerance);
+    }
+
+    private static InterpolationGrid fit(final MathTransform trs, final MathTransform check, final Envelope area, final double tolerance) throws TransformException {
+        TransformApproximation.checkArguments(trs, area, tolerance);
+        final int dimension = trs.getTargetDimensions();
+        int sizeX = INITIAL_SIZE;
+        int sizeY = INITIAL_SIZE;
+        double[] values = transform(trs, nodes(area, sizeX, sizeY), dimension);
+        long evaluations = (sizeX + 1) * (sizeY + 1);
+        while (true) {
+            // Points of the verification sample, transformed again by the forward transform if approximating an inverse.
+            final long count = (sizeX * 2L + 1) * (sizeY * 2L + 1);
+            evaluations = TransformApproximation.evaluate(evaluations, (check != null) ? 2 * count : count, tolerance);
+            final double[] densePoints = nodes(area, sizeX * 2, sizeY * 2);
+            final double[] denseValues = transform(trs, densePoints, dimension);
+            final var grid = new InterpolationGrid(area, sizeX, sizeY, dimension, values);
+            final double[] errors = grid.verify(densePoints, denseValues, check);
+            final double threshold = tolerance / 2;
+            if (errors[0] <= threshold && errors[1] <= threshold && errors[2] <= threshold) {
+                return grid;
+            }
+            boolean refineX = errors[0] > threshold;
+            boolean refineY = errors[1] > threshold;
+            if (!(refineX || refineY)) {
+                refineX = refineY = true;
+            }
+            final int nextX = refineX ? sizeX * 2 : sizeX;
+            final int nextY = refineY ? sizeY * 2 : sizeY;
+            if (nextX > MAX_SIZE || nextY > MAX_SIZE || (nextX + 1) * (nextY + 1) > MAX_NODES) {
+                throw new IllegalArgumentException("Cannot interpolate the operation within a tolerance of " + tolerance
+                        + " over the area of interest. Use a larger tolerance or a smaller area.");
+            }
+            // The nodes of the next grid are taken from the verification sample of this grid.
+            values = subsample(denseValues, sizeX * 2 + 1, refineX ? 1 : 2, refineY ? 1 : 2, nextX + 1, nextY + 1, dimension);
+            sizeX = nextX;
+            sizeY = nextY;
+        }
+    }
+
+    /**
+     * Returns the source coordinates of the nodes of a grid of the given size, in (row, column) order.
+     */
+    private static double[] nodes(final Envelope area, final int sizeX, final int sizeY) {
+        final double[] points = new double[(sizeX + 1) * (sizeY + 1) * 2];
+        int k = 0;
+        for (int j = 0; j <= sizeY; j++) {
+            for (int i = 0; i <= sizeX; i++) {
+                points[k++] = area.getMinimum(0) + area.getSpan(0) * i / sizeX;
+                points[k++] = area.getMinimum(1) + area.getSpan(1) * j / sizeY;
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Returns the values of a grid at every {@code stepX} column and {@code stepY} row.
+     */
+    private static double[] subsample(final double[] values, final int columns, final int stepX, final int stepY,
+                                      final int nx, final int ny, final int dimension)
+    {
+        final double[] result = new double[nx * ny * dimension];
+        int k = 0;
+        for (int j = 0; j < ny; j++) {
+            for (int i = 0; i < nx; i++) {
+                System.arraycopy(values, ((j * stepY) * columns + i * stepX) * dimension, result, k, dimension);
+                k += dimension;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Transforms the given points, and verifies that all results are finite.
+     */
+    private static double[] transform(final MathTransform trs, final double[] points, final int dimension) throws TransformException {
+        final double[] values = new double[points.length / 2 * dimension];
+        trs.transform(points, 0, values, 0, points.length / 2);
+        for (final double v : values) {
+            if (!Double.isFinite(v)) {
+                throw new IllegalArgumentException("The operation has no value at some points of the area of interest.");
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Compares the interpolation with the exact values on the verification sample, and updates {@link #maximalError}.
+     * The sample is a grid with {@code 2*sizeX+1} columns and {@code 2*sizeY+1} rows.
+     *
+     * @param points Source coordinates of the verification sample.
+     * @param expected Exact target coordinates of the verification sample.
+     * @param check If non-null, the inverse of the sampled transform used for measuring errors in its source coordinates.
+     * @return Largest errors in the middle of the edges along x, in the middle of the edges along y, and elsewhere.
+     */
+    private double[] verify(final double[] points, double[] expected, final MathTransform check) throws TransformException {
+        final int count = points.length / 2;
+        double[] actual = new double[count * dimension];
+        for (int i = 0; i < count; i++) {
+            transform(points, i * 2, actual, i * dimension);
+        }
+        int dim = dimension;
+        if (check != null) {
+            final double[] back = new double[count * 2];
+            check.transform(actual, 0, back, 0, count);
+            actual = back;
+            expected = points;
+            dim = 2;
+        }
+        final int columns = sizeX * 2 + 1;
+        final double[] errors = new double[3];
+        for (int k = 0; k < count; k++) {
+            double sum = 0;
+            for (int d = 0; d < dim; d++) {
+                final double delta = actual[k * dim + d] - expected[k * dim + d];
+                sum += delta * delta;
+            }
+            final double error = Math.sqrt(sum);
+            final boolean oddX = (k % columns) % 2 != 0;
+            final boolean oddY = (k / columns) % 2 != 0;
+            final int type = (oddX && !oddY) ? 0 : (oddY && !oddX) ? 1 : 2;
+            if (Double.isNaN(error) || error > errors[type]) {
+                errors[type] = error;
+            }
+        }
+        maximalError = Math.max(errors[0], Math.max(errors[1], errors[2]));
+        return errors;
+    }
+
+    /**
+     * Transforms a single point with the same arithmetic as the generated code.
+     */
+    private void transform(final double[] src, final int srcOff, final double[] dst, int dstOff) {
+        final double x = (src[srcOff] - x0) * scaleX;
+        final double y = (src[srcOff + 1] - y0) * scaleY;
+        if (!(x >= -MARGIN && x <= sizeX + MARGIN && y >= -MARGIN && y <= sizeY + MARGIN)) {
+            for (int d = 0; d < dimension; d++) {
+                dst[dstOff++] = Double.NaN;
+            }
+            return;
+        }
+        final int i = Math.min(Math.max((int) Math.floor(x), 0), sizeX - 1);
+        final int j = Math.min(Math.max((int) Math.floor(y), 0), sizeY - 1);
+        final double fx = x - i;
+        final double fy = y - j;
+        final int row = (sizeX + 1) * dimension;
+        final int p = (j * (sizeX + 1) + i) * dimension;
+        for (int d = 0; d < dimension; d++) {
+            final int k = p + d;
+            dst[dstOff++] = affine[d * 3] + affine[d * 3 + 1] * x + affine[d * 3 + 2] * y
+                    + (1 - fy) * ((1 - fx) * residuals[k] + fx * residuals[k + dimension])
+                    + fy * ((1 - fx) * residuals[k + row] + fx * residuals[k + row + dimension]);
+        }
+    }
+
+    @Override
+    public double maximalError() {
+        return maximalError;
+    }
+
+    /**
+     * Returns the Base64 encoding of the residuals as little-endian single-precision numbers.
+     */
+    private String encodedResiduals() {
+        final ByteBuffer buffer = ByteBuffer.allocate(residuals.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(residuals);
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    /**
+     * Writes the JavaScript object of the grid. The residuals are decoded from Base64 when the object is created.
+     */
+    @Override
+    public String toJavaScript() {
+        final int row = (sizeX + 1) * dimension;
+        final var sb = new StringBuilder(residuals.length * 6 + 2000);
+        sb.append("{\n")
+          .append("g: (() => {\n")
+          .append("\tconst s = \"").append(encodedResiduals()).append("\";\n")
+          .append("\tconst t = \"ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/\";\n")
+          .append("\tconst b = new Uint8Array(").append(residuals.length * Float.BYTES).append(");\n")
+          .append("\tfor (let i = 0, k = 0; i < s.length; i += 4) {\n")
+          .append("\t\tconst n = (t.indexOf(s[i]) & 63) << 18 | (t.indexOf(s[i + 1]) & 63) << 12 | (t.indexOf(s[i + 2]) & 63) << 6 | (t.indexOf(s[i + 3]) & 63);\n")
+          .append("\t\tb[k++] = n >> 16;\n")
+          .append("\t\tif (k < b.length) b[k++] = n >> 8 & 255;\n")
+          .append("\t\tif (k < b.length) b[k++] = n & 255;\n")
+          .append("\t}\n")
+          .append("\tconst v = new DataView(b.buffer), g = new Float32Array(b.length / 4);\n")
+          .append("\tfor (let i = 0; i < g.length; i++) g[i] = v.getFloat32(4 * i, true);\n")
+          .append("\treturn g;\n")
+          .append("})(),\n")
+          .append("transform(src) {\n")
+          .append("\tconst dst = new Array(").append(dimension).append(");\n")
+          .append("\tthis.transformArray(src, 0, dst, 0, 1);\n")
+          .append("\treturn dst;\n")
+          .append("},\n")
+          .append("transformArray(src, srcOff, dst, dstOff, count) {\n")
+          .append("\tconst g = this.g;\n")
+          .append("\twhile (--count >= 0) {\n")
+          .append("\t\tconst x = (src[srcOff++]").append(TransformApproximation.offset(x0)).append(") * ").append(scaleX)
+          .append(", y = (src[srcOff++]").append(TransformApproximation.offset(y0)).append(") * ").append(scaleY).append(";\n")
+          .append("\t\tif (!(x >= ").append(-MARGIN).append(" && x <= ").append(sizeX + MARGIN)
+          .append(" && y >= ").append(-MARGIN).append(" && y <= ").append(sizeY + MARGIN).append(")) {\n")
+          .append("\t\t\tfor (let d = 0; d < ").append(dimension).append("; d++) dst[dstOff++] = NaN;\n")
+          .append("\t\t\tcontinue;\n")
+          .append("\t\t}\n")
+          .append("\t\tconst i = Math.min(Math.max(Math.floor(x), 0), ").append(sizeX - 1)
+          .append("), j = Math.min(Math.max(Math.floor(y), 0), ").append(sizeY - 1).append(");\n")
+          .append("\t\tconst fx = x - i, fy = y - j, p = (j * ").append(sizeX + 1).append(" + i) * ").append(dimension).append(";\n");
+        for (int d = 0; d < dimension; d++) {
+            sb.append("\t\tdst[dstOff++] = ").append(affine[d * 3]).append(" + ").append(affine[d * 3 + 1]).append(" * x + ")
+              .append(affine[d * 3 + 2]).append(" * y")
+              .append(" + (1 - fy) * ((1 - fx) * g[").append(index(d)).append("] + fx * g[").append(index(d + dimension)).append("])")
+              .append(" + fy * ((1 - fx) * g[").append(index(d + row)).append("] + fx * g[").append(index(d + row + dimension)).append("]);\n");
+        }
+        sb.append("\t}\n")
+          .append("}\n")
+          .append("}");
+        return sb.toString();
+    }
+
+    /**
+     * Returns the JavaScript expression of the index of a residual at the given offset from the first one of the cell.
+     */
+    private static String index(final int offset) {
+        return (offset == 0) ? "p" : "p + " + offset;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * JavaScript modules of the kernels used by operations generated as ES modules.
+ * A kernel is the code of a transform step with its floating point literals replaced by parameters.
+ * Each kernel module exports a default function creating the step for given parameter values,
+ * and is identified by a hash of its content. Kernel modules are therefore immutable,
+ * and shared by all operations using the same kind of step.
+ *
+ * <p>Kernels are registered when an operation using them is generated. Because the importing modules are cached
+ * by clients and by other instances, kernels must outlive this instance: they are also written in a directory
+ * shared with the operation store, and can be verified against their name when received from another instance.</p>
+ */
+final class KernelRuntime {
+
+    /**
+     * Path of kernel modules, relative to the operation end point.
+     */
+    static final String DIRECTORY = "./runtime/";
+
+    /**
+     * Number of bytes of the hash used in module names.
+     */
+    private static final int HASH_LENGTH = 10;
+
+    /**
+     * Prefix of the keys of kernel modules in requests to other instances.
+     */
+    static final String KEY_PREFIX = "kernel\n";
+
+    /**
+     * Pattern of module names, which is also a safe file name.
+     */
+    private static final Pattern NAME = Pattern.compile("[0-9a-f]{" + 2 * HASH_LENGTH + "}\\.js");
+
+    private final System.Logger logger = System.getLogger("com.geomatys.crsservice.service");
+
+    /**
+     * Kernel modules by name (hash followed by {@code ".js"}).
+     */
+    private final Map<String, byte[]> modules = new ConcurrentHashMap<>();
+
+    /**
+     * Directory where kernel modules are persisted, or null if they are kept in memory only.
+     */
+    private volatile Path directory;
+
+    /**
+     * Persists the kernel modules in the given directory, and reads the modules registered by previous
+     * or other instances from it. Modules are content-addressed, so files never become obsolete.
+     *
+     * @param directory Directory of the kernel modules, shared with other instances.
+     * @throws IOException if the directory cannot be created.
+     */
+    void setDirectory(final Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Returns an expression creating the given step with a kernel module.
+     * The kernel is registered if new, and imported in the given map if not already done.
+     *
+     * @param step JavaScript code of the step, as an object literal.
+     * @param imports Local names of imported kernels, by module name. Updated by this method.
+     * @return JavaScript expression creating the step.
+     */
+    String instantiate(final String step, final Map<String, String> imports) {
+        final CodeMinifier.Template template = CodeMinifier.parameterize(step);
+        final String module = "export default (" + String.join(", ", template.parameters()) + ") => (" + template.code() + ");\n";
+        final byte[] bytes = module.getBytes(StandardCharsets.UTF_8);
+        final String name = hash(bytes) + ".js";
+        if (modules.putIfAbsent(name, bytes) == null) {
+            save(name, bytes);
+        }
+        final String kernel = imports.computeIfAbsent(name, k -> "k" + imports.size());
+        return kernel + '(' + String.join(", ", template.values()) + ')';
+    }
+
+    /**
+     * Returns the import declarations of the given kernels.
+     *
+     * @param imports Local names of imported kernels, by module name.
+     * @return Import declarations, one per line.
+     */
+    static String imports(final Map<String, String> imports) {
+        final StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : imports.entrySet()) {
+            sb.append("import ").append(entry.getValue()).append(" from \"").append(DIRECTORY).append(entry.getKey()).append("\";\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns whether the given text is a well-formed module name.
+     */
+    static boolean isName(final String name) {
+        return NAME.matcher(name).matches();
+    }
+
+    /**
+     * Returns the content of the kernel module of the given name, from memory or from the directory.
+     *
+     * @param name Module name, as a hash followed by {@code ".js"}.
+     * @return Module content, or null if unknown.
+     */
+    byte[] get(final String name) {
+        byte[] module = modules.get(name);
+        final Path directory = this.directory;
+        if (module == null && directory != null && isName(name)) {
+            try {
+                module = Files.readAllBytes(directory.resolve(name));
+                modules.putIfAbsent(name, module);
+            } catch (NoSuchFileException e) {
+                return null;
+            } catch (IOException e) {
+                logger.log(System.Logger.Level.WARNING, "Cannot read kernel " + name, e);
+            }
+        }
+        return module;
+    }
+
+    /**
+     * Registers a kernel module received from another instance, if its content matches its name.
+     *
+     * @param name Module name, as a hash followed by {@code ".js"}.
+     * @param module Module content.
+     * @return Whether the module has been accepted.
+     */
+    boolean add(final String name, final byte[] module) {
+        if (!name.equals(hash(module) + ".js")) {
+            return false;
+        }
+        if (modules.putIfAbsent(name, module) == null) {
+            save(name, module);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the given module in the directory if any. The file is renamed atomically,
+     * so other instances never read a partial module.
+     */
+    private void save(final String name, final byte[] module) {
+        final Path directory = this.directory;
+        if (directory != null) {
+            try {
+                final Path file = directory.resolve(name);
+                if (Files.notExists(file)) {
+                    final Path tmp = Files.createTempFile(directory, name, ".tmp");
+                    Files.write(tmp, module);
+                    Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                logger.log(System.Logger.Level.WARNING, "Cannot write kernel " + name, e);
+            }
+        }
+    }
+
+    private static String hash(final byte[] content) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return HexFormat.of().formatHex(digest.digest(content), 0, HASH_LENGTH);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import com.geomatys.crsservice.configuration.IAUGeodeticAuthorityFactory;
+import com.geomatys.crsservice.service.CrsOperationService.OperationParameters;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+import org.springframework.core.io.ClassPathResource;
+
+/**
+ * Operations generated at build time by {@code OperationBundleTool}, and packaged as class-path resources.
+ * Bundles are used only if they have been generated from the same IAU definitions as the ones currently loaded,
+ * and only for requests using default options. All other requests fall back on live code generation.
+ */
+public final class OperationBundles {
+
+    /**
+     * Class-path directory of the bundles.
+     */
+    public static final String DIRECTORY = "operation-bundles/";
+
+    /**
+     * Name of the file giving the IAU registry version the bundles have been generated from.
+     */
+    public static final String MANIFEST = DIRECTORY + "manifest.properties";
+
+    /**
+     * Manifest property giving the IAU registry version.
+     */
+    public static final String REGISTRY_VERSION = "registryVersion";
+
+    private final System.Logger logger = System.getLogger("com.geomatys.crsservice.service");
+
+    /**
+     * Registry version of the bundles, or null if not yet read. Empty if there is no bundle.
+     */
+    private volatile String bundleVersion;
+
+    /**
+     * Returns the path, relative to the class-path root, of the bundle for the given operation.
+     * Only the codes with a letter-only authority followed by digits and colons are accepted,
+     * for example {@code "IAU:2015:1000"}.
+     *
+     * @param source Source CRS code.
+     * @param target Target CRS code.
+     * @param format Output format.
+     * @return Resource path of the compressed bundle, or null if the operation cannot be bundled.
+     */
+    public static String resourcePath(final String source, final String target, final String format) {
+        final String extension;
+        if (DefaultCrsOperationService.FORMAT_JAVASCRIPT.equals(format)) {
+            extension = "javascript/";
+        } else if (DefaultCrsOperationService.FORMAT_PYTHON.equals(format)) {
+            extension = "python/";
+        } else {
+            return null;
+        }
+        final String s = fileName(source);
+        final String t = fileName(target);
+        if (s == null || t == null) {
+            return null;
+        }
+        return DIRECTORY + extension + s + "__" + t + ".gz";
+    }
+
+    /**
+     * Returns the given code in a form usable as a file name, or null if the code has an unexpected form.
+     */
+    private static String fileName(final String code) {
+        final String name = code.strip().toUpperCase(Locale.ROOT);
+        final int s = name.indexOf(':');
+        if (s <= 0) return null;
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            final boolean valid = (i < s) ? (c >= 'A' && c <= 'Z') : ((c >= '0' && c <= '9') || c == ':');
+            if (!valid) return null;
+        }
+        return name.replace(':', '_');
+    }
+
+    /**
+     * Returns the bundled code for the given operation, or null if none.
+     *
+     * @param request Requested operation.
+     * @return The operation code, or null if the operation has not been bundled.
+     */
+    byte[] find(final OperationParameters request) {
+        if (request.sourceLongFirst() || request.targetLongFirst() || request.aoi() != null || request.time() != null || request.tolerance() != null
+                || !(request.profile() == null || DefaultCrsOperationService.PROFILE_FULL.equals(request.profile()))
+                || !(request.direction() == null || DefaultCrsOperationService.DIRECTION_BOTH.equals(request.direction())))
+        {
+            return null;
+        }
+        final String path = resourcePath(request.source(), request.target(), request.format());
+        if (path == null || !IAUGeodeticAuthorityFactory.getRegistryVersion().equals(bundleVersion())) {
+            return null;
+        }
+        final var resource = new ClassPathResource(path);
+        if (!resource.exists()) {
+            return null;
+        }
+        try (InputStream in = new GZIPInputStream(resource.getInputStream())) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Cannot read operation bundle " + path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the registry version of the bundles, or an empty string if no bundle is available.
+     */
+    private String bundleVersion() {
+        String version = bundleVersion;
+        if (version == null) {
+            version = "";
+            final var manifest = new ClassPathResource(MANIFEST);
+            if (manifest.exists()) {
+                try (InputStream in = manifest.getInputStream()) {
+                    final var properties = new Properties();
+                    properties.load(in);
+                    version = properties.getProperty(REGISTRY_VERSION, "");
+                } catch (IOException e) {
+                    logger.log(System.Logger.Level.WARNING, "Cannot read operation bundles manifest", e);
+                }
+            }
+            if (!version.isEmpty() && !version.equals(IAUGeodeticAuthorityFactory.getRegistryVersion())) {
+                logger.log(System.Logger.Level.INFO, "Operation bundles ignored: they have been generated for IAU registry version {0}", version);
+            }
+            bundleVersion = version;
+        }
+        return version;
+    }
+}
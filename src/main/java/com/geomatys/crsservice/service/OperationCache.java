@@ -0,0 +1,310 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.sis.metadata.iso.extent.Extents;
+import javax.measure.IncommensurableException;
+import org.apache.sis.referencing.CRS;
+import org.apache.sis.referencing.crs.AbstractCRS;
+import org.apache.sis.referencing.cs.AxesConvention;
+import org.apache.sis.referencing.cs.CoordinateSystems;
+import org.apache.sis.referencing.operation.DefaultConversion;
+import org.apache.sis.referencing.operation.DefaultCoordinateOperationFactory;
+import org.apache.sis.referencing.operation.transform.MathTransforms;
+import org.apache.sis.util.collection.Cache;
+import org.opengis.metadata.extent.Extent;
+import org.opengis.metadata.extent.GeographicBoundingBox;
+import org.opengis.referencing.IdentifiedObject;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.crs.GeographicCRS;
+import org.opengis.referencing.crs.ProjectedCRS;
+import org.opengis.referencing.operation.ConcatenatedOperation;
+import org.opengis.referencing.operation.Conversion;
+import org.opengis.referencing.operation.CoordinateOperation;
+import org.opengis.referencing.operation.Matrix;
+import org.opengis.referencing.operation.NoninvertibleTransformException;
+import org.opengis.referencing.operation.PassThroughOperation;
+import org.opengis.util.FactoryException;
+
+/**
+ * Finds coordinate operations, reusing the operations between the base geographic CRSs of projected CRSs.
+ * Many projected CRSs of a body share the same base geographic CRS, and the search for an operation between
+ * geographic CRSs is the costly part of {@link CRS#findOperation CRS.findOperation(…)}. The operation between
+ * two projected or geographic CRSs is assembled from the inverse of the source conversion, the cached operation
+ * between the base CRSs, and the target conversion.
+ *
+ * <p>Operations are assembled only if the operation between the base CRSs contains conversions only, because
+ * the choice between transformations depends on the area of use of the projected CRSs. Other operations are
+ * searched by Apache SIS as before.</p>
+ *
+ * <p>Operations are also cached between CRSs in their defined axis order when there is no area of interest.
+ * The longitude first variants of the source and target CRSs are handled by adding axis swaps before and after
+ * that operation. Those swaps are linear, so they are merged with the first and last steps in generated code.</p>
+ *
+ * <p>All caches are keyed by {@linkplain CrsFingerprint#withMetadata fingerprints with metadata}, so a CRS spelled
+ * as a code, a URN or a WKT finds the same entries. The CRSs given to this class are replaced by the first instance
+ * seen with the same fingerprint, which is the instance referenced by the cached operations. Names and domains of
+ * validity are in the fingerprint because they are copied in the operations.</p>
+ */
+final class OperationCache {
+
+    private static final DefaultCoordinateOperationFactory FACTORY = new DefaultCoordinateOperationFactory();
+
+    /**
+     * Key of cached operations.
+     *
+     * @param source Fingerprint of the source CRS.
+     * @param target Fingerprint of the target CRS.
+     */
+    private record Key(String source, String target) {}
+
+    /**
+     * Operation between base geographic CRSs.
+     *
+     * @param operation The operation found by Apache SIS.
+     * @param composable Whether the operation contains conversions only, and can therefore be reused.
+     */
+    private record Base(CoordinateOperation operation, boolean composable) {}
+
+    /**
+     * Operations between base geographic CRSs. Values are softly referenced.
+     */
+    private final Cache<Key, Base> bases = new Cache<>();
+
+    /**
+     * Operations between CRSs in their defined axis order, for requests without area of interest. Values are softly referenced.
+     */
+    private final Cache<Key, CoordinateOperation> operations = new Cache<>();
+
+    /**
+     * The first CRS instance seen for each fingerprint. Values are softly referenced.
+     */
+    private final Cache<String, CoordinateReferenceSystem> canonical = new Cache<>();
+
+    /**
+     * Returns the first CRS instance seen with the same fingerprint as the given CRS, or the given CRS if none.
+     *
+     * @param crs The CRS to replace by its canonical instance.
+     * @param fingerprint The {@linkplain CrsFingerprint#withMetadata fingerprint} of the given CRS.
+     * @return A CRS equal to the given one ignoring metadata.
+     */
+    private CoordinateReferenceSystem canonical(final CoordinateReferenceSystem crs, final String fingerprint) {
+        CoordinateReferenceSystem instance = canonical.peek(fingerprint);
+        if (instance == null) {
+            final Cache.Handler<CoordinateReferenceSystem> handler = canonical.lock(fingerprint);
+            try {
+                instance = handler.peek();
+                if (instance == null) {
+                    instance = crs;
+                }
+            } finally {
+                handler.putAndUnlock(instance);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns an operation between the given CRSs, or between their longitude first variants.
+     *
+     * @param source Source CRS in its defined axis order.
+     * @param target Target CRS in its defined axis order.
+     * @param area Area of interest, or null.
+     * @param sourceLongFirst Whether the operation starts from the {@linkplain #longitudeFirst longitude first} variant of the source.
+     * @param targetLongFirst Whether the operation ends with the longitude first variant of the target.
+     * @return Operation from the canonical source or its variant to the canonical target or its variant.
+     * @throws FactoryException if no operation is found.
+     */
+    CoordinateOperation find(CoordinateReferenceSystem source, CoordinateReferenceSystem target,
+                             final GeographicBoundingBox area, final boolean sourceLongFirst, final boolean targetLongFirst)
+            throws FactoryException
+    {
+        final Key key = new Key(CrsFingerprint.withMetadata(source), CrsFingerprint.withMetadata(target));
+        source = canonical(source, key.source());
+        target = canonical(target, key.target());
+        CoordinateOperation operation;
+        if (area != null) {
+            operation = find(source, target, area);
+        } else {
+            operation = operations.peek(key);
+            if (operation == null) {
+                final Cache.Handler<CoordinateOperation> handler = operations.lock(key);
+                try {
+                    operation = handler.peek();
+                    if (operation == null) {
+                        operation = find(source, target, null);
+                    }
+                } finally {
+                    handler.putAndUnlock(operation);
+                }
+            }
+        }
+        final List<CoordinateOperation> steps = new ArrayList<>(3);
+        final CoordinateReferenceSystem sourceVariant = sourceLongFirst ? longitudeFirst(source) : source;
+        final CoordinateReferenceSystem targetVariant = targetLongFirst ? longitudeFirst(target) : target;
+        if (sourceVariant != source) {
+            steps.add(axisChange(sourceVariant, source));
+        }
+        steps.add(operation);
+        if (targetVariant != target) {
+            steps.add(axisChange(target, targetVariant));
+        }
+        if (steps.size() == 1) {
+            return operation;
+        }
+        return FACTORY.createConcatenatedOperation(
+                properties(sourceVariant.getName().getCode() + " → " + targetVariant.getName().getCode(), operation.getDomainOfValidity()),
+                steps.toArray(CoordinateOperation[]::new));
+    }
+
+    /**
+     * Returns the variant of the given CRS with axes in display order, which is (longitude, latitude) for geographic CRSs.
+     * Variants are cached by Apache SIS, so this method returns the same instance for the same CRS.
+     */
+    static CoordinateReferenceSystem longitudeFirst(final CoordinateReferenceSystem crs) {
+        return AbstractCRS.castOrCopy(crs).forConvention(AxesConvention.DISPLAY_ORIENTED);
+    }
+
+    /**
+     * Returns the operation changing the order or direction of axes between two variants of the same CRS.
+     */
+    private static CoordinateOperation axisChange(final CoordinateReferenceSystem source, final CoordinateReferenceSystem target)
+            throws FactoryException
+    {
+        final Matrix matrix;
+        try {
+            matrix = CoordinateSystems.swapAndScaleAxes(source.getCoordinateSystem(), target.getCoordinateSystem());
+        } catch (IllegalArgumentException | IncommensurableException e) {
+            throw new FactoryException("Cannot change axes of " + source.getName().getCode(), e);
+        }
+        return FACTORY.createSingleOperation(properties("Axis order change", null), source, target, null,
+                FACTORY.getOperationMethod("Affine"), MathTransforms.linear(matrix));
+    }
+
+    /**
+     * Returns an operation from the given source CRS to the given target CRS, assembled from the operation between their bases if possible.
+     * The base CRSs are replaced by their canonical instances, so that the steps of the assembled operation are chained.
+     */
+    CoordinateOperation find(final CoordinateReferenceSystem source, final CoordinateReferenceSystem target,
+                             final GeographicBoundingBox area) throws FactoryException
+    {
+        CoordinateReferenceSystem sourceBase = base(source);
+        CoordinateReferenceSystem targetBase = base(target);
+        if (sourceBase == null || targetBase == null) {
+            return CRS.findOperation(source, target, area);
+        }
+        final Key key = new Key(CrsFingerprint.withMetadata(sourceBase), CrsFingerprint.withMetadata(targetBase));
+        sourceBase = canonical(sourceBase, key.source());
+        targetBase = canonical(targetBase, key.target());
+        Base base = bases.peek(key);
+        if (base == null) {
+            final Cache.Handler<Base> handler = bases.lock(key);
+            try {
+                base = handler.peek();
+                if (base == null) {
+                    final CoordinateOperation operation = CRS.findOperation(sourceBase, targetBase, null);
+                    base = new Base(operation, isConversion(operation));
+                }
+            } finally {
+                handler.putAndUnlock(base);
+            }
+        }
+        if (!base.composable()) {
+            return CRS.findOperation(source, target, area);
+        }
+        final List<CoordinateOperation> steps = new ArrayList<>(3);
+        if (source instanceof ProjectedCRS projected) {
+            steps.add(inverse(projected, sourceBase));
+        }
+        steps.add(base.operation());
+        if (target instanceof ProjectedCRS projected) {
+            steps.add(forward(projected, targetBase));
+        }
+        if (steps.size() == 1) {
+            return base.operation();
+        }
+        Extent domain = Extents.intersection(source.getDomainOfValidity(), target.getDomainOfValidity());
+        domain = Extents.intersection(domain, base.operation().getDomainOfValidity());
+        return FACTORY.createConcatenatedOperation(
+                properties(source.getName().getCode() + " → " + target.getName().getCode(), domain),
+                steps.toArray(CoordinateOperation[]::new));
+    }
+
+    /**
+     * Returns the base geographic CRS of the given CRS, or null if none.
+     */
+    private static CoordinateReferenceSystem base(final CoordinateReferenceSystem crs) {
+        if (crs instanceof ProjectedCRS projected) {
+            return projected.getBaseCRS();
+        }
+        return (crs instanceof GeographicCRS) ? crs : null;
+    }
+
+    /**
+     * Returns whether the given operation contains conversions only.
+     */
+    private static boolean isConversion(final CoordinateOperation operation) {
+        if (operation instanceof ConcatenatedOperation concatenated) {
+            for (CoordinateOperation component : concatenated.getOperations()) {
+                if (!isConversion(component)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (operation instanceof PassThroughOperation pass) {
+            return isConversion(pass.getOperation());
+        }
+        return operation instanceof Conversion;
+    }
+
+    /**
+     * Returns the conversion from the given projected CRS to the canonical instance of its base CRS.
+     */
+    private static CoordinateOperation inverse(final ProjectedCRS crs, final CoordinateReferenceSystem base) throws FactoryException {
+        final Conversion conversion = crs.getConversionFromBase();
+        try {
+            return new DefaultConversion(properties("Inverse of " + conversion.getName().getCode(), conversion.getDomainOfValidity()),
+                    crs, base, null, conversion.getMethod(), conversion.getMathTransform().inverse());
+        } catch (NoninvertibleTransformException e) {
+            throw new FactoryException("Conversion of " + crs.getName().getCode() + " is not invertible", e);
+        }
+    }
+
+    /**
+     * Returns the conversion from the canonical instance of the base CRS to the given projected CRS.
+     */
+    private static CoordinateOperation forward(final ProjectedCRS crs, final CoordinateReferenceSystem base) {
+        final Conversion conversion = crs.getConversionFromBase();
+        if (conversion.getSourceCRS() == base) {
+            return conversion;
+        }
+        return new DefaultConversion(properties(conversion.getName().getCode(), conversion.getDomainOfValidity()),
+                base, crs, null, conversion.getMethod(), conversion.getMathTransform());
+    }
+
+    private static Map<String, ?> properties(final String name, final Extent domain) {
+        return (domain != null) ? Map.of(IdentifiedObject.NAME_KEY, name, CoordinateOperation.DOMAIN_OF_VALIDITY_KEY, domain)
+                                : Map.of(IdentifiedObject.NAME_KEY, name);
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.measure.Unit;
+import org.apache.sis.referencing.operation.matrix.Matrices;
+import org.apache.sis.referencing.operation.transform.DefaultMathTransformFactory;
+import org.apache.sis.referencing.operation.transform.MathTransforms;
+import org.opengis.geometry.Envelope;
+import org.opengis.metadata.extent.GeographicBoundingBox;
+import org.opengis.parameter.GeneralParameterValue;
+import org.opengis.parameter.ParameterDescriptor;
+import org.opengis.parameter.ParameterNotFoundException;
+import org.opengis.parameter.ParameterValue;
+import org.opengis.parameter.ParameterValueGroup;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.crs.GeodeticCRS;
+import org.opengis.referencing.crs.ProjectedCRS;
+import org.opengis.referencing.datum.Ellipsoid;
+import org.opengis.referencing.operation.ConcatenatedOperation;
+import org.opengis.referencing.operation.CoordinateOperation;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.MathTransformFactory;
+import org.opengis.referencing.operation.Matrix;
+import org.opengis.referencing.operation.NoninvertibleTransformException;
+import org.opengis.referencing.operation.PassThroughOperation;
+import org.opengis.referencing.operation.SingleOperation;
+import org.opengis.util.FactoryException;
+
+/**
+ * Writes an operation as a JSON plan: a list of steps which clients rebuild with their own implementation
+ * of the operation methods, like a PROJ pipeline. Steps are:
+ *
+ * <ul>
+ *   <li>{@code {"type": "affine", "matrix": [[...], ...]}} with the rows of an augmented matrix.</li>
+ *   <li>{@code {"type": "parameterized", "method": name, "parameters": {name: value, ...}}} for the transform
+ *       created by {@link MathTransformFactory#createParameterizedTransform(ParameterValueGroup)}.
+ *       Values are in the default unit of the parameter. The step has an {@code "inverse": true} property
+ *       when it is the inverse of that transform, for example the inverse projection of a projected source CRS.</li>
+ *   <li>{@code {"type": "passThrough", "firstCoordinate": n, "trailingCoordinates": n, "steps": [...]}}.</li>
+ * </ul>
+ *
+ * The plan describes the operation from source to target. Clients get the inverse by inverting the rebuilt transform.
+ * The affine steps around a parameterized step convert between the axes of the operation and the normalized
+ * axes of the method, so they are computed by creating the transform of the method the same way as clients.
+ */
+final class OperationPlanWriter {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final MathTransformFactory FACTORY = new DefaultMathTransformFactory();
+
+    /**
+     * Ellipsoid parameters which may be missing from the parameters of an operation, because they are
+     * inferred from the source or target CRS.
+     */
+    private static final String[] SOURCE_AXES = {"semi_major", "semi_minor", "src_semi_major", "src_semi_minor"};
+
+    private static final String[] TARGET_AXES = {"tgt_semi_major", "tgt_semi_minor"};
+
+    private OperationPlanWriter() {
+    }
+
+    /**
+     * Returns the JSON plan of the given operation.
+     *
+     * @throws UnsupportedOperationException if a step of the operation cannot be described.
+     */
+    static byte[] write(final CoordinateOperation operation, final double accuracy,
+                        final GeographicBoundingBox operationGeographicBoundingBox, final Envelope targetCrsDomainOfValidity)
+    {
+        final var plan = new LinkedHashMap<String, Object>();
+        if (operationGeographicBoundingBox != null) {
+            plan.put("operationGeographicBoundingBox", List.of(
+                    operationGeographicBoundingBox.getWestBoundLongitude(), operationGeographicBoundingBox.getSouthBoundLatitude(),
+                    operationGeographicBoundingBox.getEastBoundLongitude(), operationGeographicBoundingBox.getNorthBoundLatitude()));
+        }
+        if (targetCrsDomainOfValidity != null) {
+            plan.put("domainOfValidity", List.of(
+                    targetCrsDomainOfValidity.getMinimum(0), targetCrsDomainOfValidity.getMinimum(1),
+                    targetCrsDomainOfValidity.getMaximum(0), targetCrsDomainOfValidity.getMaximum(1)));
+        }
+        if (!Double.isNaN(accuracy)) {
+            plan.put("accuracy", accuracy);
+        }
+        final MathTransform trs = operation.getMathTransform();
+        plan.put("sourceDimensions", trs.getSourceDimensions());
+        plan.put("targetDimensions", trs.getTargetDimensions());
+        plan.put("steps", new Steps().add(operation).finish());
+        try {
+            return MAPPER.writeValueAsBytes(plan);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * List of steps, with consecutive affine steps merged.
+     */
+    private static final class Steps {
+
+        private final List<Map<String, Object>> steps = new ArrayList<>();
+
+        private Matrix pending;
+
+        Steps add(final CoordinateOperation operation) {
+            if (operation instanceof ConcatenatedOperation concatenated) {
+                for (CoordinateOperation component : concatenated.getOperations()) {
+                    add(component);
+                }
+            } else if (operation instanceof PassThroughOperation pass) {
+                final int[] modified = pass.getModifiedCoordinates();
+                final int first = modified[0];
+                final int last = modified[modified.length - 1] + 1;
+                final var step = new LinkedHashMap<String, Object>();
+                step.put("type", "passThrough");
+                step.put("firstCoordinate", first);
+                step.put("trailingCoordinates", pass.getMathTransform().getSourceDimensions() - last);
+                step.put("steps", new Steps().add(pass.getOperation()).finish());
+                flush();
+                steps.add(step);
+            } else if (operation instanceof SingleOperation single) {
+                addSingle(single);
+            } else {
+                throw unsupported(operation);
+            }
+            return this;
+        }
+
+        /**
+         * Adds the steps of an operation as an affine step, or as a parameterized step between two affine steps.
+         */
+        private void addSingle(final SingleOperation operation) {
+            final MathTransform trs = operation.getMathTransform();
+            final Matrix matrix = MathTransforms.getMatrix(trs);
+            if (matrix != null) {
+                affine(matrix);
+                return;
+            }
+            final ParameterValueGroup parameters = complete(operation);
+            final List<MathTransform> actual = MathTransforms.getSteps(trs);
+            MathTransform created;
+            boolean inverse = false;
+            try {
+                created = FACTORY.createParameterizedTransform(parameters);
+                if (!sameKernel(actual, MathTransforms.getSteps(created))) {
+                    // Different classes when the operation is the inverse of the transform created from its parameters.
+                    created = created.inverse();
+                    inverse = true;
+                }
+            } catch (FactoryException | NoninvertibleTransformException | RuntimeException e) {
+                throw new UnsupportedOperationException("Cannot describe " + operation.getName().getCode() + " in a plan", e);
+            }
+            final List<MathTransform> kernel = MathTransforms.getSteps(created);
+            if (!sameKernel(actual, kernel)) {
+                throw unsupported(operation);
+            }
+            final int actualHead = linearCount(actual, false), actualTail = linearCount(actual, true);
+            final int kernelHead = linearCount(kernel, false), kernelTail = linearCount(kernel, true);
+            try {
+                affine(Matrices.multiply(inverse(product(kernel.subList(0, kernelHead), created.getSourceDimensions())),
+                                         product(actual.subList(0, actualHead), trs.getSourceDimensions())));
+                flush();
+                final var step = new LinkedHashMap<String, Object>();
+                step.put("type", "parameterized");
+                step.put("method", parameters.getDescriptor().getName().getCode());
+                step.put("parameters", values(parameters, operation));
+                if (inverse) {
+                    step.put("inverse", true);
+                }
+                steps.add(step);
+                affine(Matrices.multiply(product(actual.subList(actual.size() - actualTail, actual.size()), created.getTargetDimensions()),
+                                         inverse(product(kernel.subList(kernel.size() - kernelTail, kernel.size()), created.getTargetDimensions()))));
+            } catch (NoninvertibleTransformException e) {
+                throw new UnsupportedOperationException("Cannot describe " + operation.getName().getCode() + " in a plan", e);
+            }
+        }
+
+        private void affine(final Matrix matrix) {
+            pending = (pending == null) ? matrix : Matrices.multiply(matrix, pending);
+        }
+
+        private void flush() {
+            if (pending != null && !pending.isIdentity()) {
+                final List<List<Double>> rows = new ArrayList<>();
+                for (int j = 0; j < pending.getNumRow(); j++) {
+                    final List<Double> row = new ArrayList<>();
+                    for (int i = 0; i < pending.getNumCol(); i++) {
+                        row.add(pending.getElement(j, i));
+                    }
+                    rows.add(row);
+                }
+                final var step = new LinkedHashMap<String, Object>();
+                step.put("type", "affine");
+                step.put("matrix", rows);
+                steps.add(step);
+            }
+            pending = null;
+        }
+
+        List<Map<String, Object>> finish() {
+            flush();
+            return steps;
+        }
+    }
+
+    /**
+     * Returns whether the non-linear steps of an operation are of the same classes as the steps
+     * of the transform created from its parameters.
+     */
+    private static boolean sameKernel(final List<MathTransform> actual, final List<MathTransform> kernel) {
+        final int actualHead = linearCount(actual, false), actualTail = linearCount(actual, true);
+        final int kernelHead = linearCount(kernel, false), kernelTail = linearCount(kernel, true);
+        final int kernelCount = kernel.size() - kernelHead - kernelTail;
+        if (actual.size() - actualHead - actualTail != kernelCount) {
+            return false;
+        }
+        for (int i = 0; i < kernelCount; i++) {
+            if (actual.get(actualHead + i).getClass() != kernel.get(kernelHead + i).getClass()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of linear steps at the beginning or at the end of the given list.
+     */
+    private static int linearCount(final List<MathTransform> steps, final boolean fromEnd) {
+        int count = 0;
+        while (count < steps.size() && MathTransforms.getMatrix(steps.get(fromEnd ? steps.size() - 1 - count : count)) != null) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the product of the matrices of the given linear steps, or identity if the list is empty.
+     */
+    private static Matrix product(final List<MathTransform> steps, final int dimension) {
+        Matrix product = Matrices.createIdentity(dimension + 1);
+        for (int i = 0; i < steps.size(); i++) {
+            final Matrix matrix = MathTransforms.getMatrix(steps.get(i));
+            product = (i == 0) ? matrix : Matrices.multiply(matrix, product);
+        }
+        return product;
+    }
+
+    private static Matrix inverse(final Matrix matrix) throws NoninvertibleTransformException {
+        return Matrices.copy(matrix).inverse();
+    }
+
+    /**
+     * Returns a copy of the parameters of the given operation, with the ellipsoid axes inferred from CRSs added if missing.
+     */
+    private static ParameterValueGroup complete(final SingleOperation operation) {
+        final ParameterValueGroup parameters = operation.getParameterValues().clone();
+        setAxes(parameters, SOURCE_AXES, ellipsoid(operation.getSourceCRS()));
+        setAxes(parameters, TARGET_AXES, ellipsoid(operation.getTargetCRS()));
+        return parameters;
+    }
+
+    private static void setAxes(final ParameterValueGroup parameters, final String[] names, final Ellipsoid ellipsoid) {
+        if (ellipsoid == null) return;
+        for (String name : names) {
+            final ParameterValue<?> value;
+            try {
+                value = parameters.parameter(name);
+            } catch (ParameterNotFoundException e) {
+                continue;
+            }
+            if (value.getValue() == null) {
+                value.setValue(name.endsWith("major") ? ellipsoid.getSemiMajorAxis() : ellipsoid.getSemiMinorAxis(), ellipsoid.getAxisUnit());
+            }
+        }
+    }
+
+    private static Ellipsoid ellipsoid(final CoordinateReferenceSystem crs) {
+        if (crs instanceof ProjectedCRS projected) {
+            return ellipsoid(projected.getBaseCRS());
+        }
+        if (crs instanceof GeodeticCRS geodetic && geodetic.getDatum() != null) {
+            return geodetic.getDatum().getEllipsoid();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the parameter values in the default unit of each parameter.
+     */
+    private static Map<String, Object> values(final ParameterValueGroup parameters, final SingleOperation operation) {
+        final var values = new LinkedHashMap<String, Object>();
+        for (GeneralParameterValue parameter : parameters.values()) {
+            if (!(parameter instanceof ParameterValue<?> value)) {
+                throw unsupported(operation);
+            }
+            final Object object = value.getValue();
+            if (object == null) continue;
+            final String name = parameter.getDescriptor().getName().getCode();
+            if (object instanceof Double || object instanceof Float) {
+                final Unit<?> unit = ((ParameterDescriptor<?>) value.getDescriptor()).getUnit();
+                values.put(name, (unit != null) ? value.doubleValue(unit) : value.doubleValue());
+            } else if (object instanceof Number || object instanceof Boolean || object instanceof String
+                    || object instanceof double[] || object instanceof int[]) {
+                values.put(name, object);
+            } else {
+                values.put(name, object.toString());
+            }
+        }
+        return values;
+    }
+
+    private static UnsupportedOperationException unsupported(final CoordinateOperation operation) {
+        return new UnsupportedOperationException("Cannot describe " + operation.getName().getCode() + " in a plan");
+    }
+}
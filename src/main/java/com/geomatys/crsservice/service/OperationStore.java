@@ -0,0 +1,363 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import com.geomatys.crsservice.configuration.IAUGeodeticAuthorityFactory;
+import com.geomatys.crsservice.configuration.ServiceVersion;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Generated operations stored in memory-mapped files, for reuse after a restart or by other instances.
+ * There is one file per registry version and {@linkplain ServiceVersion code version}, because a new build
+ * may generate different code for the same request. Files are append-only and can be shared on a volume between
+ * instances running on the same node: writers append under an exclusive file lock, and readers do not lock.
+ * Files of other versions are deleted when a file is opened, if they have not been modified for
+ * {@value #OBSOLETE_HOURS} hour, so that the files of instances still running another version during
+ * a rolling update are kept.
+ *
+ * <p>A file starts with a header and a fixed-size hash table, followed by the records.
+ * Opening a file maps the header and the table without reading the records, so it takes constant time.</p>
+ *
+ * <ul>
+ *   <li>Header: magic number, end of the last record, number of records.</li>
+ *   <li>Table: {@value #SLOTS} slots of (hash of key, offset of record), with linear probing.
+ *       The offset is written last, so a slot with a non-zero offset is complete.</li>
+ *   <li>Records: key length, value length, CRC32 of key and value, key in UTF-8, value.
+ *       Records are verified when read, so a record overwritten after a crash is only a cache miss.</li>
+ * </ul>
+ */
+final class OperationStore {
+
+    private static final long MAGIC = 0x4352534F50530001L;
+
+    /**
+     * Offsets in the header of the end of the last record and of the number of records.
+     */
+    private static final int END = 8, COUNT = 16;
+
+    private static final int HEADER = 64;
+
+    private static final int SLOTS = 1 << 16, SLOT_SIZE = 16;
+
+    /**
+     * Maximal number of records, for keeping the probe sequences short.
+     */
+    private static final int MAXIMAL_COUNT = SLOTS * 3 / 4;
+
+    /**
+     * Offset of the first record.
+     */
+    private static final long DATA = HEADER + (long) SLOTS * SLOT_SIZE;
+
+    private static final int RECORD_HEADER = 3 * Integer.BYTES;
+
+    /**
+     * Prefix and suffix of file names, around the version.
+     */
+    private static final String PREFIX = "operations-", SUFFIX = ".bin";
+
+    /**
+     * Time in hours after the last modification of a file of another version before it is deleted.
+     */
+    private static final int OBSOLETE_HOURS = 1;
+
+    /**
+     * Atomic access to the header and table, which are aligned on 8 bytes.
+     */
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final System.Logger logger = System.getLogger("com.geomatys.crsservice.service");
+
+    private final Path directory;
+
+    /**
+     * Maximal size of a file in bytes.
+     */
+    private final long capacity;
+
+    /**
+     * File of the current registry and code versions.
+     */
+    private volatile Segment segment;
+
+    /**
+     * Creates a store writing files in the given directory.
+     *
+     * @param directory Directory of the files, shared with other instances.
+     * @param capacity Maximal size of a file in bytes, including the table of 1 MiB. Files stop growing at that size.
+     * @throws IOException if the directory cannot be created.
+     */
+    OperationStore(final Path directory, final long capacity) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.capacity  = Math.min(capacity, DATA + Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the value stored for the given key in the file of the current registry and code versions, or null if none.
+     *
+     * @param key Fingerprint of the request.
+     * @return Generated operation, or null.
+     */
+    byte[] get(final String key) {
+        try {
+            return current().get(key.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            logger.log(System.Logger.Level.DEBUG, "Cannot read the operation store", e);
+            return null;
+        }
+    }
+
+    /**
+     * Appends the given value to the file of the current registry and code versions, unless the key is already present or the file is full.
+     *
+     * @param key Fingerprint of the request.
+     * @param value Generated operation.
+     */
+    void put(final String key, final byte[] value) {
+        try {
+            current().put(key.getBytes(StandardCharsets.UTF_8), value);
+        } catch (IOException | RuntimeException e) {
+            logger.log(System.Logger.Level.WARNING, "Cannot write in the operation store", e);
+        }
+    }
+
+    /**
+     * Returns the file of the current registry and code versions, opening it if the registry has been reloaded.
+     */
+    private Segment current() throws IOException {
+        final String version = IAUGeodeticAuthorityFactory.getRegistryVersion() + '-' + ServiceVersion.get();
+        Segment current = segment;
+        if (current == null || !current.version.equals(version)) {
+            synchronized (this) {
+                current = segment;
+                if (current == null || !current.version.equals(version)) {
+                    if (current != null) {
+                        current.channel.close();    // Mapped buffers stay valid for concurrent readers.
+                    }
+                    final Path file = directory.resolve(PREFIX + version + SUFFIX);
+                    segment = current = new Segment(version, file, capacity);
+                    deleteObsolete(file);
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Deletes the files of other versions which have not been modified recently.
+     *
+     * @param current The file of the current version, which is kept.
+     */
+    private void deleteObsolete(final Path current) {
+        final FileTime limit = FileTime.from(Instant.now().minus(OBSOLETE_HOURS, ChronoUnit.HOURS));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + '*' + SUFFIX)) {
+            for (Path file : files) {
+                if (!file.equals(current) && Files.getLastModifiedTime(file).compareTo(limit) < 0) {
+                    Files.deleteIfExists(file);
+                    logger.log(System.Logger.Level.INFO, "Deleted obsolete operation store {0}", file);
+                }
+            }
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Cannot delete obsolete operation stores", e);
+        }
+    }
+
+    /**
+     * A memory-mapped file of the store.
+     */
+    private static final class Segment {
+
+        final String version;
+
+        final FileChannel channel;
+
+        private final long capacity;
+
+        /**
+         * Header and table, writable.
+         */
+        private final MappedByteBuffer table;
+
+        /**
+         * Records, remapped when other threads or instances have appended records beyond its end.
+         */
+        private volatile MappedByteBuffer data;
+
+        Segment(final String version, final Path file, final long capacity) throws IOException {
+            this.version  = version;
+            this.capacity = capacity;
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                try (FileLock lock = channel.lock()) {
+                    if (channel.size() < DATA) {
+                        // New file, or creation interrupted before the header was written.
+                        channel.write(ByteBuffer.allocate(1), DATA - 1);
+                        channel.write(ByteBuffer.allocate(HEADER).putLong(0, MAGIC).putLong(END, DATA), 0);
+                    }
+                }
+                table = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA);
+                if (table.getLong(0) != MAGIC) {
+                    throw new IOException(file + " is not an operation store");
+                }
+                data = channel.map(FileChannel.MapMode.READ_ONLY, DATA, channel.size() - DATA);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Returns the value of the given key, or null if none.
+         */
+        byte[] get(final byte[] key) throws IOException {
+            final long hash = hash(key);
+            for (int i = 0; i < SLOTS; i++) {
+                final int slot = HEADER + (int) ((hash + i) & (SLOTS - 1)) * SLOT_SIZE;
+                final long offset = (long) LONGS.getAcquire(table, slot + 8);
+                if (offset == 0) {
+                    return null;
+                }
+                if ((long) LONGS.get(table, slot) == hash) {
+                    final byte[] value = read(offset, key);
+                    if (value != null) {
+                        return value;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the value of the record at the given offset if its key is the given one and its checksum is valid.
+         */
+        private byte[] read(final long offset, final byte[] key) throws IOException {
+            ByteBuffer buffer = data(offset + RECORD_HEADER);
+            final int position = (int) (offset - DATA);
+            final int keyLength = buffer.getInt(position);
+            final int valueLength = buffer.getInt(position + Integer.BYTES);
+            final int checksum = buffer.getInt(position + 2 * Integer.BYTES);
+            if (keyLength != key.length || valueLength < 0) {
+                return null;
+            }
+            buffer = data(offset + RECORD_HEADER + keyLength + valueLength);
+            final byte[] stored = new byte[keyLength];
+            final byte[] value = new byte[valueLength];
+            buffer.get(position + RECORD_HEADER, stored);
+            buffer.get(position + RECORD_HEADER + keyLength, value);
+            if (!Arrays.equals(stored, key) || checksum(key, value) != checksum) {
+                return null;
+            }
+            return value;
+        }
+
+        /**
+         * Returns the mapped records, remapped if the given end is beyond the current mapping.
+         */
+        private ByteBuffer data(final long end) throws IOException {
+            MappedByteBuffer buffer = data;
+            if (end - DATA > buffer.capacity()) {
+                synchronized (this) {
+                    buffer = data;
+                    if (end - DATA > buffer.capacity()) {
+                        final long size = channel.size();
+                        if (end > size) {
+                            throw new IOException("Record beyond the end of the operation store");
+                        }
+                        data = buffer = channel.map(FileChannel.MapMode.READ_ONLY, DATA, size - DATA);
+                    }
+                }
+            }
+            return buffer;
+        }
+
+        /**
+         * Appends a record for the given key and value, unless the key is already present or the file is full.
+         * The lock of this object is needed because file locks are held by the whole Java process.
+         */
+        synchronized void put(final byte[] key, final byte[] value) throws IOException {
+            try (FileLock lock = channel.lock()) {
+                if (get(key) != null) {
+                    return;     // Added by another instance meanwhile.
+                }
+                final long count = (long) LONGS.getAcquire(table, COUNT);
+                final long end = (long) LONGS.getAcquire(table, END);
+                final int length = RECORD_HEADER + key.length + value.length;
+                if (count >= MAXIMAL_COUNT || end + length > capacity) {
+                    return;
+                }
+                final ByteBuffer record = ByteBuffer.allocate(length)
+                        .putInt(key.length).putInt(value.length).putInt(checksum(key, value)).put(key).put(value).flip();
+                long position = end;
+                while (record.hasRemaining()) {
+                    position += channel.write(record, position);
+                }
+                // Publish the end before the slot, so that a crash leaves at worst an unreferenced record.
+                LONGS.setRelease(table, END, position);
+                final long hash = hash(key);
+                for (int i = 0; i < SLOTS; i++) {
+                    final int slot = HEADER + (int) ((hash + i) & (SLOTS - 1)) * SLOT_SIZE;
+                    if ((long) LONGS.getAcquire(table, slot + 8) == 0) {
+                        LONGS.set(table, slot, hash);
+                        LONGS.setRelease(table, slot + 8, end);
+                        LONGS.setRelease(table, COUNT, count + 1);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the first 64 bits of the SHA-256 hash of the given key.
+     */
+    private static long hash(final byte[] key) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(key)).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static int checksum(final byte[] key, final byte[] value) {
+        final CRC32 crc = new CRC32();
+        crc.update(key);
+        crc.update(value);
+        return (int) crc.getValue();
+    }
+}
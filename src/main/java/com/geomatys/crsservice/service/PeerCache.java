@@ -0,0 +1,279 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Generated operations cached by other instances of the service.
+ * Each key is owned by one instance, chosen by consistent hashing of the key over the list of instances.
+ * On a local miss, the owner is asked for the operation before computing it locally. Instances ask only
+ * the owner and the owner answers from its local caches only, so a miss costs at most one request.
+ *
+ * <p>The list of instances is either static, or discovered by resolving a DNS name to the addresses of all instances.
+ * In the latter case, the name is resolved periodically by a background thread, so that requests never wait for the DNS
+ * and use the last known list of instances. Keys include the code version, so instances running another build during
+ * a rolling update never answer with their operations. Each instance is placed {@value #VIRTUAL_NODES} times
+ * on the hash ring, so that adding or removing an instance moves only a small and even fraction of the keys.</p>
+ */
+final class PeerCache {
+
+    /**
+     * Number of positions of each instance on the hash ring.
+     */
+    private static final int VIRTUAL_NODES = 64;
+
+    /**
+     * Path of the end point answering requests from other instances.
+     */
+    static final String PATH = "/crs/peer";
+
+    private final System.Logger logger = System.getLogger("com.geomatys.crsservice.service");
+
+    /**
+     * Base URL of this instance, as listed in the peers.
+     */
+    private final URI self;
+
+    /**
+     * DNS name resolved to the addresses of all instances, or null if the list is static.
+     */
+    private final String dns;
+
+    /**
+     * Port of all instances discovered by DNS.
+     */
+    private final int port;
+
+    private final Duration timeout;
+
+    private final Duration refresh;
+
+    private final HttpClient client;
+
+    /**
+     * The current hash ring.
+     */
+    private volatile Ring ring;
+
+    /**
+     * Thread resolving the DNS name periodically, or null if the list is static.
+     */
+    private final Thread resolver;
+
+    /**
+     * Instances on the hash ring.
+     *
+     * @param peers Base URL of all instances, including this one.
+     * @param nodes Instances by hash of their positions on the ring.
+     */
+    record Ring(List<URI> peers, NavigableMap<Long, URI> nodes) {
+
+        /**
+         * Returns the instance owning the given key, or null if there is no instance.
+         */
+        URI owner(final String key) {
+            if (nodes.isEmpty()) {
+                return null;
+            }
+            final Map.Entry<Long, URI> entry = nodes.ceilingEntry(hash(key));
+            return (entry != null ? entry : nodes.firstEntry()).getValue();
+        }
+    }
+
+    /**
+     * Creates a cache asking the given instances, or the instances found by the given DNS name.
+     *
+     * @param self Base URL of this instance, as listed in the peers or as discovered by DNS.
+     * @param peers Base URL of all instances, or an empty list if discovered by DNS.
+     * @param dns DNS name resolved to the addresses of all instances, or null if the list is static.
+     * @param port Port of the instances discovered by DNS.
+     * @param timeout Maximal time to wait for an answer of the owner.
+     * @param refresh Time between two resolutions of the DNS name.
+     * @throws IllegalArgumentException if a DNS name is given with a refresh period which is not positive.
+     */
+    PeerCache(final URI self, final List<URI> peers, final String dns, final int port, final Duration timeout, final Duration refresh) {
+        this.self    = normalize(self);
+        this.dns     = dns;
+        this.port    = port;
+        this.timeout = timeout;
+        this.refresh = refresh;
+        client = HttpClient.newBuilder().connectTimeout(timeout).build();
+        ring = ring(peers.stream().map(PeerCache::normalize).toList());
+        if (dns != null) {
+            if (refresh.isNegative() || refresh.isZero()) {
+                throw new IllegalArgumentException("The refresh period of peers must be positive");
+            }
+            resolver = Thread.ofVirtual().name("peer-resolver").start(this::resolve);
+        } else {
+            resolver = null;
+        }
+    }
+
+    /**
+     * Stops resolving the DNS name.
+     */
+    void close() {
+        if (resolver != null) {
+            resolver.interrupt();
+        }
+    }
+
+    /**
+     * Returns the hash ring of the given instances.
+     */
+    static Ring ring(final Collection<URI> peers) {
+        final NavigableMap<Long, URI> nodes = new TreeMap<>();
+        for (URI peer : peers) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                nodes.put(hash(peer + "#" + i), peer);
+            }
+        }
+        return new Ring(List.copyOf(peers), nodes);
+    }
+
+    /**
+     * Returns the instance owning the given key, or null if there is no instance.
+     */
+    URI owner(final String key) {
+        return ring.owner(key);
+    }
+
+    /**
+     * Asks the owner of the given key for the operation, unless this instance is the owner.
+     *
+     * @param key Fingerprint of the request.
+     * @return Generated operation, or null if this instance is the owner or if the owner does not have it.
+     */
+    byte[] get(final String key) {
+        final URI owner = owner(key);
+        if (owner == null || owner.equals(self)) {
+            return null;
+        }
+        return ask(owner, key);
+    }
+
+    /**
+     * Asks all other instances in turn for the given key, for values which exist only on the instance which created them.
+     * This is more costly than {@link #get(String)} and should be used only for rare misses.
+     *
+     * @param key Key of the value.
+     * @return Value of the first instance having it, or null if none.
+     */
+    byte[] find(final String key) {
+        for (URI peer : ring.peers()) {
+            if (!peer.equals(self)) {
+                final byte[] value = ask(peer, key);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Asks the given instance for the value of the given key.
+     *
+     * @return Value, or null if the instance does not have it or did not answer.
+     */
+    private byte[] ask(final URI owner, final String key) {
+        final HttpRequest request = HttpRequest.newBuilder(URI.create(owner + PATH))
+                .timeout(timeout)
+                .header("Content-Type", "text/plain; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(key, StandardCharsets.UTF_8))
+                .build();
+        try {
+            final HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            return (response.statusCode() == 200) ? response.body() : null;
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.DEBUG, "Peer " + owner + " did not answer", e);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Resolves the DNS name periodically until {@link #close()} is invoked.
+     * If the name cannot be resolved, the previous ring is kept.
+     */
+    private void resolve() {
+        do {
+            try {
+                final List<URI> peers = new ArrayList<>();
+                for (InetAddress address : InetAddress.getAllByName(dns)) {
+                    final String host = address.getHostAddress();
+                    peers.add(URI.create("http://" + (address instanceof Inet6Address ? '[' + host + ']' : host) + ':' + port));
+                }
+                peers.sort(null);
+                if (!peers.equals(ring.peers())) {
+                    ring = ring(peers);
+                    logger.log(System.Logger.Level.INFO, "Peers: {0}", peers);
+                }
+            } catch (UnknownHostException e) {
+                logger.log(System.Logger.Level.WARNING, "Cannot resolve peers from " + dns, e);
+            }
+            try {
+                Thread.sleep(refresh.toMillis());
+            } catch (InterruptedException e) {
+                return;
+            }
+        } while (true);
+    }
+
+    /**
+     * Returns the given base URL without trailing slash.
+     */
+    private static URI normalize(final URI peer) {
+        final String text = peer.toString();
+        return text.endsWith("/") ? URI.create(text.substring(0, text.length() - 1)) : peer;
+    }
+
+    /**
+     * Returns the first 64 bits of the SHA-256 hash of the given text.
+     */
+    private static long hash(final String text) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8))).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,479 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import org.apache.sis.geometry.GeneralDirectPosition;
+import org.opengis.geometry.Envelope;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.Matrix;
+import org.opengis.referencing.operation.TransformException;
+
+/**
+ * Piecewise Chebyshev approximation of a transform over a two-dimensional area.
+ * The area is divided in a grid of tiles, and each target coordinate is a polynomial of degree <var>n</var>
+ * in each source coordinate inside a tile. Coefficients are computed by interpolation at the Chebyshev nodes
+ * of each tile, then rounded to a multiple of a quantum which keeps them short in the generated code.
+ *
+ * <p>The grid and the degree are increased until the approximation, with rounded coefficients, is within half
+ * the tolerance on a verification sample {@value #VERIFICATION_DENSITY} times denser than the nodes, including
+ * the borders of tiles. The other half is a margin for the points between the samples.
+ * The largest error found on the sample is given by {@link #maximalError()}.
+ * Points outside the area are transformed to NaN. The search stops when the exact transforms have been evaluated
+ * on {@value TransformApproximation#MAX_EVALUATIONS} points.</p>
+ */
+final class PolynomialApproximation implements TransformApproximation {
+
+    /**
+     * Degrees tried for each grid size, from the cheapest evaluation to the most accurate.
+     */
+    private static final int[] DEGREES = {3, 5, 7, 9};
+
+    /**
+     * Maximal number of tiles along each axis is 2 at this power.
+     */
+    private static final int MAX_LEVEL = 4;
+
+    /**
+     * Number of verification points along each axis of a tile, as a multiple of the number of nodes.
+     */
+    private static final int VERIFICATION_DENSITY = 4;
+
+    /**
+     * Number of points along each axis of the grid used for estimating the derivatives of the transform.
+     */
+    private static final int DERIVATIVE_SAMPLES = 17;
+
+    /**
+     * Coordinates of the lower corner of the area.
+     */
+    private final double x0, y0;
+
+    /**
+     * Number of tiles per unit of source coordinates, along each axis.
+     */
+    private final double scaleX, scaleY;
+
+    /**
+     * Number of tiles along each axis.
+     */
+    private final int tiles;
+
+    /**
+     * Number of coefficients along each axis, which is the degree of the polynomials + 1.
+     */
+    private final int size;
+
+    /**
+     * Number of target dimensions.
+     */
+    private final int dimension;
+
+    /**
+     * The coefficients as multiples of {@link #quanta}, in (tile row, tile column, dimension, x degree, y degree) order.
+     */
+    private final long[] coefficients;
+
+    /**
+     * Value of a unit of {@link #coefficients}, for each target dimension.
+     */
+    private final double[] quanta;
+
+    /**
+     * Largest distance between the approximation and the exact transform found on the verification sample.
+     */
+    private double maximalError;
+
+    private PolynomialApproximation(final Envelope area, final int tiles, final int size, final int dimension, final double[] quanta) {
+        this.x0 = area.getMinimum(0);
+        this.y0 = area.getMinimum(1);
+        this.scaleX = tiles / area.getSpan(0);
+        this.scaleY = tiles / area.getSpan(1);
+        this.tiles = tiles;
+        this.size = size;
+        this.dimension = dimension;
+        this.quanta = quanta;
+        this.coefficients = new long[tiles * tiles * dimension * size * size];
+    }
+
+    /**
+     * Fits an approximation of the given transform over the given area.
+     * Errors are distances in units of the target coordinates of {@code trs}.
+     *
+     * @param trs The transform to approximate, with two source dimensions.
+     * @param area The area where the approximation is used, in source coordinates.
+     * @param tolerance Maximal error of the approximation.
+     * @return An approximation within half the tolerance on the verification sample.
+     * @throws IllegalArgumentException if no approximation is within the tolerance.
+     * @throws TransformException if the transform cannot be evaluated in the area.
+     */
+    static PolynomialApproximation fit(final MathTransform trs, final Envelope area, final double tolerance) throws TransformException {
+        return fit(trs, null, area, tolerance);
+    }
+
+    /**
+     * Fits an approximation of the inverse of a transform over the given area.
+     * Errors are distances between a point and the result of {@code forward} applied on its approximated inverse,
+     * so that they are in units of the target coordinates of {@code forward} like the errors of the forward approximation.
+     *
+     * @param inverse The transform to approximate, with two source dimensions.
+     * @param forward The inverse of {@code inverse}.
+     * @param area The area where the approximation is used, in source coordinates of {@code inverse}.
+     * @param tolerance Maximal error of the approximation.
+     * @return An approximation within half the tolerance on the verification sample.
+     * @throws IllegalArgumentException if no approximation is within the tolerance.
+     * @throws TransformException if the transforms cannot be evaluated in the area.
+     */
+    static PolynomialApproximation fitInverse(final MathTransform inverse, final MathTransform forward, final Envelope area, final double tolerance) throws TransformException {
+        return fit(inverse, forward, area, tolerance);
+    }
+
+    private static PolynomialApproximation fit(final MathTransform trs, final MathTransform check, final Envelope area, final double tolerance) throws TransformException {
+        TransformApproximation.checkArguments(trs, area, tolerance);
+        final double[] scales = (check != null) ? inverseScales(trs, check, area) : null;
+        final int dimension = trs.getTargetDimensions();
+        long evaluations = 0;
+        for (int level = 0; level <= MAX_LEVEL; level++) {
+            for (final int degree : DEGREES) {
+                final int size = degree + 1;
+                // Points at the nodes, then on the verification sample.
+                final long perTile = (long) size * size * (1 + VERIFICATION_DENSITY * VERIFICATION_DENSITY);
+                evaluations = TransformApproximation.evaluate(evaluations, perTile << (2 * level), tolerance);
+                /*
+                 * Rounding a coefficient changes the value of a polynomial by at most half a quantum,
+                 * and there is size² coefficients per dimension. Keep the sum under 1/8 of the tolerance.
+                 */
+                final double[] quanta = new double[dimension];
+                for (int d = 0; d < dimension; d++) {
+                    quanta[d] = tolerance / (4.0 * size * size * dimension) / (scales != null ? scales[d] : 1);
+                }
+                final var approximation = new PolynomialApproximation(area, 1 << level, size, dimension, quanta);
+                if (approximation.interpolate(trs) && approximation.verify(trs, check, tolerance / 2)) {
+                    return approximation;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Cannot approximate the operation within a tolerance of " + tolerance
+                + " over the area of interest. Use a larger tolerance or a smaller area.");
+    }
+
+    /**
+     * Estimates how much an error on each coordinate computed by the inverse transform is magnified
+     * by the forward transform, as the largest norm of the columns of the Jacobian matrix of {@code forward}.
+     * A factor of 2 is applied for the variations between the points where the derivative is computed.
+     */
+    private static double[] inverseScales(final MathTransform inverse, final MathTransform forward, final Envelope area) throws TransformException {
+        final double[] scales = new double[inverse.getTargetDimensions()];
+        final double[] point = new double[2];
+        final double[] result = new double[scales.length];
+        final var position = new GeneralDirectPosition(scales.length);
+        for (int i = 0; i < DERIVATIVE_SAMPLES; i++) {
+            for (int j = 0; j < DERIVATIVE_SAMPLES; j++) {
+                point[0] = area.getMinimum(0) + area.getSpan(0) * i / (DERIVATIVE_SAMPLES - 1);
+                point[1] = area.getMinimum(1) + area.getSpan(1) * j / (DERIVATIVE_SAMPLES - 1);
+                inverse.transform(point, 0, result, 0, 1);
+                position.setCoordinates(result);
+                final Matrix derivative;
+                try {
+                    derivative = forward.derivative(position);
+                } catch (TransformException e) {
+                    continue;
+                }
+                for (int c = 0; c < scales.length; c++) {
+                    double norm = 0;
+                    for (int r = 0; r < derivative.getNumRow(); r++) {
+                        norm += derivative.getElement(r, c) * derivative.getElement(r, c);
+                    }
+                    norm = Math.sqrt(norm);
+                    if (norm > scales[c]) {
+                        scales[c] = norm;
+                    }
+                }
+            }
+        }
+        for (int c = 0; c < scales.length; c++) {
+            scales[c] = (scales[c] > 0 && scales[c] < Double.POSITIVE_INFINITY) ? 2 * scales[c] : 1;
+        }
+        return scales;
+    }
+
+    /**
+     * Computes the coefficients from the values of the transform at the Chebyshev nodes of each tile.
+     *
+     * @return Whether all values are finite and all coefficients can be represented.
+     */
+    private boolean interpolate(final MathTransform trs) throws TransformException {
+        final double[] nodes = new double[size];
+        final double[][] cosines = new double[size][size];
+        for (int p = 0; p < size; p++) {
+            nodes[p] = Math.cos(Math.PI * (p + 0.5) / size);
+            for (int a = 0; a < size; a++) {
+                cosines[a][p] = Math.cos(Math.PI * a * (p + 0.5) / size);
+            }
+        }
+        final int perTile = size * size;
+        final double[] points = new double[tiles * tiles * perTile * 2];
+        int k = 0;
+        for (int j = 0; j < tiles; j++) {
+            for (int i = 0; i < tiles; i++) {
+                for (int p = 0; p < size; p++) {
+                    for (int q = 0; q < size; q++) {
+                        points[k++] = x0 + (i + (nodes[p] + 1) / 2) / scaleX;
+                        points[k++] = y0 + (j + (nodes[q] + 1) / 2) / scaleY;
+                    }
+                }
+            }
+        }
+        final double[] values = new double[tiles * tiles * perTile * dimension];
+        trs.transform(points, 0, values, 0, tiles * tiles * perTile);
+        final double[][] partial = new double[size][size];
+        int c = 0;
+        for (int tile = 0; tile < tiles * tiles; tile++) {
+            for (int d = 0; d < dimension; d++) {
+                // Sum over x nodes first, then over y nodes.
+                for (int a = 0; a < size; a++) {
+                    for (int q = 0; q < size; q++) {
+                        double sum = 0;
+                        for (int p = 0; p < size; p++) {
+                            sum += values[((tile * perTile) + p * size + q) * dimension + d] * cosines[a][p];
+                        }
+                        partial[a][q] = sum;
+                    }
+                }
+                for (int a = 0; a < size; a++) {
+                    for (int b = 0; b < size; b++) {
+                        double sum = 0;
+                        for (int q = 0; q < size; q++) {
+                            sum += partial[a][q] * cosines[b][q];
+                        }
+                        sum *= (a == 0 ? 1 : 2) * (b == 0 ? 1 : 2) / (double) perTile;
+                        final double n = Math.rint(sum / quanta[d]);
+                        if (!(Math.abs(n) < 0x1p53)) {
+                            return false;
+                        }
+                        coefficients[c++] = (long) n;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the approximation with the exact transform on the verification sample, and updates {@link #maximalError}.
+     *
+     * @param check If non-null, the inverse of {@code trs} used for measuring errors in its source coordinates.
+     * @param threshold Maximal error on the sample.
+     * @return Whether all errors are within the threshold.
+     */
+    private boolean verify(final MathTransform trs, final MathTransform check, final double threshold) throws TransformException {
+        final int n = size * VERIFICATION_DENSITY;
+        final int count = tiles * n * tiles * n;
+        final double[] points = new double[count * 2];
+        final double[] approximated = new double[count * dimension];
+        int k = 0;
+        for (int j = 0; j < tiles; j++) {
+            for (int i = 0; i < tiles; i++) {
+                for (int p = 0; p < n; p++) {
+                    for (int q = 0; q < n; q++) {
+                        points[k++] = x0 + (i + p / (n - 1.0)) / scaleX;
+                        points[k++] = y0 + (j + q / (n - 1.0)) / scaleY;
+                    }
+                }
+            }
+        }
+        final var tu = new double[size];
+        final var tv = new double[size];
+        for (int i = 0; i < count; i++) {
+            transform(points, i * 2, approximated, i * dimension, tu, tv);
+        }
+        final double[] expected;
+        final double[] actual;
+        final int dim;
+        if (check != null) {
+            expected = points;
+            actual = new double[count * 2];
+            check.transform(approximated, 0, actual, 0, count);
+            dim = 2;
+        } else {
+            expected = new double[count * dimension];
+            actual = approximated;
+            trs.transform(points, 0, expected, 0, count);
+            dim = dimension;
+        }
+        double max = 0;
+        for (int i = 0; i < count * dim; i += dim) {
+            double sum = 0;
+            for (int d = 0; d < dim; d++) {
+                final double delta = actual[i + d] - expected[i + d];
+                sum += delta * delta;
+            }
+            final double error = Math.sqrt(sum);
+            if (!(error <= threshold)) {
+                return false;
+            }
+            max = Math.max(max, error);
+        }
+        maximalError = max;
+        return true;
+    }
+
+    /**
+     * Transforms a single point with the same arithmetic as the generated code.
+     */
+    private void transform(final double[] src, final int srcOff, final double[] dst, int dstOff, final double[] tu, final double[] tv) {
+        final double x = (src[srcOff] - x0) * scaleX;
+        final double y = (src[srcOff + 1] - y0) * scaleY;
+        if (!(x >= -MARGIN && x <= tiles + MARGIN && y >= -MARGIN && y <= tiles + MARGIN)) {
+            for (int d = 0; d < dimension; d++) {
+                dst[dstOff++] = Double.NaN;
+            }
+            return;
+        }
+        final int i = Math.min(Math.max((int) Math.floor(x), 0), tiles - 1);
+        final int j = Math.min(Math.max((int) Math.floor(y), 0), tiles - 1);
+        final double u = 2 * (x - i) - 1;
+        final double v = 2 * (y - j) - 1;
+        tu[0] = tv[0] = 1;
+        tu[1] = u;
+        tv[1] = v;
+        for (int k = 2; k < size; k++) {
+            tu[k] = 2 * u * tu[k - 1] - tu[k - 2];
+            tv[k] = 2 * v * tv[k - 1] - tv[k - 2];
+        }
+        int p = (j * tiles + i) * (dimension * size * size);
+        for (int d = 0; d < dimension; d++) {
+            double s = 0;
+            for (int a = 0; a < size; a++) {
+                double r = 0;
+                for (int b = 0; b < size; b++) {
+                    r += coefficients[p++] * tv[b];
+                }
+                s += r * tu[a];
+            }
+            dst[dstOff++] = s * quanta[d];
+        }
+    }
+
+    @Override
+    public double maximalError() {
+        return maximalError;
+    }
+
+    /**
+     * Returns the coefficients as a comma-separated list.
+     */
+    private String coefficientList() {
+        final var sb = new StringBuilder(coefficients.length * 8);
+        for (int i = 0; i < coefficients.length; i++) {
+            if (i != 0) sb.append(", ");
+            sb.append(coefficients[i]);
+        }
+        return sb.toString();
+    }
+
+    private String quantumList() {
+        final var sb = new StringBuilder();
+        for (int d = 0; d < dimension; d++) {
+            if (d != 0) sb.append(", ");
+            sb.append(quanta[d]);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toJavaScript() {
+        final int stride = dimension * size * size;
+        return "{\n" +
+                "c: new Float64Array([" + coefficientList() + "]),\n" +
+                "q: [" + quantumList() + "],\n" +
+                "transform(src) {\n" +
+                "\tconst dst = new Array(" + dimension + ");\n" +
+                "\tthis.transformArray(src, 0, dst, 0, 1);\n" +
+                "\treturn dst;\n" +
+                "},\n" +
+                "transformArray(src, srcOff, dst, dstOff, count) {\n" +
+                "\tconst c = this.c, q = this.q, tu = new Float64Array(" + size + "), tv = new Float64Array(" + size + ");\n" +
+                "\ttu[0] = tv[0] = 1;\n" +
+                "\twhile (--count >= 0) {\n" +
+                "\t\tconst x = (src[srcOff++]" + TransformApproximation.offset(x0) + ") * " + scaleX + ", y = (src[srcOff++]" + TransformApproximation.offset(y0) + ") * " + scaleY + ";\n" +
+                "\t\tif (!(x >= " + -MARGIN + " && x <= " + (tiles + MARGIN) + " && y >= " + -MARGIN + " && y <= " + (tiles + MARGIN) + ")) {\n" +
+                "\t\t\tfor (let d = 0; d < " + dimension + "; d++) dst[dstOff++] = NaN;\n" +
+                "\t\t\tcontinue;\n" +
+                "\t\t}\n" +
+                "\t\tconst i = Math.min(Math.max(Math.floor(x), 0), " + (tiles - 1) + "), j = Math.min(Math.max(Math.floor(y), 0), " + (tiles - 1) + ");\n" +
+                "\t\tconst u = 2 * (x - i) - 1, v = 2 * (y - j) - 1;\n" +
+                "\t\ttu[1] = u;\n" +
+                "\t\ttv[1] = v;\n" +
+                "\t\tfor (let k = 2; k < " + size + "; k++) {\n" +
+                "\t\t\ttu[k] = 2 * u * tu[k - 1] - tu[k - 2];\n" +
+                "\t\t\ttv[k] = 2 * v * tv[k - 1] - tv[k - 2];\n" +
+                "\t\t}\n" +
+                "\t\tlet p = (j * " + tiles + " + i) * " + stride + ";\n" +
+                "\t\tfor (let d = 0; d < " + dimension + "; d++) {\n" +
+                "\t\t\tlet s = 0;\n" +
+                "\t\t\tfor (let a = 0; a < " + size + "; a++) {\n" +
+                "\t\t\t\tlet r = 0;\n" +
+                "\t\t\t\tfor (let b = 0; b < " + size + "; b++) r += c[p++] * tv[b];\n" +
+                "\t\t\t\ts += r * tu[a];\n" +
+                "\t\t\t}\n" +
+                "\t\t\tdst[dstOff++] = s * q[d];\n" +
+                "\t\t}\n" +
+                "\t}\n" +
+                "}\n" +
+                "}";
+    }
+
+    /**
+     * Writes a Python function transforming a point, with the same signature as the functions written by
+     * {@link BatchTransformWriter#writePython(MathTransform, String, java.util.function.Function)}.
+     * Coefficients are module-level lists named after the function.
+     *
+     * @param name Name of the function.
+     * @return Python code declaring the function, which uses the {@code math} module.
+     */
+    String toPython(final String name) {
+        final int stride = dimension * size * size;
+        return name + "_c = [" + coefficientList() + "]\n" +
+                name + "_q = [" + quantumList() + "]\n\n" +
+                "def " + name + "(src):\n" +
+                "  x = (src[0]" + TransformApproximation.offset(x0) + ") * " + scaleX + "\n" +
+                "  y = (src[1]" + TransformApproximation.offset(y0) + ") * " + scaleY + "\n" +
+                "  if not (" + -MARGIN + " <= x <= " + (tiles + MARGIN) + " and " + -MARGIN + " <= y <= " + (tiles + MARGIN) + "):\n" +
+                "    return [math.nan] * " + dimension + "\n" +
+                "  i = min(max(math.floor(x), 0), " + (tiles - 1) + ")\n" +
+                "  j = min(max(math.floor(y), 0), " + (tiles - 1) + ")\n" +
+                "  u = 2 * (x - i) - 1\n" +
+                "  v = 2 * (y - j) - 1\n" +
+                "  tu = [1.0, u]\n" +
+                "  tv = [1.0, v]\n" +
+                "  for k in range(2, " + size + "):\n" +
+                "    tu.append(2 * u * tu[k - 1] - tu[k - 2])\n" +
+                "    tv.append(2 * v * tv[k - 1] - tv[k - 2])\n" +
+                "  p = (j * " + tiles + " + i) * " + stride + "\n" +
+                "  dst = []\n" +
+                "  for d in range(" + dimension + "):\n" +
+                "    s = 0.0\n" +
+                "    for a in range(" + size + "):\n" +
+                "      s += sum(c * t for c, t in zip(" + name + "_c[p:p + " + size + "], tv)) * tu[a]\n" +
+                "      p += " + size + "\n" +
+                "    dst.append(s * " + name + "_q[d])\n" +
+                "  return dst\n\n";
+    }
+}
@@ -0,0 +1,743 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.geomatys.crsservice.service.ScriptTree.ArrayLiteral;
+import com.geomatys.crsservice.service.ScriptTree.Assign;
+import com.geomatys.crsservice.service.ScriptTree.Binary;
+import com.geomatys.crsservice.service.ScriptTree.Call;
+import com.geomatys.crsservice.service.ScriptTree.Conditional;
+import com.geomatys.crsservice.service.ScriptTree.Declare;
+import com.geomatys.crsservice.service.ScriptTree.Evaluate;
+import com.geomatys.crsservice.service.ScriptTree.For;
+import com.geomatys.crsservice.service.ScriptTree.If;
+import com.geomatys.crsservice.service.ScriptTree.Index;
+import com.geomatys.crsservice.service.ScriptTree.Jump;
+import com.geomatys.crsservice.service.ScriptTree.Literal;
+import com.geomatys.crsservice.service.ScriptTree.Member;
+import com.geomatys.crsservice.service.ScriptTree.Name;
+import com.geomatys.crsservice.service.ScriptTree.New;
+import com.geomatys.crsservice.service.ScriptTree.Node;
+import com.geomatys.crsservice.service.ScriptTree.ObjectLiteral;
+import com.geomatys.crsservice.service.ScriptTree.Property;
+import com.geomatys.crsservice.service.ScriptTree.Return;
+import com.geomatys.crsservice.service.ScriptTree.Spread;
+import com.geomatys.crsservice.service.ScriptTree.Statement;
+import com.geomatys.crsservice.service.ScriptTree.This;
+import com.geomatys.crsservice.service.ScriptTree.Unary;
+import com.geomatys.crsservice.service.ScriptTree.While;
+
+/**
+ * Writes the body of a Python class from the syntax tree of the JavaScript object of a step.
+ * Apache SIS exports steps only as JavaScript, so the tree of that code is the common representation
+ * from which Python is emitted, node by node. The output runs with Python 2.7 and 3, and uses the
+ * {@code math} module.
+ *
+ * <p>The step can also be translated for applying it on NumPy arrays of coordinates, with NumPy functions in place of
+ * {@code math} functions. Since the coordinates of all points go through the same code, branches are computed for
+ * all points and their results are selected point by point with {@code np.where}. This applies to conditional
+ * expressions, to {@code if} statements which only assign local variables, and to {@code if} statements returning
+ * early from a method. Steps with loops cannot be translated for arrays.</p>
+ *
+ * <p>Methods other than {@code transform} which cannot be translated are omitted,
+ * since the generated operations only call {@code transform}.</p>
+ */
+final class PythonTranslator {
+
+    /**
+     * Precedences of Python operators, from lowest to highest.
+     */
+    private static final int CONDITIONAL = 1, OR = 2, AND = 3, NOT = 4, COMPARE = 5, ADD = 6, MULTIPLY = 7, SIGN = 8, POWER = 9, ATOM = 10;
+
+    /**
+     * Names of Greek letters used in the variables of Apache SIS, which are not valid identifiers in Python 2.
+     */
+    private static final Map<Character, String> LETTERS = Map.ofEntries(
+            Map.entry('α', "alpha"), Map.entry('β', "beta"), Map.entry('γ', "gamma"), Map.entry('δ', "delta"),
+            Map.entry('ε', "epsilon"), Map.entry('ζ', "zeta"), Map.entry('η', "eta"), Map.entry('θ', "theta"),
+            Map.entry('ι', "iota"), Map.entry('κ', "kappa"), Map.entry('λ', "lam"), Map.entry('μ', "mu"),
+            Map.entry('ν', "nu"), Map.entry('ξ', "xi"), Map.entry('π', "pi"), Map.entry('ρ', "rho"),
+            Map.entry('σ', "sigma"), Map.entry('τ', "tau"), Map.entry('υ', "upsilon"), Map.entry('φ', "phi"),
+            Map.entry('χ', "chi"), Map.entry('ψ', "psi"), Map.entry('ω', "omega"), Map.entry('Γ', "Gamma"),
+            Map.entry('Δ', "Delta"), Map.entry('Θ', "Theta"), Map.entry('Λ', "Lam"), Map.entry('Π', "Pi"),
+            Map.entry('Σ', "Sigma"), Map.entry('Φ', "Phi"), Map.entry('Ψ', "Psi"), Map.entry('Ω', "Omega"),
+            Map.entry('ℯ', "e"));
+
+    /**
+     * Python keywords and names used by the generated code, which must not be redefined by variables.
+     */
+    private static final Set<String> RESERVED = Set.of(
+            "and", "as", "assert", "async", "await", "def", "del", "elif", "except", "exec", "from", "global", "is",
+            "lambda", "nonlocal", "not", "or", "pass", "print", "raise", "None", "True", "False", "yield", "with",
+            "math", "np", "self", "len", "min", "max", "abs", "int", "float", "list", "range");
+
+    /**
+     * Functions of the JavaScript {@code Math} object having the same name in the Python {@code math} module.
+     */
+    private static final Set<String> MATH = Set.of(
+            "sin", "cos", "tan", "asin", "acos", "atan", "atan2", "sinh", "cosh", "tanh", "asinh", "acosh", "atanh",
+            "exp", "expm1", "log", "log1p", "log10", "sqrt", "pow", "hypot", "floor", "ceil", "trunc");
+
+    /**
+     * Constants of the JavaScript {@code Math} and {@code Number} objects.
+     */
+    private static final Map<String, String> CONSTANTS = Map.ofEntries(
+            Map.entry("Math.PI", "math.pi"), Map.entry("Math.E", "math.e"), Map.entry("Math.SQRT2", "math.sqrt(2)"),
+            Map.entry("Math.SQRT1_2", "math.sqrt(0.5)"), Map.entry("Math.LN2", "math.log(2)"), Map.entry("Math.LN10", "math.log(10)"),
+            Map.entry("Math.LOG2E", "(1 / math.log(2))"), Map.entry("Math.LOG10E", "(1 / math.log(10))"),
+            Map.entry("Number.POSITIVE_INFINITY", "float('inf')"), Map.entry("Number.NEGATIVE_INFINITY", "float('-inf')"),
+            Map.entry("Number.NaN", "float('nan')"), Map.entry("Number.EPSILON", "2.220446049250313e-16"),
+            Map.entry("Number.MAX_VALUE", "1.7976931348623157e308"), Map.entry("Number.MIN_VALUE", "5e-324"));
+
+    /**
+     * Functions of the Python {@code math} module which have a different name in NumPy.
+     */
+    private static final Map<String, String> NUMPY_FUNCTIONS = Map.of(
+            "asin", "arcsin", "acos", "arccos", "atan", "arctan", "atan2", "arctan2",
+            "asinh", "arcsinh", "acosh", "arccosh", "atanh", "arctanh", "pow", "power");
+
+    private final StringBuilder out = new StringBuilder();
+
+    /**
+     * Whether variables hold NumPy arrays of coordinates instead of single coordinates.
+     */
+    private final boolean numpy;
+
+    /**
+     * Local variables having a value at the current statement, for selecting the values of branches with NumPy.
+     */
+    private final Set<String> defined = new HashSet<>();
+
+    /**
+     * Number of branches written with NumPy, for naming the variables holding their conditions and values.
+     */
+    private int branchCount;
+
+    private PythonTranslator(final boolean numpy) {
+        this.numpy = numpy;
+    }
+
+    /**
+     * Translates the JavaScript object of a step to the body of a Python class.
+     * Each line of the result starts with a line separator and an indentation of two spaces.
+     *
+     * @param javascript JavaScript code of an object literal.
+     * @return Body of a Python class.
+     * @throws UnsupportedOperationException if the {@code transform} method cannot be translated.
+     */
+    static String translate(final String javascript) {
+        final var translator = new PythonTranslator(false);
+        translator.object(ScriptTree.parse(javascript), 1);
+        return translator.out.toString();
+    }
+
+    /**
+     * Translates the JavaScript object of a step to the body of a Python class applying the step on NumPy arrays.
+     * The {@code transform} method takes and returns a list of arrays, one per dimension.
+     *
+     * @param javascript JavaScript code of an object literal.
+     * @return Body of a Python class.
+     * @throws UnsupportedOperationException if the {@code transform} method cannot be applied on whole arrays.
+     */
+    static String translateNumPy(final String javascript) {
+        final var translator = new PythonTranslator(true);
+        final Set<String> omitted = translator.object(ScriptTree.parse(javascript), 1);
+        final String code = translator.out.toString();
+        for (String name : omitted) {
+            if (code.contains('.' + name + '(')) {
+                throw unsupported("method " + name);
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Writes the properties of an object as the members of a class.
+     *
+     * @return Names of the methods which have been omitted because they cannot be translated.
+     */
+    private Set<String> object(final ObjectLiteral object, final int indent) {
+        final Set<String> omitted = new LinkedHashSet<>();
+        final int start = out.length();
+        for (Property property : object.properties()) {
+            final String name = identifier(property.name());
+            if (property.isMethod()) {
+                final int mark = out.length();
+                try {
+                    final var parameters = new StringBuilder("self");
+                    defined.clear();
+                    for (String parameter : property.parameters()) {
+                        parameters.append(", ").append(identifier(parameter));
+                        defined.add(identifier(parameter));
+                    }
+                    line(indent, "def " + name + '(' + parameters + "):");
+                    if (numpy) {
+                        // Branches are computed for all points, including the points where they produce NaN.
+                        line(indent + 1, "with np.errstate(all='ignore'):");
+                        methodBody(property.body(), indent + 2);
+                    } else {
+                        block(property.body(), indent + 1);
+                    }
+                } catch (UnsupportedOperationException e) {
+                    if (property.name().equals("transform")) {
+                        throw e;
+                    }
+                    out.setLength(mark);
+                    omitted.add(name);
+                }
+            } else if (property.value() instanceof ObjectLiteral nested) {
+                line(indent, "class " + name + "C:");
+                omitted.addAll(object(nested, indent + 1));
+                line(indent, name + " = " + name + "C()");
+            } else {
+                line(indent, name + " = " + expression(property.value(), CONDITIONAL));
+            }
+        }
+        if (out.length() == start) {
+            line(indent, "pass");
+        }
+        return omitted;
+    }
+
+    /**
+     * Writes the body of a method applied on NumPy arrays. A statement {@code if (condition) return value;}
+     * is written as the computation of the condition and of the value, followed by the remaining statements.
+     * The returned value, either an array or a list of arrays, is then selected point by point among the values of all
+     * return statements. Other return statements are supported only at the end of the method.
+     */
+    private void methodBody(final List<Statement> statements, final int indent) {
+        final List<Integer> guards = new ArrayList<>();
+        final int start = out.length();
+        for (int i = 0; i < statements.size(); i++) {
+            final Statement statement = statements.get(i);
+            if (statement instanceof If branch && branch.otherwise().isEmpty() && branch.then().size() == 1
+                    && branch.then().get(0) instanceof Return early && early.value() != null)
+            {
+                final int n = branchCount++;
+                line(indent, "_m" + n + " = " + condition(branch.condition()));
+                line(indent, "_r" + n + " = " + expression(early.value(), CONDITIONAL));
+                guards.add(n);
+            } else if (statement instanceof Return result && i == statements.size() - 1) {
+                if (guards.isEmpty()) {
+                    line(indent, result.value() != null ? "return " + expression(result.value(), CONDITIONAL) : "return");
+                } else if (result.value() != null) {
+                    line(indent, "r = " + expression(result.value(), CONDITIONAL));
+                    for (int j = guards.size(); --j >= 0;) {
+                        final int n = guards.get(j);
+                        line(indent, "r = [np.where(_m" + n + ", a, b) for a, b in zip(_r" + n + ", r)] if isinstance(r, list)"
+                                + " else np.where(_m" + n + ", _r" + n + ", r)");
+                    }
+                    line(indent, "return r");
+                }
+            } else {
+                statement(statement, indent);
+            }
+        }
+        if (!guards.isEmpty() && !(statements.get(statements.size() - 1) instanceof Return last && last.value() != null)) {
+            throw unsupported("return in branch");
+        }
+        if (out.length() == start) {
+            line(indent, "pass");
+        }
+    }
+
+    /**
+     * Writes an {@code if} statement applied on NumPy arrays. Both branches are computed for all points,
+     * then each variable assigned in a branch takes the value of the branch selected by the condition for each point.
+     * Branches can only declare and assign local variables, or contain nested {@code if} statements of the same kind.
+     */
+    private void select(final If branch, final int indent) {
+        final Set<String> then = assigned(branch.then());
+        final Set<String> otherwise = assigned(branch.otherwise());
+        final Set<String> all = new LinkedHashSet<>(then);
+        all.addAll(otherwise);
+        final Set<String> before = new HashSet<>(defined);
+        for (String name : all) {
+            if (!before.contains(name) && !(then.contains(name) && otherwise.contains(name))) {
+                throw unsupported("variable " + name + " assigned in only one branch");
+            }
+        }
+        final int n = branchCount++;
+        final String mask = "_m" + n;
+        line(indent, mask + " = " + condition(branch.condition()));
+        for (String name : all) {
+            if (before.contains(name)) {
+                line(indent, "_o" + n + '_' + name + " = " + name);
+            }
+        }
+        for (Statement statement : branch.then()) {
+            statement(statement, indent);
+        }
+        for (String name : then) {
+            line(indent, "_t" + n + '_' + name + " = " + name);
+            if (before.contains(name)) {
+                line(indent, name + " = _o" + n + '_' + name);
+            }
+        }
+        defined.clear();
+        defined.addAll(before);
+        for (Statement statement : branch.otherwise()) {
+            statement(statement, indent);
+        }
+        for (String name : all) {
+            line(indent, name + " = np.where(" + mask + ", " + (then.contains(name) ? "_t" : "_o") + n + '_' + name + ", " + name + ')');
+        }
+        defined.clear();
+        defined.addAll(before);
+        defined.addAll(all);
+    }
+
+    /**
+     * Returns the local variables declared before the given statements and assigned by them, as Python identifiers.
+     * Variables declared in the statements are local to the branch and ignored.
+     *
+     * @throws UnsupportedOperationException if the statements do something else than declaring and assigning variables.
+     */
+    private static Set<String> assigned(final List<Statement> statements) {
+        final Set<String> names = new LinkedHashSet<>();
+        final Set<String> local = new HashSet<>();
+        for (Statement statement : statements) {
+            if (statement instanceof Declare declare) {
+                local.add(identifier(declare.name()));
+            } else if (statement instanceof Assign assign && assign.target() instanceof Name name) {
+                names.add(identifier(name.name()));
+            } else if (statement instanceof If branch) {
+                names.addAll(assigned(branch.then()));
+                names.addAll(assigned(branch.otherwise()));
+            } else {
+                throw unsupported(statement.getClass().getSimpleName() + " in branch on arrays");
+            }
+        }
+        names.removeAll(local);
+        return names;
+    }
+
+    /**
+     * Returns the Python code of a condition. With NumPy, logical operators are applied point by point.
+     */
+    private String condition(final Node node) {
+        if (numpy) {
+            if (node instanceof Binary binary && (binary.operator().equals("&&") || binary.operator().equals("||"))) {
+                return (binary.operator().equals("&&") ? "np.logical_and(" : "np.logical_or(")
+                        + condition(binary.left()) + ", " + condition(binary.right()) + ')';
+            }
+            if (node instanceof Unary unary && unary.operator().equals("!")) {
+                return "np.logical_not(" + condition(unary.operand()) + ')';
+            }
+        }
+        return expression(node, CONDITIONAL);
+    }
+
+    /**
+     * Returns the name of the given function of the {@code math} module, or of NumPy if applied on arrays.
+     */
+    private String function(final String name) {
+        return numpy ? "np." + NUMPY_FUNCTIONS.getOrDefault(name, name) : "math." + name;
+    }
+
+    /**
+     * Writes the given statements, or {@code pass} if none.
+     */
+    private void block(final List<Statement> statements, final int indent) {
+        final int start = out.length();
+        for (Statement statement : statements) {
+            statement(statement, indent);
+        }
+        if (out.length() == start) {
+            line(indent, "pass");
+        }
+    }
+
+    private void statement(final Statement statement, final int indent) {
+        if (numpy && !(statement instanceof Declare || statement instanceof Assign || statement instanceof Evaluate || statement instanceof If)) {
+            throw unsupported(statement.getClass().getSimpleName() + " on arrays");
+        }
+        if (statement instanceof Declare declare) {
+            if (declare.value() != null) {
+                line(indent, identifier(declare.name()) + " = " + expression(declare.value(), CONDITIONAL));
+                defined.add(identifier(declare.name()));
+            }
+        } else if (statement instanceof Assign assign) {
+            final String target = expression(assign.target(), ATOM);
+            if (assign.target() instanceof Name name) {
+                defined.add(identifier(name.name()));
+            }
+            if (assign.operator().equals("%=")) {
+                line(indent, target + " = " + function("fmod") + '(' + target + ", " + expression(assign.value(), CONDITIONAL) + ')');
+            } else if (assign.operator().matches("[-+*/]?=|\\*\\*=")) {
+                line(indent, target + ' ' + assign.operator() + ' ' + expression(assign.value(), CONDITIONAL));
+            } else {
+                throw unsupported(assign.operator());
+            }
+        } else if (statement instanceof Evaluate evaluate) {
+            line(indent, expression(evaluate.expression(), CONDITIONAL));
+        } else if (numpy && statement instanceof If branch) {
+            select(branch, indent);
+        } else if (statement instanceof If branch) {
+            line(indent, "if " + expression(branch.condition(), CONDITIONAL) + ':');
+            block(branch.then(), indent + 1);
+            List<Statement> otherwise = branch.otherwise();
+            while (otherwise.size() == 1 && otherwise.get(0) instanceof If next) {
+                line(indent, "elif " + expression(next.condition(), CONDITIONAL) + ':');
+                block(next.then(), indent + 1);
+                otherwise = next.otherwise();
+            }
+            if (!otherwise.isEmpty()) {
+                line(indent, "else:");
+                block(otherwise, indent + 1);
+            }
+        } else if (statement instanceof For loop) {
+            forLoop(loop, indent);
+        } else if (statement instanceof While loop) {
+            if (loop.atLeastOnce()) {
+                if (hasContinue(loop.body())) {
+                    throw unsupported("continue in do-while");
+                }
+                line(indent, "while True:");
+                block(loop.body(), indent + 1);
+                line(indent + 1, "if " + expression(new Unary("!", loop.condition()), CONDITIONAL) + ':');
+                line(indent + 2, "break");
+            } else {
+                line(indent, "while " + expression(loop.condition(), CONDITIONAL) + ':');
+                block(loop.body(), indent + 1);
+            }
+        } else if (statement instanceof Return result) {
+            line(indent, result.value() != null ? "return " + expression(result.value(), CONDITIONAL) : "return");
+        } else if (statement instanceof Jump jump) {
+            line(indent, jump.isBreak() ? "break" : "continue");
+        }
+    }
+
+    /**
+     * Writes a {@code for} loop, as a loop over a range if it counts from an integer by steps of 1.
+     */
+    private void forLoop(final For loop, final int indent) {
+        if (loop.init().size() == 1 && loop.init().get(0) instanceof Declare start && start.value() instanceof Literal first
+                && first.text().matches("\\d+") && loop.condition() instanceof Binary test && test.left().equals(new Name(start.name()))
+                && (test.operator().equals("<") || test.operator().equals("<=")) && loop.update().size() == 1
+                && loop.update().get(0).equals(new Assign(new Name(start.name()), "+=", new Literal("1")))
+                && !assigns(loop.body(), start.name()))
+        {
+            final boolean inclusive = test.operator().equals("<=");
+            String end;
+            if (test.right() instanceof Literal limit && limit.text().matches("\\d+")) {
+                end = inclusive ? String.valueOf(Long.parseLong(limit.text()) + 1) : limit.text();
+            } else {
+                end = expression(test.right(), CONDITIONAL);
+                end = inclusive ? "int(math.floor(" + end + ")) + 1" : "int(math.ceil(" + end + "))";
+            }
+            line(indent, "for " + identifier(start.name()) + " in range(" + first.text() + ", " + end + "):");
+            block(loop.body(), indent + 1);
+            return;
+        }
+        if (hasContinue(loop.body())) {
+            throw unsupported("continue in for loop");
+        }
+        for (Statement statement : loop.init()) {
+            statement(statement, indent);
+        }
+        line(indent, "while " + (loop.condition() != null ? expression(loop.condition(), CONDITIONAL) : "True") + ':');
+        final List<Statement> body = new ArrayList<>(loop.body());
+        body.addAll(loop.update());
+        block(body, indent + 1);
+    }
+
+    /**
+     * Returns whether the given statements assign the given variable, including in nested statements.
+     */
+    private static boolean assigns(final List<Statement> statements, final String name) {
+        for (Statement statement : statements) {
+            if (statement instanceof Assign assign && assign.target().equals(new Name(name))) return true;
+            if (statement instanceof If branch && (assigns(branch.then(), name) || assigns(branch.otherwise(), name))) return true;
+            if (statement instanceof While loop && assigns(loop.body(), name)) return true;
+            if (statement instanceof For loop && (assigns(loop.init(), name) || assigns(loop.update(), name) || assigns(loop.body(), name))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the given statements contain a {@code continue} applying to the enclosing loop.
+     */
+    private static boolean hasContinue(final List<Statement> statements) {
+        for (Statement statement : statements) {
+            if (statement instanceof Jump jump && !jump.isBreak()) return true;
+            if (statement instanceof If branch && (hasContinue(branch.then()) || hasContinue(branch.otherwise()))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the Python code of the given expression, in parentheses if its precedence is lower than the given one.
+     */
+    private String expression(final Node node, final int context) {
+        final String code;
+        final int precedence;
+        if (node instanceof Literal literal) {
+            switch (literal.text()) {
+                case "true":  code = "True";  break;
+                case "false": code = "False"; break;
+                default:      code = literal.text(); break;
+            }
+            precedence = ATOM;
+        } else if (node instanceof Name name) {
+            switch (name.name()) {
+                case "NaN":       code = "float('nan')"; break;
+                case "Infinity":  code = "float('inf')"; break;
+                case "undefined": case "null": code = "None"; break;
+                default:          code = identifier(name.name()); break;
+            }
+            precedence = ATOM;
+        } else if (node instanceof This) {
+            code = "self";
+            precedence = ATOM;
+        } else if (node instanceof Member member) {
+            final String constant = (member.object() instanceof Name owner) ? CONSTANTS.get(owner.name() + '.' + member.name()) : null;
+            if (constant != null) {
+                code = numpy ? constant.replace("math.", "np.") : constant;
+            } else if (member.name().equals("length")) {
+                code = "len(" + expression(member.object(), CONDITIONAL) + ')';
+            } else {
+                code = expression(member.object(), ATOM) + '.' + identifier(member.name());
+            }
+            precedence = ATOM;
+        } else if (node instanceof Index index) {
+            code = expression(index.array(), ATOM) + '[' + expression(index.index(), CONDITIONAL) + ']';
+            precedence = ATOM;
+        } else if (node instanceof Call call) {
+            return call(call, context);
+        } else if (node instanceof Unary unary) {
+            if (unary.operator().equals("!")) {
+                if (numpy) {
+                    throw unsupported("! outside conditions on arrays");
+                }
+                code = "not " + expression(unary.operand(), NOT);
+                precedence = NOT;
+            } else {
+                code = unary.operator() + expression(unary.operand(), SIGN);
+                precedence = SIGN;
+            }
+        } else if (node instanceof Binary binary) {
+            return binary(binary, context);
+        } else if (numpy && node instanceof Conditional conditional) {
+            code = "np.where(" + condition(conditional.condition()) + ", " + expression(conditional.then(), CONDITIONAL)
+                    + ", " + expression(conditional.otherwise(), CONDITIONAL) + ')';
+            precedence = ATOM;
+        } else if (node instanceof Conditional conditional) {
+            code = expression(conditional.then(), OR) + " if " + expression(conditional.condition(), OR)
+                    + " else " + expression(conditional.otherwise(), CONDITIONAL);
+            precedence = CONDITIONAL;
+        } else if (node instanceof ArrayLiteral array) {
+            final List<String> parts = new ArrayList<>();
+            final List<String> elements = new ArrayList<>();
+            for (Node element : array.elements()) {
+                if (element instanceof Spread spread) {
+                    if (!elements.isEmpty()) {
+                        parts.add("[" + String.join(", ", elements) + ']');
+                        elements.clear();
+                    }
+                    parts.add("list(" + expression(spread.array(), CONDITIONAL) + ')');
+                } else {
+                    elements.add(expression(element, CONDITIONAL));
+                }
+            }
+            if (!elements.isEmpty() || parts.isEmpty()) {
+                parts.add("[" + String.join(", ", elements) + ']');
+            }
+            code = String.join(" + ", parts);
+            precedence = (parts.size() > 1) ? ADD : ATOM;
+        } else if (node instanceof New creation && creation.arguments().size() == 1) {
+            final Node length = creation.arguments().get(0);
+            if (creation.type().endsWith("Array") && length instanceof ArrayLiteral) {
+                code = expression(length, ATOM);
+                precedence = ATOM;
+            } else if (creation.type().equals("Array")) {
+                code = "[None] * " + expression(length, MULTIPLY + 1);
+                precedence = MULTIPLY;
+            } else if (creation.type().endsWith("Array")) {
+                code = "[0.0] * " + expression(length, MULTIPLY + 1);
+                precedence = MULTIPLY;
+            } else {
+                throw unsupported("new " + creation.type());
+            }
+        } else {
+            throw unsupported(node.getClass().getSimpleName());
+        }
+        return (precedence < context) ? '(' + code + ')' : code;
+    }
+
+    private String binary(final Binary binary, final int context) {
+        final String operator;
+        final int precedence;
+        int left, right;
+        if (numpy && (binary.operator().equals("||") || binary.operator().equals("&&"))) {
+            // The JavaScript operators return one of their operands, which differs from the NumPy logical functions.
+            throw unsupported(binary.operator() + " outside conditions on arrays");
+        }
+        switch (binary.operator()) {
+            case "||": operator = "or";  precedence = OR;  left = OR;  right = OR + 1;  break;
+            case "&&": operator = "and"; precedence = AND; left = AND; right = AND + 1; break;
+            case "==": case "===": operator = "=="; precedence = COMPARE; left = right = COMPARE + 1; break;
+            case "!=": case "!==": operator = "!="; precedence = COMPARE; left = right = COMPARE + 1; break;
+            case "<": case "<=": case ">": case ">=": operator = binary.operator(); precedence = COMPARE; left = right = COMPARE + 1; break;
+            case "+": case "-": operator = binary.operator(); precedence = ADD; left = ADD; right = ADD + 1; break;
+            case "*": case "/": operator = binary.operator(); precedence = MULTIPLY; left = MULTIPLY; right = MULTIPLY + 1; break;
+            case "**": operator = "**"; precedence = POWER; left = POWER + 1; right = SIGN; break;
+            case "%": {
+                // JavaScript remainder has the sign of the dividend, like fmod and unlike the Python operator.
+                return function("fmod") + '(' + expression(binary.left(), CONDITIONAL) + ", " + expression(binary.right(), CONDITIONAL) + ')';
+            }
+            default: throw unsupported(binary.operator());
+        }
+        String first = expression(binary.left(), left);
+        if (operator.equals("/") && first.matches("\\d+") && binary.right() instanceof Literal) {
+            first += ".0";      // Integer division in Python 2.
+        }
+        final String code = first + ' ' + operator + ' ' + expression(binary.right(), right);
+        return (precedence < context) ? '(' + code + ')' : code;
+    }
+
+    /**
+     * Returns the Python code of a function or method call.
+     */
+    private String call(final Call call, final int context) {
+        final List<String> arguments = new ArrayList<>();
+        for (Node argument : call.arguments()) {
+            arguments.add(expression(argument, CONDITIONAL));
+        }
+        final String list = String.join(", ", arguments);
+        final int n = arguments.size();
+        if (call.function() instanceof Member member) {
+            final String owner = (member.object() instanceof Name name) ? name.name() : null;
+            if ("Math".equals(owner)) {
+                final String f = member.name();
+                if (MATH.contains(f) && (n == 1 || (n == 2 && (f.equals("atan2") || f.equals("pow") || f.equals("hypot"))))) {
+                    return function(f) + '(' + list + ')';
+                }
+                switch (f) {
+                    case "abs":   if (n == 1) return function("fabs") + '(' + list + ')'; break;
+                    case "sign":  if (n == 1) return function("copysign") + "(1, " + list + ')'; break;
+                    case "round": if (n == 1) return function("floor") + '(' + expression(call.arguments().get(0), ADD) + " + 0.5)"; break;
+                    case "cbrt":  if (n == 1) return function("copysign") + '(' + function("pow") + '(' + function("fabs") + '(' + list + "), 1.0 / 3), " + list + ')'; break;
+                    case "log2":  if (n == 1) return wrap(function("log") + '(' + list + ") / " + function("log") + "(2)", MULTIPLY, context); break;
+                    case "fround": if (n == 1 && !numpy) return "float(" + list + ')'; break;
+                    case "min": case "max": {
+                        if (n >= 2) {
+                            if (!numpy) return f + '(' + list + ')';
+                            String code = arguments.get(0);
+                            for (int i = 1; i < n; i++) code = "np." + f + "imum(" + code + ", " + arguments.get(i) + ')';
+                            return code;
+                        }
+                        break;
+                    }
+                    case "hypot": {
+                        if (n > 2) {
+                            String code = arguments.get(0);
+                            for (int i = 1; i < n; i++) code = function("hypot") + '(' + code + ", " + arguments.get(i) + ')';
+                            return code;
+                        }
+                        break;
+                    }
+                }
+                throw unsupported("Math." + f + " with " + n + " arguments");
+            }
+            if ("Number".equals(owner) && n == 1) {
+                if (member.name().equals("isNaN")) return function("isnan") + '(' + list + ')';
+                if (member.name().equals("isFinite")) return isFinite(list, context);
+            }
+            final String array = expression(member.object(), ATOM);
+            switch (member.name()) {
+                case "slice": {
+                    if (n == 1) return array + '[' + list + ":]";
+                    if (n == 2) return array + '[' + arguments.get(0) + ':' + arguments.get(1) + ']';
+                    break;
+                }
+                case "concat": {
+                    final var code = new StringBuilder(array);
+                    for (Node argument : call.arguments()) {
+                        code.append(" + ").append(expression(argument, ADD + 1));
+                    }
+                    return wrap(code.toString(), ADD, context);
+                }
+            }
+        } else if (call.function() instanceof Name name && n == 1) {
+            if (name.name().equals("isNaN")) return function("isnan") + '(' + list + ')';
+            if (name.name().equals("isFinite")) return isFinite(list, context);
+        }
+        return expression(call.function(), ATOM) + '(' + list + ')';
+    }
+
+    /**
+     * Returns the Python code testing whether the given value is finite.
+     */
+    private String isFinite(final String value, final int context) {
+        if (numpy) {
+            return "np.isfinite(" + value + ')';
+        }
+        return wrap("not (math.isinf(" + value + ") or math.isnan(" + value + "))", NOT, context);
+    }
+
+    private static String wrap(final String code, final int precedence, final int context) {
+        return (precedence < context) ? '(' + code + ')' : code;
+    }
+
+    /**
+     * Returns a valid Python identifier for the given JavaScript identifier. Greek letters are replaced by their names
+     * and other non-ASCII characters by their code point. Parameters of kernel templates, starting with {@code $},
+     * are kept unchanged since they are replaced by numbers after translation.
+     */
+    static String identifier(final String name) {
+        if (name.startsWith("$")) {
+            return name;
+        }
+        final var sb = new StringBuilder(name.length() + 8);
+        boolean ascii = true;
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c < 128) {
+                sb.append(c);
+            } else {
+                ascii = false;
+                final String letter = LETTERS.get(c);
+                sb.append(letter != null ? letter : String.format("_u%04x", (int) c));
+            }
+        }
+        if (!ascii || RESERVED.contains(name)) {
+            sb.append('_');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends a line with the given indentation, in units of two spaces.
+     */
+    private void line(final int indent, final String text) {
+        out.append('\n').append("  ".repeat(indent)).append(text);
+    }
+
+    private static UnsupportedOperationException unsupported(final String construct) {
+        return new UnsupportedOperationException("Cannot translate transform step to Python, unsupported: " + construct);
+    }
+}
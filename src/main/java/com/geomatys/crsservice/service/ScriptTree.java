@@ -0,0 +1,568 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Syntax tree of the JavaScript object of a transform step, as exported by Apache SIS.
+ * The parser accepts the subset of JavaScript used by those objects: an object literal of properties and methods,
+ * declarations, assignments, {@code if}, {@code for} and {@code while} statements, and expressions without functions.
+ * The tree is used for translating the step to other languages without textual substitutions.
+ */
+final class ScriptTree {
+
+    /**
+     * An expression.
+     */
+    sealed interface Node permits Literal, Name, This, Member, Index, Call, Unary, Binary, Conditional, ArrayLiteral, Spread, New, ObjectLiteral {}
+
+    /** A number, or {@code true} or {@code false}. */
+    record Literal(String text) implements Node {}
+
+    /** A variable, a parameter or a global object such as {@code Math}. */
+    record Name(String name) implements Node {}
+
+    /** The {@code this} keyword. */
+    record This() implements Node {}
+
+    /** Access to a property by name, for example {@code Math.PI}. */
+    record Member(Node object, String name) implements Node {}
+
+    /** Access to an array element, for example {@code src[0]}. */
+    record Index(Node array, Node index) implements Node {}
+
+    /** Invocation of a function or method. */
+    record Call(Node function, List<Node> arguments) implements Node {}
+
+    /** Prefix operator: {@code -}, {@code +} or {@code !}. */
+    record Unary(String operator, Node operand) implements Node {}
+
+    /** Infix operator, including the logical ones. */
+    record Binary(String operator, Node left, Node right) implements Node {}
+
+    /** The {@code condition ? then : otherwise} operator. */
+    record Conditional(Node condition, Node then, Node otherwise) implements Node {}
+
+    /** An array literal, for example the returned coordinates. */
+    record ArrayLiteral(List<Node> elements) implements Node {}
+
+    /** Elements of an array inserted in an array literal, for example {@code [...src.slice(0, 2), z]}. */
+    record Spread(Node array) implements Node {}
+
+    /** Construction of an array, for example {@code new Float64Array(n)}. */
+    record New(String type, List<Node> arguments) implements Node {}
+
+    /** An object literal with its properties in declaration order. */
+    record ObjectLiteral(List<Property> properties) implements Node {}
+
+    /**
+     * A property of an object literal. Methods have a null value and a non-null body.
+     */
+    record Property(String name, Node value, List<String> parameters, List<Statement> body) {
+        boolean isMethod() {
+            return body != null;
+        }
+    }
+
+    /**
+     * A statement in the body of a method.
+     */
+    sealed interface Statement permits Declare, Assign, Evaluate, If, For, While, Return, Jump {}
+
+    /** Declaration of a variable, with a null value if not initialized. */
+    record Declare(String name, Node value) implements Statement {}
+
+    /** Assignment with {@code =} or a compound operator such as {@code +=}. Increments are written {@code += 1}. */
+    record Assign(Node target, String operator, Node value) implements Statement {}
+
+    /** Expression evaluated for its side effects, usually a method call. */
+    record Evaluate(Node expression) implements Statement {}
+
+    /** Conditional statement, with an empty list if there is no {@code else} part. */
+    record If(Node condition, List<Statement> then, List<Statement> otherwise) implements Statement {}
+
+    /** The {@code for (init; condition; update)} loop. The condition is null if omitted. */
+    record For(List<Statement> init, Node condition, List<Statement> update, List<Statement> body) implements Statement {}
+
+    /** The {@code while} loop, or the {@code do … while} loop if {@code atLeastOnce} is true. */
+    record While(Node condition, List<Statement> body, boolean atLeastOnce) implements Statement {}
+
+    /** Return statement, with a null value if none. */
+    record Return(Node value) implements Statement {}
+
+    /** The {@code break} or {@code continue} statement. */
+    record Jump(boolean isBreak) implements Statement {}
+
+    /**
+     * Binary operators by increasing precedence.
+     */
+    private static final String[][] BINARY = {
+        {"||"}, {"&&"}, {"==", "!=", "===", "!=="}, {"<", "<=", ">", ">="}, {"+", "-"}, {"*", "/", "%"}
+    };
+
+    private final List<String> tokens;
+
+    private int position;
+
+    private ScriptTree(final String code) {
+        tokens = tokenize(code);
+    }
+
+    /**
+     * Parses the JavaScript object literal of a step.
+     *
+     * @param code JavaScript code of an object literal.
+     * @return The parsed object.
+     * @throws UnsupportedOperationException if the code uses constructs outside the supported subset.
+     */
+    static ObjectLiteral parse(final String code) {
+        final var parser = new ScriptTree(code);
+        parser.expect("{");
+        final ObjectLiteral object = parser.object();
+        parser.accept(";");
+        if (parser.position < parser.tokens.size()) {
+            throw parser.unsupported(parser.peek());
+        }
+        return object;
+    }
+
+    /**
+     * Parses the properties of an object literal, after the opening brace.
+     */
+    private ObjectLiteral object() {
+        final List<Property> properties = new ArrayList<>();
+        while (!accept("}")) {
+            final String name = next();
+            if (accept(":")) {
+                if (accept("function")) {
+                    if (!peek().equals("(")) identifier();
+                    properties.add(method(name, false));
+                } else if (isArrowFunction()) {
+                    properties.add(method(name, true));
+                } else {
+                    properties.add(new Property(name, expression(), null, null));
+                }
+            } else if (peek().equals("(")) {
+                properties.add(method(name, false));
+            } else {
+                throw unsupported(peek());
+            }
+            if (!accept(",")) {
+                expect("}");
+                break;
+            }
+        }
+        return new ObjectLiteral(properties);
+    }
+
+    /**
+     * Returns whether the next tokens start an arrow function.
+     */
+    private boolean isArrowFunction() {
+        if (!peek().equals("(")) {
+            return position + 1 < tokens.size() && tokens.get(position + 1).equals("=>");
+        }
+        int depth = 0;
+        for (int i = position; i < tokens.size(); i++) {
+            final String token = tokens.get(i);
+            if (token.equals("(")) depth++;
+            if (token.equals(")") && --depth == 0) {
+                return i + 1 < tokens.size() && tokens.get(i + 1).equals("=>");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses the parameters and the body of a method.
+     */
+    private Property method(final String name, final boolean arrow) {
+        final List<String> parameters = new ArrayList<>();
+        if (accept("(")) {
+            if (!accept(")")) {
+                do parameters.add(identifier()); while (accept(","));
+                expect(")");
+            }
+        } else {
+            parameters.add(identifier());
+        }
+        if (arrow) {
+            expect("=>");
+            if (!peek().equals("{")) {
+                return new Property(name, null, parameters, List.of(new Return(expression())));
+            }
+        }
+        expect("{");
+        return new Property(name, null, parameters, block());
+    }
+
+    /**
+     * Parses statements until the closing brace.
+     */
+    private List<Statement> block() {
+        final List<Statement> statements = new ArrayList<>();
+        while (!accept("}")) {
+            statement(statements);
+        }
+        return statements;
+    }
+
+    /**
+     * Parses a block or a single statement, as in the body of {@code if} statements.
+     */
+    private List<Statement> body() {
+        if (accept("{")) {
+            return block();
+        }
+        final List<Statement> statements = new ArrayList<>();
+        statement(statements);
+        return statements;
+    }
+
+    /**
+     * Parses a statement and adds it to the given list. Declarations of many variables add many statements.
+     */
+    private void statement(final List<Statement> statements) {
+        final String token = next();
+        switch (token) {
+            case ";": break;
+            case "{": statements.addAll(block()); break;
+            case "const": case "let": case "var": {
+                declarations(statements);
+                accept(";");
+                break;
+            }
+            case "if": {
+                expect("(");
+                final Node condition = expression();
+                expect(")");
+                final List<Statement> then = body();
+                statements.add(new If(condition, then, accept("else") ? body() : List.of()));
+                break;
+            }
+            case "for": {
+                expect("(");
+                final List<Statement> init = new ArrayList<>();
+                if (accept("const") || accept("let") || accept("var")) {
+                    declarations(init);
+                } else if (!peek().equals(";")) {
+                    init.add(simple());
+                }
+                expect(";");
+                final Node condition = peek().equals(";") ? null : expression();
+                expect(";");
+                final List<Statement> update = new ArrayList<>();
+                if (!peek().equals(")")) {
+                    do update.add(simple()); while (accept(","));
+                }
+                expect(")");
+                statements.add(new For(init, condition, update, body()));
+                break;
+            }
+            case "while": {
+                expect("(");
+                final Node condition = expression();
+                expect(")");
+                statements.add(new While(condition, body(), false));
+                break;
+            }
+            case "do": {
+                final List<Statement> body = body();
+                expect("while");
+                expect("(");
+                final Node condition = expression();
+                expect(")");
+                accept(";");
+                statements.add(new While(condition, body, true));
+                break;
+            }
+            case "return": {
+                final boolean empty = peek().equals(";") || peek().equals("}");
+                statements.add(new Return(empty ? null : expression()));
+                accept(";");
+                break;
+            }
+            case "break": case "continue": {
+                statements.add(new Jump(token.equals("break")));
+                accept(";");
+                break;
+            }
+            default: {
+                position--;
+                statements.add(simple());
+                accept(";");
+                break;
+            }
+        }
+    }
+
+    /**
+     * Parses the variables of a declaration, after the {@code const}, {@code let} or {@code var} keyword.
+     */
+    private void declarations(final List<Statement> statements) {
+        do {
+            final String name = identifier();
+            statements.add(new Declare(name, accept("=") ? expression() : null));
+        } while (accept(","));
+    }
+
+    /**
+     * Parses an assignment, an increment or an expression evaluated for its side effects.
+     */
+    private Statement simple() {
+        if (peek().equals("++") || peek().equals("--")) {
+            final String operator = next();
+            return new Assign(postfix(), operator.substring(1) + '=', new Literal("1"));
+        }
+        final Node target = expression();
+        final String operator = peek();
+        if (operator.equals("++") || operator.equals("--")) {
+            next();
+            return new Assign(target, operator.substring(1) + '=', new Literal("1"));
+        }
+        if (operator.endsWith("=") && !operator.equals("==") && !operator.equals("===") && !operator.equals("!=")
+                && !operator.equals("!==") && !operator.equals("<=") && !operator.equals(">="))
+        {
+            next();
+            if (!(target instanceof Name || target instanceof Member || target instanceof Index)) {
+                throw unsupported(operator);
+            }
+            return new Assign(target, operator, expression());
+        }
+        return new Evaluate(target);
+    }
+
+    /**
+     * Parses an expression, starting with the operator of lowest precedence.
+     */
+    private Node expression() {
+        final Node condition = binary(0);
+        if (accept("?")) {
+            final Node then = expression();
+            expect(":");
+            return new Conditional(condition, then, expression());
+        }
+        return condition;
+    }
+
+    /**
+     * Parses binary operators of the given precedence level or higher, left associative.
+     */
+    private Node binary(final int level) {
+        if (level == BINARY.length) {
+            return unary();
+        }
+        Node left = binary(level + 1);
+        while (List.of(BINARY[level]).contains(peek())) {
+            final String operator = next();
+            left = new Binary(operator, left, binary(level + 1));
+        }
+        return left;
+    }
+
+    private Node unary() {
+        final String token = peek();
+        if (token.equals("-") || token.equals("+") || token.equals("!")) {
+            next();
+            return new Unary(token, unary());
+        }
+        final Node base = postfix();
+        if (accept("**")) {
+            return new Binary("**", base, unary());     // Right associative.
+        }
+        return base;
+    }
+
+    /**
+     * Parses a primary expression followed by member accesses, indices and calls.
+     */
+    private Node postfix() {
+        Node node = primary();
+        while (true) {
+            if (accept(".")) {
+                node = new Member(node, identifier());
+            } else if (accept("[")) {
+                node = new Index(node, expression());
+                expect("]");
+            } else if (accept("(")) {
+                node = new Call(node, arguments(")"));
+            } else {
+                return node;
+            }
+        }
+    }
+
+    private Node primary() {
+        final String token = next();
+        switch (token) {
+            case "(": {
+                final Node node = expression();
+                expect(")");
+                return node;
+            }
+            case "[": {
+                final List<Node> elements = new ArrayList<>();
+                while (!accept("]")) {
+                    if (accept(".")) {
+                        expect(".");
+                        expect(".");
+                        elements.add(new Spread(expression()));
+                    } else {
+                        elements.add(expression());
+                    }
+                    if (!accept(",")) {
+                        expect("]");
+                        break;
+                    }
+                }
+                return new ArrayLiteral(elements);
+            }
+            case "{": return object();
+            case "this": return new This();
+            case "true": case "false": return new Literal(token);
+            case "new": {
+                final String type = identifier();
+                expect("(");
+                return new New(type, arguments(")"));
+            }
+        }
+        final char c = token.charAt(0);
+        if (Character.isDigit(c) || c == '.') {
+            return new Literal(token);
+        }
+        if (Character.isJavaIdentifierStart(c) && !isKeyword(token)) {
+            return new Name(token);
+        }
+        throw unsupported(token);
+    }
+
+    /**
+     * Parses comma-separated expressions until the given closing token.
+     */
+    private List<Node> arguments(final String close) {
+        final List<Node> list = new ArrayList<>();
+        while (!accept(close)) {
+            list.add(expression());
+            if (!accept(",")) {
+                expect(close);
+                break;
+            }
+        }
+        return list;
+    }
+
+    private static boolean isKeyword(final String token) {
+        switch (token) {
+            case "function": case "return": case "if": case "else": case "for": case "while": case "do":
+            case "const": case "let": case "var": case "break": case "continue": case "typeof": case "delete":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private String identifier() {
+        final String token = next();
+        if (!Character.isJavaIdentifierStart(token.charAt(0)) || isKeyword(token)) {
+            throw unsupported(token);
+        }
+        return token;
+    }
+
+    private String next() {
+        if (position >= tokens.size()) {
+            throw unsupported("end of code");
+        }
+        return tokens.get(position++);
+    }
+
+    private String peek() {
+        return (position < tokens.size()) ? tokens.get(position) : "";
+    }
+
+    private boolean accept(final String token) {
+        if (peek().equals(token)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(final String token) {
+        if (!accept(token)) {
+            throw unsupported(peek());
+        }
+    }
+
+    private UnsupportedOperationException unsupported(final String token) {
+        return new UnsupportedOperationException("Unsupported JavaScript in transform step: " + token);
+    }
+
+    /**
+     * Splits JavaScript code in numbers, identifiers and symbols, without spaces and comments.
+     * Operators of many characters, for example {@code ===} or {@code +=}, are single tokens.
+     */
+    static List<String> tokenize(final String code) {
+        final List<String> tokens = new ArrayList<>();
+        int i = 0;
+        final int length = code.length();
+        while (i < length) {
+            final char c = code.charAt(i);
+            int end = i + 1;
+            if (Character.isWhitespace(c)) {
+                i = end;
+                continue;
+            }
+            if (code.startsWith("//", i)) {
+                end = code.indexOf('\n', i);
+                i = (end < 0) ? length : end;
+                continue;
+            }
+            if (code.startsWith("/*", i)) {
+                end = code.indexOf("*/", i + 2);
+                i = (end < 0) ? length : end + 2;
+                continue;
+            }
+            if (Character.isDigit(c) || (c == '.' && end < length && Character.isDigit(code.charAt(end)))) {
+                while (end < length) {
+                    final char n = code.charAt(end);
+                    if (Character.isLetterOrDigit(n) || n == '.' || ((n == '+' || n == '-') && (code.charAt(end - 1) | 0x20) == 'e')) {
+                        end++;
+                    } else break;
+                }
+            } else if (Character.isJavaIdentifierStart(c)) {
+                while (end < length && Character.isJavaIdentifierPart(code.charAt(end))) end++;
+            } else if (end < length && "+-*/=!<>&|".indexOf(c) >= 0) {
+                final char n = code.charAt(end);
+                if (c == '=' && n == '>') {
+                    end++;
+                } else if (n == '=' || (n == c && "+-*&|".indexOf(c) >= 0)) {
+                    end++;
+                    while (end < length && code.charAt(end) == '=') end++;
+                }
+            }
+            tokens.add(code.substring(i, end));
+            i = end;
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable R-tree over two-dimensional boxes, bulk-loaded with the Sort-Tile-Recursive (STR) algorithm.
+ * Boxes are stored as {@code [xmin, ymin, xmax, ymax]} quadruplets in flat arrays, one array per tree level.
+ * Each box is associated to an arbitrary integer value, which is given back by queries.
+ */
+final class SpatialIndex {
+
+    /**
+     * Maximal number of children per node.
+     */
+    private static final int NODE_SIZE = 16;
+
+    /**
+     * Boxes of each level. Level 0 contains the boxes of the indexed items in STR order,
+     * and the last level contains the root. Node {@code i} of level {@code k} covers nodes
+     * {@code i*NODE_SIZE} inclusive to {@code (i+1)*NODE_SIZE} exclusive of level {@code k-1}.
+     */
+    private final double[][] levels;
+
+    /**
+     * Values associated to the boxes of level 0.
+     */
+    private final int[] values;
+
+    /**
+     * Creates an index for the given boxes.
+     *
+     * @param boxes Boxes as {@code [xmin, ymin, xmax, ymax]} arrays.
+     * @param values Values associated to each box, in the same order.
+     */
+    SpatialIndex(final List<double[]> boxes, final int[] values) {
+        final int n = boxes.size();
+        final Integer[] order = IntStream.range(0, n).boxed().toArray(Integer[]::new);
+        // Sort by center x, then sort each vertical slice by center y.
+        Arrays.sort(order, Comparator.comparingDouble(i -> center(boxes.get(i), 0)));
+        final int leafCount = (n + NODE_SIZE - 1) / NODE_SIZE;
+        final int sliceSize = NODE_SIZE * (int) Math.ceil(Math.sqrt(leafCount));
+        for (int start = 0; start < n; start += sliceSize) {
+            Arrays.sort(order, start, Math.min(n, start + sliceSize), Comparator.comparingDouble(i -> center(boxes.get(i), 1)));
+        }
+        this.values = new int[n];
+        double[] level = new double[n * 4];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(boxes.get(order[i]), 0, level, i * 4, 4);
+            this.values[i] = values[order[i]];
+        }
+        final List<double[]> levels = new ArrayList<>();
+        levels.add(level);
+        while (level.length > 4) {
+            final int count = level.length / 4;
+            final double[] parent = new double[((count + NODE_SIZE - 1) / NODE_SIZE) * 4];
+            Arrays.fill(parent, Double.NaN);
+            for (int i = 0; i < count; i++) {
+                final int p = (i / NODE_SIZE) * 4;
+                final int c = i * 4;
+                parent[p    ] = min(parent[p    ], level[c    ]);
+                parent[p + 1] = min(parent[p + 1], level[c + 1]);
+                parent[p + 2] = max(parent[p + 2], level[c + 2]);
+                parent[p + 3] = max(parent[p + 3], level[c + 3]);
+            }
+            levels.add(parent);
+            level = parent;
+        }
+        this.levels = levels.toArray(double[][]::new);
+    }
+
+    private static double center(final double[] box, final int dimension) {
+        return (box[dimension] + box[dimension + 2]) / 2;
+    }
+
+    /**
+     * Minimum ignoring NaN in the first argument, which is used as the "no value yet" marker.
+     */
+    private static double min(final double current, final double value) {
+        return Double.isNaN(current) ? value : Math.min(current, value);
+    }
+
+    private static double max(final double current, final double value) {
+        return Double.isNaN(current) ? value : Math.max(current, value);
+    }
+
+    /**
+     * Sends to the given consumer the values of all boxes intersecting the given box.
+     * A value associated to many boxes may be sent many times.
+     */
+    void search(final double xmin, final double ymin, final double xmax, final double ymax, final IntConsumer action) {
+        if (values.length != 0) {
+            search(levels.length - 1, 0, xmin, ymin, xmax, ymax, action);
+        }
+    }
+
+    private void search(final int depth, final int node, final double xmin, final double ymin,
+                        final double xmax, final double ymax, final IntConsumer action)
+    {
+        final double[] level = levels[depth];
+        final int c = node * 4;
+        if (level[c] > xmax || level[c + 1] > ymax || level[c + 2] < xmin || level[c + 3] < ymin) {
+            return;
+        }
+        if (depth == 0) {
+            action.accept(values[node]);
+        } else {
+            final int end = Math.min((node + 1) * NODE_SIZE, levels[depth - 1].length / 4);
+            for (int child = node * NODE_SIZE; child < end; child++) {
+                search(depth - 1, child, xmin, ymin, xmax, ymax, action);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import org.opengis.geometry.Envelope;
+import org.opengis.referencing.operation.MathTransform;
+
+/**
+ * Approximation of a transform over an area of interest, written in place of the steps of the transform.
+ */
+interface TransformApproximation {
+    /**
+     * Distance in cells outside the area where points are still approximated, for rounding errors on its borders.
+     */
+    double MARGIN = 1E-9;
+
+    /**
+     * Maximal number of points evaluated with the exact transforms while fitting an approximation, for all attempts.
+     * This bounds the time spent by a request, since approximations are fitted in the thread of the request.
+     */
+    long MAX_EVALUATIONS = 1_000_000;
+
+    /**
+     * Returns the largest distance between the approximation and the exact transform found on the verification sample,
+     * in units of the target coordinates of the forward transform.
+     */
+    double maximalError();
+
+    /**
+     * Writes the JavaScript object of the approximation, with the same methods as the objects written by
+     * {@link BatchTransformWriter#write(org.opengis.referencing.operation.MathTransform, java.util.function.Function)}.
+     *
+     * @return A JavaScript object literal.
+     */
+    String toJavaScript();
+
+    /**
+     * Verifies that the given transform can be approximated over the given area.
+     *
+     * @throws UnsupportedOperationException if the transform does not have two source dimensions.
+     * @throws IllegalArgumentException if the tolerance is not positive, or the area is empty or unbounded.
+     */
+    static void checkArguments(final MathTransform trs, final Envelope area, final double tolerance) {
+        if (trs.getSourceDimensions() != 2 || area.getDimension() != 2) {
+            throw new UnsupportedOperationException("Approximations require two-dimensional source coordinates.");
+        }
+        if (!(tolerance > 0 && tolerance < Double.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("Tolerance must be a positive number.");
+        }
+        if (!(area.getSpan(0) > 0 && area.getSpan(1) > 0 && area.getSpan(0) < Double.POSITIVE_INFINITY && area.getSpan(1) < Double.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("Area of interest is empty or unbounded.");
+        }
+    }
+
+    /**
+     * Adds the number of points evaluated by an attempt to the number evaluated by the previous attempts.
+     *
+     * @param evaluations Number of points evaluated by the previous attempts.
+     * @param cost Number of points evaluated by the next attempt.
+     * @param tolerance Tolerance requested for the approximation, for the error message.
+     * @return Total number of points evaluated after the next attempt.
+     * @throws IllegalArgumentException if the total exceeds {@link #MAX_EVALUATIONS}.
+     */
+    static long evaluate(final long evaluations, final long cost, final double tolerance) {
+        final long total = evaluations + cost;
+        if (total > MAX_EVALUATIONS) {
+            throw new IllegalArgumentException("Approximating the operation within a tolerance of " + tolerance
+                    + " over the area of interest is too costly. Use a larger tolerance or a smaller area.");
+        }
+        return total;
+    }
+
+    /**
+     * Returns the code subtracting the given value, without two consecutive minus signs.
+     */
+    static String offset(final double value) {
+        return (value < 0) ? " + " + -value : " - " + value;
+    }
+}
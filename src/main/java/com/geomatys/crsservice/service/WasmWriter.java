@@ -0,0 +1,925 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.service;
+
+import com.geomatys.crsservice.service.ScriptTree.ArrayLiteral;
+import com.geomatys.crsservice.service.ScriptTree.Assign;
+import com.geomatys.crsservice.service.ScriptTree.Binary;
+import com.geomatys.crsservice.service.ScriptTree.Call;
+import com.geomatys.crsservice.service.ScriptTree.Conditional;
+import com.geomatys.crsservice.service.ScriptTree.Declare;
+import com.geomatys.crsservice.service.ScriptTree.For;
+import com.geomatys.crsservice.service.ScriptTree.If;
+import com.geomatys.crsservice.service.ScriptTree.Index;
+import com.geomatys.crsservice.service.ScriptTree.Jump;
+import com.geomatys.crsservice.service.ScriptTree.Literal;
+import com.geomatys.crsservice.service.ScriptTree.Member;
+import com.geomatys.crsservice.service.ScriptTree.Name;
+import com.geomatys.crsservice.service.ScriptTree.Node;
+import com.geomatys.crsservice.service.ScriptTree.Property;
+import com.geomatys.crsservice.service.ScriptTree.Return;
+import com.geomatys.crsservice.service.ScriptTree.Statement;
+import com.geomatys.crsservice.service.ScriptTree.This;
+import com.geomatys.crsservice.service.ScriptTree.Unary;
+import com.geomatys.crsservice.service.ScriptTree.While;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import org.apache.sis.referencing.operation.matrix.Matrices;
+import org.apache.sis.referencing.operation.transform.MathTransforms;
+import org.apache.sis.referencing.operation.transform.PassThroughTransform;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.Matrix;
+
+/**
+ * Compiles transforms to WebAssembly modules. Coordinates are {@code f64} values in the linear memory
+ * exported as {@code "memory"}, and the module exports the following functions for each direction:
+ *
+ * <ul>
+ *   <li>{@code transform(src, dst)} transforms the point at byte offset {@code src} and writes the result at {@code dst}.</li>
+ *   <li>{@code transformArray(src, dst, count)} transforms {@code count} consecutive points.</li>
+ * </ul>
+ *
+ * The inverse functions are {@code inverseTransform} and {@code inverseTransformArray}.
+ * Source and target may overlap only if they are equal and the number of dimensions does not change.
+ *
+ * <p>Linear and pass-through steps are compiled to arithmetic on local variables, as in {@link BatchTransformWriter}.
+ * Other steps are compiled from the syntax tree of their JavaScript code: declarations, assignments, {@code if},
+ * {@code for} and {@code while} statements, comparisons, conditional expressions and returned arrays of coordinates.
+ * Functions of the JavaScript {@code Math} object without WebAssembly instruction are imported from the {@code "Math"}
+ * module, so in a browser the module is instantiated with {@code WebAssembly.instantiate(bytes, {Math})}.
+ * Steps using other arrays or calling their own methods are not supported.</p>
+ */
+final class WasmWriter {
+
+    private static final byte[] MAGIC = {0, 'a', 's', 'm', 1, 0, 0, 0};
+
+    private static final byte I32 = 0x7F, F64 = 0x7C;
+
+    private static final int LOCAL_GET = 0x20, LOCAL_SET = 0x21, CALL = 0x10, UNREACHABLE = 0x00, SELECT = 0x1B,
+            BLOCK = 0x02, LOOP = 0x03, IF = 0x04, ELSE = 0x05, BR = 0x0C, BR_IF = 0x0D, END = 0x0B, VOID = 0x40,
+            I32_CONST = 0x41, I32_EQZ = 0x45, I32_ADD = 0x6A, I32_SUB = 0x6B, I32_AND = 0x71, I32_OR = 0x72,
+            F64_EQ = 0x61, F64_NE = 0x62, F64_LT = 0x63, F64_GT = 0x64, F64_LE = 0x65, F64_GE = 0x66, F64_CONVERT_I32_U = 0xB8,
+            F64_LOAD = 0x2B, F64_STORE = 0x39, F64_CONST = 0x44,
+            F64_ABS = 0x99, F64_NEG = 0x9A, F64_CEIL = 0x9B, F64_FLOOR = 0x9C, F64_TRUNC = 0x9D, F64_SQRT = 0x9F,
+            F64_ADD = 0xA0, F64_SUB = 0xA1, F64_MUL = 0xA2, F64_DIV = 0xA3, F64_MIN = 0xA4, F64_MAX = 0xA5;
+
+    /**
+     * Functions of the JavaScript {@code Math} object with a WebAssembly instruction, by number of arguments.
+     */
+    private static final Map<String, Integer> UNARY_INSTRUCTIONS = Map.of(
+            "abs", F64_ABS, "ceil", F64_CEIL, "floor", F64_FLOOR, "trunc", F64_TRUNC, "sqrt", F64_SQRT);
+
+    private static final Map<String, Integer> BINARY_INSTRUCTIONS = Map.of("min", F64_MIN, "max", F64_MAX);
+
+    /**
+     * Functions imported from the JavaScript {@code Math} object.
+     */
+    private static final Set<String> UNARY_IMPORTS = Set.of(
+            "sin", "cos", "tan", "asin", "acos", "atan", "sinh", "cosh", "tanh", "asinh", "acosh", "atanh",
+            "exp", "expm1", "log", "log1p", "log10", "log2", "cbrt", "sign", "round");
+
+    private static final Set<String> BINARY_IMPORTS = Set.of("atan2", "pow", "hypot");
+
+    /**
+     * Comparison instructions by JavaScript operator.
+     */
+    private static final Map<String, Integer> COMPARISONS = Map.of(
+            "==", F64_EQ, "===", F64_EQ, "!=", F64_NE, "!==", F64_NE, "<", F64_LT, ">", F64_GT, "<=", F64_LE, ">=", F64_GE);
+
+    private static final Set<String> ARITHMETIC = Set.of("+", "-", "*", "/", "%", "**");
+
+    private static final Map<String, Double> CONSTANTS = Map.of(
+            "Math.PI", Math.PI, "Math.E", Math.E, "Math.SQRT2", Math.sqrt(2), "Math.LN2", Math.log(2), "Math.LN10", Math.log(10),
+            "Number.POSITIVE_INFINITY", Double.POSITIVE_INFINITY, "Number.NEGATIVE_INFINITY", Double.NEGATIVE_INFINITY,
+            "Infinity", Double.POSITIVE_INFINITY, "NaN", Double.NaN);
+
+    /**
+     * Provides the JavaScript code of the object of a step which is neither linear nor a pass-through.
+     */
+    private final Function<MathTransform, String> stepObject;
+
+    /**
+     * Index of imported functions, by name in the {@code Math} object. Imported functions come first in the index space.
+     */
+    private final Map<String, Integer> imports = new LinkedHashMap<>();
+
+    /**
+     * Compiled functions transforming a single point, in the order of exports.
+     */
+    private final List<Point> points = new ArrayList<>();
+
+    /**
+     * Code of a function transforming a single point, with the number of {@code f64} local variables after the parameters.
+     */
+    private record Point(String name, int srcDim, int tgtDim, int locals, byte[] code) {}
+
+    /**
+     * Code of the function being compiled.
+     */
+    private ByteArrayOutputStream code;
+
+    /**
+     * Number of {@code f64} local variables declared in the point function being compiled.
+     */
+    private int localCount;
+
+    private WasmWriter(final Function<MathTransform, String> stepObject) {
+        this.stepObject = stepObject;
+    }
+
+    /**
+     * Compiles the given transforms to a WebAssembly module.
+     *
+     * @param trs The forward transform, or null if none.
+     * @param inverse The inverse transform, or null if none.
+     * @param stepObject Provides the JavaScript object of a step, with a {@code transform(src)} method.
+     * @return Binary content of the module.
+     * @throws UnsupportedOperationException if a step cannot be compiled.
+     */
+    static byte[] write(final MathTransform trs, final MathTransform inverse, final Function<MathTransform, String> stepObject) {
+        final var writer = new WasmWriter(stepObject);
+        if (trs != null) {
+            writer.point(trs, "transform");
+        }
+        if (inverse != null) {
+            writer.point(inverse, "inverseTransform");
+        }
+        return writer.module();
+    }
+
+    /**
+     * Compiles the function transforming a single point.
+     */
+    private void point(final MathTransform trs, final String name) {
+        code = new ByteArrayOutputStream();
+        localCount = 0;
+        final int srcDim = trs.getSourceDimensions();
+        final int tgtDim = trs.getTargetDimensions();
+        List<Integer> input = new ArrayList<>(srcDim);
+        for (int i = 0; i < srcDim; i++) {
+            op(LOCAL_GET); u32(0);
+            op(F64_LOAD); u32(3); u32(i * Double.BYTES);
+            input.add(set());
+        }
+        final List<Integer> output = steps(trs, input);
+        for (int j = 0; j < tgtDim; j++) {
+            op(LOCAL_GET); u32(1);
+            op(LOCAL_GET); u32(output.get(j));
+            op(F64_STORE); u32(3); u32(j * Double.BYTES);
+        }
+        op(END);
+        points.add(new Point(name, srcDim, tgtDim, localCount, code.toByteArray()));
+    }
+
+    /**
+     * Compiles the function calling the given point function on consecutive points.
+     */
+    private byte[] array(final Point point, final int index) {
+        code = new ByteArrayOutputStream();
+        op(BLOCK); op(VOID);
+        op(LOOP); op(VOID);
+        op(LOCAL_GET); u32(2); op(I32_EQZ); op(BR_IF); u32(1);
+        op(LOCAL_GET); u32(0); op(LOCAL_GET); u32(1); op(CALL); u32(index);
+        advance(0, point.srcDim());
+        advance(1, point.tgtDim());
+        op(LOCAL_GET); u32(2); op(I32_CONST); s32(1); op(I32_SUB); op(LOCAL_SET); u32(2);
+        op(BR); u32(0);
+        op(END);
+        op(END);
+        op(END);
+        return code.toByteArray();
+    }
+
+    /**
+     * Writes the increment of the pointer in the given parameter by the given number of coordinates.
+     */
+    private void advance(final int parameter, final int dimension) {
+        op(LOCAL_GET); u32(parameter); op(I32_CONST); s32(dimension * Double.BYTES); op(I32_ADD); op(LOCAL_SET); u32(parameter);
+    }
+
+    /**
+     * Writes the computation of the given transform, with consecutive linear steps merged.
+     *
+     * @param trs The transform to write.
+     * @param input Indices of the local variables holding the source coordinates.
+     * @return Indices of the local variables holding the target coordinates.
+     */
+    private List<Integer> steps(final MathTransform trs, List<Integer> input) {
+        Matrix pending = null;
+        for (MathTransform step : MathTransforms.getSteps(trs)) {
+            final Matrix matrix = MathTransforms.getMatrix(step);
+            if (matrix != null) {
+                pending = (pending == null) ? matrix : Matrices.multiply(matrix, pending);
+                continue;
+            }
+            if (pending != null) {
+                input = linear(pending, input);
+                pending = null;
+            }
+            if (step instanceof PassThroughTransform pass) {
+                final int[] modified = pass.getModifiedCoordinates();
+                final int first = modified[0];
+                final int last = modified[modified.length - 1] + 1;
+                final List<Integer> output = new ArrayList<>(input.subList(0, first));
+                output.addAll(steps(pass.getSubTransform(), new ArrayList<>(input.subList(first, last))));
+                output.addAll(input.subList(last, input.size()));
+                input = output;
+            } else if (MathTransforms.getSteps(step).size() > 1) {
+                input = steps(step, input);
+            } else {
+                input = new Kernel(stepObject.apply(step), input).compile();
+            }
+        }
+        if (pending != null) {
+            input = linear(pending, input);
+        }
+        return input;
+    }
+
+    /**
+     * Writes a linear step as arithmetic on the coordinate variables.
+     */
+    private List<Integer> linear(final Matrix matrix, final List<Integer> input) {
+        if (matrix.isIdentity()) {
+            return input;
+        }
+        final int numRow = matrix.getNumRow() - 1;
+        final int numCol = matrix.getNumCol() - 1;
+        boolean affine = (matrix.getElement(numRow, numCol) == 1);
+        for (int i = 0; i < numCol; i++) {
+            affine &= (matrix.getElement(numRow, i) == 0);
+        }
+        Integer w = null;
+        if (!affine) {
+            row(matrix, numRow, input);
+            w = set();
+        }
+        final List<Integer> output = new ArrayList<>(numRow);
+        for (int j = 0; j < numRow; j++) {
+            final int single = single(matrix, j, input);
+            if (single >= 0 && w == null) {
+                output.add(single);
+                continue;
+            }
+            row(matrix, j, input);
+            if (w != null) {
+                op(LOCAL_GET); u32(w); op(F64_DIV);
+            }
+            output.add(set());
+        }
+        return output;
+    }
+
+    /**
+     * Returns the variable given unchanged by a row of a matrix, or -1 if the row is not a copy of a variable.
+     */
+    private static int single(final Matrix matrix, final int j, final List<Integer> input) {
+        int found = -1;
+        for (int i = 0; i <= input.size(); i++) {
+            final double m = matrix.getElement(j, i);
+            if (m != 0) {
+                if (m != 1 || i == input.size() || found >= 0) {
+                    return -1;
+                }
+                found = input.get(i);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Writes the computation of one row of a matrix multiplication, leaving the value on the stack.
+     */
+    private void row(final Matrix matrix, final int j, final List<Integer> input) {
+        final int numCol = matrix.getNumCol() - 1;
+        boolean empty = true;
+        for (int i = 0; i < numCol; i++) {
+            final double m = matrix.getElement(j, i);
+            if (m != 0) {
+                op(LOCAL_GET); u32(input.get(i));
+                if (m != 1) {
+                    constant(m); op(F64_MUL);
+                }
+                if (!empty) op(F64_ADD);
+                empty = false;
+            }
+        }
+        final double t = matrix.getElement(j, numCol);
+        if (t != 0 || empty) {
+            constant(t);
+            if (!empty) op(F64_ADD);
+        }
+    }
+
+    /**
+     * Declares a local variable, and writes the assignment of the value on the stack to it.
+     *
+     * @return Index of the variable.
+     */
+    private int set() {
+        final int index = 2 + localCount++;
+        op(LOCAL_SET); u32(index);
+        return index;
+    }
+
+    private void constant(final double value) {
+        op(F64_CONST);
+        final long bits = Double.doubleToRawLongBits(value);
+        for (int i = 0; i < Long.BYTES; i++) {
+            code.write((int) (bits >>> (i * Byte.SIZE)));
+        }
+    }
+
+    private void op(final int opcode) {
+        code.write(opcode);
+    }
+
+    private void u32(final int value) {
+        unsigned(code, value);
+    }
+
+    private void s32(final int value) {
+        signed(code, value);
+    }
+
+    /**
+     * Compiles the {@code transform(src)} method of the JavaScript object of a step from its syntax tree.
+     * Variables are {@code f64} locals, and booleans are {@code i32} values on the stack. The method body
+     * is a block, and each {@code return} statement stores the coordinates in the output locals and exits it.
+     */
+    private final class Kernel {
+
+        private final String code;
+
+        private final List<Integer> input;
+
+        /**
+         * Name of the parameter of the {@code transform} method.
+         */
+        private String source;
+
+        /**
+         * Local variables of the step, by JavaScript name.
+         */
+        private Map<String, Integer> variables = new HashMap<>();
+
+        /**
+         * Numeric properties of the object, used through {@code this}.
+         */
+        private final Map<String, Double> properties = new HashMap<>();
+
+        /**
+         * Local variables holding the returned coordinates, or null before the first return statement.
+         */
+        private List<Integer> output;
+
+        /**
+         * Number of enclosing blocks, loops and conditionals, for computing the depth of branch targets.
+         */
+        private int depth;
+
+        /**
+         * Labels of the block exited by {@code return}, and of the enclosing loops as (break, continue) pairs.
+         */
+        private int exit;
+
+        private final Deque<int[]> loops = new ArrayDeque<>();
+
+        Kernel(final String code, final List<Integer> input) {
+            this.code = code;
+            this.input = input;
+        }
+
+        List<Integer> compile() {
+            Property transform = null;
+            for (Property property : ScriptTree.parse(code).properties()) {
+                if (property.isMethod()) {
+                    if (property.name().equals("transform") && property.parameters().size() == 1) {
+                        transform = property;
+                    }
+                } else {
+                    final Double value = literal(property.value());
+                    if (value != null) {
+                        properties.put(property.name(), value);
+                    }
+                }
+            }
+            if (transform == null) {
+                throw unsupported("no transform method");
+            }
+            source = transform.parameters().get(0);
+            op(BLOCK); op(VOID);
+            exit = ++depth;
+            block(transform.body());
+            op(UNREACHABLE);        // The method ended without returning coordinates.
+            op(END);
+            depth--;
+            if (output == null) {
+                throw unsupported("no return statement");
+            }
+            return output;
+        }
+
+        /**
+         * Returns the value of a numeric literal, possibly negative, or null if the node is not a literal.
+         */
+        private Double literal(final Node node) {
+            if (node instanceof Unary unary && unary.operator().equals("-")) {
+                final Double value = literal(unary.operand());
+                return (value != null) ? -value : null;
+            }
+            if (node instanceof Literal literal && !literal.text().equals("true") && !literal.text().equals("false")) {
+                try {
+                    return Double.parseDouble(literal.text());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Compiles statements in a new scope for the variables they declare.
+         */
+        private void block(final List<Statement> statements) {
+            final Map<String, Integer> scope = variables;
+            variables = new HashMap<>(scope);
+            for (Statement statement : statements) {
+                statement(statement);
+            }
+            variables = scope;
+        }
+
+        private void statement(final Statement statement) {
+            if (statement instanceof Declare declare) {
+                final int variable = 2 + localCount++;
+                if (declare.value() != null) {
+                    numeric(declare.value());
+                    op(LOCAL_SET); u32(variable);
+                }
+                variables.put(declare.name(), variable);
+            } else if (statement instanceof Assign assign) {
+                if (!(assign.target() instanceof Name name) || !variables.containsKey(name.name())) {
+                    throw unsupported("assignment of " + assign.target());
+                }
+                final int variable = variables.get(name.name());
+                final String operator = assign.operator();
+                if (operator.equals("=")) {
+                    numeric(assign.value());
+                } else {
+                    arithmetic(operator.substring(0, operator.length() - 1), new Name(name.name()), assign.value());
+                }
+                op(LOCAL_SET); u32(variable);
+            } else if (statement instanceof If branch) {
+                condition(branch.condition());
+                op(IF); op(VOID);
+                depth++;
+                block(branch.then());
+                if (!branch.otherwise().isEmpty()) {
+                    op(ELSE);
+                    block(branch.otherwise());
+                }
+                op(END);
+                depth--;
+            } else if (statement instanceof While loop) {
+                loop(List.of(), loop.atLeastOnce() ? null : loop.condition(), loop.body(), List.of(), loop.atLeastOnce() ? loop.condition() : null);
+            } else if (statement instanceof For loop) {
+                final Map<String, Integer> scope = variables;
+                variables = new HashMap<>(scope);
+                loop(loop.init(), loop.condition(), loop.body(), loop.update(), null);
+                variables = scope;
+            } else if (statement instanceof Return result) {
+                if (!(result.value() instanceof ArrayLiteral array)) {
+                    throw unsupported("return of " + result.value());
+                }
+                final List<Node> elements = array.elements();
+                if (output == null) {
+                    output = new ArrayList<>(elements.size());
+                    for (int i = 0; i < elements.size(); i++) {
+                        output.add(2 + localCount++);
+                    }
+                } else if (output.size() != elements.size()) {
+                    throw unsupported("return statements with different numbers of coordinates");
+                }
+                for (Node element : elements) {
+                    numeric(element);
+                }
+                for (int i = elements.size(); --i >= 0;) {
+                    op(LOCAL_SET); u32(output.get(i));
+                }
+                op(BR); u32(depth - exit);
+            } else if (statement instanceof Jump jump) {
+                final int[] labels = loops.peek();
+                if (labels == null) {
+                    throw unsupported(jump.isBreak() ? "break" : "continue");
+                }
+                op(BR); u32(depth - labels[jump.isBreak() ? 0 : 1]);
+            } else {
+                throw unsupported(statement.getClass().getSimpleName());
+            }
+        }
+
+        /**
+         * Compiles a loop: initialization, test before each iteration, body, update and test after each iteration.
+         * The body is in its own block, which is the target of {@code continue}.
+         */
+        private void loop(final List<Statement> init, final Node before, final List<Statement> body,
+                          final List<Statement> update, final Node after)
+        {
+            for (Statement statement : init) {
+                statement(statement);
+            }
+            op(BLOCK); op(VOID);
+            final int exitLoop = ++depth;
+            op(LOOP); op(VOID);
+            final int top = ++depth;
+            if (before != null) {
+                condition(before);
+                op(I32_EQZ); op(BR_IF); u32(depth - exitLoop);
+            }
+            op(BLOCK); op(VOID);
+            final int next = ++depth;
+            loops.push(new int[] {exitLoop, next});
+            block(body);
+            loops.pop();
+            op(END);
+            depth--;
+            for (Statement statement : update) {
+                statement(statement);
+            }
+            if (after != null) {
+                condition(after);
+                op(BR_IF); u32(depth - top);
+            } else {
+                op(BR); u32(depth - top);
+            }
+            op(END);
+            op(END);
+            depth -= 2;
+        }
+
+        /**
+         * Compiles an expression leaving a {@code f64} value on the stack. Booleans are converted to 0 or 1.
+         */
+        private void numeric(final Node node) {
+            if (node instanceof Literal literal) {
+                switch (literal.text()) {
+                    case "true":  constant(1); return;
+                    case "false": constant(0); return;
+                }
+                final Double value = literal(literal);
+                if (value == null) {
+                    throw unsupported(literal.text());
+                }
+                constant(value);
+            } else if (node instanceof Name name) {
+                final Integer variable = variables.get(name.name());
+                if (variable != null) {
+                    op(LOCAL_GET); u32(variable);
+                } else if (CONSTANTS.containsKey(name.name())) {
+                    constant(CONSTANTS.get(name.name()));
+                } else {
+                    throw unsupported(name.name());
+                }
+            } else if (node instanceof Member member) {
+                if (member.object() instanceof This && properties.containsKey(member.name())) {
+                    constant(properties.get(member.name()));
+                } else if (member.object() instanceof Name owner && CONSTANTS.containsKey(owner.name() + '.' + member.name())) {
+                    constant(CONSTANTS.get(owner.name() + '.' + member.name()));
+                } else if (member.object() instanceof Name owner && owner.name().equals(source) && member.name().equals("length")) {
+                    constant(input.size());
+                } else {
+                    throw unsupported(member.name());
+                }
+            } else if (node instanceof Index index) {
+                final Double i = literal(index.index());
+                if (!(index.array() instanceof Name array && array.name().equals(source)) || i == null
+                        || i != Math.rint(i) || i < 0 || i >= input.size())
+                {
+                    throw unsupported("array access " + index);
+                }
+                op(LOCAL_GET); u32(input.get(i.intValue()));
+            } else if (node instanceof Call call && call.function() instanceof Member member
+                    && member.object() instanceof Name owner && owner.name().equals("Math"))
+            {
+                final List<Node> arguments = call.arguments();
+                final String function = member.name();
+                if (arguments.size() > 2 && (function.equals("min") || function.equals("max") || function.equals("hypot"))) {
+                    // Functions of any number of arguments, applied by pairs.
+                    numeric(arguments.get(0));
+                    for (int i = 1; i < arguments.size(); i++) {
+                        numeric(arguments.get(i));
+                        call(function, 2);
+                    }
+                } else {
+                    for (Node argument : arguments) {
+                        numeric(argument);
+                    }
+                    call(function, arguments.size());
+                }
+            } else if (node instanceof Unary unary && (unary.operator().equals("-") || unary.operator().equals("+"))) {
+                numeric(unary.operand());
+                if (unary.operator().equals("-")) {
+                    op(F64_NEG);
+                }
+            } else if (node instanceof Binary binary && ARITHMETIC.contains(binary.operator())) {
+                arithmetic(binary.operator(), binary.left(), binary.right());
+            } else if (node instanceof Binary binary && (binary.operator().equals("&&") || binary.operator().equals("||"))) {
+                // The value of `a && b` is `a` if falsy, otherwise `b`. The value of `a || b` is the converse.
+                numeric(binary.left());
+                final int a = set();
+                if (binary.operator().equals("&&")) {
+                    numeric(binary.right());
+                    op(LOCAL_GET); u32(a);
+                } else {
+                    op(LOCAL_GET); u32(a);
+                    numeric(binary.right());
+                }
+                truthy(a);
+                op(SELECT);
+            } else if (node instanceof Conditional conditional) {
+                numeric(conditional.then());
+                numeric(conditional.otherwise());
+                condition(conditional.condition());
+                op(SELECT);
+            } else if (isBoolean(node)) {
+                condition(node);
+                op(F64_CONVERT_I32_U);
+            } else {
+                throw unsupported(node.toString());
+            }
+        }
+
+        /**
+         * Returns whether the given expression is a comparison, a negation or another expression of boolean type.
+         */
+        private boolean isBoolean(final Node node) {
+            if (node instanceof Binary binary) {
+                return COMPARISONS.containsKey(binary.operator());
+            }
+            if (node instanceof Unary unary) {
+                return unary.operator().equals("!");
+            }
+            if (node instanceof Call call) {
+                return call.arguments().size() == 1 && numberFunction(call.function()) != null;
+            }
+            return node instanceof Literal literal && (literal.text().equals("true") || literal.text().equals("false"));
+        }
+
+        /**
+         * Compiles an arithmetic operation. The JavaScript remainder is {@code a - b * trunc(a / b)}.
+         */
+        private void arithmetic(final String operator, final Node left, final Node right) {
+            switch (operator) {
+                case "+": numeric(left); numeric(right); op(F64_ADD); break;
+                case "-": numeric(left); numeric(right); op(F64_SUB); break;
+                case "*": numeric(left); numeric(right); op(F64_MUL); break;
+                case "/": numeric(left); numeric(right); op(F64_DIV); break;
+                case "**": numeric(left); numeric(right); call("pow", 2); break;
+                case "%": {
+                    numeric(left);
+                    final int a = set();
+                    numeric(right);
+                    final int b = set();
+                    op(LOCAL_GET); u32(a);
+                    op(LOCAL_GET); u32(a); op(LOCAL_GET); u32(b); op(F64_DIV); op(F64_TRUNC);
+                    op(LOCAL_GET); u32(b); op(F64_MUL);
+                    op(F64_SUB);
+                    break;
+                }
+                default: throw unsupported(operator);
+            }
+        }
+
+        /**
+         * Compiles an expression leaving an {@code i32} boolean on the stack.
+         * Numbers are true if they are neither zero nor NaN, as in JavaScript.
+         */
+        private void condition(final Node node) {
+            if (node instanceof Binary binary) {
+                final Integer comparison = COMPARISONS.get(binary.operator());
+                if (comparison != null) {
+                    numeric(binary.left());
+                    numeric(binary.right());
+                    op(comparison);
+                    return;
+                }
+                if (binary.operator().equals("&&") || binary.operator().equals("||")) {
+                    condition(binary.left());
+                    condition(binary.right());
+                    op(binary.operator().equals("&&") ? I32_AND : I32_OR);
+                    return;
+                }
+            } else if (node instanceof Unary unary && unary.operator().equals("!")) {
+                condition(unary.operand());
+                op(I32_EQZ);
+                return;
+            } else if (node instanceof Literal literal && (literal.text().equals("true") || literal.text().equals("false"))) {
+                op(I32_CONST); s32(literal.text().equals("true") ? 1 : 0);
+                return;
+            } else if (node instanceof Call call && call.arguments().size() == 1 && numberFunction(call.function()) != null) {
+                numeric(call.arguments().get(0));
+                final int x = set();
+                op(LOCAL_GET); u32(x);
+                if (numberFunction(call.function()).equals("isFinite")) {
+                    op(LOCAL_GET); u32(x); op(F64_SUB);
+                    constant(0);
+                    op(F64_EQ);
+                } else {
+                    op(LOCAL_GET); u32(x);
+                    op(F64_NE);
+                }
+                return;
+            }
+            numeric(node);
+            truthy(set());
+        }
+
+        /**
+         * Writes the truth value of the given local variable: true if neither zero nor NaN.
+         */
+        private void truthy(final int x) {
+            op(LOCAL_GET); u32(x); constant(0); op(F64_NE);
+            op(LOCAL_GET); u32(x); op(LOCAL_GET); u32(x); op(F64_EQ);
+            op(I32_AND);
+        }
+
+        /**
+         * Returns {@code "isNaN"} or {@code "isFinite"} if the given function is one of those,
+         * global or of the {@code Number} object, or null otherwise.
+         */
+        private String numberFunction(final Node function) {
+            final String name;
+            if (function instanceof Name global) {
+                name = global.name();
+            } else if (function instanceof Member member && member.object() instanceof Name owner && owner.name().equals("Number")) {
+                name = member.name();
+            } else {
+                return null;
+            }
+            return (name.equals("isNaN") || name.equals("isFinite")) ? name : null;
+        }
+
+        /**
+         * Writes a call to a function of the {@code Math} object, with arguments on the stack.
+         */
+        private void call(final String function, final int count) {
+            final Integer instruction = (count == 1 ? UNARY_INSTRUCTIONS : count == 2 ? BINARY_INSTRUCTIONS : Map.<String, Integer>of()).get(function);
+            if (instruction != null) {
+                op(instruction);
+            } else if ((count == 1 ? UNARY_IMPORTS : count == 2 ? BINARY_IMPORTS : Set.of()).contains(function)) {
+                op(CALL); u32(imports.computeIfAbsent(function, k -> imports.size()));
+            } else {
+                throw unsupported("Math." + function + " with " + count + " arguments");
+            }
+        }
+
+        private UnsupportedOperationException unsupported(final String construct) {
+            return new UnsupportedOperationException("Cannot compile step to WebAssembly, unsupported: " + construct);
+        }
+    }
+
+    /**
+     * Assembles the module from the compiled functions.
+     */
+    private byte[] module() {
+        final var out = new ByteArrayOutputStream();
+        out.writeBytes(MAGIC);
+
+        // Types: point function, array function, imported unary and binary functions.
+        final var types = new ByteArrayOutputStream();
+        unsigned(types, 4);
+        types.write(0x60); unsigned(types, 2); types.write(I32); types.write(I32); unsigned(types, 0);
+        types.write(0x60); unsigned(types, 3); types.write(I32); types.write(I32); types.write(I32); unsigned(types, 0);
+        types.write(0x60); unsigned(types, 1); types.write(F64); unsigned(types, 1); types.write(F64);
+        types.write(0x60); unsigned(types, 2); types.write(F64); types.write(F64); unsigned(types, 1); types.write(F64);
+        section(out, 1, types);
+
+        if (!imports.isEmpty()) {
+            final var section = new ByteArrayOutputStream();
+            unsigned(section, imports.size());
+            for (String function : imports.keySet()) {
+                name(section, "Math");
+                name(section, function);
+                section.write(0x00);
+                unsigned(section, BINARY_IMPORTS.contains(function) ? 3 : 2);
+            }
+            section(out, 2, section);
+        }
+
+        // Each point function is followed by its array function.
+        final var declarations = new ByteArrayOutputStream();
+        unsigned(declarations, points.size() * 2);
+        for (int i = 0; i < points.size(); i++) {
+            unsigned(declarations, 0);
+            unsigned(declarations, 1);
+        }
+        section(out, 3, declarations);
+
+        final var memory = new ByteArrayOutputStream();
+        unsigned(memory, 1);
+        memory.write(0x00);
+        unsigned(memory, 1);
+        section(out, 5, memory);
+
+        final var exports = new ByteArrayOutputStream();
+        unsigned(exports, points.size() * 2 + 1);
+        int index = imports.size();
+        for (Point point : points) {
+            name(exports, point.name());
+            exports.write(0x00);
+            unsigned(exports, index++);
+            name(exports, point.name() + "Array");
+            exports.write(0x00);
+            unsigned(exports, index++);
+        }
+        name(exports, "memory");
+        exports.write(0x02);
+        unsigned(exports, 0);
+        section(out, 7, exports);
+
+        final var bodies = new ByteArrayOutputStream();
+        unsigned(bodies, points.size() * 2);
+        index = imports.size();
+        for (Point point : points) {
+            body(bodies, point.locals(), point.code());
+            body(bodies, 0, array(point, index));
+            index += 2;
+        }
+        section(out, 10, bodies);
+        return out.toByteArray();
+    }
+
+    private static void body(final ByteArrayOutputStream out, final int locals, final byte[] code) {
+        final var function = new ByteArrayOutputStream();
+        if (locals == 0) {
+            unsigned(function, 0);
+        } else {
+            unsigned(function, 1);
+            unsigned(function, locals);
+            function.write(F64);
+        }
+        function.writeBytes(code);
+        unsigned(out, function.size());
+        out.writeBytes(function.toByteArray());
+    }
+
+    private static void section(final ByteArrayOutputStream out, final int id, final ByteArrayOutputStream content) {
+        out.write(id);
+        unsigned(out, content.size());
+        out.writeBytes(content.toByteArray());
+    }
+
+    private static void name(final ByteArrayOutputStream out, final String name) {
+        final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        unsigned(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static void unsigned(final ByteArrayOutputStream out, int value) {
+        do {
+            int b = value & 0x7F;
+            value >>>= 7;
+            if (value != 0) b |= 0x80;
+            out.write(b);
+        } while (value != 0);
+    }
+
+    private static void signed(final ByteArrayOutputStream out, int value) {
+        while (true) {
+            final int b = value & 0x7F;
+            value >>= 7;
+            if ((value == 0 && (b & 0x40) == 0) || (value == -1 && (b & 0x40) != 0)) {
+                out.write(b);
+                return;
+            }
+            out.write(b | 0x80);
+        }
+    }
+}
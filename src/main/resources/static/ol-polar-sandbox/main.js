@@ -30,10 +30,9 @@ async function downloadCRS(source, longFirst=false) {
 async function downloadOperation(source, target) {
     const sourceLongFirst = source.getAxisOrientation().startsWith("e");
     const targetLongFirst = target.getAxisOrientation().startsWith("e");
-    const url = '../crs/operation?source=' + source.getCode() + '&sourceLongitudeFirst=' + sourceLongFirst + '&target=' + target.getCode() + '&targetLongitudeFirst=' + targetLongFirst + '&format=text/javascript';
-    const res = await fetch(url);
-    const txt = await res.text();
-    const operation = eval('(' + txt + ')');
+    const url = '../crs/operation?source=' + source.getCode() + '&sourceLongitudeFirst=' + sourceLongFirst + '&target=' + target.getCode() + '&targetLongitudeFirst=' + targetLongFirst + '&format=' + encodeURIComponent('application/javascript;variant=module') + '&profile=minified';
+    // Kernels imported by the module are shared between operations and cached by the browser.
+    const operation = (await import(url)).default;
     return new operation();
 }
 
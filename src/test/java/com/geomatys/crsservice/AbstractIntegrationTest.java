@@ -1,8 +1,10 @@
 package com.geomatys.crsservice;
 
+import java.net.http.HttpClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.web.client.RestClient;
 
@@ -17,5 +19,9 @@ public class AbstractIntegrationTest {
     private RestClient.Builder clientBuilder;
 
     public String getServerUrl() { return "http://localhost:"+port; }
-    public RestClient createClient() { return clientBuilder.baseUrl(getServerUrl()).build(); }
+    public RestClient createClient() {
+        // The service redirects GET requests to their canonical form.
+        var http = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build();
+        return clientBuilder.baseUrl(getServerUrl()).requestFactory(new JdkClientHttpRequestFactory(http)).build();
+    }
 }
@@ -0,0 +1,65 @@
+package com.geomatys.crsservice;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.net.http.HttpClient;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifies that two instances of the service share their operations through the peer cache.
+ */
+public class MultiInstanceTest {
+
+    private static final String OPERATION = "/crs/operation?source=EPSG:4326&target=EPSG:3395&format=text/javascript";
+
+    @Test
+    public void shareOperationWithPeer() {
+        final List<Integer> peerRequests = new CopyOnWriteArrayList<>();
+        final Filter filter = (request, response, chain) -> {
+            chain.doFilter(request, response);
+            if (((HttpServletRequest) request).getRequestURI().equals("/crs/peer")) {
+                peerRequests.add(((HttpServletResponse) response).getStatus());
+            }
+        };
+        final var ownerBuilder = new SpringApplicationBuilder(CrsServiceApp.class)
+                .initializers(context -> context.getBeanFactory().registerSingleton("peerRequests", filter));
+        try (ConfigurableApplicationContext owner = start(ownerBuilder)) {
+            final String ownerUrl = url(owner);
+            final String code = get(ownerUrl);
+            assertThat(peerRequests).isEmpty();
+            /*
+             * The second instance lists only the first one, which is therefore the owner of all keys.
+             * Each instance has its own store, so the operation can come only from the first instance.
+             */
+            final var otherBuilder = new SpringApplicationBuilder(CrsServiceApp.class)
+                    .properties("geomatys.peers.self=http://localhost:1", "geomatys.peers.urls=" + ownerUrl);
+            try (ConfigurableApplicationContext other = start(otherBuilder)) {
+                assertThat(get(url(other))).isEqualTo(code);
+                assertThat(peerRequests).containsExactly(200);
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(final SpringApplicationBuilder builder) {
+        return builder.profiles("test").properties("server.port=0").run();
+    }
+
+    private static String url(final ConfigurableApplicationContext context) {
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    private static String get(final String url) {
+        var http = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build();
+        return RestClient.builder().baseUrl(url).requestFactory(new JdkClientHttpRequestFactory(http)).build()
+                .get().uri(OPERATION).retrieve().body(String.class);
+    }
+}
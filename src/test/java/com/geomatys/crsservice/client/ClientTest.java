@@ -3,18 +3,25 @@ package com.geomatys.crsservice.client;
 
 import com.geomatys.crsservice.AbstractIntegrationTest;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import org.apache.sis.referencing.CRS;
 import org.apache.sis.referencing.crs.AbstractCRS;
 import org.apache.sis.referencing.cs.AxesConvention;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.CoordinateOperation;
 import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.TransformException;
 import org.opengis.util.FactoryException;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 /**
  *
  * @author jsorel
@@ -53,6 +60,34 @@ public class ClientTest extends AbstractIntegrationTest {
         testTransform(factory, crs2.toWKT(), crs3.toWKT(), new double[]{40,50,100}, true, cartTolerance, 0.0);
     }
 
+    @Test
+    public void cachedOperations(@TempDir Path directory) throws Exception {
+        final URI url = new URI(getServerUrl() + "/crs/operation");
+        final CoordinateReferenceSystem source = CRS.forCode("EPSG:4326");
+        final var pairs = List.of(Map.entry(source, CRS.forCode("EPSG:3395")), Map.entry(source, CRS.forCode("EPSG:3031")));
+        final CRSServiceCoordinateOperationFactory factory = new CRSServiceCoordinateOperationFactory(url, directory);
+        assertThat(factory.prefetch(pairs, "text/javascript")).isEqualTo(2);
+        assertThat(factory.prefetch(pairs, "text/javascript")).isZero();
+        try (var files = Files.list(directory)) {
+            assertThat(files.count()).isEqualTo(2);
+        }
+        final double[] expected = transform(factory, source, CRS.forCode("EPSG:3395"));
+
+        // A new factory reads the code from the directory, and revalidates it before use.
+        final CRSServiceCoordinateOperationFactory restarted = new CRSServiceCoordinateOperationFactory(url, directory);
+        assertThat(transform(restarted, source, CRS.forCode("EPSG:3395"))).containsExactly(expected);
+        assertThat(restarted.prefetch(pairs, "text/javascript")).isEqualTo(1);
+        try (var files = Files.list(directory)) {
+            assertThat(files.count()).isEqualTo(2);
+        }
+    }
+
+    private static double[] transform(ScriptingCoordinateOperationFactory factory, CoordinateReferenceSystem source, CoordinateReferenceSystem target) throws Exception {
+        final double[] result = new double[2];
+        factory.createOperation(source, target).getMathTransform().transform(new double[] {10, 20}, 0, result, 0, 1);
+        return result;
+    }
+
     static void testTransform(ScriptingCoordinateOperationFactory factory, String source, String target, double[] coords, boolean testInverse, final double forwardTolerance, final double inverseTolerance) throws FactoryException, TransformException {
         final CoordinateReferenceSystem crsSource = parseCRS(source, false);
         final CoordinateReferenceSystem crsTarget = parseCRS(target, false);
@@ -1,9 +1,32 @@
 package com.geomatys.crsservice.client;
 
+import com.geomatys.crsservice.service.CrsOperationService;
+import com.geomatys.crsservice.service.DefaultCrsOperationService;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import org.apache.sis.referencing.CRS;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.TransformException;
 import org.opengis.util.FactoryException;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
 /**
  * Test CRS conversion business layer outside Spring environment.
  * Validates usage of {@link LocalCoordinateOperationFactory} test fixture.
@@ -16,4 +39,289 @@ public class LocalOperationTest {
     public void testAxisInversion() throws FactoryException, TransformException {
         ClientTest.testTransform(factory, "EPSG:4326", "CRS:84", new double[]{10, 20}, true, 1e-12, 1e-12);
     }
+
+    @Test
+    public void testMinifiedProfile() throws FactoryException, TransformException {
+        final var minified = new LocalCoordinateOperationFactory(withProfile(new DefaultCrsOperationService(), DefaultCrsOperationService.PROFILE_MINIFIED));
+        ClientTest.testTransform(minified, "EPSG:4326", "EPSG:3031", new double[]{60, 20}, true, 1e-8, 1e-8);
+        ClientTest.testTransform(minified, "EPSG:4326", "EPSG:32231", new double[]{48, 2}, true, 0.001, 1e-8);
+    }
+
+    @Test
+    public void testCodeSize() throws IOException {
+        final var service = new DefaultCrsOperationService();
+        final String full = getCode(service, DefaultCrsOperationService.PROFILE_FULL, DefaultCrsOperationService.DIRECTION_BOTH);
+        final String compact = getCode(service, DefaultCrsOperationService.PROFILE_COMPACT, DefaultCrsOperationService.DIRECTION_BOTH);
+        final String minified = getCode(service, DefaultCrsOperationService.PROFILE_MINIFIED, DefaultCrsOperationService.DIRECTION_FORWARD);
+        assertThat(full).contains("Licensed to the Apache Software Foundation", "inverseTransform");
+        assertThat(compact).doesNotContain("Licensed to the Apache Software Foundation", "/*\n").contains("inverseTransform");
+        assertThat(minified).doesNotContain("inverseTransform").contains("transform");
+        assertThat(minified.length()).isLessThan(compact.length());
+        assertThat(compact.length()).isLessThan(full.length());
+    }
+
+    @Test
+    public void testTransformArray() throws Exception {
+        final String code = getCode(new DefaultCrsOperationService(), DefaultCrsOperationService.PROFILE_MINIFIED, DefaultCrsOperationService.DIRECTION_BOTH);
+        final double[] points = {-70, 10, -80, 60, -75, -120};
+        final ScriptEngine engine = new ScriptEngineManager().getEngineByName("js");
+        final List<? extends Number> result = (List) engine.eval(
+                "const operation = new (" + code + ")();\n" +
+                "const coordinates = [0, " + Arrays.toString(points).replaceAll("[\\[\\]]", "") + "];\n" +
+                "operation.transformArray(coordinates, 1, coordinates, 1, 3);\n" +
+                "coordinates;");
+
+        final double[] expected = new double[points.length];
+        CRS.findOperation(CRS.forCode("EPSG:4326"), CRS.forCode("EPSG:3031"), null).getMathTransform().transform(points, 0, expected, 0, 3);
+        assertThat(result.get(0).doubleValue()).isEqualTo(0);
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(result.get(i + 1).doubleValue()).isCloseTo(expected[i], within(1e-6));
+        }
+    }
+
+    @Test
+    public void testPythonSteps() throws FactoryException, TransformException, IOException {
+        final String code = getCode(new DefaultCrsOperationService(), DefaultCrsOperationService.FORMAT_PYTHON,
+                DefaultCrsOperationService.PROFILE_FULL, DefaultCrsOperationService.DIRECTION_BOTH);
+        assertThat(code).contains("\n_forward_step0 = _forwardStep0()\n", "\n_inverse_step0 = _inverseStep0()\n")
+                        .doesNotContain("slice", "concat", "$");
+        ClientTest.testTransform(factory, "EPSG:4326", "EPSG:32631", new double[]{48, 2}, true, 0.001, 1e-8);
+        ClientTest.testTransform(factory, "EPSG:4326", "EPSG:32632", new double[]{48, 8}, true, 0.001, 1e-8);
+    }
+
+    /**
+     * Verifies the transform of many points by the batch method of scripts, in separated and in the same arrays,
+     * compared to transforming points one by one.
+     */
+    @Test
+    public void testBulkTransform() throws Exception {
+        final double[] points = bulkPoints(2000);
+        final double[] expected = new double[points.length];
+        CRS.findOperation(CRS.forCode("EPSG:4326"), CRS.forCode("EPSG:3031"), null).getMathTransform().transform(points, 0, expected, 0, points.length / 2);
+        for (String format : new String[] {DefaultCrsOperationService.FORMAT_JAVASCRIPT, DefaultCrsOperationService.FORMAT_PYTHON}) {
+            final MathTransform trs = bulkTransform(format);
+            final double[] bulk = new double[points.length];
+            trs.transform(points, 0, bulk, 0, points.length / 2);
+
+            final double[] single = new double[points.length];
+            for (int i = 0; i < points.length; i += 2) {
+                trs.transform(points, i, single, i, 1);
+            }
+            final double[] inPlace = points.clone();
+            trs.transform(inPlace, 0, inPlace, 0, points.length / 2);
+            assertThat(bulk).as(format).containsExactly(expected, within(1e-6));
+            assertThat(single).as(format).containsExactly(bulk, within(0.0));
+            assertThat(inPlace).as(format).containsExactly(bulk, within(0.0));
+        }
+    }
+
+    /**
+     * Verifies that a JavaScript operation can be used by many threads at the same time,
+     * each one borrowing its own context.
+     */
+    @Test
+    public void testConcurrentTransform() throws Exception {
+        final double[] points = bulkPoints(2000);
+        final MathTransform trs = bulkTransform(DefaultCrsOperationService.FORMAT_JAVASCRIPT);
+        final double[] expected = new double[points.length];
+        trs.transform(points, 0, expected, 0, points.length / 2);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<double[]>> tasks = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                tasks.add(executor.submit(() -> {
+                    final double[] actual = new double[points.length];
+                    trs.transform(points, 0, actual, 0, points.length / 2);
+                    return actual;
+                }));
+            }
+            for (Future<double[]> task : tasks) {
+                assertThat(task.get()).containsExactly(expected, within(0.0));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Compares the time per point of the batch method of scripts with transforming points one by one.
+     * Run by {@code gradle benchmark}.
+     */
+    @Test
+    @Tag("benchmark")
+    public void benchmarkBulkTransform(final TestReporter reporter) throws Exception {
+        final double[] points = bulkPoints(100_000);
+        final int count = points.length / 2;
+        final Map<String, String> report = new LinkedHashMap<>();
+        for (String format : new String[] {DefaultCrsOperationService.FORMAT_JAVASCRIPT, DefaultCrsOperationService.FORMAT_PYTHON}) {
+            final MathTransform trs = bulkTransform(format);
+            final double[] result = new double[points.length];
+            trs.transform(points, 0, result, 0, count);       // Warm up.
+            long time = System.nanoTime();
+            trs.transform(points, 0, result, 0, count);
+            final double bulk = (double) (System.nanoTime() - time) / count;
+            time = System.nanoTime();
+            for (int i = 0; i < points.length; i += 2) {
+                trs.transform(points, i, result, i, 1);
+            }
+            final double single = (double) (System.nanoTime() - time) / count;
+            report.put(format + " bulk (ns/point)", String.format("%.0f", bulk));
+            report.put(format + " one by one (ns/point)", String.format("%.0f", single));
+            report.put(format + " speedup", String.format("%.1f", single / bulk));
+        }
+        reporter.publishEntry(report);
+    }
+
+    /**
+     * Returns the given number of (latitude, longitude) points in the domain of EPSG:3031.
+     */
+    private static double[] bulkPoints(final int count) {
+        final double[] points = new double[count * 2];
+        for (int i = 0; i < points.length; i += 2) {
+            points[i] = -60 - (i % 30);
+            points[i + 1] = i % 360 - 180;
+        }
+        return points;
+    }
+
+    /**
+     * Returns the transform from EPSG:4326 to EPSG:3031 executing the code generated in the given format.
+     */
+    private MathTransform bulkTransform(final String format) throws FactoryException {
+        return factory.createOperation(CRS.forCode("EPSG:4326"), CRS.forCode("EPSG:3031"), format).getMathTransform();
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        final CoordinateReferenceSystem source = CRS.forCode("EPSG:4326");
+        for (String target : new String[] {"CRS:84", "EPSG:3395", "EPSG:3031", "EPSG:32231", "EPSG:2154", "EPSG:4978"}) {
+            final double[] point = target.equals("EPSG:3031") ? new double[] {-70, 10} : new double[] {48, 2};
+            final CoordinateReferenceSystem crs = CRS.forCode(target);
+            final MathTransform plan = factory.createOperation(source, crs, DefaultCrsOperationService.FORMAT_PLAN).getMathTransform();
+            final MathTransform expected = CRS.findOperation(source, crs, null).getMathTransform();
+            final double[] projected = new double[expected.getTargetDimensions()];
+            final double[] actual = new double[plan.getTargetDimensions()];
+            expected.transform(point, 0, projected, 0, 1);
+            plan.transform(point, 0, actual, 0, 1);
+            assertThat(actual).as(target).containsExactly(projected, within(1e-6));
+
+            final double[] back = new double[point.length];
+            plan.inverse().transform(projected, 0, back, 0, 1);
+            assertThat(back).as(target).containsExactly(point, within(1e-9));
+        }
+        // Projected source CRSs, for which the plan contains inverse projections.
+        for (String[] pair : new String[][] {{"EPSG:3395", "EPSG:4326"}, {"EPSG:32231", "EPSG:3395"}}) {
+            final CoordinateReferenceSystem sourceCRS = CRS.forCode(pair[0]);
+            final CoordinateReferenceSystem targetCRS = CRS.forCode(pair[1]);
+            final double[] point = new double[2];
+            CRS.findOperation(source, sourceCRS, null).getMathTransform().transform(new double[] {48, 2}, 0, point, 0, 1);
+            final MathTransform plan = factory.createOperation(sourceCRS, targetCRS, DefaultCrsOperationService.FORMAT_PLAN).getMathTransform();
+            final MathTransform expected = CRS.findOperation(sourceCRS, targetCRS, null).getMathTransform();
+            final double[] target = new double[2];
+            final double[] actual = new double[2];
+            expected.transform(point, 0, target, 0, 1);
+            plan.transform(point, 0, actual, 0, 1);
+            assertThat(actual).as(pair[0]).containsExactly(target, within(1e-6));
+        }
+        final String plan = getCode(new DefaultCrsOperationService(), DefaultCrsOperationService.FORMAT_PLAN,
+                DefaultCrsOperationService.PROFILE_FULL, DefaultCrsOperationService.DIRECTION_BOTH);
+        final String script = getCode(new DefaultCrsOperationService(), DefaultCrsOperationService.PROFILE_MINIFIED, DefaultCrsOperationService.DIRECTION_BOTH);
+        assertThat(plan).contains("\"parameterized\"");
+        assertThat(plan.length()).isLessThan(script.length());
+    }
+
+    @Test
+    public void testApproximation() throws Exception {
+        final var parameters = new CrsOperationService.OperationParameters("EPSG:4326", false, "EPSG:3031", false,
+                DefaultCrsOperationService.FORMAT_JAVASCRIPT, new double[] {-20, -80, 40, -60}, null,
+                DefaultCrsOperationService.PROFILE_MINIFIED, DefaultCrsOperationService.DIRECTION_BOTH, 0.1);
+        final String code = new DefaultCrsOperationService().getOperation(parameters).sourceCode().getContentAsString(StandardCharsets.UTF_8);
+        assertThat(code).contains("approximationError").doesNotContain("TODO");
+
+        final double[] points = {-70, 10, -79, -15, -61, 39};
+        final ScriptEngine engine = new ScriptEngineManager().getEngineByName("js");
+        final List<? extends Number> result = (List) engine.eval(
+                "const operation = new (" + code + ")();\n" +
+                "const coordinates = " + Arrays.toString(points) + ";\n" +
+                "operation.transformArray(coordinates, 0, coordinates, 0, 3);\n" +
+                "coordinates.push(...operation.inverseTransform(coordinates.slice(0, 2)), operation.approximationError);\n" +
+                "coordinates;");
+
+        final MathTransform trs = CRS.findOperation(CRS.forCode("EPSG:4326"), CRS.forCode("EPSG:3031"), null).getMathTransform();
+        final double[] expected = new double[points.length];
+        trs.transform(points, 0, expected, 0, 3);
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(result.get(i).doubleValue()).isCloseTo(expected[i], within(0.1));
+        }
+        assertThat(result.get(6).doubleValue()).isCloseTo(points[0], within(1e-5));
+        assertThat(result.get(7).doubleValue()).isCloseTo(points[1], within(1e-5));
+        assertThat(result.get(8).doubleValue()).isBetween(0.0, 0.05);
+    }
+
+    /**
+     * Verifies that a minified Python approximation can be loaded, since its coefficients are module-level lists
+     * which may use the constants shared by the minifier.
+     */
+    @Test
+    public void testMinifiedPythonApproximation() throws Exception {
+        final var parameters = new CrsOperationService.OperationParameters("EPSG:4326", false, "EPSG:3031", false,
+                DefaultCrsOperationService.FORMAT_PYTHON, new double[] {-20, -80, 40, -60}, null,
+                DefaultCrsOperationService.PROFILE_MINIFIED, DefaultCrsOperationService.DIRECTION_BOTH, 0.1);
+        final String code = new DefaultCrsOperationService().getOperation(parameters).sourceCode().getContentAsString(StandardCharsets.UTF_8);
+        assertThat(code).contains("approximationError");
+
+        final ScriptEngine engine = new ScriptEngineManager().getEngineByName("python");
+        engine.eval(code + "\n\ndef run(src, dst):\n  r = Operation().transform(list(src))\n  for i in range(len(r)):\n    dst[i] = r[i]\n");
+        final MathTransform trs = CRS.findOperation(CRS.forCode("EPSG:4326"), CRS.forCode("EPSG:3031"), null).getMathTransform();
+        for (double[] point : new double[][] {{-70, 10}, {-79, -15}, {-61, 39}}) {
+            final double[] expected = new double[2];
+            final double[] actual = new double[2];
+            trs.transform(point, 0, expected, 0, 1);
+            ((Invocable) engine).invokeFunction("run", point, actual);
+            assertThat(actual).containsExactly(expected, within(0.1));
+        }
+    }
+
+    private static String getCode(CrsOperationService service, String profile, String direction) throws IOException {
+        return getCode(service, DefaultCrsOperationService.FORMAT_JAVASCRIPT, profile, direction);
+    }
+
+    private static String getCode(CrsOperationService service, String format, String profile, String direction) throws IOException {
+        final var parameters = new CrsOperationService.OperationParameters("EPSG:4326", false, "EPSG:3031", false,
+                format, null, null, profile, direction);
+        return service.getOperation(parameters).sourceCode().getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a service generating code with the given profile.
+     */
+    private static CrsOperationService withProfile(CrsOperationService service, String profile) {
+        return new CrsOperationService() {
+            @Override
+            public SourceCode getCRS(CRSParameters parameters) {
+                return service.getCRS(parameters);
+            }
+
+            @Override
+            public SourceCode getRuntimeModule(String name) {
+                return service.getRuntimeModule(name);
+            }
+
+            @Override
+            public String registerCRS(String wkt) {
+                return service.registerCRS(wkt);
+            }
+
+            @Override
+            public byte[] getCachedOperation(String key) {
+                return service.getCachedOperation(key);
+            }
+
+            @Override
+            public SourceCode getOperation(OperationParameters p) {
+                return service.getOperation(new OperationParameters(p.source(), p.sourceLongFirst(), p.target(), p.targetLongFirst(),
+                        p.format(), p.aoi(), p.time(), profile, p.direction(), p.tolerance()));
+            }
+        };
+    }
 }
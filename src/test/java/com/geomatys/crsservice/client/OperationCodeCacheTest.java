@@ -0,0 +1,33 @@
+package com.geomatys.crsservice.client;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifies that downloaded operations survive a restart, and that the oldest files are evicted.
+ */
+public class OperationCodeCacheTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void evictsOldest() throws Exception {
+        final OperationCodeCache cache = new OperationCodeCache(directory, 2);
+        for (String url : new String[] {"a", "b", "a", "c"}) {
+            cache.put(url, new OperationCodeCache.Entry(URI.create("operation?" + url), "\"" + url + "\"", "code " + url, true));
+        }
+        try (var files = Files.list(directory)) {
+            assertThat(files.count()).isEqualTo(2);
+        }
+        final OperationCodeCache restarted = new OperationCodeCache(directory, 2);
+        assertThat(restarted.get("b")).isNull();
+        assertThat(restarted.get("a").code()).isEqualTo("code a");
+        assertThat(restarted.get("c").validated()).isFalse();
+    }
+}
@@ -0,0 +1,211 @@
+package com.geomatys.crsservice.configuration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.sis.io.wkt.WKTDictionary;
+import org.apache.sis.metadata.iso.citation.DefaultCitation;
+import org.apache.sis.util.Utilities;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.opengis.referencing.IdentifiedObject;
+import org.opengis.referencing.NoSuchAuthorityCodeException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.crs.GeocentricCRS;
+import org.opengis.referencing.crs.GeographicCRS;
+import org.opengis.referencing.crs.ProjectedCRS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Compares the compact registry with the {@link WKTDictionary} of Apache SIS on the IAU definitions,
+ * including the heap retained by each of them and their throughput under contention.
+ */
+public class CompactWKTDictionaryTest {
+
+    @Test
+    public void sameDefinitionsAsWKTDictionary() throws Exception {
+        final String text = definitions();
+        final WKTDictionary expected = new WKTDictionary(new DefaultCitation("IAU"));
+        expected.load(new BufferedReader(new StringReader(text)));
+        final CompactWKTDictionary actual = new CompactWKTDictionary();
+        actual.load(new BufferedReader(new StringReader(text)), () -> "test");
+
+        for (Class<? extends CoordinateReferenceSystem> type : List.of(CoordinateReferenceSystem.class, GeographicCRS.class, GeocentricCRS.class, ProjectedCRS.class)) {
+            assertThat(actual.getAuthorityCodes(type)).as(type.getSimpleName())
+                    .containsExactlyInAnyOrderElementsOf(expected.getAuthorityCodes(type));
+        }
+        final List<String> codes = new ArrayList<>(actual.getAuthorityCodes(CoordinateReferenceSystem.class));
+        assertThat(codes).hasSize(actual.size());
+        for (int i = 0; i < codes.size(); i += 25) {
+            final String code = codes.get(i);
+            assertThat(actual.getName(code)).as(code).isEqualTo(expected.getDescriptionText(code).toString());
+            assertThat(Utilities.equalsIgnoreMetadata(actual.create(code), expected.createCoordinateReferenceSystem(code))).as(code).isTrue();
+            assertThat(actual.create(code)).isSameAs(actual.create(code));
+        }
+        assertThatThrownBy(() -> actual.create("-1")).isInstanceOf(NoSuchAuthorityCodeException.class);
+    }
+
+    @Test
+    public void loadReplacesDefinitions() throws Exception {
+        final CompactWKTDictionary dictionary = new CompactWKTDictionary();
+        dictionary.load(new BufferedReader(new StringReader(definitions())), () -> "test");
+        final String previous = dictionary.getAuthorityCodes(GeographicCRS.class).iterator().next();
+        assertThat(dictionary.create(previous)).isNotNull();
+        dictionary.load(new BufferedReader(new StringReader(
+                "GEOGCRS[\"Test\",\n  DATUM[\"Test\", ELLIPSOID[\"Test\", 1000, 0, LENGTHUNIT[\"metre\", 1]]],\n" +
+                "  CS[ellipsoidal, 2], AXIS[\"latitude\", north, ANGLEUNIT[\"degree\", 0.0174532925199433]],\n" +
+                "  AXIS[\"longitude\", east, ANGLEUNIT[\"degree\", 0.0174532925199433]], ID[\"IAU\", 99900, 2015]]\n")), () -> "reloaded");
+        assertThat(dictionary.getAuthorityCodes(CoordinateReferenceSystem.class)).containsExactly("99900");
+        assertThat(dictionary.getAuthorityCodes(GeographicCRS.class)).containsExactly("99900");
+        assertThat(dictionary.getName("99900")).isEqualTo("Test");
+        assertThat(dictionary.create("99900")).isInstanceOf(GeographicCRS.class);
+        assertThat(dictionary.version()).isEqualTo("reloaded");
+        assertThatThrownBy(() -> dictionary.create(previous)).isInstanceOf(NoSuchAuthorityCodeException.class);
+    }
+
+    /**
+     * Compares the number of lookups per second of both registries from 1 to 64 threads, for objects already parsed.
+     * Since lookups in the compact registry take no lock, its throughput should grow with the number of threads
+     * up to the number of processors. Run by {@code gradle benchmark}.
+     */
+    @Test
+    @Tag("benchmark")
+    public void contentionBenchmark(final TestReporter reporter) throws Exception {
+        final String text = definitions();
+        final CompactWKTDictionary compact = new CompactWKTDictionary();
+        compact.load(new BufferedReader(new StringReader(text)), () -> "test");
+        final WKTDictionary baseline = new WKTDictionary(new DefaultCitation("IAU"));
+        baseline.load(new BufferedReader(new StringReader(text)));
+        final String[] codes = compact.getAuthorityCodes(CoordinateReferenceSystem.class).stream().limit(200).toArray(String[]::new);
+        for (String code : codes) {
+            compact.create(code);
+            baseline.createCoordinateReferenceSystem(code);
+        }
+        final Map<String, String> report = new LinkedHashMap<>();
+        report.put("processors", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            report.put(String.format("%2d threads, CompactWKTDictionary (lookups/s)", threads),
+                       String.format("%,d", lookupsPerSecond(compact::create, codes, threads)));
+            report.put(String.format("%2d threads, WKTDictionary (lookups/s)", threads),
+                       String.format("%,d", lookupsPerSecond(baseline::createCoordinateReferenceSystem, codes, threads)));
+        }
+        reporter.publishEntry(report);
+    }
+
+    private interface Lookup {
+        CoordinateReferenceSystem create(String code) throws Exception;
+    }
+
+    /**
+     * Returns the number of lookups per second performed by the given number of threads during 200 milliseconds.
+     */
+    private static long lookupsPerSecond(final Lookup lookup, final String[] codes, final int threads) throws Exception {
+        final LongAdder count = new LongAdder();
+        final long end = System.nanoTime() + 200_000_000L;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int seed = t;
+                tasks.add(executor.submit(() -> {
+                    int i = seed;
+                    while (System.nanoTime() < end) {
+                        lookup.create(codes[i++ % codes.length]);
+                        count.increment();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return count.sum() * 5;
+    }
+
+    /**
+     * Verifies that the arrays retained by the compact registry are much smaller than the texts retained by
+     * {@link WKTDictionary}, which keeps one string per definition. Texts are counted as one byte per character,
+     * as in compact strings of the JVM.
+     */
+    @Test
+    public void compressedSize() throws Exception {
+        final CompactWKTDictionary registry = new CompactWKTDictionary();
+        registry.load(new BufferedReader(new StringReader(definitions())), () -> "test");
+        long texts = 0;
+        for (String code : registry.getAuthorityCodes(IdentifiedObject.class)) {
+            texts += registry.getWKT(code).length();
+        }
+        assertThat(registry.compressedSize()).isPositive().isLessThan(texts / 4);
+    }
+
+    /**
+     * Reports the heap retained by the compact registry and by {@link WKTDictionary}, before any object is parsed.
+     * The measurement depends on the garbage collector, so it is only reported; {@link #compressedSize()} verifies
+     * the size of the retained arrays.
+     */
+    @Test
+    @Tag("benchmark")
+    public void heapReport(final TestReporter reporter) throws Exception {
+        final long dictionary = retainedHeap(() -> {
+            final WKTDictionary registry = new WKTDictionary(new DefaultCitation("IAU"));
+            registry.load(new BufferedReader(new StringReader(definitions())));
+            return registry;
+        });
+        final long compact = retainedHeap(() -> {
+            final CompactWKTDictionary registry = new CompactWKTDictionary();
+            registry.load(new BufferedReader(new StringReader(definitions())), () -> "test");
+            return registry;
+        });
+        reporter.publishEntry("IAU registry heap", String.format("WKTDictionary %,d bytes, CompactWKTDictionary %,d bytes (%.0f%%)",
+                dictionary, compact, 100.0 * compact / dictionary));
+    }
+
+    private interface Loader {
+        Object load() throws Exception;
+    }
+
+    /**
+     * Returns the difference of used heap before and after loading, keeping the loaded object reachable.
+     */
+    private static long retainedHeap(final Loader loader) throws Exception {
+        final long before = usedHeap();
+        final Object registry = loader.load();
+        final long after = usedHeap();
+        assertThat(registry).isNotNull();       // Keeps the registry reachable until after the measurement.
+        return after - before;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Returns the IAU definitions as loaded by the application, with base geographic CRSs replaced by base geodetic CRSs.
+     */
+    private static String definitions() throws IOException {
+        try (InputStream in = CompactWKTDictionaryTest.class.getResourceAsStream("/static/IAU.txt")) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).replaceAll("(?i)BASEGEOGCRS", "BASEGEODCRS");
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.geomatys.crsservice.configuration;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifies that registered texts survive a restart, and that the oldest texts are evicted.
+ */
+public class WKTStoreTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void survivesRestart() throws Exception {
+        final String hash = new WKTStore(directory, 10).add("GEOGCRS[\"A\"]");
+        assertThat(hash).isEqualTo(WKTStore.hash("GEOGCRS[\"A\"]")).hasSize(64);
+        final WKTStore restarted = new WKTStore(directory, 10);
+        assertThat(restarted.get(hash)).isEqualTo("GEOGCRS[\"A\"]");
+        assertThat(restarted.get(WKTStore.hash("other"))).isNull();
+        assertThat(restarted.get("../" + hash)).isNull();
+    }
+
+    @Test
+    public void evictsOldest() throws Exception {
+        final WKTStore store = new WKTStore(directory, 2);
+        final String a = store.add("A");
+        Files.setLastModifiedTime(directory.resolve(a + ".wkt"), FileTime.fromMillis(1000));
+        final String b = store.add("B");
+        final String c = store.add("C");
+        try (var files = Files.list(directory)) {
+            assertThat(files.count()).isEqualTo(2);
+        }
+        final WKTStore restarted = new WKTStore(directory, 2);
+        assertThat(restarted.get(a)).isNull();
+        assertThat(restarted.get(b)).isEqualTo("B");
+        assertThat(restarted.get(c)).isEqualTo("C");
+    }
+
+    @Test
+    public void registeringAgainDelaysEviction() throws Exception {
+        final WKTStore store = new WKTStore(directory, 2);
+        final String a = store.add("A");
+        final String b = store.add("B");
+        store.add("A");
+        final String c = store.add("C");
+        assertThat(Files.exists(directory.resolve(a + ".wkt"))).isTrue();
+        assertThat(Files.exists(directory.resolve(b + ".wkt"))).isFalse();
+        assertThat(store.get(b)).isNull();
+        assertThat(store.get(c)).isEqualTo("C");
+    }
+}
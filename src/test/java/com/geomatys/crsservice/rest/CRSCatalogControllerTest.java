@@ -0,0 +1,61 @@
+package com.geomatys.crsservice.rest;
+
+import com.geomatys.crsservice.AbstractIntegrationTest;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CRSCatalogControllerTest extends AbstractIntegrationTest {
+
+    @Test
+    public void searchByNamePrefixes() {
+        var client = createClient();
+        var body = client.get().uri("/crs/search?q=sun robin&limit=50")
+                .retrieve()
+                .body(new ParameterizedTypeReference<Map<String, Object>>() {});
+        assertThat(body).isNotNull();
+        var entries = (List<Map<String, Object>>) body.get("entries");
+        assertThat(entries).extracting(entry -> entry.get("name"))
+                .contains("Sun (2015) - Sphere / Robinson, clon = 180");
+        assertThat(entries).allSatisfy(entry -> assertThat(entry).containsEntry("body", "Sun"));
+    }
+
+    @Test
+    public void searchWithPaging() {
+        var client = createClient();
+        var body = client.get().uri("/crs/search?q=mars&authority=IAU&offset=1&limit=2")
+                .retrieve()
+                .body(new ParameterizedTypeReference<Map<String, Object>>() {});
+        assertThat(body).isNotNull();
+        assertThat((Integer) body.get("total")).isGreaterThan(3);
+        assertThat((List<?>) body.get("entries")).hasSize(2);
+    }
+
+    @Test
+    public void locatePoint() {
+        var client = createClient();
+        var body = client.get().uri("/crs/locate?body=Mars&point=137.4,-4.6")
+                .retrieve()
+                .body(new ParameterizedTypeReference<Map<String, Object>>() {});
+        assertThat(body).isNotNull();
+        var entries = (List<Map<String, Object>>) body.get("entries");
+        assertThat(entries).isNotEmpty();
+        assertThat(entries).extracting(entry -> ((Map<String, Object>) entry.get("crs")).get("name"))
+                .contains("Mars (2015) - Sphere / Equirectangular, clon = 0")
+                .doesNotContain("Sun (2015) - Sphere / Equirectangular, clon = 0");
+    }
+
+    @Test
+    public void locateUnknownBody() {
+        var client = createClient();
+        var body = client.get().uri("/crs/locate?body=Vulcan&point=0,0")
+                .retrieve()
+                .body(new ParameterizedTypeReference<Map<String, Object>>() {});
+        assertThat(body).isNotNull();
+        assertThat((Integer) body.get("total")).isZero();
+        assertThat((List<?>) body.get("entries")).isEmpty();
+    }
+}
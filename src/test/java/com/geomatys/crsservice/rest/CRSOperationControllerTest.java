@@ -1,10 +1,16 @@
 package com.geomatys.crsservice.rest;
 
 import com.geomatys.crsservice.AbstractIntegrationTest;
+import java.net.http.HttpClient;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
+import org.apache.sis.referencing.CRS;
 import org.junit.jupiter.api.Test;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -22,4 +28,107 @@ public class CRSOperationControllerTest extends AbstractIntegrationTest {
                 "axisDirection", List.of("east", "north")
         ));
     }
+
+    @Test
+    public void registeredWKT() throws Exception {
+        var client = createClient();
+        var wkt = CRS.forCode("EPSG:3395").toWKT();
+        var handle = client.post().uri("/crs/register").contentType(MediaType.TEXT_PLAIN).body(wkt).retrieve().body(String.class);
+        assertThat(handle).matches("wkt:sha256-[0-9a-f]{64}");
+        assertThat(client.post().uri("/crs/register").contentType(MediaType.TEXT_PLAIN).body(wkt + "\n").retrieve().body(String.class))
+                .isEqualTo(handle);
+
+        var body = client.get().uri(builder -> builder.path("/crs/define").queryParam("source", handle).build())
+                .retrieve()
+                .body(new ParameterizedTypeReference<Map<String, Object>>() {});
+        assertThat(body).containsAllEntriesOf(Map.of("code", handle, "units", "m"));
+
+        var invalid = client.post().uri("/crs/register").contentType(MediaType.TEXT_PLAIN).body("PROJCRS[")
+                .exchange((request, response) -> response.getStatusCode());
+        assertThat(invalid.is2xxSuccessful()).isFalse();
+    }
+
+    @Test
+    public void redirectToCanonicalRequest() {
+        var client = createClient();
+        var noRedirect = RestClient.builder().baseUrl(getServerUrl())
+                .requestFactory(new JdkClientHttpRequestFactory(HttpClient.newHttpClient())).build();
+        var redirect = noRedirect.get().uri("/crs/operation?target=epsg:3395&format=text/javascript&profile=full&source=urn:ogc:def:crs:EPSG::4326")
+                .retrieve().toBodilessEntity();
+        assertThat(redirect.getStatusCode().is3xxRedirection()).isTrue();
+        var location = redirect.getHeaders().getLocation().toString();
+        assertThat(location).startsWith("operation?source=EPSG:4326&target=EPSG:3395&format=text/javascript&v=");
+
+        var canonical = client.get().uri("/crs/" + location).retrieve().toEntity(String.class);
+        assertThat(canonical.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(canonical.getHeaders().getCacheControl()).contains("immutable");
+
+        var otherVersion = noRedirect.get().uri("/crs/" + location.replaceAll("&v=.*", "&v=0123456789ab-0123456789ab"))
+                .retrieve().toEntity(String.class);
+        assertThat(otherVersion.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(otherVersion.getHeaders().getCacheControl()).doesNotContain("immutable");
+    }
+
+    @Test
+    public void revalidateWithETag() {
+        var client = createClient();
+        var response = client.get().uri("/crs/operation?source=EPSG:4326&target=EPSG:3395&format=text/javascript")
+                .retrieve().toEntity(String.class);
+        var eTag = response.getHeaders().getETag();
+        assertThat(eTag).isNotBlank();
+        var status = client.get().uri("/crs/operation?source=EPSG:4326&target=EPSG:3395&format=text/javascript")
+                .header("If-None-Match", eTag)
+                .exchange((request, r) -> r.getStatusCode().value());
+        assertThat(status).isEqualTo(304);
+    }
+
+    @Test
+    public void batchOperations() {
+        var client = createClient();
+        var operations = client.post().uri("/crs/operations").contentType(MediaType.APPLICATION_JSON)
+                .body(List.of(Map.of("source", "EPSG:4326", "target", "EPSG:3395", "format", "text/javascript"),
+                              Map.of("source", "urn:ogc:def:crs:EPSG::4326", "target", "EPSG:3031", "format", "text/x-python")))
+                .retrieve()
+                .body(new ParameterizedTypeReference<List<CRSOperationController.BatchOperation>>() {});
+        assertThat(operations).hasSize(2);
+        assertThat(operations.get(1).location()).startsWith("operation?source=EPSG:4326&target=EPSG:3031&format=text/x-python&v=");
+        assertThat(operations.get(1).code()).contains("class Operation:");
+
+        var single = client.get().uri("/crs/" + operations.get(0).location()).retrieve().toEntity(String.class);
+        assertThat(single.getBody()).isEqualTo(operations.get(0).code());
+        assertThat(single.getHeaders().getETag()).isEqualTo(operations.get(0).eTag());
+    }
+
+    @Test
+    public void peerCacheDoesNotGenerate() {
+        var client = createClient();
+        var status = client.post().uri("/crs/peer").contentType(MediaType.TEXT_PLAIN).body("unknown key")
+                .exchange((request, response) -> response.getStatusCode().value());
+        assertThat(status).isEqualTo(404);
+    }
+
+    @Test
+    public void operationModulesShareKernels() {
+        var client = createClient();
+        var south = getModule(client, "EPSG:3031");
+        var north = getModule(client, "EPSG:3413");
+        assertThat(south).contains("export default class Operation");
+        var imports = Pattern.compile("from \"\\./(runtime/[0-9a-f]+\\.js)\"").matcher(south).results().map(m -> m.group(1)).toList();
+        assertThat(imports).isNotEmpty();
+        assertThat(imports).anyMatch(north::contains);
+
+        var kernel = client.get().uri("/crs/" + imports.getFirst()).retrieve().toEntity(String.class);
+        assertThat(kernel.getBody()).startsWith("export default");
+        assertThat(kernel.getHeaders().getCacheControl()).contains("immutable");
+    }
+
+    private static String getModule(RestClient client, String target) {
+        return client.get().uri(builder -> builder.path("/crs/operation")
+                        .queryParam("source", "EPSG:4326")
+                        .queryParam("target", target)
+                        .queryParam("format", "application/javascript;variant=module")
+                        .build())
+                .retrieve()
+                .body(String.class);
+    }
 }
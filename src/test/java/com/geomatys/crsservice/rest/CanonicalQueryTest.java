@@ -0,0 +1,45 @@
+package com.geomatys.crsservice.rest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifies the canonical spelling of CRS codes.
+ */
+public class CanonicalQueryTest {
+
+    @Test
+    public void codes() {
+        assertThat(CanonicalQuery.code("EPSG:4326")).isEqualTo("EPSG:4326");
+        assertThat(CanonicalQuery.code(" epsg : 4326 ")).isEqualTo("EPSG:4326");
+        assertThat(CanonicalQuery.code("urn:ogc:def:crs:EPSG::4326")).isEqualTo("EPSG:4326");
+        assertThat(CanonicalQuery.code("URN:X-OGC:DEF:CRS:IAU::1000")).isEqualTo("IAU:1000");
+        assertThat(CanonicalQuery.code("http://www.opengis.net/def/crs/OGC/0/CRS84")).isEqualTo("OGC:CRS84");
+        assertThat(CanonicalQuery.code("urn:ogc:def:crs:EPSG:9.1:4326")).isEqualTo("urn:ogc:def:crs:EPSG:9.1:4326");
+        assertThat(CanonicalQuery.code("iau:2015:1000")).isEqualTo("IAU:2015:1000");
+        assertThat(CanonicalQuery.code(" IAU : 2015 : 1000 ")).isEqualTo("IAU:2015:1000");
+        assertThat(CanonicalQuery.code("WKT:SHA256-ABCDEF")).isEqualTo("wkt:sha256-abcdef");
+        assertThat(CanonicalQuery.code(" GEOGCRS[\"A\", DATUM[\"B\"]] ")).isEqualTo("GEOGCRS[\"A\", DATUM[\"B\"]]");
+    }
+
+    @Test
+    public void versions() {
+        final var query = new CanonicalQuery().crs("source", "epsg:4326").add("format", "text/javascript");
+        final String current = query.query();
+        // query() does not modify the parameters, so it can be invoked many times.
+        assertThat(current).isEqualTo(query.query()).isEqualTo("source=EPSG:4326&format=text/javascript&v=" + CanonicalQuery.version());
+        assertThat(query.<Void>redirect("operation", current)).isNull();
+        assertThat(query.cacheControl(current).getHeaderValue()).contains("immutable");
+
+        // Another version, as during a rolling update, is not redirected but not cached forever.
+        final String other = "source=EPSG:4326&format=text/javascript&v=0123456789ab-0123456789ab";
+        assertThat(query.<Void>redirect("operation", other)).isNull();
+        assertThat(query.cacheControl(other).getHeaderValue()).contains("no-cache").doesNotContain("immutable");
+
+        assertThat(query.<Void>redirect("operation", null)).isNotNull();
+        assertThat(query.<Void>redirect("operation", "source=EPSG:4326&format=text/javascript")).isNotNull();
+        assertThat(query.<Void>redirect("operation", "source=EPSG:4326&format=text/javascript&v=../x")).isNotNull();
+        assertThat(query.<Void>redirect("operation", "format=text/javascript&source=EPSG:4326&v=" + CanonicalQuery.version())).isNotNull();
+    }
+}
@@ -0,0 +1,59 @@
+package com.geomatys.crsservice.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import javax.script.ScriptEngineManager;
+import org.opengis.geometry.Envelope;
+import org.opengis.referencing.operation.MathTransform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the JavaScript code of approximations with Apache SIS, on random points which are not in the verification sample.
+ */
+final class ApproximationVerifier {
+
+    /**
+     * Number of random points compared.
+     */
+    private static final int COUNT = 1000;
+
+    private ApproximationVerifier() {
+    }
+
+    /**
+     * Verifies that the JavaScript code of the given approximation is within the tolerance of the exact transform.
+     *
+     * @param trs The exact transform.
+     * @param approximation The approximation of {@code trs}.
+     * @param area The area where the approximation is used, in source coordinates.
+     * @param tolerance Maximal error of the approximation.
+     * @param seed Seed of the random points, so that failures can be reproduced.
+     */
+    static void verify(final MathTransform trs, final TransformApproximation approximation, final Envelope area,
+                       final double tolerance, final long seed) throws Exception
+    {
+        final var random = new Random(seed);
+        final double[] points = new double[COUNT * 2];
+        for (int i = 0; i < points.length; i += 2) {
+            points[i]     = area.getMinimum(0) + area.getSpan(0) * random.nextDouble();
+            points[i + 1] = area.getMinimum(1) + area.getSpan(1) * random.nextDouble();
+        }
+        final double[] expected = new double[points.length];
+        trs.transform(points, 0, expected, 0, COUNT);
+        final var engine = new ScriptEngineManager().getEngineByName("js");
+        final List<? extends Number> actual = (List) engine.eval(
+                "(() => {\n" +
+                "const operation = " + approximation.toJavaScript() + ";\n" +
+                "const points = " + Arrays.toString(points) + ";\n" +
+                "operation.transformArray(points, 0, points, 0, points.length / 2);\n" +
+                "return points;\n" +
+                "})()");
+        for (int i = 0; i < expected.length; i += 2) {
+            assertThat(Math.hypot(actual.get(i).doubleValue() - expected[i], actual.get(i + 1).doubleValue() - expected[i + 1]))
+                    .as("Point %d with seed %d", i / 2, seed)
+                    .isLessThanOrEqualTo(tolerance);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.geomatys.crsservice.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import org.apache.sis.referencing.CRS;
+import org.apache.sis.referencing.ExportableTransform;
+import org.apache.sis.referencing.operation.matrix.Matrices;
+import org.apache.sis.referencing.operation.transform.MathTransforms;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.opengis.metadata.extent.GeographicBoundingBox;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Validates the optimized JavaScript code against Apache SIS, and compares its speed with the code without optimization.
+ * Also checks the structure of the Python code for NumPy, and runs it with CPython when NumPy is installed.
+ * NumPy is required on continuous integration, where the {@code CI} environment variable is set.
+ */
+public class BatchTransformWriterTest {
+
+    /**
+     * Maximal difference in metres between generated code and Apache SIS.
+     */
+    private static final double TOLERANCE = 1e-6;
+
+    private static final Function<MathTransform, String> FOLDED = step -> CodeMinifier.foldConstants(((ExportableTransform) step).toECMAScript());
+
+    private static final Function<MathTransform, String> UNFOLDED = step -> ((ExportableTransform) step).toECMAScript();
+
+    static {
+        System.setProperty("polyglot.engine.WarnInterpreterOnly", "false");
+    }
+
+    @Test
+    public void optimizedCodeMatchesSIS() throws Exception {
+        for (String target : new String[] {"EPSG:3031", "EPSG:3395", "EPSG:32231", "EPSG:2154"}) {
+            final CoordinateReferenceSystem crs = CRS.forCode(target);
+            final MathTransform trs = CRS.findOperation(CRS.forCode("EPSG:4326"), crs, null).getMathTransform();
+            final double[] points = samplePoints(CRS.getGeographicBoundingBox(crs), 8);
+            final double[] expected = new double[points.length];
+            trs.transform(points, 0, expected, 0, points.length / 2);
+
+            final double[] actual = transform(BatchTransformWriter.write(trs, FOLDED), points);
+            for (int i = 0; i < expected.length; i++) {
+                assertThat(actual[i]).as(target).isCloseTo(expected[i], within(TOLERANCE));
+            }
+        }
+    }
+
+    @Test
+    public void optimizedMatchesPlain() throws Exception {
+        final MathTransform trs = CRS.findOperation(CRS.forCode("EPSG:4326"), CRS.forCode("EPSG:3031"), null).getMathTransform();
+        final double[] points = samplePoints(CRS.getGeographicBoundingBox(CRS.forCode("EPSG:3031")), 4);
+        assertThat(transform(BatchTransformWriter.write(trs, FOLDED, true), points))
+                .containsExactly(transform(BatchTransformWriter.write(trs, UNFOLDED, false), points), within(TOLERANCE));
+    }
+
+    /**
+     * Compares the speed of the code with and without optimization. Run by {@code gradle benchmark}.
+     */
+    @Test
+    @Tag("benchmark")
+    public void benchmark(final TestReporter reporter) throws Exception {
+        final MathTransform trs = CRS.findOperation(CRS.forCode("EPSG:4326"), CRS.forCode("EPSG:3031"), null).getMathTransform();
+        final int count = 100_000;
+        reporter.publishEntry(Map.of(
+                "optimized (ns/point)", String.format("%.1f", nanosPerPoint(BatchTransformWriter.write(trs, FOLDED, true), count)),
+                "not optimized (ns/point)", String.format("%.1f", nanosPerPoint(BatchTransformWriter.write(trs, UNFOLDED, false), count))));
+    }
+
+    @Test
+    public void numPyFunction() throws Exception {
+        final MathTransform swap = MathTransforms.linear(Matrices.create(3, 3, new double[] {0, 1, 0, 1, 0, 0, 0, 0, 1}));
+        assertThat(BatchTransformWriter.writeNumPy(swap, "f", step -> { throw new AssertionError(step); }, step -> { throw new AssertionError(step); }))
+                .doesNotContain("class")
+                .contains("def f(c):", "return [v1, v0]");
+
+        final MathTransform trs = CRS.findOperation(CRS.forCode("EPSG:4326"), CRS.forCode("EPSG:3031"), null).getMathTransform();
+        final String scalar = "\n  def transform(self, src):\n    return [math.sin(src[0]), src[1]]\n";
+        final String code = BatchTransformWriter.writeNumPy(trs, "f", step -> scalar, step -> scalar.replace("math.", "np."));
+        assertThat(code)
+                .contains("\nclass fStep0:", "\nf_step0 = fStep0()\n", "np.sin(src[0])", "f_step0.transform([")
+                .doesNotContain("math.", "np.vectorize");
+
+        final String vectorized = BatchTransformWriter.writeNumPy(trs, "f", step -> scalar, step -> null);
+        assertThat(vectorized).contains("math.sin(src[0])", "f_step0_v = np.vectorize(", "f_step0_v(");
+    }
+
+    @Test
+    public void numPyMatchesSIS() throws Exception {
+        assumeTrue(hasNumPy() || System.getenv("CI") != null, "CPython with NumPy is not installed");
+        final var service = new DefaultCrsOperationService();
+        for (String target : new String[] {"EPSG:3031", "EPSG:3395", "EPSG:32231", "EPSG:2154"}) {
+            final CoordinateReferenceSystem crs = CRS.forCode(target);
+            final MathTransform trs = CRS.findOperation(CRS.forCode("EPSG:4326"), crs, null).getMathTransform();
+            final double[] points = samplePoints(CRS.getGeographicBoundingBox(crs), 4);
+            final double[] expected = new double[points.length];
+            trs.transform(points, 0, expected, 0, points.length / 2);
+
+            final var request = new CrsOperationService.OperationParameters("EPSG:4326", false, target, false,
+                    DefaultCrsOperationService.FORMAT_PYTHON_NUMPY, null, null);
+            final String module = service.getOperation(request).sourceCode().getContentAsString(StandardCharsets.UTF_8);
+            final var rows = new StringBuilder("[");
+            for (int i = 0; i < points.length; i += 2) {
+                rows.append('[').append(points[i]).append(", ").append(points[i + 1]).append("], ");
+            }
+            rows.append(']');
+            final String output = python(module + "\nprint(' '.join(repr(float(v)) for v in Operation().transform(np.array(" + rows + ")).ravel()))\n");
+            final double[] actual = Arrays.stream(output.strip().split(" ")).mapToDouble(Double::parseDouble).toArray();
+            assertThat(actual).as(target).containsExactly(expected, within(TOLERANCE));
+        }
+    }
+
+    /**
+     * Returns whether CPython with NumPy can be executed.
+     */
+    static boolean hasNumPy() {
+        try {
+            return new ProcessBuilder("python3", "-c", "import numpy").start().waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Runs the given script with CPython and returns its standard output.
+     */
+    static String python(final String script) throws IOException, InterruptedException {
+        final Process process = new ProcessBuilder("python3", "-").redirectErrorStream(true).start();
+        try (var in = process.getOutputStream()) {
+            in.write(script.getBytes(StandardCharsets.UTF_8));
+        }
+        final String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertThat(process.waitFor()).as(output).isZero();
+        return output;
+    }
+
+    /**
+     * Returns points in (latitude, longitude) order on a regular grid in the given area.
+     */
+    private static double[] samplePoints(final GeographicBoundingBox bbox, final int n) {
+        final double[] points = new double[n * n * 2];
+        int p = 0;
+        for (int i = 1; i <= n; i++) {
+            for (int j = 1; j <= n; j++) {
+                points[p++] = bbox.getSouthBoundLatitude() + (bbox.getNorthBoundLatitude() - bbox.getSouthBoundLatitude()) * i / (n + 1);
+                points[p++] = bbox.getWestBoundLongitude() + (bbox.getEastBoundLongitude() - bbox.getWestBoundLongitude()) * j / (n + 1);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Transforms the given two-dimensional points with the {@code transformArray} method of the given object.
+     */
+    private static double[] transform(final String object, final double[] points) throws ScriptException {
+        final ScriptEngine engine = new ScriptEngineManager().getEngineByName("js");
+        final List<? extends Number> result = (List) engine.eval(
+                "(() => {\n" +
+                "const operation = " + object + ";\n" +
+                "const src = " + Arrays.toString(points) + ";\n" +
+                "const dst = new Float64Array(" + points.length + ");\n" +
+                "operation.transformArray(src, 0, dst, 0, " + points.length / 2 + ");\n" +
+                "return Array.from(dst);\n" +
+                "})()");
+        return result.stream().mapToDouble(Number::doubleValue).toArray();
+    }
+
+    /**
+     * Measures the time spent by the {@code transformArray} method of the given object, after a warm-up.
+     */
+    private static double nanosPerPoint(final String object, final int count) throws ScriptException {
+        final ScriptEngine engine = new ScriptEngineManager().getEngineByName("js");
+        final Number millis = (Number) engine.eval(
+                "(() => {\n" +
+                "const operation = " + object + ";\n" +
+                "const src = new Float64Array(" + count * 2 + ");\n" +
+                "for (let i = 0; i < src.length; i += 2) { src[i] = -60 - (i % 30); src[i + 1] = i % 360 - 180; }\n" +
+                "const dst = new Float64Array(src.length);\n" +
+                "operation.transformArray(src, 0, dst, 0, " + count + ");\n" +
+                "const start = Date.now();\n" +
+                "for (let r = 0; r < 5; r++) operation.transformArray(src, 0, dst, 0, " + count + ");\n" +
+                "return Date.now() - start;\n" +
+                "})()");
+        return millis.doubleValue() * 1E6 / (5.0 * count);
+    }
+}
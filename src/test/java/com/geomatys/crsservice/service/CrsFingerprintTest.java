@@ -0,0 +1,75 @@
+package com.geomatys.crsservice.service;
+
+import org.apache.sis.io.wkt.Convention;
+import org.apache.sis.referencing.CRS;
+import org.apache.sis.referencing.crs.AbstractCRS;
+import org.junit.jupiter.api.Test;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifies that different spellings of the same CRS have the same fingerprint, and that different CRSs do not.
+ */
+public class CrsFingerprintTest {
+
+    @Test
+    public void sameCRS() throws Exception {
+        for (String code : new String[] {"EPSG:4326", "EPSG:3031", "EPSG:32631", "EPSG:2154"}) {
+            final CoordinateReferenceSystem crs = CRS.forCode(code);
+            final String expected = CrsFingerprint.of(crs);
+            final String wkt = crs.toWKT();
+            assertThat(CrsFingerprint.of(CRS.forCode("urn:ogc:def:crs:" + code.replace(":", "::")))).as(code).isEqualTo(expected);
+            assertThat(CrsFingerprint.of(CRS.fromWKT(wkt))).as(code).isEqualTo(expected);
+            assertThat(CrsFingerprint.of(CRS.fromWKT(wkt.replaceAll("\\s+", " ")))).as(code).isEqualTo(expected);
+            final String wkt1 = ((AbstractCRS) crs).toString(Convention.WKT1);
+            assertThat(CrsFingerprint.of(CRS.fromWKT(wkt1))).as(code).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void ignoreMetadata() throws Exception {
+        final String wkt = CRS.forCode("EPSG:32631").toWKT();
+        final String renamed = wkt.replace("WGS 84 / UTM zone 31N", "My projection")
+                .replaceAll(",\\s*ID\\[\"EPSG\",\\s*\\d+\\]", "")
+                .replaceAll("(?s),\\s*USAGE\\[.*?\\]\\]", "");
+        assertThat(renamed).doesNotContain("UTM zone 31N");
+        assertThat(CrsFingerprint.of(CRS.fromWKT(renamed))).isEqualTo(CrsFingerprint.of(CRS.forCode("EPSG:32631")));
+    }
+
+    @Test
+    public void withMetadata() throws Exception {
+        final String expected = CrsFingerprint.withMetadata(CRS.forCode("EPSG:32631"));
+        assertThat(CrsFingerprint.withMetadata(CRS.forCode("urn:ogc:def:crs:EPSG::32631"))).isEqualTo(expected);
+        final String wkt = CRS.forCode("EPSG:32631").toWKT();
+        assertThat(CrsFingerprint.withMetadata(CRS.fromWKT(wkt.replace("WGS 84 / UTM zone 31N", "My projection")))).isNotEqualTo(expected);
+        assertThat(CrsFingerprint.withMetadata(CRS.fromWKT(wkt.replaceAll("(?s),\\s*USAGE\\[.*?\\]\\]", "")))).isNotEqualTo(expected);
+    }
+
+    @Test
+    public void differentCRS() throws Exception {
+        assertThat(CrsFingerprint.of(CRS.forCode("EPSG:4326")))
+                .isNotEqualTo(CrsFingerprint.of(CRS.forCode("CRS:84")))
+                .isNotEqualTo(CrsFingerprint.of(CRS.forCode("EPSG:4322")))
+                .isNotEqualTo(CrsFingerprint.of(CRS.forCode("EPSG:4978")));
+        assertThat(CrsFingerprint.of(CRS.forCode("EPSG:32631")))
+                .isNotEqualTo(CrsFingerprint.of(CRS.forCode("EPSG:32632")))
+                .isNotEqualTo(CrsFingerprint.of(CRS.forCode("EPSG:32731")));
+    }
+
+    @Test
+    public void differentDatumShift() throws Exception {
+        assertThat(CrsFingerprint.of(CRS.fromWKT(withShift("-168,-60,320,0,0,0,0"))))
+                .isEqualTo(CrsFingerprint.of(CRS.fromWKT(withShift("-168, -60, 320, 0, 0, 0, 0"))))
+                .isNotEqualTo(CrsFingerprint.of(CRS.fromWKT(withShift("-84,-97,-117,0,0,0,0"))));
+    }
+
+    /**
+     * Returns the WKT 1 of a geographic CRS on an unknown datum with the given {@code TOWGS84} values.
+     */
+    static String withShift(final String values) {
+        return "GEOGCS[\"Test\", DATUM[\"Test datum\", SPHEROID[\"Clarke 1880 (IGN)\", 6378249.2, 293.4660212936269],"
+                + " TOWGS84[" + values + "]], PRIMEM[\"Greenwich\", 0], UNIT[\"degree\", 0.017453292519943295],"
+                + " AXIS[\"Latitude\", NORTH], AXIS[\"Longitude\", EAST]]";
+    }
+}
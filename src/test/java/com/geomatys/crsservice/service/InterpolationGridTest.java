@@ -0,0 +1,47 @@
+package com.geomatys.crsservice.service;
+
+import java.util.List;
+import javax.script.ScriptEngineManager;
+import org.apache.sis.geometry.Envelope2D;
+import org.apache.sis.referencing.CRS;
+import org.junit.jupiter.api.Test;
+import org.opengis.referencing.operation.MathTransform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Validates the interpolation grids against Apache SIS, on points which are not in the verification sample.
+ */
+public class InterpolationGridTest {
+
+    static {
+        System.setProperty("polyglot.engine.WarnInterpreterOnly", "false");
+    }
+
+    @Test
+    public void withinTolerance() throws Exception {
+        final MathTransform trs = CRS.findOperation(CRS.forCode("EPSG:4326"), CRS.forCode("EPSG:3031"), null).getMathTransform();
+        final var area = new Envelope2D(null, -80, -20, 20, 60);
+        final double tolerance = 1;
+        final InterpolationGrid grid = InterpolationGrid.fit(trs, area, tolerance);
+        assertThat(grid.maximalError()).isLessThanOrEqualTo(tolerance / 2);
+        ApproximationVerifier.verify(trs, grid, area, tolerance, 3031);
+    }
+
+    @Test
+    public void inverseWithinTolerance() throws Exception {
+        final MathTransform trs = CRS.findOperation(CRS.forCode("EPSG:4326"), CRS.forCode("EPSG:32231"), null).getMathTransform();
+        final var area = new Envelope2D(null, 3E5, 5E6, 4E5, 5E5);
+        final InterpolationGrid grid = InterpolationGrid.fitInverse(trs.inverse(), trs, area, 0.1);
+
+        final var engine = new ScriptEngineManager().getEngineByName("js");
+        final List<? extends Number> point = (List) engine.eval("(" + grid.toJavaScript() + ").transform([4.5E5, 5.2E6])");
+        final double[] projected = new double[2];
+        trs.transform(new double[] {point.get(0).doubleValue(), point.get(1).doubleValue()}, 0, projected, 0, 1);
+        assertThat(projected).containsExactly(new double[] {4.5E5, 5.2E6}, within(0.1));
+
+        final List<? extends Number> outside = (List) engine.eval("(" + grid.toJavaScript() + ").transform([2E5, 5.2E6])");
+        assertThat(outside.get(0).doubleValue()).isNaN();
+    }
+}
@@ -0,0 +1,51 @@
+package com.geomatys.crsservice.service;
+
+import com.geomatys.crsservice.configuration.OperationStoreConfiguration;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifies that the kernels imported by a module can be fetched from instances other than the one which generated the module.
+ */
+public class KernelRuntimeTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void resolvedByFreshInstance() throws Exception {
+        final var properties = new OperationStoreConfiguration.OperationStoreProperties(directory, DataSize.ofMegabytes(16));
+        final var request = new CrsOperationService.OperationParameters("EPSG:4326", false, "EPSG:3031", false,
+                DefaultCrsOperationService.FORMAT_JAVASCRIPT_MODULE, null, null);
+        final var generating = new DefaultCrsOperationService();
+        generating.setOperationStore(properties);
+        final String module = generating.getOperation(request).sourceCode().getContentAsString(StandardCharsets.UTF_8);
+        final List<String> names = Pattern.compile("from \"\\./runtime/([0-9a-f]+\\.js)\"").matcher(module).results().map(m -> m.group(1)).toList();
+        assertThat(names).isNotEmpty();
+
+        final var fresh = new DefaultCrsOperationService();
+        assertThat(fresh.getRuntimeModule(names.get(0))).isNull();
+        fresh.setOperationStore(properties);
+        for (String name : names) {
+            assertThat(fresh.getRuntimeModule(name).sourceCode().getContentAsByteArray())
+                    .isEqualTo(generating.getRuntimeModule(name).sourceCode().getContentAsByteArray());
+        }
+        assertThat(fresh.getOperation(request).sourceCode().getContentAsString(StandardCharsets.UTF_8)).isEqualTo(module);
+        assertThat(fresh.getRuntimeModule("../kernels.js")).isNull();
+    }
+
+    @Test
+    public void rejectsMismatchedContent() {
+        final var kernels = new KernelRuntime();
+        final byte[] module = "export default () => ({});\n".getBytes(StandardCharsets.UTF_8);
+        assertThat(kernels.add("0123456789abcdef0123.js", module)).isFalse();
+        assertThat(kernels.get("0123456789abcdef0123.js")).isNull();
+    }
+}
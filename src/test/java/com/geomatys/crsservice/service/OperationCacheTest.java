@@ -0,0 +1,111 @@
+package com.geomatys.crsservice.service;
+
+import org.apache.sis.referencing.CRS;
+import org.junit.jupiter.api.Test;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.cs.AxisDirection;
+import org.opengis.referencing.operation.ConcatenatedOperation;
+import org.opengis.referencing.operation.CoordinateOperation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Compares the assembled operations with the operations found by Apache SIS.
+ */
+public class OperationCacheTest {
+
+    private final OperationCache cache = new OperationCache();
+
+    @Test
+    public void projectedToProjected() throws Exception {
+        final CoordinateOperation first = compare("EPSG:32631", "EPSG:3395", new double[] {500000, 5300000});
+        final CoordinateOperation second = compare("EPSG:3031", "EPSG:3395", new double[] {1000000, 1000000});
+        assertThat(first).isInstanceOf(ConcatenatedOperation.class);
+        assertThat(((ConcatenatedOperation) first).getOperations().get(1))
+                .isSameAs(((ConcatenatedOperation) second).getOperations().get(1));
+    }
+
+    @Test
+    public void geographicAndProjected() throws Exception {
+        compare("EPSG:4326", "EPSG:3031", new double[] {-70, 10});
+        compare("EPSG:3395", "CRS:84", new double[] {200000, 5000000});
+        compare("EPSG:4326", "CRS:84", new double[] {48, 2});
+        compare("EPSG:4326", "EPSG:4978", new double[] {48, 2});
+    }
+
+    @Test
+    public void differentDatums() throws Exception {
+        compare("EPSG:2154", "EPSG:32631", new double[] {650000, 6860000});
+        compare("EPSG:32231", "EPSG:3395", new double[] {500000, 5300000});
+    }
+
+    /**
+     * Verifies that CRSs which differ only by their {@code TOWGS84} element are not replaced by each other.
+     */
+    @Test
+    public void differentDatumShift() throws Exception {
+        final CoordinateReferenceSystem target = CRS.forCode("EPSG:4326");
+        final CoordinateOperation first = cache.find(CRS.fromWKT(CrsFingerprintTest.withShift("-168,-60,320,0,0,0,0")), target, null, false, false);
+        final CoordinateOperation second = cache.find(CRS.fromWKT(CrsFingerprintTest.withShift("-84,-97,-117,0,0,0,0")), target, null, false, false);
+        assertThat(second).isNotSameAs(first);
+        final double[] p1 = new double[2];
+        final double[] p2 = new double[2];
+        first.getMathTransform().transform(new double[] {48, 2}, 0, p1, 0, 1);
+        second.getMathTransform().transform(new double[] {48, 2}, 0, p2, 0, 1);
+        assertThat(Math.abs(p1[0] - p2[0]) + Math.abs(p1[1] - p2[1])).isGreaterThan(1E-4);
+    }
+
+    @Test
+    public void longitudeFirst() throws Exception {
+        final CoordinateReferenceSystem source = CRS.forCode("EPSG:4326");
+        final CoordinateReferenceSystem target = CRS.forCode("EPSG:3031");
+        final CoordinateReferenceSystem variant = DefaultCrsOperationService.parseCRS("EPSG:4326", true);
+        assertThat(variant.getCoordinateSystem().getAxis(0).getDirection()).isEqualTo(AxisDirection.EAST);
+
+        final CoordinateOperation canonical = cache.find(source, target, null, false, false);
+        final CoordinateOperation swapped = cache.find(source, target, null, true, false);
+        assertThat(swapped.getSourceCRS()).isSameAs(variant);
+        assertThat(cache.find(source, target, null, false, false)).isSameAs(canonical);
+
+        final double[] point = new double[2];
+        swapped.getMathTransform().transform(new double[] {10, -70}, 0, point, 0, 1);
+        final double[] expected = new double[2];
+        canonical.getMathTransform().transform(new double[] {-70, 10}, 0, expected, 0, 1);
+        assertThat(point).containsExactly(expected, within(1e-9));
+    }
+
+    @Test
+    public void equivalentSpellings() throws Exception {
+        final CoordinateReferenceSystem source = CRS.forCode("EPSG:32631");
+        final CoordinateReferenceSystem target = CRS.forCode("EPSG:4326");
+        final CoordinateOperation first = cache.find(source, target, null, false, true);
+        assertThat(cache.find(CRS.fromWKT(source.toWKT()), CRS.forCode("urn:ogc:def:crs:EPSG::4326"), null, false, true)).isSameAs(first);
+        assertThat(cache.find(CRS.fromWKT(source.toWKT()), target, null, false, false).getSourceCRS()).isSameAs(source);
+
+        final CoordinateReferenceSystem other = CRS.fromWKT(CRS.forCode("EPSG:32632").toWKT());
+        final double[] point = new double[2];
+        final double[] expected = new double[2];
+        cache.find(other, target, null).getMathTransform().transform(new double[] {500000, 5300000}, 0, point, 0, 1);
+        CRS.findOperation(other, target, null).getMathTransform().transform(new double[] {500000, 5300000}, 0, expected, 0, 1);
+        assertThat(point).containsExactly(expected, within(1e-9));
+    }
+
+    /**
+     * Verifies that the operation of the cache transforms the given point like the operation of Apache SIS.
+     */
+    private CoordinateOperation compare(final String source, final String target, final double[] point) throws Exception {
+        final CoordinateReferenceSystem crs1 = CRS.forCode(source);
+        final CoordinateReferenceSystem crs2 = CRS.forCode(target);
+        final CoordinateOperation operation = cache.find(crs1, crs2, null);
+        final CoordinateOperation expected = CRS.findOperation(crs1, crs2, null);
+        final double[] actualPoint = new double[operation.getMathTransform().getTargetDimensions()];
+        final double[] expectedPoint = new double[expected.getMathTransform().getTargetDimensions()];
+        operation.getMathTransform().transform(point, 0, actualPoint, 0, 1);
+        expected.getMathTransform().transform(point, 0, expectedPoint, 0, 1);
+        assertThat(actualPoint).as(source + " → " + target).containsExactly(expectedPoint, within(1e-6));
+        assertThat(operation.getSourceCRS()).isSameAs(crs1);
+        assertThat(operation.getTargetCRS()).isSameAs(crs2);
+        return operation;
+    }
+}
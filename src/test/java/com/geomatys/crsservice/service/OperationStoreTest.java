@@ -0,0 +1,96 @@
+package com.geomatys.crsservice.service;
+
+import com.geomatys.crsservice.configuration.IAUGeodeticAuthorityFactory;
+import com.geomatys.crsservice.configuration.ServiceVersion;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifies that stored operations are found after a restart and by other instances sharing the directory.
+ */
+public class OperationStoreTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void survivesRestart() throws Exception {
+        final OperationStore store = new OperationStore(directory, 4 << 20);
+        assertThat(store.get("a")).isNull();
+        store.put("a", bytes("operation a"));
+        store.put("b", bytes("operation b"));
+        store.put("a", bytes("ignored"));
+        assertThat(store.get("a")).isEqualTo(bytes("operation a"));
+
+        final OperationStore restarted = new OperationStore(directory, 4 << 20);
+        assertThat(restarted.get("a")).isEqualTo(bytes("operation a"));
+        assertThat(restarted.get("b")).isEqualTo(bytes("operation b"));
+        assertThat(restarted.get("c")).isNull();
+    }
+
+    @Test
+    public void sharedBetweenInstances() throws Exception {
+        final OperationStore first = new OperationStore(directory, 4 << 20);
+        final OperationStore second = new OperationStore(directory, 4 << 20);
+        assertThat(second.get("a")).isNull();
+        final byte[] large = new byte[100_000];
+        large[99_999] = 42;
+        first.put("a", large);
+        assertThat(second.get("a")).isEqualTo(large);
+        second.put("b", bytes("operation b"));
+        assertThat(first.get("b")).isEqualTo(bytes("operation b"));
+    }
+
+    @Test
+    public void capacity() throws Exception {
+        final OperationStore store = new OperationStore(directory, 4 << 20);
+        store.put("a", new byte[4 << 20]);
+        assertThat(store.get("a")).isNull();
+        store.put("b", bytes("operation b"));
+        assertThat(store.get("b")).isEqualTo(bytes("operation b"));
+    }
+
+    @Test
+    public void corruptedRecord() throws Exception {
+        final OperationStore store = new OperationStore(directory, 4 << 20);
+        store.put("a", bytes("operation a"));
+        final Path file;
+        try (var files = Files.list(directory)) {
+            file = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes("X")), channel.size() - 1);
+        }
+        assertThat(new OperationStore(directory, 4 << 20).get("a")).isNull();
+    }
+
+    @Test
+    public void deletesObsoleteVersions() throws Exception {
+        final Path obsolete = Files.writeString(directory.resolve("operations-0-0.bin"), "");
+        final Path recent = Files.writeString(directory.resolve("operations-1-1.bin"), "");
+        Files.setLastModifiedTime(obsolete, FileTime.from(Instant.now().minus(2, ChronoUnit.HOURS)));
+        final OperationStore store = new OperationStore(directory, 4 << 20);
+        store.put("a", bytes("operation a"));
+        assertThat(obsolete).doesNotExist();
+        assertThat(recent).exists();
+        try (var files = Files.list(directory)) {
+            assertThat(files.map(Path::getFileName).map(Path::toString)).contains(
+                    "operations-" + IAUGeodeticAuthorityFactory.getRegistryVersion() + '-' + ServiceVersion.get() + ".bin");
+        }
+    }
+
+    private static byte[] bytes(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,55 @@
+package com.geomatys.crsservice.service;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Verifies the distribution of keys over instances. Requests to other instances are verified by {@code MultiInstanceTest}.
+ */
+public class PeerCacheTest {
+
+    @Test
+    public void consistentHashing() {
+        final List<URI> peers = List.of(URI.create("http://localhost:8081"), URI.create("http://localhost:8082"), URI.create("http://localhost:8083"));
+        final PeerCache.Ring ring = PeerCache.ring(peers);
+        final Map<URI, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            counts.merge(ring.owner("key " + i), 1, Integer::sum);
+        }
+        assertThat(counts).hasSize(3).allSatisfy((peer, count) -> assertThat(count).isBetween(2000, 4700));
+
+        final URI added = URI.create("http://localhost:8084");
+        final PeerCache.Ring larger = PeerCache.ring(List.of(peers.get(0), peers.get(1), peers.get(2), added));
+        int moved = 0;
+        for (int i = 0; i < 10_000; i++) {
+            final URI before = ring.owner("key " + i);
+            final URI after = larger.owner("key " + i);
+            if (!before.equals(after)) {
+                assertThat(after).isEqualTo(added);
+                moved++;
+            }
+        }
+        assertThat(moved).isBetween(1000, 4000);
+    }
+
+    @Test
+    public void ownerIsNotAsked() {
+        final URI peer = URI.create("http://localhost:1/");
+        final PeerCache owner = new PeerCache(peer, List.of(peer), null, 0, Duration.ofSeconds(5), Duration.ZERO);
+        assertThat(owner.owner("cached key")).isEqualTo(URI.create("http://localhost:1"));
+        assertThat(owner.get("cached key")).isNull();
+    }
+
+    @Test
+    public void refreshMustBePositive() {
+        assertThatThrownBy(() -> new PeerCache(URI.create("http://localhost:1"), List.of(), "localhost", 8080, Duration.ofSeconds(5), Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
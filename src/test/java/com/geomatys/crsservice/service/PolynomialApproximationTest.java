@@ -0,0 +1,59 @@
+package com.geomatys.crsservice.service;
+
+import java.util.List;
+import javax.script.ScriptEngineManager;
+import org.apache.sis.geometry.Envelope2D;
+import org.apache.sis.referencing.CRS;
+import org.junit.jupiter.api.Test;
+import org.opengis.referencing.operation.MathTransform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Validates the polynomial approximations against Apache SIS, on points which are not in the verification sample.
+ */
+public class PolynomialApproximationTest {
+
+    static {
+        System.setProperty("polyglot.engine.WarnInterpreterOnly", "false");
+    }
+
+    @Test
+    public void withinTolerance() throws Exception {
+        final MathTransform trs = CRS.findOperation(CRS.forCode("EPSG:4326"), CRS.forCode("EPSG:32231"), null).getMathTransform();
+        final var area = new Envelope2D(null, 40, -2, 12, 10);
+        for (final double tolerance : new double[] {1, 0.01}) {
+            final PolynomialApproximation approximation = PolynomialApproximation.fit(trs, area, tolerance);
+            assertThat(approximation.maximalError()).isLessThanOrEqualTo(tolerance / 2);
+            ApproximationVerifier.verify(trs, approximation, area, tolerance, 2154);
+        }
+    }
+
+    @Test
+    public void inverseWithinTolerance() throws Exception {
+        final MathTransform trs = CRS.findOperation(CRS.forCode("EPSG:4326"), CRS.forCode("EPSG:3031"), null).getMathTransform();
+        final var area = new Envelope2D(null, -1E6, -1E6, 2E6, 2E6);
+        final PolynomialApproximation approximation = PolynomialApproximation.fitInverse(trs.inverse(), trs, area, 0.1);
+        final String code = approximation.toPython("_inverse");
+        assertThat(code).contains("def _inverse(src):", "_inverse_c = [");
+
+        final var engine = new ScriptEngineManager().getEngineByName("js");
+        final List<? extends Number> point = (List) engine.eval("(" + approximation.toJavaScript() + ").transform([2.5E5, -4E5])");
+        final double[] projected = new double[2];
+        trs.transform(new double[] {point.get(0).doubleValue(), point.get(1).doubleValue()}, 0, projected, 0, 1);
+        assertThat(projected).containsExactly(new double[] {2.5E5, -4E5}, within(0.1));
+
+        final List<? extends Number> outside = (List) engine.eval("(" + approximation.toJavaScript() + ").transform([3E6, 0])");
+        assertThat(outside.get(0).doubleValue()).isNaN();
+    }
+
+    @Test
+    public void toleranceTooSmall() throws Exception {
+        final MathTransform trs = CRS.findOperation(CRS.forCode("EPSG:4326"), CRS.forCode("EPSG:3395"), null).getMathTransform();
+        assertThatThrownBy(() -> PolynomialApproximation.fit(trs, new Envelope2D(null, -80, -180, 160, 360), 1E-9))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("too costly");
+    }
+}
@@ -0,0 +1,131 @@
+package com.geomatys.crsservice.service;
+
+import java.util.Arrays;
+import java.util.List;
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs steps translated to Python with Jython and compares the results with the JavaScript code.
+ */
+public class PythonTranslatorTest {
+
+    /**
+     * A step using the constructs of Apache SIS objects: Greek identifiers, branches, loops and nested objects.
+     */
+    private static final String STEP =
+            "{\n" +
+            "  ℯ : 0.0818191908426,\n" +
+            "  _inner : { scale : function(x) { return x * 2; } },\n" +
+            "  transform : function(src) {\n" +
+            "    const φ = src[0], λ = src[1];\n" +
+            "    let x, y;\n" +
+            "    const ℯsin = this.ℯ * Math.sin(φ);\n" +
+            "    if (Math.abs(φ) > 1.5) {\n" +
+            "      x = NaN; y = Number.POSITIVE_INFINITY;\n" +
+            "    } else if (!(φ >= 0) && λ < 0) {\n" +
+            "      x = -(Math.log((1 - ℯsin) / (1 + ℯsin)) ** 2); y = λ % 0.25;\n" +
+            "    } else {\n" +
+            "      x = φ > 0 ? Math.cbrt(φ) : Math.sign(φ) * Math.round(λ); y = 1 / 3;\n" +
+            "    }\n" +
+            "    let sum = 0;\n" +
+            "    for (let i = 0; i < 3; i++) sum += i;\n" +
+            "    let k = 0;\n" +
+            "    do { k++; } while (k < 4);\n" +
+            "    for (let j = 0; j <= src.length; j++) { sum -= j; }\n" +
+            "    return [x + sum + k, this._inner.scale(y), Math.max(φ, λ, 0), Math.hypot(φ, λ, 1)];\n" +
+            "  },\n" +
+            "  inverse : function() { return { transform : function(src) { return src; } }; }\n" +
+            "}";
+
+    @Test
+    public void sameResultsAsJavaScript() throws Exception {
+        final String python = PythonTranslator.translate(STEP);
+        assertThat(python).startsWith("\n  ").doesNotContain("φ", "ℯ", "this", ";", "{").contains("elif ", "for i in range(0, 3):");
+
+        final ScriptEngine engine = new ScriptEngineManager().getEngineByName("python");
+        engine.eval("import math\nclass Step:" + python + "\n\n"
+                + "def run(src, dst):\n  r = Step().transform(list(src))\n  for i in range(len(r)):\n    dst[i] = r[i]\n");
+        final ScriptEngine js = new ScriptEngineManager().getEngineByName("js");
+        for (double[] point : new double[][] {{0.5, -0.3}, {-0.5, -0.3}, {1.2, 0.2}, {0, 0}}) {
+            final double[] actual = new double[4];
+            ((Invocable) engine).invokeFunction("run", point, actual);
+            final List<? extends Number> expected = (List) js.eval("(" + STEP + ").transform([" + point[0] + ", " + point[1] + "])");
+            for (int i = 0; i < actual.length; i++) {
+                assertThat(actual[i]).isCloseTo(expected.get(i).doubleValue(), within(1e-12));
+            }
+        }
+    }
+
+    /**
+     * A step without loops, with the branches that Apache SIS writes in projections:
+     * early returns, conditional expressions and nested {@code if} statements assigning variables.
+     */
+    private static final String BRANCHES =
+            "{\n" +
+            "  _abs : function(v) { if (v < 0) return -v; return v; },\n" +
+            "  transform : function(src) {\n" +
+            "    let φ = src[0], λ = src[1];\n" +
+            "    let x;\n" +
+            "    if (φ > 1 && !(λ < 0)) {\n" +
+            "      x = φ * 2; φ = 1;\n" +
+            "    } else if (λ > 5) {\n" +
+            "      x = Math.asin(φ / 4);\n" +
+            "    } else {\n" +
+            "      x = Math.min(φ, λ, 4);\n" +
+            "    }\n" +
+            "    if (!Number.isFinite(λ)) return [NaN, φ];\n" +
+            "    const y = λ > 0 ? Math.atan2(λ, φ) : Math.PI;\n" +
+            "    return [this._abs(x) + φ, y % 2];\n" +
+            "  }\n" +
+            "}";
+
+    @Test
+    public void numPy() throws Exception {
+        final String python = PythonTranslator.translateNumPy(BRANCHES);
+        assertThat(python).contains("np.where(", "np.logical_and(", "np.minimum(", "np.arcsin(", "np.fmod(")
+                .doesNotContain("math.", "min(phi_").doesNotContainPattern("\\n *(if|elif|else)\\b");
+        assertThatThrownBy(() -> PythonTranslator.translateNumPy(STEP)).isInstanceOf(UnsupportedOperationException.class);
+
+        assumeTrue(BatchTransformWriterTest.hasNumPy() || System.getenv("CI") != null, "CPython with NumPy is not installed");
+        final double[][] points = {{0.5, -0.3}, {1.5, 6}, {1.5, -2}, {0.5, 7}, {2, Double.POSITIVE_INFINITY}, {-1, 0}};
+        final var columns = new StringBuilder();
+        for (int i = 0; i < 2; i++) {
+            final int dimension = i;
+            columns.append("np.array(").append(Arrays.toString(Arrays.stream(points).mapToDouble(p -> p[dimension]).toArray())
+                    .replace("Infinity", "float('inf')")).append("), ");
+        }
+        final String output = BatchTransformWriterTest.python("import math\nimport numpy as np\nclass Step:" + python
+                + "\nr = Step().transform([" + columns + "])\n"
+                + "print(' '.join(repr(float(v)) for v in np.concatenate([np.broadcast_to(c, r[0].shape) for c in r])))\n");
+        final double[] actual = Arrays.stream(output.strip().split(" ")).mapToDouble(Double::parseDouble).toArray();
+        final ScriptEngine js = new ScriptEngineManager().getEngineByName("js");
+        for (int i = 0; i < points.length; i++) {
+            final List<? extends Number> expected = (List) js.eval("(" + BRANCHES + ").transform([" + points[i][0] + ", " + points[i][1] + "])");
+            for (int j = 0; j < expected.size(); j++) {
+                assertThat(actual[j * points.length + i]).isCloseTo(expected.get(j).doubleValue(), within(1e-12));
+            }
+        }
+    }
+
+    @Test
+    public void identifiers() {
+        assertThat(PythonTranslator.identifier("sinφ")).isEqualTo("sinphi_");
+        assertThat(PythonTranslator.identifier("lambda")).isEqualTo("lambda_");
+        assertThat(PythonTranslator.identifier("$_3")).isEqualTo("$_3");
+        assertThat(PythonTranslator.identifier("x")).isEqualTo("x");
+    }
+
+    @Test
+    public void unsupportedTransform() {
+        assertThatThrownBy(() -> PythonTranslator.translate("{ transform : function(src) { return src.map(v => v * 2); } }"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+}
@@ -0,0 +1,145 @@
+package com.geomatys.crsservice.service;
+
+import com.dylibso.chicory.runtime.HostFunction;
+import com.dylibso.chicory.runtime.ImportValues;
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasm.Parser;
+import com.dylibso.chicory.wasm.types.FunctionType;
+import com.dylibso.chicory.wasm.types.ValType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import org.apache.sis.referencing.CRS;
+import org.apache.sis.referencing.ExportableTransform;
+import org.apache.sis.referencing.operation.transform.MathTransforms;
+import org.junit.jupiter.api.Test;
+import org.opengis.referencing.operation.MathTransform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Runs the WebAssembly modules in a pure-Java runtime and compares the results with Apache SIS.
+ */
+public class WasmWriterTest {
+
+    private static final Map<String, DoubleUnaryOperator> UNARY = Map.ofEntries(
+            Map.entry("sin", Math::sin), Map.entry("cos", Math::cos), Map.entry("tan", Math::tan),
+            Map.entry("asin", Math::asin), Map.entry("acos", Math::acos), Map.entry("atan", Math::atan),
+            Map.entry("sinh", Math::sinh), Map.entry("cosh", Math::cosh), Map.entry("tanh", Math::tanh),
+            Map.entry("asinh", x -> Math.log(x + Math.sqrt(x * x + 1))),
+            Map.entry("acosh", x -> Math.log(x + Math.sqrt(x * x - 1))),
+            Map.entry("atanh", x -> 0.5 * Math.log1p(2 * x / (1 - x))),
+            Map.entry("exp", Math::exp), Map.entry("expm1", Math::expm1), Map.entry("log", Math::log),
+            Map.entry("log1p", Math::log1p), Map.entry("log10", Math::log10), Map.entry("log2", x -> Math.log(x) / Math.log(2)),
+            Map.entry("cbrt", Math::cbrt), Map.entry("sign", Math::signum), Map.entry("round", x -> Math.floor(x + 0.5)));
+
+    private static final Map<String, DoubleBinaryOperator> BINARY = Map.of("atan2", Math::atan2, "pow", Math::pow, "hypot", Math::hypot);
+
+    @Test
+    public void linearOperation() throws Exception {
+        final MathTransform trs = CRS.findOperation(CRS.forCode("EPSG:4326"), CRS.forCode("CRS:84"), null).getMathTransform();
+        final Instance instance = instantiate(WasmWriter.write(trs, trs.inverse(), WasmWriterTest::stepObject));
+        final double[] points = {10, 20, -45, 170};
+        assertThat(transform(instance, "transformArray", points, 2, 2)).containsExactly(20, 10, 170, -45);
+        assertThat(transform(instance, "inverseTransform", new double[] {20, 10}, 2, 2)).containsExactly(10, 20);
+    }
+
+    @Test
+    public void branchesAndLoops() throws Exception {
+        final String step = """
+                { scale : 2,
+                  transform : function(src) {
+                    let x = src[0];
+                    let n = 0;
+                    while (Math.abs(x) > 1) { x /= this.scale; n++; }
+                    for (let i = 0; i < 3; i++) {
+                      if (n > 5) break;
+                      x = x * 2 % 0.7;
+                    }
+                    do { n--; if (n == 2) continue; x += 0.25; } while (n > 0 && !isNaN(x));
+                    if (x < 0) { return [-x || n]; }
+                    return [x > 0.5 ? x : n + x];
+                  } }""";
+        final Instance instance = instantiate(WasmWriter.write(MathTransforms.exponential(2), null, trs -> step));
+        final double[] points = {0.3, -3, 1000, 0, -0.6};
+        final double[] expected = new double[points.length];
+        for (int i = 0; i < points.length; i++) {
+            double x = points[i];
+            int n = 0;
+            while (Math.abs(x) > 1) { x /= 2; n++; }
+            for (int j = 0; j < 3; j++) {
+                if (n > 5) break;
+                x = x * 2 % 0.7;
+            }
+            do { n--; if (n == 2) continue; x += 0.25; } while (n > 0 && !Double.isNaN(x));
+            expected[i] = (x < 0) ? -x : (x > 0.5 ? x : n + x);
+        }
+        assertThat(transform(instance, "transformArray", points, 1, 1)).containsExactly(expected, within(1e-12));
+    }
+
+    @Test
+    public void projectedOperations() throws Exception {
+        final double[] points = {-70, 10, -80, 60, -75, -120};
+        for (String target : new String[] {"EPSG:3031", "EPSG:3395", "EPSG:32231"}) {
+            final MathTransform trs = CRS.findOperation(CRS.forCode("EPSG:4326"), CRS.forCode(target), null).getMathTransform();
+            final byte[] module = WasmWriter.write(trs, null, WasmWriterTest::stepObject);
+            final double[] expected = new double[points.length];
+            trs.transform(points, 0, expected, 0, points.length / 2);
+            assertThat(transform(instantiate(module), "transformArray", points, 2, 2)).as(target).containsExactly(expected, within(1e-6));
+        }
+    }
+
+    @Test
+    public void unsupportedStep() {
+        final MathTransform trs = CRS.findOperation(CRS.forCode("EPSG:4326"), CRS.forCode("EPSG:3031"), null).getMathTransform();
+        assertThatThrownBy(() -> WasmWriter.write(trs, null, step -> "{ transform : function(src) { if (src[0] > 0) { return src; } return this.f(src); } }"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    private static String stepObject(final MathTransform step) {
+        return CodeMinifier.foldConstants(((ExportableTransform) step).toECMAScript());
+    }
+
+    /**
+     * Instantiates the given module, with the functions of the JavaScript {@code Math} object implemented in Java.
+     */
+    private static Instance instantiate(final byte[] module) {
+        final List<HostFunction> functions = new ArrayList<>();
+        final FunctionType unary = FunctionType.of(List.of(ValType.F64), List.of(ValType.F64));
+        final FunctionType binary = FunctionType.of(List.of(ValType.F64, ValType.F64), List.of(ValType.F64));
+        UNARY.forEach((name, f) -> functions.add(new HostFunction("Math", name, unary,
+                (instance, args) -> new long[] {Double.doubleToRawLongBits(f.applyAsDouble(Double.longBitsToDouble(args[0])))})));
+        BINARY.forEach((name, f) -> functions.add(new HostFunction("Math", name, binary,
+                (instance, args) -> new long[] {Double.doubleToRawLongBits(f.applyAsDouble(Double.longBitsToDouble(args[0]), Double.longBitsToDouble(args[1])))})));
+        return Instance.builder(Parser.parse(module))
+                .withImportValues(ImportValues.builder().addFunction(functions.toArray(HostFunction[]::new)).build())
+                .build();
+    }
+
+    /**
+     * Copies the points in the module memory, calls the given exported function and returns the transformed points.
+     */
+    private static double[] transform(final Instance instance, final String function, final double[] points, final int srcDim, final int tgtDim) {
+        final Memory memory = instance.memory();
+        for (int i = 0; i < points.length; i++) {
+            memory.writeF64(i * Double.BYTES, points[i]);
+        }
+        final int count = points.length / srcDim;
+        final int dst = points.length * Double.BYTES;
+        if (function.endsWith("Array")) {
+            instance.export(function).apply(0, dst, count);
+        } else {
+            instance.export(function).apply(0, dst);
+        }
+        final double[] result = new double[count * tgtDim];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = memory.readDouble(dst + i * Double.BYTES);
+        }
+        return result;
+    }
+}
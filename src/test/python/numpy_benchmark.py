@@ -0,0 +1,46 @@
+#
+# Compares the scalar and NumPy Python variants of an operation on large arrays of points.
+# Requires a running server and NumPy. Not run by the Gradle build.
+#
+# Usage: python numpy_benchmark.py [base url] [source] [target] [number of points]
+#
+import sys
+import time
+import urllib.parse
+import urllib.request
+
+import numpy as np
+
+base = sys.argv[1] if len(sys.argv) > 1 else "http://localhost:8080/crs"
+source = sys.argv[2] if len(sys.argv) > 2 else "EPSG:4326"
+target = sys.argv[3] if len(sys.argv) > 3 else "EPSG:3031"
+count = int(sys.argv[4]) if len(sys.argv) > 4 else 1000000
+
+
+def load(format):
+  query = urllib.parse.urlencode({"source": source, "target": target, "format": format})
+  with urllib.request.urlopen(base + "/operation?" + query) as response:
+    namespace = {}
+    exec(response.read().decode("utf-8"), namespace)
+    return namespace["Operation"]()
+
+
+scalar = load("text/x-python")
+vectorized = load("text/x-python;variant=numpy")
+
+rng = np.random.default_rng(0)
+area = scalar.operationGeographicBoundingBox or [-180, -90, 180, 90]
+points = np.column_stack([rng.uniform(area[1], area[3], count), rng.uniform(area[0], area[2], count)])
+
+start = time.perf_counter()
+result = vectorized.transform(points)
+elapsed = time.perf_counter() - start
+print("numpy:  %10.1f ns/point" % (elapsed * 1e9 / count))
+
+sample = min(count, 100000)
+start = time.perf_counter()
+expected = np.array([scalar.transform(list(p)) for p in points[:sample]])
+elapsed = time.perf_counter() - start
+print("scalar: %10.1f ns/point (%d points)" % (elapsed * 1e9 / sample, sample))
+
+print("maximal difference: %g" % np.nanmax(np.abs(result[:sample] - expected)))
@@ -1,18 +1,25 @@
 package com.geomatys.crsservice.client;
 
 import com.geomatys.crsservice.service.DefaultCrsOperationService;
+import java.lang.ref.Cleaner;
 import java.util.Arrays;
-import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
 import javax.script.Invocable;
 import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import org.apache.sis.referencing.factory.InvalidGeodeticParameterException;
 import org.apache.sis.referencing.operation.AbstractCoordinateOperation;
 import org.apache.sis.referencing.operation.DefaultConversion;
 import org.apache.sis.referencing.operation.transform.AbstractMathTransform;
-import org.graalvm.polyglot.proxy.ProxyArray;
+import org.apache.sis.util.collection.Cache;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
 import org.opengis.parameter.ParameterValueGroup;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.Conversion;
@@ -21,34 +28,79 @@ import org.opengis.referencing.operation.Matrix;
 import org.opengis.referencing.operation.OperationMethod;
 import org.opengis.referencing.operation.TransformException;
 import org.opengis.util.FactoryException;
-import org.python.jsr223.PyScriptEngine;
+import org.python.jsr223.PyScriptEngineFactory;
 
+/**
+ * Base class of factories creating operations from the code generated by the CRS service.
+ * JavaScript code is executed by a GraalVM engine shared by all operations, with contexts pooled by each operation.
+ * The source of each operation is parsed once, and transforms of many points invoke the batch method
+ * of the script once per chunk of points instead of once per point.
+ */
 public abstract class AbstractScriptingOperationFactory implements ScriptingCoordinateOperationFactory {
 
+    /**
+     * Maximal number of points given to one invocation of the batch method of a script.
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * GraalVM engine shared by all JavaScript contexts, so that code parsed and compiled in one context is reused in the others.
+     */
+    private static final Engine ENGINE = Engine.newBuilder().option("engine.WarnInterpreterOnly", "false").build();
+
+    /**
+     * Maximal number of idle JavaScript contexts kept by each operation. Contexts in excess are closed after use.
+     */
+    private static final int MAX_IDLE_CONTEXTS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Closes the JavaScript contexts of operations which are no longer reachable.
+     */
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /**
+     * JavaScript sources by generated code, for reusing the parsed code when the same operation is created again.
+     */
+    private static final Cache<String, Source> SOURCES = new Cache<>();
+
+    /**
+     * Python function transforming many points with the {@code transform(src)} method of an operation,
+     * since Python code generated by the service has no batch method.
+     */
+    private static final String PYTHON_TRANSFORM_ARRAY =
+            "def _transform_array(operation, src, srcOff, dst, dstOff, count, srcDim, tgtDim):\n" +
+            "  for k in range(count):\n" +
+            "    p = operation.transform([src[srcOff + i] for i in range(srcDim)])\n" +
+            "    for i in range(tgtDim):\n" +
+            "      dst[dstOff + i] = float(p[i])\n" +
+            "    srcOff += srcDim\n" +
+            "    dstOff += tgtDim\n";
+
     abstract String getOperationCode(CoordinateReferenceSystem crs1, CoordinateReferenceSystem crs2, final String format);
 
     @Override
     public CoordinateOperation createOperation(CoordinateReferenceSystem crs1, CoordinateReferenceSystem crs2, final String format) throws FactoryException {
         try {
             final String code = getOperationCode(crs1, crs2, format);
-            final ScriptEngineManager manager = new ScriptEngineManager();
-            final ScriptEngine engine;
+            if (DefaultCrsOperationService.FORMAT_PLAN.equals(format)) {
+                return new AbstractCoordinateOperation(Map.of("name", "Plan operation"), crs1, crs2, null, OperationPlanReader.read(code));
+            }
+            final ScriptMathTransform trs;
             final String type;
+            final int sourceDim = crs1.getCoordinateSystem().getDimension();
+            final int targetDim = crs2.getCoordinateSystem().getDimension();
             if (DefaultCrsOperationService.FORMAT_JAVASCRIPT.equals(format)) {
-                engine = manager.getEngineByName("js");
-                engine.eval("const operationClass = (" + code + ");\noperation = new operationClass();");
+                trs = new JavaScriptTransform(sourceDim, targetDim, SOURCES.computeIfAbsent(code, c -> Source.create("js", "(" + c + ")")));
                 type = "JavaScript";
             } else if (DefaultCrsOperationService.FORMAT_PYTHON.equals(format)) {
-                engine = manager.getEngineByName("python");
-                engine.eval(code);
+                trs = new PythonTransform(sourceDim, targetDim, code);
                 type = "Python";
             } else {
                 throw new FactoryException("Format not supported yet : " + format);
             }
-            final ScriptMathTransform trs = new ScriptMathTransform(crs1.getCoordinateSystem().getDimension(), crs2.getCoordinateSystem().getDimension(), (Invocable) engine);
 
             return new AbstractCoordinateOperation(Map.of("name", type + " operation"), crs1, crs2, null, trs);
-        } catch (RuntimeException | ScriptException ex) {
+        } catch (RuntimeException | ScriptException | TransformException ex) {
             throw new FactoryException("Cannot evaluate conversion script", ex);
         }
     }
@@ -75,16 +127,17 @@ public abstract class AbstractScriptingOperationFactory implements ScriptingCoor
         return conversion;
     }
 
-    private static final class ScriptMathTransform extends AbstractMathTransform {
+    /**
+     * Transform executing a script. Subclasses transform chunks of points with one invocation of the script.
+     */
+    private abstract static class ScriptMathTransform extends AbstractMathTransform {
 
         private final int sourceDim;
         private final int targetDim;
-        private final Invocable engine;
 
-        private ScriptMathTransform(int sourceDim, int targetDim, Invocable engine) {
+        ScriptMathTransform(int sourceDim, int targetDim) {
             this.sourceDim = sourceDim;
             this.targetDim = targetDim;
-            this.engine = engine;
         }
 
         @Override
@@ -102,26 +155,137 @@ public abstract class AbstractScriptingOperationFactory implements ScriptingCoor
             if (derivate) {
                 throw new TransformException("Derivate not supported");
             }
+            if (dst != null) {
+                transform(src, so, dst, doffset, 1);
+            }
+            return null;
+        }
+
+        @Override
+        public void transform(double[] srcPts, int srcOff, double[] dstPts, int dstOff, int numPts) throws TransformException {
+            if (srcPts == dstPts) {
+                srcPts = Arrays.copyOfRange(srcPts, srcOff, srcOff + numPts * sourceDim);
+                srcOff = 0;
+            }
+            while (numPts > 0) {
+                final int n = Math.min(numPts, CHUNK_SIZE);
+                transformChunk(srcPts, srcOff, dstPts, dstOff, n);
+                srcOff += n * sourceDim;
+                dstOff += n * targetDim;
+                numPts -= n;
+            }
+        }
+
+        /**
+         * Transforms the given points with one invocation of the script. Source and destination arrays are distinct.
+         */
+        abstract void transformChunk(double[] srcPts, int srcOff, double[] dstPts, int dstOff, int numPts) throws TransformException;
+    }
+
+    /**
+     * Transform invoking the {@code transformArray} method of a JavaScript operation.
+     * Contexts cannot be used by many threads concurrently, so each invocation borrows a context
+     * with its own instance of the operation. Idle contexts are closed when the transform is garbage-collected.
+     */
+    private static final class JavaScriptTransform extends ScriptMathTransform {
+
+        /**
+         * An instance of the operation in its context.
+         */
+        private record Instance(Context context, Value operation) {}
+
+        private final Source source;
+
+        /**
+         * Instances not used by any thread, at most {@link #MAX_IDLE_CONTEXTS}.
+         */
+        private final Queue<Instance> idle;
+
+        JavaScriptTransform(int sourceDim, int targetDim, Source source) throws TransformException {
+            super(sourceDim, targetDim);
+            this.source = source;
+            final Queue<Instance> instances = new ArrayBlockingQueue<>(MAX_IDLE_CONTEXTS);
+            CLEANER.register(this, () -> close(instances));
+            idle = instances;
+            release(acquire());     // Reports errors in the script at creation time.
+        }
+
+        /**
+         * Returns an idle instance of the operation, or creates one in a new context.
+         */
+        private Instance acquire() throws TransformException {
+            final Instance instance = idle.poll();
+            if (instance != null) {
+                return instance;
+            }
+            // Scripts can read and write Java arrays, for transforming points without copying them.
+            final Context context = Context.newBuilder("js").engine(ENGINE)
+                    .allowHostAccess(HostAccess.newBuilder().allowArrayAccess(true).build()).build();
+            try {
+                return new Instance(context, context.eval(source).newInstance());
+            } catch (PolyglotException ex) {
+                context.close();
+                throw new TransformException(ex.getMessage(), ex);
+            }
+        }
 
+        /**
+         * Keeps the given instance for the next invocation, or closes its context if there are enough idle instances.
+         */
+        private void release(final Instance instance) {
+            if (!idle.offer(instance)) {
+                instance.context().close();
+            }
+        }
+
+        /**
+         * Closes the contexts of the given idle instances. Shall not reference the transform.
+         */
+        private static void close(final Queue<Instance> instances) {
+            Instance instance;
+            while ((instance = instances.poll()) != null) {
+                instance.context().close();
+            }
+        }
+
+        @Override
+        void transformChunk(double[] srcPts, int srcOff, double[] dstPts, int dstOff, int numPts) throws TransformException {
+            final Instance instance = acquire();
             try {
-                final Object[] array = new Object[sourceDim];
-                for (int i = 0; i < sourceDim; i++) {
-                    array[i] = src[so + i];
-                }
-                final List<? extends Number> result;
-                if (engine instanceof PyScriptEngine) {
-                    result = (List) ((PyScriptEngine) engine).eval("Operation().transform(" + Arrays.toString(array) + ")");
-                } else {
-                    final Object jsOperation = ((ScriptEngine) engine).eval("operation");
-                    result = (List) engine.invokeMethod(jsOperation, "transform", ProxyArray.fromArray(array));
-                }
-                for (int i = 0; i < targetDim; i++) {
-                    dst[doffset + i] = result.get(i).doubleValue();
-                }
+                instance.operation().invokeMember("transformArray", srcPts, srcOff, dstPts, dstOff, numPts);
+            } catch (PolyglotException ex) {
+                throw new TransformException(ex.getMessage(), ex);
+            } finally {
+                release(instance);
+            }
+        }
+    }
+
+    /**
+     * Transform invoking the {@code transform} method of a Python operation from a loop written in Python.
+     * Each operation has its own Jython engine, since all generated code declares the same global names.
+     */
+    private static final class PythonTransform extends ScriptMathTransform {
+
+        private final Invocable engine;
+        private final Object operation;
+
+        PythonTransform(int sourceDim, int targetDim, String code) throws ScriptException {
+            super(sourceDim, targetDim);
+            final ScriptEngine python = new PyScriptEngineFactory().getScriptEngine();
+            python.eval(code);
+            python.eval(PYTHON_TRANSFORM_ARRAY);
+            operation = python.eval("Operation()");
+            engine = (Invocable) python;
+        }
+
+        @Override
+        void transformChunk(double[] srcPts, int srcOff, double[] dstPts, int dstOff, int numPts) throws TransformException {
+            try {
+                engine.invokeFunction("_transform_array", operation, srcPts, srcOff, dstPts, dstOff, numPts, getSourceDimensions(), getTargetDimensions());
             } catch (ScriptException | NoSuchMethodException ex) {
                 throw new TransformException(ex.getMessage(), ex);
             }
-            return null;
         }
     }
 }
@@ -19,54 +19,247 @@
  */
 package com.geomatys.crsservice.client;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.apache.sis.metadata.iso.citation.DefaultCitation;
+import org.apache.sis.util.collection.Cache;
 import org.opengis.metadata.citation.Citation;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 /**
  * CoordinateOperationFactory backed by a distance server.
+ * All factories share one HTTP client, which keeps connections open and uses HTTP/2 when the server supports it.
+ * The code of operations is cached in memory and optionally in a directory. Code read from the directory
+ * is revalidated with its ETag the first time it is used. Operations can be prefetched in bulk with
+ * {@link #prefetch(Collection, String)}.
  *
  * @author Johann Sorel (Geomatys)
  */
 public final class CRSServiceCoordinateOperationFactory extends AbstractScriptingOperationFactory {
 
+    /**
+     * HTTP client shared by all factories.
+     * The service redirects requests to their canonical form.
+     */
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    /**
+     * Maximal number of operations in a batch request, as accepted by the service.
+     */
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * Maximal number of retries of a batch request refused because the service is busy.
+     */
+    private static final int BATCH_RETRIES = 3;
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
     private final URI serviceURL;
 
+    /**
+     * Handles of the CRSs registered on the server, by WKT. Values are softly referenced.
+     */
+    private final Cache<String, String> handles = new Cache<>();
+
+    /**
+     * Code of the operations already downloaded.
+     */
+    private final OperationCodeCache cache;
+
+    /**
+     * Whether the server may offer the batch end point. Set to false if a batch request is not found.
+     */
+    private volatile boolean batchSupported = true;
+
     public CRSServiceCoordinateOperationFactory(URI serviceURL) {
+        this(serviceURL, null);
+    }
+
+    /**
+     * Creates a factory keeping the code of operations in the given directory between runs.
+     *
+     * @param serviceURL URL of the operation end point.
+     * @param cacheDirectory Directory where to write the code of operations, or null for keeping it in memory only.
+     */
+    public CRSServiceCoordinateOperationFactory(URI serviceURL, Path cacheDirectory) {
         this.serviceURL = serviceURL;
+        this.cache = new OperationCodeCache(cacheDirectory);
         System.setProperty("polyglot.engine.WarnInterpreterOnly", "false");
     }
 
     @Override
     String getOperationCode(CoordinateReferenceSystem crs1, CoordinateReferenceSystem crs2, String format) {
-        final String crs1Txt = URLEncoder.encode(crs1.toWKT(), StandardCharsets.UTF_8);
-        final String crs2Txt = URLEncoder.encode(crs2.toWKT(), StandardCharsets.UTF_8);
-        final String query = serviceURL.toString() + "?source=" + crs1Txt + "&target=" + crs2Txt + "&format=" + format;
+        final String url = url(handle(crs1), handle(crs2), format);
+        OperationCodeCache.Entry entry = cache.get(url);
+        if (entry == null || !entry.validated()) {
+            entry = download(url, entry);
+        }
+        return entry.code();
+    }
 
-        return getText(query);
+    /**
+     * Returns the URL of the GET request for the operation between the given CRSs.
+     */
+    private String url(final String source, final String target, final String format) {
+        return serviceURL.toString() + "?source=" + URLEncoder.encode(source, StandardCharsets.UTF_8)
+                + "&target=" + URLEncoder.encode(target, StandardCharsets.UTF_8) + "&format=" + format;
     }
 
-    @Override
-    public Citation getVendor() {
-        return new DefaultCitation(serviceURL.toString());
+    /**
+     * Downloads the code of an operation, or revalidates the code previously downloaded.
+     *
+     * @param url URL of the request.
+     * @param previous Code previously downloaded, or null if none.
+     * @return The current code.
+     */
+    private OperationCodeCache.Entry download(final String url, final OperationCodeCache.Entry previous) {
+        final HttpRequest.Builder request = HttpRequest.newBuilder(previous != null ? previous.location() : URI.create(url)).GET();
+        if (previous != null && previous.eTag() != null) {
+            request.header("If-None-Match", previous.eTag());
+        }
+        final HttpResponse<String> response;
+        try {
+            response = CLIENT.send(request.build(), BodyHandlers.ofString());
+        } catch (InterruptedException | IOException e) {
+            throw new RuntimeException("HTTP request failed", e);
+        }
+        final OperationCodeCache.Entry entry;
+        if (response.statusCode() == 304 && previous != null) {
+            entry = new OperationCodeCache.Entry(response.uri(), previous.eTag(), previous.code(), true);
+        } else if (response.statusCode() == 200) {
+            entry = new OperationCodeCache.Entry(response.uri(), response.headers().firstValue("ETag").orElse(null), response.body(), true);
+        } else {
+            throw new RuntimeException("HTTP request failed with status " + response.statusCode() + ": " + url);
+        }
+        cache.put(url, entry);
+        return entry;
     }
 
-    private static String getText(String url) {
-        try (final HttpClient client = HttpClient.newBuilder().build()) {
-            final HttpRequest request = HttpRequest.newBuilder().uri(new URI(url)).GET().build();
-            final HttpResponse<String> response = client.send(request, BodyHandlers.ofString());
-            return response.body();
-        } catch (InterruptedException | IOException | URISyntaxException e) {
+    /**
+     * Downloads the operations between the given pairs of CRSs which are not already cached, with one request
+     * per hundred operations. Next calls to {@code createOperation} with the same CRSs and format use the
+     * downloaded code without contacting the server. Nothing is done if the server has no batch end point.
+     * Operations in batches refused by a busy server are downloaded one by one when created.
+     *
+     * @param pairs Source and target CRSs of the operations.
+     * @param format Format of the operations. Only text formats are supported.
+     * @return Number of operations downloaded.
+     */
+    public int prefetch(final Collection<? extends Map.Entry<? extends CoordinateReferenceSystem, ? extends CoordinateReferenceSystem>> pairs, final String format) {
+        final Map<String, Map<String, Object>> missing = new LinkedHashMap<>();
+        for (var pair : pairs) {
+            final String source = handle(pair.getKey());
+            final String target = handle(pair.getValue());
+            final String url = url(source, target, format);
+            final OperationCodeCache.Entry entry = cache.get(url);
+            if (entry == null || !entry.validated()) {
+                missing.put(url, Map.of("source", source, "target", target, "format", format));
+            }
+        }
+        final List<String> urls = new ArrayList<>(missing.keySet());
+        final List<Map<String, Object>> parameters = new ArrayList<>(missing.values());
+        int count = 0;
+        for (int start = 0; start < urls.size() && batchSupported; start += BATCH_SIZE) {
+            final int end = Math.min(start + BATCH_SIZE, urls.size());
+            count += prefetch(urls.subList(start, end), parameters.subList(start, end));
+        }
+        return count;
+    }
+
+    /**
+     * Sends one batch request and caches the operations under the URLs of the corresponding GET requests.
+     */
+    private int prefetch(final List<String> urls, final List<Map<String, Object>> parameters) {
+        final JsonNode operations;
+        try {
+            final HttpRequest request = HttpRequest.newBuilder().uri(serviceURL.resolve("operations"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(JSON.writeValueAsString(parameters), StandardCharsets.UTF_8)).build();
+            HttpResponse<String> response = CLIENT.send(request, BodyHandlers.ofString());
+            for (int retry = 0; response.statusCode() == 429; retry++) {
+                if (retry == BATCH_RETRIES) {
+                    return 0;
+                }
+                Thread.sleep(Duration.ofSeconds(response.headers().firstValueAsLong("Retry-After").orElse(1)).toMillis());
+                response = CLIENT.send(request, BodyHandlers.ofString());
+            }
+            if (response.statusCode() == 404 || response.statusCode() == 405) {
+                batchSupported = false;
+                return 0;
+            }
+            if (response.statusCode() != 200) {
+                throw new RuntimeException("Batch request failed with status " + response.statusCode());
+            }
+            operations = JSON.readTree(response.body());
+        } catch (InterruptedException | IOException e) {
             throw new RuntimeException("HTTP request failed", e);
         }
+        for (int i = 0; i < urls.size(); i++) {
+            final JsonNode operation = operations.get(i);
+            final JsonNode eTag = operation.get("eTag");
+            cache.put(urls.get(i), new OperationCodeCache.Entry(serviceURL.resolve(operation.get("location").asText()),
+                    (eTag == null || eTag.isNull()) ? null : eTag.asText(), operation.get("code").asText(), true));
+        }
+        return urls.size();
+    }
+
+    /**
+     * Returns the handle of the given CRS, registering its WKT on the server the first time.
+     */
+    private String handle(final CoordinateReferenceSystem crs) {
+        final String wkt = crs.toWKT();
+        String handle = handles.peek(wkt);
+        if (handle == null) {
+            // The request is sent without lock. Concurrent registrations of the same WKT give the same handle.
+            handle = register(wkt);
+            final String previous = handles.putIfAbsent(wkt, handle);
+            if (previous != null) {
+                handle = previous;
+            }
+        }
+        return handle;
+    }
+
+    /**
+     * Registers the given WKT on the server and returns its handle.
+     */
+    private String register(final String wkt) {
+        try {
+            final HttpRequest request = HttpRequest.newBuilder().uri(serviceURL.resolve("register"))
+                    .header("Content-Type", "text/plain; charset=utf-8")
+                    .POST(HttpRequest.BodyPublishers.ofString(wkt, StandardCharsets.UTF_8)).build();
+            final HttpResponse<String> response = CLIENT.send(request, BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new RuntimeException("WKT registration failed with status " + response.statusCode());
+            }
+            return response.body().strip();
+        } catch (InterruptedException | IOException e) {
+            throw new RuntimeException("HTTP request failed", e);
+        }
+    }
+
+    @Override
+    public Citation getVendor() {
+        return new DefaultCitation(serviceURL.toString());
     }
 }
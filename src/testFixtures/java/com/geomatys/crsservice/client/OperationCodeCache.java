@@ -0,0 +1,135 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.client;
+
+import com.geomatys.crsservice.configuration.BoundedFileStore;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Path;
+import org.apache.sis.util.collection.Cache;
+
+/**
+ * Code of operations downloaded from the service, by request URL.
+ * Entries are kept in memory with soft references. If a directory is specified, entries are also written
+ * in that directory, one file per request, so that they can be reused by the next runs after revalidation.
+ * The number of files is bounded: when the capacity is exceeded, the files which have not been written
+ * for the longest time are deleted.
+ *
+ * @see BoundedFileStore
+ */
+final class OperationCodeCache {
+
+    /**
+     * Suffix of the files containing operations. File names are the hexadecimal hashes of the request URLs.
+     */
+    private static final String SUFFIX = ".op";
+
+    /**
+     * Default maximal number of files in the directory.
+     */
+    static final int CAPACITY = 10_000;
+
+    /**
+     * Code of an operation.
+     *
+     * @param location Canonical URL of the operation, for revalidation.
+     * @param eTag Entity tag of the code, or null if the server did not provide one.
+     * @param code Source code of the operation.
+     * @param validated Whether the code is known to be current, false if read from a previous run.
+     */
+    record Entry(URI location, String eTag, String code, boolean validated) {}
+
+    /**
+     * Files of the entries, or null for keeping them in memory only.
+     */
+    private final BoundedFileStore files;
+
+    private final Cache<String, Entry> entries = new Cache<>();
+
+    /**
+     * Creates a cache writing at most {@value #CAPACITY} entries in the given directory.
+     *
+     * @param directory Directory where to write the entries, or null for keeping them in memory only.
+     * @throws UncheckedIOException if the directory cannot be created or listed.
+     */
+    OperationCodeCache(final Path directory) {
+        this(directory, CAPACITY);
+    }
+
+    /**
+     * Creates a cache writing entries in the given directory.
+     *
+     * @param directory Directory where to write the entries, or null for keeping them in memory only.
+     * @param capacity Maximal number of files in the directory.
+     * @throws UncheckedIOException if the directory cannot be created or listed.
+     */
+    OperationCodeCache(final Path directory, final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        try {
+            files = (directory != null) ? new BoundedFileStore(directory, SUFFIX, capacity) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the entry for the given request URL, or null if none.
+     */
+    Entry get(final String url) {
+        Entry entry = entries.peek(url);
+        if (entry == null && files != null) {
+            final String content;
+            try {
+                content = files.read(BoundedFileStore.hash(url));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (content == null) {
+                return null;
+            }
+            final int s1 = content.indexOf('\n');
+            final int s2 = content.indexOf('\n', s1 + 1);
+            if (s1 < 0 || s2 < 0) {
+                return null;
+            }
+            final String eTag = content.substring(s1 + 1, s2);
+            entry = new Entry(URI.create(content.substring(0, s1)), eTag.isEmpty() ? null : eTag, content.substring(s2 + 1), false);
+            entries.putIfAbsent(url, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the entry for the given request URL, replacing the previous one.
+     */
+    void put(final String url, final Entry entry) {
+        entries.put(url, entry);
+        if (files != null) {
+            try {
+                files.write(BoundedFileStore.hash(url), entry.location() + "\n" + (entry.eTag() != null ? entry.eTag() : "") + '\n' + entry.code());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
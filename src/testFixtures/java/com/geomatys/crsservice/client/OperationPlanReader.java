@@ -0,0 +1,146 @@
+/*
+ * Planet CRS Registry - The coordinates reference system registry for solar bodies
+ * Copyright (C) 2025 - CNES (for PDSSP)
+ *
+ * This file is part of CRS Service.
+ *
+ * CRS Service is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License v3  as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CRS Service is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License v3  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License v3
+ * along with CRS Service.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.geomatys.crsservice.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Iterator;
+import java.util.Map;
+import javax.measure.Unit;
+import org.apache.sis.referencing.operation.matrix.Matrices;
+import org.apache.sis.referencing.operation.transform.DefaultMathTransformFactory;
+import org.apache.sis.referencing.operation.transform.MathTransforms;
+import org.opengis.parameter.ParameterDescriptor;
+import org.opengis.parameter.ParameterValue;
+import org.opengis.parameter.ParameterValueGroup;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.MathTransformFactory;
+import org.opengis.referencing.operation.NoninvertibleTransformException;
+import org.opengis.util.FactoryException;
+
+/**
+ * Rebuilds the transform of an operation plan with the Apache SIS implementation of operation methods,
+ * without scripting engine.
+ *
+ * @see com.geomatys.crsservice.service.DefaultCrsOperationService#FORMAT_PLAN
+ */
+final class OperationPlanReader {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final MathTransformFactory FACTORY = new DefaultMathTransformFactory();
+
+    private OperationPlanReader() {
+    }
+
+    /**
+     * Returns the transform described by the given plan.
+     */
+    static MathTransform read(final String plan) throws FactoryException {
+        final JsonNode root;
+        try {
+            root = MAPPER.readTree(plan);
+        } catch (JsonProcessingException e) {
+            throw new FactoryException("Cannot parse operation plan", e);
+        }
+        final MathTransform trs = steps(root.get("steps"), root.get("sourceDimensions").intValue());
+        if (trs.getTargetDimensions() != root.get("targetDimensions").intValue()) {
+            throw new FactoryException("Unexpected number of target dimensions in operation plan");
+        }
+        return trs;
+    }
+
+    private static MathTransform steps(final JsonNode steps, final int dimension) throws FactoryException {
+        MathTransform trs = MathTransforms.identity(dimension);
+        for (JsonNode step : steps) {
+            trs = FACTORY.createConcatenatedTransform(trs, step(step, trs.getTargetDimensions()));
+        }
+        return trs;
+    }
+
+    private static MathTransform step(final JsonNode step, final int dimension) throws FactoryException {
+        final String type = step.get("type").textValue();
+        switch (type) {
+            case "affine": {
+                final JsonNode rows = step.get("matrix");
+                final int numRow = rows.size();
+                final int numCol = rows.get(0).size();
+                final double[] elements = new double[numRow * numCol];
+                for (int j = 0; j < numRow; j++) {
+                    for (int i = 0; i < numCol; i++) {
+                        elements[j * numCol + i] = rows.get(j).get(i).doubleValue();
+                    }
+                }
+                return FACTORY.createAffineTransform(Matrices.create(numRow, numCol, elements));
+            }
+            case "parameterized": {
+                final ParameterValueGroup parameters = FACTORY.getDefaultParameters(step.get("method").textValue());
+                final Iterator<Map.Entry<String, JsonNode>> it = step.get("parameters").fields();
+                while (it.hasNext()) {
+                    final Map.Entry<String, JsonNode> entry = it.next();
+                    setValue(parameters.parameter(entry.getKey()), entry.getValue());
+                }
+                final MathTransform trs = FACTORY.createParameterizedTransform(parameters);
+                if (step.path("inverse").booleanValue()) {
+                    try {
+                        return trs.inverse();
+                    } catch (NoninvertibleTransformException e) {
+                        throw new FactoryException("Cannot invert step of operation plan", e);
+                    }
+                }
+                return trs;
+            }
+            case "passThrough": {
+                final int first = step.get("firstCoordinate").intValue();
+                final int trailing = step.get("trailingCoordinates").intValue();
+                final MathTransform sub = steps(step.get("steps"), dimension - first - trailing);
+                return FACTORY.createPassThroughTransform(first, sub, trailing);
+            }
+            default: throw new FactoryException("Unsupported step in operation plan: " + type);
+        }
+    }
+
+    private static void setValue(final ParameterValue<?> parameter, final JsonNode value) {
+        final Class<?> type = ((ParameterDescriptor<?>) parameter.getDescriptor()).getValueClass();
+        if (value.isNumber()) {
+            if (type == Integer.class) {
+                parameter.setValue(value.intValue());
+            } else {
+                final Unit<?> unit = ((ParameterDescriptor<?>) parameter.getDescriptor()).getUnit();
+                if (unit != null) {
+                    parameter.setValue(value.doubleValue(), unit);
+                } else {
+                    parameter.setValue(value.doubleValue());
+                }
+            }
+        } else if (value.isBoolean()) {
+            parameter.setValue(value.booleanValue());
+        } else if (value.isArray()) {
+            final double[] values = new double[value.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = value.get(i).doubleValue();
+            }
+            parameter.setValue(values, ((ParameterDescriptor<?>) parameter.getDescriptor()).getUnit());
+        } else {
+            parameter.setValue(value.textValue());
+        }
+    }
+}